@@ -0,0 +1,37 @@
+-- Script para pasar de ids IDENTITY (AUTO_INCREMENT) a ids por bloques (BloqueIdsGenerator)
+-- en pedidos, pedido_detalles, movimientos_stock, stock_historico, producto_variantes y carrito_items.
+--
+-- La aplicación hace lo mismo al arrancar (IdsPorBloqueService), así que el script sólo hace falta
+-- si se quiere preparar la base antes del deploy. Es seguro correrlo varias veces: nunca baja un valor.
+--
+-- Cada fila guarda el próximo id libre de la tabla. Las columnas id conservan AUTO_INCREMENT,
+-- así que no hace falta ningún ALTER TABLE.
+
+CREATE TABLE IF NOT EXISTS ids_entidades (
+    entidad VARCHAR(255) NOT NULL PRIMARY KEY,
+    proximo_id BIGINT
+) ENGINE=InnoDB;
+
+INSERT INTO ids_entidades (entidad, proximo_id)
+SELECT 'pedidos', COALESCE(MAX(id), 0) + 1 FROM pedidos
+ON DUPLICATE KEY UPDATE proximo_id = GREATEST(COALESCE(proximo_id, 1), VALUES(proximo_id));
+
+INSERT INTO ids_entidades (entidad, proximo_id)
+SELECT 'pedido_detalles', COALESCE(MAX(id), 0) + 1 FROM pedido_detalles
+ON DUPLICATE KEY UPDATE proximo_id = GREATEST(COALESCE(proximo_id, 1), VALUES(proximo_id));
+
+INSERT INTO ids_entidades (entidad, proximo_id)
+SELECT 'movimientos_stock', COALESCE(MAX(id), 0) + 1 FROM movimientos_stock
+ON DUPLICATE KEY UPDATE proximo_id = GREATEST(COALESCE(proximo_id, 1), VALUES(proximo_id));
+
+INSERT INTO ids_entidades (entidad, proximo_id)
+SELECT 'stock_historico', COALESCE(MAX(id), 0) + 1 FROM stock_historico
+ON DUPLICATE KEY UPDATE proximo_id = GREATEST(COALESCE(proximo_id, 1), VALUES(proximo_id));
+
+INSERT INTO ids_entidades (entidad, proximo_id)
+SELECT 'producto_variantes', COALESCE(MAX(id), 0) + 1 FROM producto_variantes
+ON DUPLICATE KEY UPDATE proximo_id = GREATEST(COALESCE(proximo_id, 1), VALUES(proximo_id));
+
+INSERT INTO ids_entidades (entidad, proximo_id)
+SELECT 'carrito_items', COALESCE(MAX(id), 0) + 1 FROM carrito_items
+ON DUPLICATE KEY UPDATE proximo_id = GREATEST(COALESCE(proximo_id, 1), VALUES(proximo_id));
@@ -0,0 +1,17 @@
+package com.hrk.tienda_b2b.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class DashboardConfig {
+
+    // Pool propio para los KPIs de /api/dashboards/resumen (no compartir el commonPool con el resto de la app)
+    @Bean(name = "dashboardPool", destroyMethod = "shutdown")
+    public ForkJoinPool dashboardPool(@Value("${app.dashboard.paralelismo:4}") int paralelismo) {
+        return new ForkJoinPool(Math.max(1, paralelismo));
+    }
+}
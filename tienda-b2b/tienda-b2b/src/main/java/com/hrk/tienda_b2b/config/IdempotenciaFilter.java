@@ -0,0 +1,213 @@
+package com.hrk.tienda_b2b.config;
+
+import com.hrk.tienda_b2b.service.IdempotenciaService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Header Idempotency-Key en los POST que crean pedidos, mueven stock o inician pagos (rutas en
+ * app.idempotencia.rutas). Sin el header el request pasa como siempre.
+ *
+ * Con el header: si la clave ya se usó con el mismo request se devuelve la respuesta guardada (con
+ * Idempotent-Replayed: true) sin ejecutar nada; si todavía se está procesando, 409; si se usó con otro
+ * request (otra ruta, parámetros o cuerpo), 422. La clave es por usuario autenticado.
+ */
+@Component
+public class IdempotenciaFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_LARGO_CLAVE = 255;
+
+    private final IdempotenciaService idempotenciaService;
+    private final List<String> rutas;
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    public IdempotenciaFilter(IdempotenciaService idempotenciaService,
+                              @Value("${app.idempotencia.rutas:/api/pedidos/crear,/api/pedidos/enviar,/api/pedidos/*/items,"
+                                      + "/api/pedidos/*/confirmar,/api/pedidos/*/cancelar,/api/devoluciones/crear-completa,"
+                                      + "/api/devoluciones/*/aprobar-apta,/api/devoluciones/*/aprobar-scrap,"
+                                      + "/api/mercadopago/crear-preferencia/*}") List<String> rutas) {
+        this.idempotenciaService = idempotenciaService;
+        this.rutas = rutas.stream().map(String::trim).filter(r -> !r.isEmpty()).toList();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equalsIgnoreCase(request.getMethod()) || request.getHeader(HEADER) == null) {
+            return true;
+        }
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return rutas.stream().noneMatch(patron -> matcher.match(patron, ruta));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String valor = request.getHeader(HEADER).trim();
+        if (valor.isEmpty() || valor.length() > MAX_LARGO_CLAVE) {
+            responderError(response, 400, "Idempotency-Key inválido (1 a " + MAX_LARGO_CLAVE + " caracteres)");
+            return;
+        }
+
+        CuerpoLeido pedido = new CuerpoLeido(request);
+        String usuario = request.getUserPrincipal() != null ? request.getUserPrincipal().getName() : "";
+        byte[] clave = sha256(usuario, request.getMethod(), request.getRequestURI(), valor);
+        byte[] huella = sha256(request.getRequestURI(), String.valueOf(request.getQueryString()),
+                new String(pedido.cuerpo, StandardCharsets.UTF_8));
+
+        IdempotenciaService.Verificacion verificacion = idempotenciaService.iniciar(clave, huella);
+        switch (verificacion.getDecision()) {
+            case REPETIDA -> {
+                IdempotenciaService.Respuesta guardada = verificacion.getRespuesta();
+                System.out.println("🔵 [IDEMPOTENCIA] Respuesta repetida para " + request.getRequestURI());
+                response.setStatus(guardada.getEstado());
+                if (guardada.getTipoContenido() != null) {
+                    response.setContentType(guardada.getTipoContenido());
+                }
+                response.setHeader("Idempotent-Replayed", "true");
+                response.setContentLength(guardada.getCuerpo().length);
+                response.getOutputStream().write(guardada.getCuerpo());
+                return;
+            }
+            case EN_PROCESO -> {
+                responderError(response, 409, "Ya hay un request en proceso con este Idempotency-Key");
+                return;
+            }
+            case HUELLA_DISTINTA -> {
+                responderError(response, 422, "El Idempotency-Key ya se usó con otro request");
+                return;
+            }
+            default -> {
+                // NUEVA: se procesa abajo
+            }
+        }
+
+        ContentCachingResponseWrapper respuesta = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(pedido, respuesta);
+        } catch (IOException | ServletException | RuntimeException e) {
+            idempotenciaService.liberar(clave);
+            throw e;
+        }
+        try {
+            idempotenciaService.completar(clave, huella, respuesta.getStatus(), respuesta.getContentType(),
+                    respuesta.getContentAsByteArray());
+        } catch (RuntimeException e) {
+            // La operación ya se hizo: se responde igual, sólo se pierde la protección ante reintentos
+            System.err.println("🔴 [IDEMPOTENCIA] No se pudo guardar la respuesta: " + e.getMessage());
+        }
+        respuesta.copyBodyToResponse();
+    }
+
+    private static void responderError(HttpServletResponse response, int estado, String mensaje) throws IOException {
+        response.setStatus(estado);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"error\":\"" + mensaje.replace("\"", "'") + "\"}");
+    }
+
+    private static byte[] sha256(String... partes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String parte : partes) {
+                digest.update(parte.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0); // separador: "a" + "bc" no debe dar lo mismo que "ab" + "c"
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Request con el cuerpo ya leído: hace falta para la huella y después el controller lo vuelve a leer.
+     * Los formularios no se leen como stream (el contenedor ya no podría armar los parámetros): la huella
+     * sale de los parámetros.
+     */
+    private static class CuerpoLeido extends HttpServletRequestWrapper {
+
+        private final byte[] cuerpo;
+        private final boolean esFormulario;
+
+        CuerpoLeido(HttpServletRequest request) throws IOException {
+            super(request);
+            String tipo = request.getContentType();
+            this.esFormulario = tipo != null && tipo.toLowerCase().startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+            if (esFormulario) {
+                Map<String, String> ordenados = new TreeMap<>();
+                request.getParameterMap().forEach((nombre, valores) -> ordenados.put(nombre, Arrays.toString(valores)));
+                this.cuerpo = ordenados.toString().getBytes(StandardCharsets.UTF_8);
+            } else {
+                this.cuerpo = request.getInputStream().readAllBytes();
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (esFormulario) {
+                return super.getInputStream();
+            }
+            ByteArrayInputStream datos = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return datos.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return datos.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return datos.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (esFormulario) {
+                return super.getReader();
+            }
+            String charset = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(charset)));
+        }
+    }
+}
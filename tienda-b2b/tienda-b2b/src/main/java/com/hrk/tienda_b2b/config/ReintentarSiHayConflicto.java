@@ -0,0 +1,23 @@
+package com.hrk.tienda_b2b.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Vuelve a ejecutar el método transaccional completo si falla por un conflicto de concurrencia
+ * (@Version de otra transacción, deadlock, lock no obtenido). Ver ReintentoConflictosAspect.
+ *
+ * Sólo para métodos que abren su propia transacción y que se pueden repetir sin efectos fuera de ella:
+ * cada intento arranca una transacción nueva y lee todo otra vez.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReintentarSiHayConflicto {
+
+    /** Intentos en total (el primero incluido); 0 = el valor de app.reintentos.maximo-intentos */
+    int intentos() default 0;
+}
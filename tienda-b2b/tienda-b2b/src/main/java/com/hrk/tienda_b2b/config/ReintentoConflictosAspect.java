@@ -0,0 +1,122 @@
+package com.hrk.tienda_b2b.config;
+
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.service.ConflictosConcurrenciaMetricas;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.StaleStateException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reintentos de {@link ReintentarSiHayConflicto}.
+ *
+ * Corre por fuera del interceptor de @Transactional (orden más alto), así cada intento es una transacción
+ * completa: la que falló ya se revirtió y la siguiente vuelve a leer versiones actuales. Si el método se llama
+ * desde dentro de otra transacción no se reintenta: esa transacción ya quedó marcada para rollback.
+ *
+ * La espera entre intentos crece exponencialmente con jitter completo (entre 0 y base * 2^intento), para que
+ * los que chocaron no vuelvan a chocar todos juntos.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReintentoConflictosAspect {
+
+    private final ConflictosConcurrenciaMetricas metricas;
+    private final int maximoIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaximaMs;
+
+    public ReintentoConflictosAspect(ConflictosConcurrenciaMetricas metricas,
+                                     @Value("${app.reintentos.maximo-intentos:4}") int maximoIntentos,
+                                     @Value("${app.reintentos.espera-base-ms:20}") long esperaBaseMs,
+                                     @Value("${app.reintentos.espera-maxima-ms:500}") long esperaMaximaMs) {
+        this.metricas = metricas;
+        this.maximoIntentos = Math.max(1, maximoIntentos);
+        this.esperaBaseMs = esperaBaseMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    @Around("@annotation(reintentar)")
+    public Object reintentar(ProceedingJoinPoint punto, ReintentarSiHayConflicto reintentar) throws Throwable {
+        String metodo = punto.getSignature().getDeclaringType().getSimpleName() + "." + punto.getSignature().getName();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return punto.proceed();
+        }
+
+        int intentos = reintentar.intentos() > 0 ? reintentar.intentos() : maximoIntentos;
+        metricas.registrarEjecucion(metodo);
+        for (int intento = 1; ; intento++) {
+            try {
+                Object resultado = punto.proceed();
+                if (intento > 1) {
+                    metricas.registrarExitoTrasReintento(metodo);
+                }
+                return resultado;
+            } catch (RuntimeException e) {
+                Throwable conflicto = buscarConflicto(e);
+                if (conflicto == null) {
+                    throw e;
+                }
+                metricas.registrarConflicto(metodo, varianteEnConflicto(conflicto));
+                if (intento >= intentos) {
+                    metricas.registrarAgotado(metodo);
+                    System.err.println("🔴 [REINTENTOS] " + metodo + " sigue en conflicto después de " + intento + " intentos: " + conflicto.getMessage());
+                    throw e;
+                }
+                metricas.registrarReintento(metodo);
+                System.out.println("🔵 [REINTENTOS] Conflicto en " + metodo + " (intento " + intento + "/" + intentos + "), reintentando");
+                esperar(intento);
+            }
+        }
+    }
+
+    private void esperar(int intento) throws InterruptedException {
+        long tope = Math.min(esperaMaximaMs, esperaBaseMs << Math.min(intento, 16));
+        if (tope > 0) {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        }
+    }
+
+    // Los servicios a veces envuelven la excepción original: se busca en toda la cadena de causas
+    private static Throwable buscarConflicto(Throwable e) {
+        for (Throwable actual = e; actual != null; actual = actual.getCause()) {
+            if (actual instanceof ConcurrencyFailureException
+                    || actual instanceof OptimisticLockException
+                    || actual instanceof PessimisticLockException
+                    || actual instanceof StaleStateException) {
+                return actual;
+            }
+            if (actual.getCause() == actual) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static Long varianteEnConflicto(Throwable conflicto) {
+        if (conflicto instanceof ObjectOptimisticLockingFailureException optimista
+                && ProductoVariante.class.getName().equals(optimista.getPersistentClassName())
+                && optimista.getIdentifier() instanceof Long id) {
+            return id;
+        }
+        if (conflicto instanceof StaleObjectStateException stale
+                && ProductoVariante.class.getName().equals(stale.getEntityName())
+                && stale.getIdentifier() instanceof Long id) {
+            return id;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.hrk.tienda_b2b.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Tareas periódicas (reservas de stock, stock del catálogo, cortes, archivo, conciliación)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
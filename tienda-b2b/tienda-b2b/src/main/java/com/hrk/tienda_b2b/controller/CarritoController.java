@@ -4,10 +4,14 @@ package com.hrk.tienda_b2b.controller;
 
 import com.hrk.tienda_b2b.model.Pedido;
 import com.hrk.tienda_b2b.service.CarritoService;
+import com.hrk.tienda_b2b.service.StockInsuficienteException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/carrito")
 @CrossOrigin(origins = "*")
@@ -26,11 +30,19 @@ public class CarritoController {
     }
 
     @PostMapping("/{carritoId}/items")
-    public ResponseEntity<Void> agregarItem(@PathVariable Long carritoId,
-                                            @RequestParam Long varianteId,
-                                            @RequestParam int cantidad) {
-        carritoService.agregarItem(carritoId, varianteId, cantidad);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<?> agregarItem(@PathVariable Long carritoId,
+                                         @RequestParam Long varianteId,
+                                         @RequestParam int cantidad) {
+        try {
+            carritoService.agregarItem(carritoId, varianteId, cantidad);
+            return ResponseEntity.ok().build();
+        } catch (StockInsuficienteException e) {
+            // No queda stock libre (descontando lo reservado por otros carritos/pedidos)
+            Map<String, Object> respuesta = new HashMap<>();
+            respuesta.put("error", e.getMessage());
+            respuesta.put("faltantes", e.getFaltantes());
+            return ResponseEntity.status(400).body(respuesta);
+        }
     }
 
     @DeleteMapping("/items/{itemId}")
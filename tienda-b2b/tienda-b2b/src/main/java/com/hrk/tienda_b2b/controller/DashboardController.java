@@ -1,13 +1,24 @@
 package com.hrk.tienda_b2b.controller;
 
+import com.hrk.tienda_b2b.dto.ConciliacionStockResultadoDTO;
+import com.hrk.tienda_b2b.repository.MovimientoStockRepository;
+import com.hrk.tienda_b2b.repository.StockHistoricoRepository;
+import com.hrk.tienda_b2b.service.ArchivoHistorialService;
+import com.hrk.tienda_b2b.service.ConciliacionStockService;
+import com.hrk.tienda_b2b.service.ConflictosConcurrenciaMetricas;
+import com.hrk.tienda_b2b.service.DashboardCache;
+import com.hrk.tienda_b2b.service.DashboardResumenService;
 import com.hrk.tienda_b2b.service.DashboardService;
+import com.hrk.tienda_b2b.service.EventoStockService;
+import com.hrk.tienda_b2b.service.ResumenDiarioService;
+import com.hrk.tienda_b2b.service.ResumenStockService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -17,6 +28,30 @@ import java.util.Map;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final ResumenDiarioService resumenDiarioService;
+    private final DashboardResumenService dashboardResumenService;
+    private final DashboardCache dashboardCache;
+    private final ResumenStockService resumenStockService;
+    private final ConflictosConcurrenciaMetricas conflictosMetricas;
+    private final EventoStockService eventoStockService;
+    private final ArchivoHistorialService archivoHistorialService;
+    private final MovimientoStockRepository movimientoStockRepository;
+    private final StockHistoricoRepository stockHistoricoRepository;
+    private final ConciliacionStockService conciliacionStockService;
+
+    // Todos los KPIs del panel en una sola llamada (incluye "tiempos" con el detalle por KPI)
+    @GetMapping("/resumen")
+    public ResponseEntity<?> obtenerResumen(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(defaultValue = "10") int topArticulos,
+            @RequestParam(defaultValue = "3") int topClientes) {
+        try {
+            return ResponseEntity.ok(dashboardResumenService.obtenerResumen(desde, hasta, topArticulos, topClientes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
     @GetMapping("/ordenes-canceladas")
     public ResponseEntity<Map<String, Long>> contarOrdenesCanceladas(
@@ -59,14 +94,15 @@ public class DashboardController {
     }
 
     @GetMapping("/top-articulos-vendidos")
-    public ResponseEntity<List<Map<String, Object>>> obtenerTopArticulosMasVendidos(
+    public ResponseEntity<?> obtenerTopArticulosMasVendidos(
             @RequestParam(defaultValue = "10") int top,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
-        
-        List<Map<String, Object>> resultado = dashboardService.obtenerTopArticulosMasVendidos(top, desde, hasta);
-        
-        return ResponseEntity.ok(resultado);
+        try {
+            return ResponseEntity.ok(dashboardService.obtenerTopArticulosMasVendidos(top, desde, hasta));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/detalles-producto/{productoId}")
@@ -91,14 +127,15 @@ public class DashboardController {
     }
 
     @GetMapping("/top-clientes-monto")
-    public ResponseEntity<List<Map<String, Object>>> obtenerTopClientesPorMonto(
+    public ResponseEntity<?> obtenerTopClientesPorMonto(
             @RequestParam(defaultValue = "3") int top,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
-        
-        List<Map<String, Object>> resultado = dashboardService.obtenerTopClientesPorMonto(top, desde, hasta);
-        
-        return ResponseEntity.ok(resultado);
+        try {
+            return ResponseEntity.ok(dashboardService.obtenerTopClientesPorMonto(top, desde, hasta));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/clientes-sin-compras")
@@ -119,5 +156,102 @@ public class DashboardController {
         
         return ResponseEntity.ok(resultado);
     }
-}
 
+    // Recalcula los acumulados diarios desde pedidos (por si se editaron datos directamente en la base)
+    @PostMapping("/resumen-diario/reconstruir")
+    public ResponseEntity<Map<String, Integer>> reconstruirResumenDiario() {
+        
+        Map<String, Integer> resultado = resumenDiarioService.reconstruir();
+        dashboardCache.limpiar(); // los resultados cacheados pueden venir de acumulados incorrectos
+        
+        return ResponseEntity.ok(resultado);
+    }
+
+    // Recalcula el resumen de stock histórico por variante desde stock_historico
+    @PostMapping("/resumen-stock/reconstruir")
+    public ResponseEntity<Map<String, Integer>> reconstruirResumenStock() {
+        
+        Map<String, Integer> resultado = resumenStockService.reconstruir();
+        dashboardCache.limpiar();
+        
+        return ResponseEntity.ok(resultado);
+    }
+
+    // Stock a una fecha (del registro de eventos): de una variante o de todas las que tenían stock
+    @GetMapping("/stock-al")
+    public ResponseEntity<?> obtenerStockAl(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fecha,
+            @RequestParam(required = false) Long varianteId) {
+        if (varianteId != null) {
+            return ResponseEntity.ok(Map.of("varianteId", varianteId, "fecha", fecha.toString(),
+                    "stock", eventoStockService.stockAl(varianteId, fecha)));
+        }
+        return ResponseEntity.ok(eventoStockService.stockAl(fecha));
+    }
+
+    // Genera el corte de stock a esa fecha (por ejemplo el primer instante de un mes) si todavía no existe
+    @PostMapping("/stock-al/cortes")
+    public ResponseEntity<?> generarCorteStock(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fecha) {
+        try {
+            return ResponseEntity.ok(eventoStockService.generarCorte(fecha));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Historial completo de una variante (movimientos y stock histórico), incluidos los meses archivados
+    @GetMapping("/historial-stock")
+    public ResponseEntity<Map<String, Object>> obtenerHistorialStock(
+            @RequestParam Long varianteId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta) {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("varianteId", varianteId);
+        resultado.put("movimientos", movimientoStockRepository.buscarHistorial(varianteId, desde, hasta));
+        resultado.put("historico", stockHistoricoRepository.buscarHistorial(varianteId, desde, hasta));
+        return ResponseEntity.ok(resultado);
+    }
+
+    // Archiva ya los meses vencidos (lo mismo que la tarea mensual)
+    @PostMapping("/archivo/ejecutar")
+    public ResponseEntity<Map<String, Object>> ejecutarArchivo() {
+        return ResponseEntity.ok(archivoHistorialService.archivar());
+    }
+
+    // Compara stock_disponible con movimientos y stock histórico; con corregir=true registra ajustes por las diferencias
+    @PostMapping("/conciliacion-stock")
+    public ResponseEntity<ConciliacionStockResultadoDTO> conciliarStock(@RequestParam(defaultValue = "false") boolean corregir) {
+        return ResponseEntity.ok(conciliacionStockService.conciliar(corregir));
+    }
+
+    @GetMapping("/conciliacion-stock/ultima")
+    public ResponseEntity<ConciliacionStockResultadoDTO> obtenerUltimaConciliacion() {
+        ConciliacionStockResultadoDTO resultado = conciliacionStockService.getUltimoResultado();
+        return resultado != null ? ResponseEntity.ok(resultado) : ResponseEntity.noContent().build();
+    }
+
+    // Aciertos/fallos del cache de dashboards (para verificar su efectividad)
+    @GetMapping("/cache/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCache() {
+        return ResponseEntity.ok(dashboardCache.estadisticas());
+    }
+
+    // Conflictos de concurrencia y reintentos por método, y las variantes más disputadas
+    @GetMapping("/conflictos")
+    public ResponseEntity<Map<String, Object>> obtenerConflictos(@RequestParam(defaultValue = "20") int top) {
+        return ResponseEntity.ok(conflictosMetricas.estadisticas(top));
+    }
+
+    @DeleteMapping("/conflictos")
+    public ResponseEntity<Void> reiniciarConflictos() {
+        conflictosMetricas.reiniciar();
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/cache")
+    public ResponseEntity<Map<String, Object>> limpiarCache() {
+        dashboardCache.limpiar();
+        return ResponseEntity.ok(dashboardCache.estadisticas());
+    }
+}
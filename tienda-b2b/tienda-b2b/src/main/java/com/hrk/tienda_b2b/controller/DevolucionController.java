@@ -4,15 +4,14 @@ package com.hrk.tienda_b2b.controller;
 import com.hrk.tienda_b2b.dto.CreateDevolucionRequest;
 import com.hrk.tienda_b2b.dto.DevolucionResponseDTO;
 import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
-import com.hrk.tienda_b2b.dto.UsuarioDTO;
 import com.hrk.tienda_b2b.model.Pedido;
-import com.hrk.tienda_b2b.model.DetallePedido;
 import com.hrk.tienda_b2b.service.DevolucionService;
+import com.hrk.tienda_b2b.service.PedidoDTOAssembler;
+import com.hrk.tienda_b2b.service.SaldoDevolucionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +23,8 @@ import java.util.Map;
 public class DevolucionController {
 
     private final DevolucionService devolucionService;
+    private final PedidoDTOAssembler pedidoDTOAssembler;
+    private final SaldoDevolucionService saldoDevolucionService;
 
     @PostMapping("/crear")
     public ResponseEntity<DevolucionResponseDTO> crear(@RequestParam Long clienteId,
@@ -148,74 +149,9 @@ public class DevolucionController {
         }
     }
 
-    // Método helper para convertir Pedido a PedidoResponseDTO (igual que en PedidoController)
+    // Método helper: mismo DTO que en PedidoController, armado por el assembler compartido
     private PedidoResponseDTO convertirPedidoADTO(Pedido pedido) {
-        try {
-            System.out.println("🔵 [DEVOLUCION CONTROLLER] Convirtiendo pedido a DTO: " + pedido.getId());
-
-            // Convertir detalles del pedido
-            List<PedidoResponseDTO.PedidoDetalleResponseDTO> detallesDTO = new ArrayList<>();
-
-            if (pedido.getDetalles() != null && !pedido.getDetalles().isEmpty()) {
-                System.out.println("🔵 [DEVOLUCION CONTROLLER] Procesando " + pedido.getDetalles().size() + " detalles");
-
-                for (DetallePedido detalle : pedido.getDetalles()) {
-                    System.out.println("🔵 [DEVOLUCION CONTROLLER] Procesando detalle: " + detalle.getId() +
-                            " - Variante: " + detalle.getVariante().getId() +
-                            " - Cantidad: " + detalle.getCantidad());
-
-                    PedidoResponseDTO.PedidoDetalleResponseDTO detalleDTO = PedidoResponseDTO.PedidoDetalleResponseDTO.builder()
-                            .id(detalle.getId())
-                            .cantidad(detalle.getCantidad())
-                            .precioUnitario(detalle.getPrecioUnitario())
-                            .variante(PedidoResponseDTO.VarianteResponseDTO.builder()
-                                    .id(detalle.getVariante().getId())
-                                    .sku(detalle.getVariante().getSku())
-                                    .color(detalle.getVariante().getColor())
-                                    .talle(detalle.getVariante().getTalle())
-                                    .precio(detalle.getVariante().getPrecio())
-                                    .stockDisponible(detalle.getVariante().getStockDisponible())
-                                    .producto(PedidoResponseDTO.ProductoResponseDTO.builder()
-                                            .id(detalle.getVariante().getProducto().getId())
-                                            .nombre(detalle.getVariante().getProducto().getNombre())
-                                            .build())
-                                    .build())
-                            .build();
-
-                    detallesDTO.add(detalleDTO);
-                }
-            } else {
-                System.out.println("🟡 [DEVOLUCION CONTROLLER] Pedido sin detalles");
-            }
-
-            // Crear DTO con detalles
-            PedidoResponseDTO responseDTO = PedidoResponseDTO.builder()
-                    .id(pedido.getId())
-                    .clienteId(pedido.getClienteId())
-                    .fecha(pedido.getFecha().toString())
-                    .estado(pedido.getEstado().toString())
-                    .tipo(pedido.getTipo() != null ? pedido.getTipo().toString() : "DEVOLUCION")
-                    .tipoAprobacionDevolucion(pedido.getTipoAprobacionDevolucion() != null ? pedido.getTipoAprobacionDevolucion().toString() : null) // ⭐ NUEVO: Tipo de aprobación para devoluciones
-                    .total(pedido.getTotal())
-                    .metodoPago(pedido.getMetodoPago() != null ? pedido.getMetodoPago().toString() : null)
-                    .usuario(pedido.getUsuario() != null ?
-                            UsuarioDTO.builder()
-                                    .id(pedido.getUsuario().getId())
-                                    .nombreRazonSocial(pedido.getUsuario().getNombreRazonSocial())
-                                    .email(pedido.getUsuario().getEmail())
-                                    .cuit(pedido.getUsuario().getCuit())
-                                    .build() : null)
-                    .detalles(detallesDTO)
-                    .build();
-
-            System.out.println("🔵 [DEVOLUCION CONTROLLER] Pedido tiene " + (pedido.getDetalles() != null ? pedido.getDetalles().size() : 0) + " detalles");
-            return responseDTO;
-
-        } catch (Exception e) {
-            System.err.println("🔴 [DEVOLUCION CONTROLLER] Error al convertir pedido a DTO: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error al convertir pedido: " + e.getMessage(), e);
-        }
+        return pedidoDTOAssembler.ensamblar(pedido.getId());
     }
 
     private Map<String, String> crearRespuestaError(String mensaje) {
@@ -238,4 +174,18 @@ public class DevolucionController {
         Map<String, Integer> disponibilidad = devolucionService.consultarDisponibilidadDevolucion(clienteId, varianteId);
         return ResponseEntity.ok(disponibilidad);
     }
+
+    // Disponibilidad de varias variantes en un solo request (?clienteId=1&varianteIds=10,11,12)
+    @GetMapping("/disponibilidad/lote")
+    public ResponseEntity<Map<Long, Map<String, Integer>>> consultarDisponibilidadLote(
+            @RequestParam Long clienteId,
+            @RequestParam List<Long> varianteIds) {
+        return ResponseEntity.ok(devolucionService.consultarDisponibilidadDevolucion(clienteId, varianteIds));
+    }
+
+    // Recalcula los saldos entregado/devuelto por cliente y variante desde pedidos y devoluciones
+    @PostMapping("/saldos/reconstruir")
+    public ResponseEntity<Map<String, Integer>> reconstruirSaldos() {
+        return ResponseEntity.ok(saldoDevolucionService.reconstruir());
+    }
 }
\ No newline at end of file
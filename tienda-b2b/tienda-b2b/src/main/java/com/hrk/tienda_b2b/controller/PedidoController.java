@@ -1,21 +1,26 @@
 package com.hrk.tienda_b2b.controller;
 
 import com.hrk.tienda_b2b.dto.CreatePedidoRequest;
+import com.hrk.tienda_b2b.dto.EnviarPedidoRequest;
+import com.hrk.tienda_b2b.dto.PedidoPaginaDTO;
 import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.dto.UsuarioDTO;
+import com.hrk.tienda_b2b.service.PedidoDTOAssembler;
 import com.hrk.tienda_b2b.service.PedidoService;
+import com.hrk.tienda_b2b.service.StockInsuficienteException;
 import com.hrk.tienda_b2b.model.Pedido;
-import com.hrk.tienda_b2b.model.DetallePedido;
 import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.TipoDocumento;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/pedidos")
@@ -24,6 +29,7 @@ import java.util.stream.Collectors;
 public class PedidoController {
 
     private final PedidoService pedidoService;
+    private final PedidoDTOAssembler pedidoDTOAssembler;
 
     @PostMapping("/crear")
     public ResponseEntity<?> crearPedido(@RequestBody CreatePedidoRequest request) {
@@ -55,6 +61,38 @@ public class PedidoController {
         }
     }
 
+    // Pedido completo en un solo request: crea, carga los renglones y confirma (descuenta stock) en una transacción
+    @PostMapping("/enviar")
+    public ResponseEntity<?> enviarPedido(@RequestBody EnviarPedidoRequest request) {
+        System.out.println("🔵 [PEDIDO CONTROLLER] Enviando pedido completo - cliente: " + request.getClienteId() +
+                ", renglones: " + (request.getItems() != null ? request.getItems().size() : 0));
+
+        if (request.getClienteId() == null) {
+            return ResponseEntity.badRequest().body(crearRespuestaError("Cliente ID es obligatorio"));
+        }
+
+        try {
+            Pedido pedido = pedidoService.enviarPedido(request.getClienteId(), request.getMetodoPago(),
+                    request.getCarritoId(), request.getItems());
+            PedidoResponseDTO responseDTO = convertirPedidoADTO(pedido, request.getUsuario());
+            System.out.println("✅ [PEDIDO CONTROLLER] Pedido " + pedido.getId() + " enviado y confirmado");
+            return ResponseEntity.ok(responseDTO);
+        } catch (StockInsuficienteException e) {
+            System.out.println("🔴 [PEDIDO CONTROLLER] Stock insuficiente: " + e.getMessage());
+            Map<String, Object> respuesta = new HashMap<>();
+            respuesta.put("error", e.getMessage());
+            respuesta.put("faltantes", e.getFaltantes());
+            return ResponseEntity.status(400).body(respuesta);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println("🔴 [PEDIDO CONTROLLER] Pedido inválido: " + e.getMessage());
+            return ResponseEntity.badRequest().body(crearRespuestaError(e.getMessage()));
+        } catch (Exception e) {
+            System.out.println("🔴 [PEDIDO CONTROLLER] Error al enviar pedido: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(crearRespuestaError("Error al enviar pedido: " + e.getMessage()));
+        }
+    }
+
     @PostMapping("/{pedidoId}/items")
     public ResponseEntity<?> agregarItem(
             @PathVariable Long pedidoId,
@@ -76,6 +114,12 @@ public class PedidoController {
 
             return ResponseEntity.ok(responseDTO);
 
+        } catch (StockInsuficienteException e) {
+            System.out.println("🔴 [PEDIDO CONTROLLER] Stock insuficiente: " + e.getMessage());
+            Map<String, Object> respuesta = new HashMap<>();
+            respuesta.put("error", e.getMessage());
+            respuesta.put("faltantes", e.getFaltantes());
+            return ResponseEntity.status(400).body(respuesta);
         } catch (Exception e) {
             System.out.println("🔴 [PEDIDO CONTROLLER] Error al agregar item: " + e.getMessage());
             e.printStackTrace();
@@ -88,15 +132,10 @@ public class PedidoController {
         System.out.println("🔵 [PEDIDO CONTROLLER] Obteniendo pedidos para cliente: " + clienteId);
 
         try {
-            // ⭐ USAR EL SERVICIO REAL EN LUGAR DE MOCK
-            List<Pedido> pedidos = pedidoService.obtenerPedidosPorCliente(clienteId);
-
-            // Convertir a DTOs
-            List<PedidoResponseDTO> pedidosDTO = pedidos.stream()
-                    .map(pedido -> convertirPedidoADTO(pedido, null))
-                    .collect(Collectors.toList());
+            // Pedidos, renglones y usuarios en una cantidad fija de consultas
+            List<PedidoResponseDTO> pedidosDTO = pedidoDTOAssembler.ensamblarPorCliente(clienteId);
 
-            System.out.println("✅ [PEDIDO CONTROLLER] Encontrados " + pedidos.size() + " pedidos");
+            System.out.println("✅ [PEDIDO CONTROLLER] Encontrados " + pedidosDTO.size() + " pedidos");
 
             return ResponseEntity.ok(pedidosDTO);
 
@@ -112,15 +151,10 @@ public class PedidoController {
         System.out.println("🔵 [PEDIDO CONTROLLER] Obteniendo todos los pedidos");
 
         try {
-            // Obtener todos los pedidos
-            List<Pedido> pedidos = pedidoService.obtenerTodosLosPedidos();
-
-            // Convertir a DTOs
-            List<PedidoResponseDTO> pedidosDTO = pedidos.stream()
-                    .map(pedido -> convertirPedidoADTO(pedido, null))
-                    .collect(Collectors.toList());
+            // Pedidos, renglones y usuarios en una cantidad fija de consultas
+            List<PedidoResponseDTO> pedidosDTO = pedidoDTOAssembler.ensamblarTodos();
 
-            System.out.println("✅ [PEDIDO CONTROLLER] Encontrados " + pedidos.size() + " pedidos en total");
+            System.out.println("✅ [PEDIDO CONTROLLER] Encontrados " + pedidosDTO.size() + " pedidos en total");
 
             return ResponseEntity.ok(pedidosDTO);
 
@@ -131,6 +165,26 @@ public class PedidoController {
         }
     }
 
+    // Listado de administración por cursor (fecha, id), con filtros; resumen=true trae los pedidos sin renglones
+    @GetMapping("/todos/pagina")
+    public ResponseEntity<?> listarPagina(
+            @RequestParam(required = false) EstadoPedido estado,
+            @RequestParam(required = false) TipoDocumento tipo,
+            @RequestParam(required = false) Long clienteId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(defaultValue = "false") boolean resumen) {
+        try {
+            PedidoPaginaDTO pagina = pedidoService.listarPagina(estado, tipo, clienteId, desde, hasta, cursor, limite, resumen);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            System.out.println("🔴 [PEDIDO CONTROLLER] Parámetros de paginación inválidos: " + e.getMessage());
+            return ResponseEntity.badRequest().body(crearRespuestaError(e.getMessage()));
+        }
+    }
+
     @GetMapping("/{pedidoId}")
     public ResponseEntity<?> obtenerPedidoPorId(@PathVariable Long pedidoId) {
         System.out.println("🔵 [PEDIDO CONTROLLER] Obteniendo pedido por ID: " + pedidoId);
@@ -158,82 +212,18 @@ public class PedidoController {
         }
     }
 
-    // Método helper para convertir Pedido a PedidoResponseDTO
+    // Método helper: el DTO sale del assembler; usuarioInfo (lo que mandó el front al crear) pisa los datos del usuario
     private PedidoResponseDTO convertirPedidoADTO(Pedido pedido, CreatePedidoRequest.UsuarioInfoDTO usuarioInfo) {
-        try {
-            System.out.println("🔵 [PEDIDO CONTROLLER] Convirtiendo pedido a DTO: " + pedido.getId());
-
-            // Convertir detalles del pedido
-            List<PedidoResponseDTO.PedidoDetalleResponseDTO> detallesDTO = new ArrayList<>();
-
-            if (pedido.getDetalles() != null && !pedido.getDetalles().isEmpty()) {
-                System.out.println("🔵 [PEDIDO CONTROLLER] Procesando " + pedido.getDetalles().size() + " detalles");
-
-                for (DetallePedido detalle : pedido.getDetalles()) {
-                    System.out.println("🔵 [PEDIDO CONTROLLER] Procesando detalle: " + detalle.getId() +
-                            " - Variante: " + detalle.getVariante().getId() +
-                            " - Cantidad: " + detalle.getCantidad());
-
-                    PedidoResponseDTO.PedidoDetalleResponseDTO detalleDTO = PedidoResponseDTO.PedidoDetalleResponseDTO.builder()
-                            .id(detalle.getId())
-                            .cantidad(detalle.getCantidad())
-                            .precioUnitario(detalle.getPrecioUnitario())
-                            .variante(PedidoResponseDTO.VarianteResponseDTO.builder()
-                                    .id(detalle.getVariante().getId())
-                                    .sku(detalle.getVariante().getSku())
-                                    .color(detalle.getVariante().getColor())
-                                    .talle(detalle.getVariante().getTalle())
-                                    .precio(detalle.getVariante().getPrecio())
-                                    .stockDisponible(detalle.getVariante().getStockDisponible())
-                                    .producto(PedidoResponseDTO.ProductoResponseDTO.builder()
-                                            .id(detalle.getVariante().getProducto().getId())
-                                            .nombre(detalle.getVariante().getProducto().getNombre())
-                                            .build())
-                                    .build())
-                            .build();
-
-                    detallesDTO.add(detalleDTO);
-                }
-            } else {
-                System.out.println("🟡 [PEDIDO CONTROLLER] Pedido sin detalles");
-            }
-
-            // Crear DTO con detalles
-            PedidoResponseDTO responseDTO = PedidoResponseDTO.builder()
-                    .id(pedido.getId())
-                    .clienteId(pedido.getClienteId())
-                    .fecha(pedido.getFecha().toString())
-                    .estado(pedido.getEstado().toString())
-                    .tipo(pedido.getTipo() != null ? pedido.getTipo().toString() : "PEDIDO") // ⭐ NUEVO: Incluir tipo de documento
-                    .tipoAprobacionDevolucion(pedido.getTipoAprobacionDevolucion() != null ? pedido.getTipoAprobacionDevolucion().toString() : null) // ⭐ NUEVO: Tipo de aprobación para devoluciones
-                    .total(pedido.getTotal())
-                    .metodoPago(pedido.getMetodoPago() != null ? pedido.getMetodoPago().toString() : null) // ⭐ NUEVO: Incluir método de pago (convertir enum a String)
-                    .detalles(detallesDTO)
-                    .usuario(usuarioInfo != null ?
-                            com.hrk.tienda_b2b.dto.UsuarioDTO.builder()
-                                    .id(pedido.getUsuario() != null ? pedido.getUsuario().getId() : 1L)
-                                    .nombreRazonSocial(usuarioInfo.getNombreRazonSocial())
-                                    .email(usuarioInfo.getEmail())
-                                    .cuit(usuarioInfo.getCuit())
-                                    .build() :
-                            // Si no hay usuarioInfo, usar la información del usuario del pedido
-                            pedido.getUsuario() != null ?
-                                    com.hrk.tienda_b2b.dto.UsuarioDTO.builder()
-                                            .id(pedido.getUsuario().getId())
-                                            .nombreRazonSocial(pedido.getUsuario().getNombreRazonSocial())
-                                            .email(pedido.getUsuario().getEmail())
-                                            .cuit(pedido.getUsuario().getCuit())
-                                            .build() : null)
-                    .build();
-
-            System.out.println("🔵 [PEDIDO CONTROLLER] Pedido tiene " + (pedido.getDetalles() != null ? pedido.getDetalles().size() : 0) + " detalles");
-            return responseDTO;
-
-        } catch (Exception e) {
-            System.err.println("🔴 [PEDIDO CONTROLLER] Error al convertir pedido a DTO: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error al convertir pedido: " + e.getMessage(), e);
+        PedidoResponseDTO responseDTO = pedidoDTOAssembler.ensamblar(pedido.getId());
+        if (usuarioInfo != null) {
+            responseDTO.setUsuario(UsuarioDTO.builder()
+                    .id(responseDTO.getUsuario() != null ? responseDTO.getUsuario().getId() : 1L)
+                    .nombreRazonSocial(usuarioInfo.getNombreRazonSocial())
+                    .email(usuarioInfo.getEmail())
+                    .cuit(usuarioInfo.getCuit())
+                    .build());
         }
+        return responseDTO;
     }
 
     @PostMapping("/{pedidoId}/confirmar")
@@ -266,6 +256,12 @@ public class PedidoController {
                 throw new IllegalStateException("No se puede confirmar un pedido en estado: " + pedidoActual.getEstado());
             }
             
+        } catch (StockInsuficienteException e) {
+            System.out.println("🔴 [PEDIDO CONTROLLER] Stock insuficiente: " + e.getMessage());
+            Map<String, Object> respuesta = new HashMap<>();
+            respuesta.put("error", e.getMessage());
+            respuesta.put("faltantes", e.getFaltantes());
+            return ResponseEntity.status(400).body(respuesta);
         } catch (IllegalArgumentException e) {
             System.out.println("🔴 [PEDIDO CONTROLLER] Pedido no encontrado: " + e.getMessage());
             return ResponseEntity.status(404).body(crearRespuestaError("Pedido no encontrado: " + e.getMessage()));
@@ -1,20 +1,36 @@
 package com.hrk.tienda_b2b.controller;
 
 import com.hrk.tienda_b2b.dto.ActualizacionProductoResponse;
+import com.hrk.tienda_b2b.dto.BusquedaProductosDTO;
+import com.hrk.tienda_b2b.dto.ConteoInventarioResultadoDTO;
 import com.hrk.tienda_b2b.dto.CreateProductoRequest;
+import com.hrk.tienda_b2b.dto.ImportacionProductosResultadoDTO;
+import com.hrk.tienda_b2b.dto.ProductoDTOMapper;
+import com.hrk.tienda_b2b.dto.ProductoPaginaDTO;
 import com.hrk.tienda_b2b.dto.ProductoResponseDTO;
 import com.hrk.tienda_b2b.dto.VerificacionActualizacionProductoResponse;
+import com.hrk.tienda_b2b.model.Categoria;
 import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.model.TipoProducto;
+import com.hrk.tienda_b2b.service.BuscadorProductosService;
+import com.hrk.tienda_b2b.service.CatalogoService;
+import com.hrk.tienda_b2b.service.CatalogoSnapshot;
+import com.hrk.tienda_b2b.service.ConteoInventarioService;
+import com.hrk.tienda_b2b.service.ImportacionProductosService;
 import com.hrk.tienda_b2b.service.ProductoService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/productos")
@@ -23,15 +39,87 @@ import java.util.stream.Collectors;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final CatalogoService catalogoService;
+    private final BuscadorProductosService buscadorProductosService;
+    private final ImportacionProductosService importacionProductosService;
+    private final ConteoInventarioService conteoInventarioService;
 
     @GetMapping
-    public ResponseEntity<List<ProductoResponseDTO>> listarTodos(
-            @RequestParam(value = "incluirOcultos", defaultValue = "false") boolean incluirOcultos) {
-        List<Producto> productos = productoService.obtenerTodos(incluirOcultos);
-        List<ProductoResponseDTO> productosDTO = productos.stream()
-                .map(producto -> convertirADTO(producto))
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(productosDTO);
+    public ResponseEntity<byte[]> listarTodos(
+            @RequestParam(value = "incluirOcultos", defaultValue = "false") boolean incluirOcultos,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // Catálogo en memoria ya serializado: sin consultas a la base ni Jackson por request
+        CatalogoSnapshot.Representacion catalogo = catalogoService.obtenerSnapshot().serializado(incluirOcultos);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        String etag = gzip ? catalogo.getEtagGzip() : catalogo.getEtag();
+
+        // El cliente ya tiene esta versión: 304 sin cuerpo
+        if (catalogo.coincide(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(catalogo.getGzip());
+        }
+        return respuesta.body(catalogo.getJson());
+    }
+
+    /**
+     * Listado paginado por cursor con filtros; para la siguiente página se manda despuesDeId = siguienteCursor.
+     */
+    @GetMapping("/pagina")
+    public ResponseEntity<?> listarPagina(
+            @RequestParam(required = false) Long despuesDeId,
+            @RequestParam(required = false) Integer limite,
+            @RequestParam(value = "incluirOcultos", defaultValue = "false") boolean incluirOcultos,
+            @RequestParam(required = false) Categoria categoria,
+            @RequestParam(required = false) TipoProducto tipo,
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) String talle,
+            @RequestParam(required = false) Double precioMin,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(defaultValue = "false") boolean soloConStock) {
+        try {
+            ProductoPaginaDTO pagina = productoService.listarPagina(despuesDeId, limite, incluirOcultos,
+                    categoria, tipo, color, talle, precioMin, precioMax, soloConStock);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            System.out.println("🔴 [CONTROLLER] Parámetros de paginación inválidos: " + e.getMessage());
+            return ResponseEntity.badRequest().body(crearRespuestaError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Búsqueda por texto (prefijos) con facetas para el panel de filtros; resuelta en memoria.
+     */
+    @GetMapping("/buscar")
+    public ResponseEntity<?> buscar(
+            @RequestParam(value = "q", required = false) String consulta,
+            @RequestParam(required = false) Categoria categoria,
+            @RequestParam(required = false) TipoProducto tipo,
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) String talle,
+            @RequestParam(value = "incluirOcultos", defaultValue = "false") boolean incluirOcultos,
+            @RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "" + BuscadorProductosService.LIMITE_POR_DEFECTO) int limite) {
+        try {
+            BusquedaProductosDTO resultado = buscadorProductosService.buscar(consulta, categoria, tipo, color, talle,
+                    incluirOcultos, pagina, limite);
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            System.out.println("🔴 [CONTROLLER] Parámetros de búsqueda inválidos: " + e.getMessage());
+            return ResponseEntity.badRequest().body(crearRespuestaError(e.getMessage()));
+        }
     }
 
     @GetMapping("/{id}")
@@ -141,75 +229,86 @@ public class ProductoController {
     }
     
     private ProductoResponseDTO convertirADTO(Producto producto) {
+        return ProductoDTOMapper.convertirADTO(producto);
+    }
+
+    @GetMapping("/{id}/verificar-pedidos")
+    public ResponseEntity<VerificacionActualizacionProductoResponse> verificarVariantesConPedidos(@PathVariable Long id) {
         try {
-            // Asegurarse de que las variantes estén cargadas
-            if (producto.getVariantes() != null) {
-                producto.getVariantes().size(); // Esto fuerza la carga en JPA si está en lazy loading
-            }
-            
-            List<ProductoResponseDTO.ProductoVarianteResponseDTO> variantesDTO = producto.getVariantes().stream()
-                    .map(variante -> ProductoResponseDTO.ProductoVarianteResponseDTO.builder()
-                            .id(variante.getId())
-                            .sku(variante.getSku())
-                            .color(variante.getColor())
-                            .talle(variante.getTalle())
-                            .precio(variante.getPrecio())
-                            .stockDisponible(variante.getStockDisponible())
-                            .build())
-                    .collect(Collectors.toList());
-            
-            return ProductoResponseDTO.builder()
-                    .id(producto.getId())
-                    .nombre(producto.getNombre())
-                    .descripcion(producto.getDescripcion())
-                    .tipo(producto.getTipo())
-                    .imagenUrl(normalizarImagenUrl(producto.getImagenUrl()))
-                    .categoria(producto.getCategoria())
-                    .oculto(producto.getOculto() != null ? producto.getOculto() : false)
-                    .variantes(variantesDTO)
-                    .build();
-        } catch (Exception e) {
-            System.err.println("🔴 [CONTROLLER] Error al convertir Producto a DTO: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error al convertir producto a DTO: " + e.getMessage(), e);
+            VerificacionActualizacionProductoResponse verificacion = productoService.verificarVariantesConPedidosDetallado(id);
+            return ResponseEntity.ok(verificacion);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
         }
     }
 
-    private String normalizarImagenUrl(String imagenUrl) {
-        if (imagenUrl == null || imagenUrl.isBlank()) {
-            return imagenUrl;
+    /**
+     * Alta masiva desde CSV o JSON Lines (un producto por fila). Devuelve los errores por fila; las filas
+     * válidas se guardan aunque otras fallen.
+     */
+    @PostMapping(value = "/importar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importarProductos(@RequestParam("file") MultipartFile file,
+                                               @RequestParam(value = "formato", required = false) String formato) {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body(crearRespuestaError("El archivo está vacío"));
         }
 
-        try {
-            if (imagenUrl.startsWith("http://") || imagenUrl.startsWith("https://")) {
-                java.net.URI uri = java.net.URI.create(imagenUrl);
-                String host = uri.getHost();
+        String formatoArchivo = formato;
+        if (formatoArchivo == null || formatoArchivo.isBlank()) {
+            String nombre = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+            formatoArchivo = nombre.endsWith(".jsonl") || nombre.endsWith(".ndjson") || nombre.endsWith(".json")
+                    ? ImportacionProductosService.FORMATO_JSONL
+                    : ImportacionProductosService.FORMATO_CSV;
+        }
 
-                if (host != null && (host.equals("localhost") || host.equals("127.0.0.1") || host.endsWith(".local"))) {
-                    String path = uri.getPath();
-                    if (path != null && !path.isBlank()) {
-                        return path.startsWith("/uploads/") ? path : "/uploads" + (path.startsWith("/") ? path : "/" + path);
-                    }
-                }
-            }
-        } catch (IllegalArgumentException ignored) {
-            // Si la URL es inválida, devolvemos tal cual para no romper la respuesta
+        try {
+            System.out.println("🔵 [CONTROLLER] Importando productos desde " + file.getOriginalFilename()
+                    + " (" + file.getSize() + " bytes, " + formatoArchivo + ")");
+            ImportacionProductosResultadoDTO resultado = importacionProductosService.importar(file.getInputStream(),
+                    formatoArchivo.toLowerCase());
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            System.out.println("🔴 [CONTROLLER] Importación rechazada: " + e.getMessage());
+            return ResponseEntity.badRequest().body(crearRespuestaError(e.getMessage()));
+        } catch (Exception e) {
+            System.out.println("🔴 [CONTROLLER] Error inesperado en la importación: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(crearRespuestaError("Error interno del servidor: " + e.getMessage()));
         }
+    }
 
-        if (imagenUrl.contains("/uploads/")) {
-            return imagenUrl.substring(imagenUrl.indexOf("/uploads/"));
+    /**
+     * Conteo físico de inventario desde CSV (sku, cantidad) o JSON Lines: deja el stock de cada variante en lo
+     * contado y devuelve las diferencias ajustadas y los errores por fila.
+     */
+    @PostMapping(value = "/conteo-inventario", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importarConteoInventario(@RequestParam("file") MultipartFile file,
+                                                      @RequestParam(value = "formato", required = false) String formato) {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body(crearRespuestaError("El archivo está vacío"));
         }
 
-        return imagenUrl;
-    }
+        String formatoArchivo = formato;
+        if (formatoArchivo == null || formatoArchivo.isBlank()) {
+            String nombre = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+            formatoArchivo = nombre.endsWith(".jsonl") || nombre.endsWith(".ndjson") || nombre.endsWith(".json")
+                    ? ImportacionProductosService.FORMATO_JSONL
+                    : ImportacionProductosService.FORMATO_CSV;
+        }
 
-    @GetMapping("/{id}/verificar-pedidos")
-    public ResponseEntity<VerificacionActualizacionProductoResponse> verificarVariantesConPedidos(@PathVariable Long id) {
         try {
-            VerificacionActualizacionProductoResponse verificacion = productoService.verificarVariantesConPedidosDetallado(id);
-            return ResponseEntity.ok(verificacion);
+            System.out.println("🔵 [CONTROLLER] Conteo de inventario desde " + file.getOriginalFilename()
+                    + " (" + file.getSize() + " bytes, " + formatoArchivo + ")");
+            ConteoInventarioResultadoDTO resultado = conteoInventarioService.importar(file.getInputStream(),
+                    formatoArchivo.toLowerCase());
+            return ResponseEntity.ok(resultado);
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.notFound().build();
+            System.out.println("🔴 [CONTROLLER] Conteo de inventario rechazado: " + e.getMessage());
+            return ResponseEntity.badRequest().body(crearRespuestaError(e.getMessage()));
+        } catch (Exception e) {
+            System.out.println("🔴 [CONTROLLER] Error inesperado en el conteo de inventario: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(crearRespuestaError("Error interno del servidor: " + e.getMessage()));
         }
     }
 
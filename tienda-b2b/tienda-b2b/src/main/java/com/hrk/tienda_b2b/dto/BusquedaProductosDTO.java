@@ -0,0 +1,26 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de GET /api/productos/buscar: una página de productos ordenados por relevancia y los conteos
+ * por faceta (categoria, tipo, color, talle) sobre todos los resultados, para el panel de filtros.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusquedaProductosDTO {
+    private String consulta;
+    private long total;
+    private int pagina;
+    private int limite;
+    private List<ProductoResponseDTO> productos;
+    private Map<String, Map<String, Long>> facetas;
+}
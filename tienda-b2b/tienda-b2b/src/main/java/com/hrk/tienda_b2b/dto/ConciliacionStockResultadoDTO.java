@@ -0,0 +1,43 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resultado de una conciliación de stock (stock_disponible contra movimientos_stock y stock_historico).
+ * diferencias trae como mucho las primeras variantes con diferencia; conDiferencia las cuenta todas.
+ * transitorias son las que tenían diferencia al recorrer pero ya no al confirmar (operaciones en curso).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConciliacionStockResultadoDTO {
+    private String inicio;
+    private boolean corregir;
+    private int variantesRevisadas;
+    private int bloques;
+    private int conDiferencia;
+    private int transitorias;
+    private int corregidas;
+    private long diferenciaAbsolutaTotal;
+    private List<Diferencia> diferencias;
+    private long duracionMs;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Diferencia {
+        private Long varianteId;
+        private String sku;
+        private int stockDisponible;
+        private long stockEsperado;   // lo que dan los registros
+        private long diferencia;      // stockDisponible - stockEsperado
+        private boolean corregida;    // se registró el movimiento de ajuste
+    }
+}
@@ -0,0 +1,42 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Informe de un conteo de inventario (POST /api/productos/conteo-inventario).
+ * diferencias y errores traen como mucho las primeras filas; variantesAjustadas y erroresTotales las cuentan todas.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConteoInventarioResultadoDTO {
+    private int filasLeidas;
+    private int variantesContadas;
+    private int variantesSinDiferencia;
+    private int variantesAjustadas;
+    private long unidadesSumadas;
+    private long unidadesRestadas;
+    private int erroresTotales;
+    private List<Diferencia> diferencias;
+    private List<ImportacionProductosResultadoDTO.ErrorFila> errores;
+    private long duracionMs;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Diferencia {
+        private int linea;
+        private String sku;
+        private Long varianteId;
+        private int stockAnterior;
+        private int contado;
+        private int diferencia; // contado - stockAnterior
+    }
+}
@@ -0,0 +1,32 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Pedido completo en un solo request (POST /api/pedidos/enviar): se crea, se cargan los renglones y se confirma
+ * en una sola transacción. carritoId (opcional) es el carrito del que sale el pedido: sus reservas pasan al pedido.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnviarPedidoRequest {
+    private Long clienteId;
+    private String metodoPago;
+    private Long carritoId;
+    private CreatePedidoRequest.UsuarioInfoDTO usuario;
+    private List<ItemPedido> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemPedido {
+        private Long varianteId;
+        private Integer cantidad;
+    }
+}
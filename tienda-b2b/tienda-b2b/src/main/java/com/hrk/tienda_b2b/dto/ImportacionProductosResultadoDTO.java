@@ -0,0 +1,36 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resumen de una importación masiva de productos (POST /api/productos/importar).
+ * errores trae como mucho las primeras filas con problemas; erroresTotales las cuenta todas.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacionProductosResultadoDTO {
+    private int filasLeidas;
+    private int productosCreados;
+    private int variantesCreadas;
+    private int registrosStockHistorico;
+    private int erroresTotales;
+    private List<ErrorFila> errores;
+    private long duracionMs;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ErrorFila {
+        private int linea;
+        private String sku;
+        private String mensaje;
+    }
+}
@@ -0,0 +1,23 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página del listado de pedidos para administración: para pedir la siguiente se manda siguienteCursor como cursor.
+ * En modo resumen los pedidos vienen sin detalles.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoPaginaDTO {
+    private List<PedidoResponseDTO> pedidos;
+    private String siguienteCursor; // null si no hay más páginas
+    private boolean hayMas;
+    private int limite;
+}
@@ -0,0 +1,83 @@
+package com.hrk.tienda_b2b.dto;
+
+import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Conversión Producto -> ProductoResponseDTO, compartida por ProductoController y el catálogo en memoria.
+ */
+public final class ProductoDTOMapper {
+
+    private ProductoDTOMapper() {
+    }
+
+    public static ProductoResponseDTO convertirADTO(Producto producto) {
+        try {
+            // Asegurarse de que las variantes estén cargadas
+            if (producto.getVariantes() != null) {
+                producto.getVariantes().size(); // Esto fuerza la carga en JPA si está en lazy loading
+            }
+
+            List<ProductoResponseDTO.ProductoVarianteResponseDTO> variantesDTO = producto.getVariantes().stream()
+                    .map(ProductoDTOMapper::convertirVarianteADTO)
+                    .collect(Collectors.toList());
+
+            return ProductoResponseDTO.builder()
+                    .id(producto.getId())
+                    .nombre(producto.getNombre())
+                    .descripcion(producto.getDescripcion())
+                    .tipo(producto.getTipo())
+                    .imagenUrl(normalizarImagenUrl(producto.getImagenUrl()))
+                    .categoria(producto.getCategoria())
+                    .oculto(producto.getOculto() != null ? producto.getOculto() : false)
+                    .variantes(variantesDTO)
+                    .build();
+        } catch (Exception e) {
+            System.err.println("🔴 [CONTROLLER] Error al convertir Producto a DTO: " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Error al convertir producto a DTO: " + e.getMessage(), e);
+        }
+    }
+
+    public static ProductoResponseDTO.ProductoVarianteResponseDTO convertirVarianteADTO(ProductoVariante variante) {
+        return ProductoResponseDTO.ProductoVarianteResponseDTO.builder()
+                .id(variante.getId())
+                .sku(variante.getSku())
+                .color(variante.getColor())
+                .talle(variante.getTalle())
+                .precio(variante.getPrecio())
+                .stockDisponible(variante.getStockDisponible())
+                .build();
+    }
+
+    public static String normalizarImagenUrl(String imagenUrl) {
+        if (imagenUrl == null || imagenUrl.isBlank()) {
+            return imagenUrl;
+        }
+
+        try {
+            if (imagenUrl.startsWith("http://") || imagenUrl.startsWith("https://")) {
+                java.net.URI uri = java.net.URI.create(imagenUrl);
+                String host = uri.getHost();
+
+                if (host != null && (host.equals("localhost") || host.equals("127.0.0.1") || host.endsWith(".local"))) {
+                    String path = uri.getPath();
+                    if (path != null && !path.isBlank()) {
+                        return path.startsWith("/uploads/") ? path : "/uploads" + (path.startsWith("/") ? path : "/" + path);
+                    }
+                }
+            }
+        } catch (IllegalArgumentException ignored) {
+            // Si la URL es inválida, devolvemos tal cual para no romper la respuesta
+        }
+
+        if (imagenUrl.contains("/uploads/")) {
+            return imagenUrl.substring(imagenUrl.indexOf("/uploads/"));
+        }
+
+        return imagenUrl;
+    }
+}
@@ -0,0 +1,22 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página del listado de productos por cursor: para pedir la siguiente se manda siguienteCursor como despuesDeId.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoPaginaDTO {
+    private List<ProductoResponseDTO> productos;
+    private Long siguienteCursor; // null si no hay más páginas
+    private boolean hayMas;
+    private int limite;
+}
@@ -0,0 +1,27 @@
+package com.hrk.tienda_b2b.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Una fila de movimientos_stock o stock_historico, esté en la tabla o ya archivada (ver ArchivoHistorialRepository).
+ * Los campos que no tiene la tabla de origen quedan en null.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistroStockDTO {
+    private Long id;
+    private Long varianteId;
+    private String fecha;
+    private String tipo;
+    private Integer cantidad;
+    private Integer stockAcumulado; // sólo stock_historico
+    private String motivo;          // sólo stock_historico
+    private Long pedidoId;          // sólo movimientos_stock
+    private Long detalleId;         // sólo movimientos_stock
+    private boolean archivado;
+}
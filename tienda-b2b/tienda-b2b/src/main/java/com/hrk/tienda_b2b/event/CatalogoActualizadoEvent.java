@@ -0,0 +1,17 @@
+package com.hrk.tienda_b2b.event;
+
+import com.hrk.tienda_b2b.service.CatalogoSnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Lo publica CatalogoService cada vez que reemplaza el snapshot en memoria (en el mismo hilo, dentro del
+ * reemplazo, así los listeners lo reciben en orden). anterior es null la primera vez.
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogoActualizadoEvent {
+
+    private final CatalogoSnapshot anterior;
+    private final CatalogoSnapshot nuevo;
+}
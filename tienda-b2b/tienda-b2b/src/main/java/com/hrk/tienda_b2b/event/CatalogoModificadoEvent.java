@@ -0,0 +1,17 @@
+package com.hrk.tienda_b2b.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Se publica cuando cambia algo del catálogo visible: alta/baja/edición de productos o variantes,
+ * o la temporada activa y sus productos. Obliga a reconstruir el catálogo en memoria completo.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class CatalogoModificadoEvent {
+
+    private final String motivo;
+}
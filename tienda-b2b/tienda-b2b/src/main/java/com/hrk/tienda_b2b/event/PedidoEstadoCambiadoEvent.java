@@ -0,0 +1,36 @@
+package com.hrk.tienda_b2b.event;
+
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.TipoDocumento;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Se publica cuando un pedido o una devolución cambia de estado (o de contenido) de forma que afecta a los
+ * dashboards. "dia" es la fecha del pedido: es el bucket diario que se modificó.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class PedidoEstadoCambiadoEvent {
+
+    private final Long pedidoId;
+    private final TipoDocumento tipo;
+    private final EstadoPedido estado;
+    private final LocalDate dia;
+    private final Long clienteId;
+
+    public static PedidoEstadoCambiadoEvent de(Pedido pedido) {
+        Long clienteId = pedido.getUsuario() != null ? pedido.getUsuario().getId() : pedido.getClienteId();
+        return new PedidoEstadoCambiadoEvent(
+                pedido.getId(),
+                pedido.getTipo() != null ? pedido.getTipo() : TipoDocumento.VENTA,
+                pedido.getEstado(),
+                pedido.getFecha() != null ? pedido.getFecha().toLocalDate() : LocalDate.now(),
+                clienteId);
+    }
+}
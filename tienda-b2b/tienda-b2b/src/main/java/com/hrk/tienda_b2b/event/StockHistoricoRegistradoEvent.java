@@ -0,0 +1,17 @@
+package com.hrk.tienda_b2b.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Se publica al registrar una entrada o ajuste en stock_historico de una variante.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class StockHistoricoRegistradoEvent {
+
+    private final Long varianteId;
+    private final Long productoId;
+}
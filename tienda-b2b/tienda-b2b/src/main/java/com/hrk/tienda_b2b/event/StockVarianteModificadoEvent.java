@@ -0,0 +1,19 @@
+package com.hrk.tienda_b2b.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collection;
+
+/**
+ * Se publica cuando cambia el stockDisponible de variantes existentes (confirmación/cancelación de pedidos,
+ * devoluciones aptas). Sólo hay que actualizar esas variantes en el catálogo en memoria.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class StockVarianteModificadoEvent {
+
+    private final Collection<Long> varianteIds;
+}
@@ -1,6 +1,7 @@
 package com.hrk.tienda_b2b.model;
 
 
+import com.hrk.tienda_b2b.model.generator.IdsPorBloque;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -11,7 +12,8 @@ import java.time.LocalDateTime;
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class CarritoItem {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @IdsPorBloque("carrito_items")
     private Long id;
 
     @ManyToOne @JoinColumn(name = "carrito_id", nullable = false)
@@ -0,0 +1,37 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Respuesta guardada para un Idempotency-Key (ver IdempotenciaService). La clave y la huella del request se
+ * guardan como SHA-256 (32 bytes) para que la tabla quede chica; el cuerpo de la respuesta va tal cual.
+ * Mientras el request original se procesa, estado = 0.
+ */
+@Entity
+@Table(name = "claves_idempotencia", indexes = @Index(name = "idx_idempotencia_creada", columnList = "creada"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ClaveIdempotencia {
+
+    @Id
+    @Column(length = 32, columnDefinition = "BINARY(32)")
+    private byte[] clave; // SHA-256 de usuario + método + ruta + Idempotency-Key
+
+    @Column(nullable = false, length = 32, columnDefinition = "BINARY(32)")
+    private byte[] huella; // SHA-256 del request (query string + cuerpo)
+
+    @Column(nullable = false)
+    private Integer estado; // código HTTP de la respuesta; 0 = en proceso
+
+    @Column(name = "tipo_contenido", length = 100)
+    private String tipoContenido;
+
+    @Lob
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] cuerpo;
+
+    @Column(nullable = false)
+    private LocalDateTime creada;
+}
@@ -1,12 +1,14 @@
 package com.hrk.tienda_b2b.model;
 import java.util.List;
 import java.util.ArrayList;
+import com.hrk.tienda_b2b.model.generator.IdsPorBloque;
 import jakarta.persistence.*;
 import lombok.*;
 @Entity @Table(name = "pedido_detalles")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class DetallePedido {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @IdsPorBloque("pedido_detalles")
     private Long id;
 
     public  DetallePedido(Pedido p, ProductoVariante v, Integer cant, Double pre)
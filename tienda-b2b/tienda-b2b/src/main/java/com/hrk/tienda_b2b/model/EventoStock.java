@@ -0,0 +1,46 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro de stock de solo agregado: cada cambio de stock_disponible de una variante deja un evento con su
+ * delta, en la misma transacción que el cambio. Nunca se lee el anterior para escribir; lo único que se actualiza
+ * después es {@link #corte}, al generar el corte que lo incluye.
+ * El stock a una fecha es el último SnapshotStock anterior más los deltas que ese corte no incluyó.
+ */
+@Entity
+@Table(name = "eventos_stock", indexes = {
+        @Index(name = "idx_evento_stock_variante_fecha", columnList = "variante_id,fecha"),
+        @Index(name = "idx_evento_stock_fecha", columnList = "fecha"),
+        @Index(name = "idx_evento_stock_corte_fecha", columnList = "corte,fecha")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class EventoStock {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId; // sin FK: el evento sobrevive a la variante
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    @Column(nullable = false)
+    private Integer delta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private TipoEventoStock tipo;
+
+    @Column(name = "pedido_id")
+    private Long pedidoId; // pedido o devolución que lo originó, si hay uno solo
+
+    // Corte (SnapshotStock.fecha) que ya sumó este evento; null mientras no entró en ninguno. La fecha se pone al
+    // insertar, no al confirmar: un evento de una transacción que confirma después de generado el corte de su día
+    // queda en null y entra en el corte siguiente, en lugar de perderse
+    private LocalDateTime corte;
+}
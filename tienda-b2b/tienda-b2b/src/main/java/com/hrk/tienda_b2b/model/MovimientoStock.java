@@ -1,12 +1,18 @@
 package com.hrk.tienda_b2b.model;
+import com.hrk.tienda_b2b.model.generator.IdsPorBloque;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 
-@Entity @Table(name = "movimientos_stock")
+@Entity @Table(name = "movimientos_stock", indexes = {
+        // Rangos por mes del archivado y el historial por variante (ver ArchivoHistorialRepository)
+        @Index(name = "idx_movimientos_stock_fecha", columnList = "fecha"),
+        @Index(name = "idx_movimientos_stock_variante_fecha", columnList = "variante_id, fecha")
+})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class MovimientoStock {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @IdsPorBloque("movimientos_stock")
     private Long id;
 
     @ManyToOne @JoinColumn(name = "variante_id", nullable = false)
@@ -0,0 +1,6 @@
+package com.hrk.tienda_b2b.model;
+
+public enum OrigenReserva {
+    CARRITO,
+    PEDIDO
+}
@@ -1,6 +1,7 @@
 package com.hrk.tienda_b2b.model;
 import java.util.List;
 import java.util.ArrayList;
+import com.hrk.tienda_b2b.model.generator.IdsPorBloque;
 import jakarta.persistence.*;
 import jakarta.persistence.Convert;
 import lombok.*;
@@ -13,10 +14,16 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 @Entity
-@Table(name = "pedidos")
+@Table(name = "pedidos", indexes = {
+        // Listado de administración por cursor (fecha desc, id desc), con y sin filtros
+        @Index(name = "idx_pedidos_fecha_id", columnList = "fecha, id"),
+        @Index(name = "idx_pedidos_estado_fecha_id", columnList = "estado, fecha, id"),
+        @Index(name = "idx_pedidos_usuario_fecha_id", columnList = "usuario_id, fecha, id")
+})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class Pedido {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @IdsPorBloque("pedidos")
     private Long id;
 
     private LocalDateTime fecha;
@@ -49,6 +56,7 @@ public class Pedido {
     private Long clienteId;
 
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Builder.Default
     private List<DetallePedido> detalles = new ArrayList<>();
 
     // Constructor para compatibilidad
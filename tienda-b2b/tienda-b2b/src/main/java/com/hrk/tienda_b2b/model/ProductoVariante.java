@@ -1,16 +1,20 @@
 package com.hrk.tienda_b2b.model;
 
+import com.hrk.tienda_b2b.model.generator.IdsPorBloque;
 import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "producto_variantes")
+@Table(name = "producto_variantes", indexes = {
+        @Index(name = "idx_variantes_producto_color_talle", columnList = "producto_id, color, talle"),
+        @Index(name = "idx_variantes_producto_precio", columnList = "producto_id, precio")
+})
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor
 @Builder
 public class ProductoVariante {
     @Id 
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @IdsPorBloque("producto_variantes")
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
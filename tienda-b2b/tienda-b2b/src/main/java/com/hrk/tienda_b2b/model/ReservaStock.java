@@ -0,0 +1,42 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Copia persistida de las reservas de stock en memoria (ver ReservaStockService), para poder
+ * reconstruirlas después de un reinicio. Se escribe en diferido; la fuente de verdad mientras la
+ * aplicación corre es la memoria.
+ */
+@Entity
+@Table(name = "reservas_stock",
+        uniqueConstraints = @UniqueConstraint(name = "uk_reserva_origen_variante",
+                columnNames = {"origen", "origen_id", "variante_id"}),
+        indexes = @Index(name = "idx_reserva_vence", columnList = "vence"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ReservaStock {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OrigenReserva origen;
+
+    @Column(name = "origen_id", nullable = false)
+    private Long origenId; // id del carrito o del pedido
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(nullable = false)
+    private Integer cantidad;
+
+    @Column(nullable = false)
+    private LocalDateTime vence;
+
+    @Column(nullable = false)
+    private LocalDateTime actualizada;
+}
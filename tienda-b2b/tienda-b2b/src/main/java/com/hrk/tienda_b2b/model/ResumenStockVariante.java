@@ -0,0 +1,41 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Totales de stock_historico por variante, para no recorrer el historial completo en cada dashboard.
+ * Se actualiza en la misma transacción que cada registro de StockHistorico (ver ResumenStockService).
+ */
+@Entity
+@Table(name = "resumen_stock_variantes",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resumen_stock_variante", columnNames = {"variante_id"}))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ResumenStockVariante {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "total_entradas", nullable = false)
+    private Long totalEntradas; // ENTRADA_INICIAL
+
+    @Column(name = "total_ajustes_suma", nullable = false)
+    private Long totalAjustesSuma;
+
+    @Column(name = "total_ajustes_resta", nullable = false)
+    private Long totalAjustesResta; // en valor absoluto
+
+    @Column(name = "cantidad_registros", nullable = false)
+    private Long cantidadRegistros;
+
+    @Column(name = "ultimo_stock_acumulado")
+    private Integer ultimoStockAcumulado;
+
+    @Column(name = "ultima_fecha")
+    private LocalDateTime ultimaFecha;
+}
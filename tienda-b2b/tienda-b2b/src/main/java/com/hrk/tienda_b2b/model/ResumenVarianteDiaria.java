@@ -0,0 +1,40 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Unidades diarias por variante, separadas por tipo de documento y estado del pedido.
+ * Se mantiene junto con ResumenVentaDiaria (ver ResumenDiarioService).
+ */
+@Entity
+@Table(name = "resumen_variantes_diarias",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resumen_variante_dia",
+                columnNames = {"dia", "tipo", "estado", "variante_id"}),
+        indexes = @Index(name = "idx_resumen_variante_producto", columnList = "producto_id, dia"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ResumenVarianteDiaria {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate dia;
+
+    @Column(nullable = false, length = 20)
+    private String tipo;
+
+    @Column(nullable = false, length = 20)
+    private String estado;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId; // desnormalizado para agrupar por producto sin join
+
+    @Column(nullable = false)
+    private Long unidades;
+}
@@ -0,0 +1,46 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Acumulado diario de pedidos/devoluciones por estado, tipo, aprobación, método de pago y cliente.
+ * Se mantiene incrementalmente desde PedidoServiceImpl y DevolucionServiceImpl (ver ResumenDiarioService).
+ * Las dimensiones sin valor se guardan como "NINGUNO" para que la clave única funcione (MySQL no agrupa NULLs).
+ */
+@Entity
+@Table(name = "resumen_ventas_diarias",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resumen_venta_dia",
+                columnNames = {"dia", "tipo", "estado", "tipo_aprobacion", "metodo_pago", "cliente_id"}))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ResumenVentaDiaria {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate dia; // fecha del pedido (no la del cambio de estado)
+
+    @Column(nullable = false, length = 20)
+    private String tipo; // VENTA / DEVOLUCION
+
+    @Column(nullable = false, length = 20)
+    private String estado;
+
+    @Column(name = "tipo_aprobacion", nullable = false, length = 20)
+    private String tipoAprobacion; // APTA / SCRAP / PENDIENTE (devoluciones) o NINGUNO
+
+    @Column(name = "metodo_pago", nullable = false, length = 20)
+    private String metodoPago;
+
+    @Column(name = "cliente_id", nullable = false)
+    private Long clienteId;
+
+    @Column(name = "cantidad_pedidos", nullable = false)
+    private Long cantidadPedidos;
+
+    @Column(name = "monto_total", nullable = false)
+    private Double montoTotal;
+}
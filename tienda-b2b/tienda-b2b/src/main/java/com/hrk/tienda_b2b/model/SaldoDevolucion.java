@@ -0,0 +1,36 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Unidades entregadas y devueltas por (cliente, variante), para validar devoluciones sin recorrer todos
+ * los pedidos del cliente. Se actualiza en la misma transacción que la entrega del pedido o el renglón
+ * de la devolución (ver SaldoDevolucionService).
+ */
+@Entity
+@Table(name = "saldos_devolucion",
+        uniqueConstraints = @UniqueConstraint(name = "uk_saldo_devolucion_cliente_variante",
+                columnNames = {"cliente_id", "variante_id"}))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class SaldoDevolucion {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cliente_id", nullable = false)
+    private Long clienteId;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(nullable = false)
+    private Integer entregado; // renglones de ventas ENTREGADAS
+
+    @Column(nullable = false)
+    private Integer devuelto; // renglones de devoluciones, en cualquier estado
+
+    public int disponible() {
+        return Math.max(0, entregado - devuelto);
+    }
+}
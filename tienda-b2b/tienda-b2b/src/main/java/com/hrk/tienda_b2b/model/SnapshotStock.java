@@ -0,0 +1,32 @@
+package com.hrk.tienda_b2b.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock de cada variante en un corte: el corte anterior más los eventos_stock que éste marcó (EventoStock.corte),
+ * que son los de fecha anterior al corte ya confirmados cuando se generó y que ningún corte había sumado.
+ * Un corte tiene una fila por cada variante con stock distinto de cero; si no hay fila, el stock era cero.
+ * Los genera EventoStockService a partir del corte anterior.
+ */
+@Entity
+@Table(name = "snapshots_stock",
+        uniqueConstraints = @UniqueConstraint(name = "uk_snapshot_stock_fecha_variante", columnNames = {"fecha", "variante_id"}),
+        indexes = @Index(name = "idx_snapshot_stock_variante_fecha", columnList = "variante_id,fecha"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class SnapshotStock {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha; // corte: incluye los eventos marcados con este corte o uno anterior
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(nullable = false)
+    private Integer stock;
+}
@@ -1,11 +1,16 @@
 package com.hrk.tienda_b2b.model;
 
+import com.hrk.tienda_b2b.model.generator.IdsPorBloque;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "stock_historico")
+@Table(name = "stock_historico", indexes = {
+        // Rangos por mes del archivado y el historial por variante (ver ArchivoHistorialRepository)
+        @Index(name = "idx_stock_historico_fecha", columnList = "fecha"),
+        @Index(name = "idx_stock_historico_variante_fecha", columnList = "variante_id, fecha")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,7 +18,7 @@ import java.time.LocalDateTime;
 @Builder
 public class StockHistorico {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @IdsPorBloque("stock_historico")
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
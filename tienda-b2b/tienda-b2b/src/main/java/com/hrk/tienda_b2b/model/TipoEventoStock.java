@@ -0,0 +1,14 @@
+package com.hrk.tienda_b2b.model;
+
+// Motivo de cada evento del registro de stock (eventos_stock)
+public enum TipoEventoStock {
+
+    SALDO_INICIAL,   // stock que ya tenía la variante cuando se empezó a llevar el registro
+    ALTA_VARIANTE,   // stock con el que se crea la variante (alta manual o importación)
+    AJUSTE,          // ajuste manual de inventario (+/-)
+    BAJA_VARIANTE,   // se eliminó la variante con stock
+
+    VENTA,           // descuento al confirmar un pedido (uno por variante, en la transacción del pedido)
+    ANULACION,       // cancelación de un pedido confirmado
+    DEVOLUCION       // devolución aprobada como apta
+}
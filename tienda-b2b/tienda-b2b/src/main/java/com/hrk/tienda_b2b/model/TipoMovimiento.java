@@ -3,13 +3,23 @@ package com.hrk.tienda_b2b.model;
 // com.hrk.tienda_b2b.model.TipoMovimiento
 public enum TipoMovimiento {
 
-    BAJA_POR_PEDIDO,
-    REVERSION_POR_ANULACION,
+    BAJA_POR_PEDIDO(-1),
+    REVERSION_POR_ANULACION(1),
 
-    DEVOLUCION_ENTRADA,        // suma stock por devolución
-    DESPERFECTO_SCRAP,         // baja definitiva si no es apto venta
+    DEVOLUCION_ENTRADA(1),        // suma stock por devolución
+    DESPERFECTO_SCRAP(0),         // baja definitiva si no es apto venta
     
-    AJUSTE_INVENTARIO_POSITIVO,  // ajuste manual: entrada de stock
-    AJUSTE_INVENTARIO_NEGATIVO   // ajuste manual: salida de stock
+    AJUSTE_INVENTARIO_POSITIVO(1),  // ajuste manual: entrada de stock
+    AJUSTE_INVENTARIO_NEGATIVO(-1); // ajuste manual: salida de stock
 
-     }
\ No newline at end of file
+    // Cómo cuenta la cantidad (siempre positiva) en stock_disponible: lo usa la conciliación de stock
+    private final int signo;
+
+    TipoMovimiento(int signo) {
+        this.signo = signo;
+    }
+
+    public int getSigno() {
+        return signo;
+    }
+     }
@@ -0,0 +1,52 @@
+package com.hrk.tienda_b2b.model.generator;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Generador de ids por bloques sobre la tabla ids_entidades (una fila por entidad, pooled-lo).
+ *
+ * A diferencia de IDENTITY, Hibernate conoce el id antes del INSERT y puede mandar los inserts en batch.
+ * Cada fila guarda el primer id del próximo bloque libre: quien reserva un bloque de N ids lee ese valor
+ * y lo incrementa en N (ver IdsPorBloqueService, que usa la misma regla para los inserts por JDBC).
+ *
+ * El tamaño del bloque sale de spring.jpa.properties.app.ids.tamanio-bloque (50 por defecto). Las entidades lo
+ * usan con {@link IdsPorBloque}, que da la fila de ids_entidades.
+ */
+public class BloqueIdsGenerator extends TableGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String TABLA = "ids_entidades";
+    public static final String COLUMNA_ENTIDAD = "entidad";
+    public static final String COLUMNA_PROXIMO_ID = "proximo_id";
+    public static final String PROPIEDAD_TAMANIO_BLOQUE = "app.ids.tamanio-bloque";
+    public static final int TAMANIO_BLOQUE_POR_DEFECTO = 50;
+
+    private final String entidad;
+
+    public BloqueIdsGenerator(IdsPorBloque config) {
+        this.entidad = config.value();
+    }
+
+    @Override
+    public void configure(Type type, Properties parametros, ServiceRegistry serviceRegistry) throws MappingException {
+        int tamanioBloque = serviceRegistry.requireService(ConfigurationService.class)
+                .getSetting(PROPIEDAD_TAMANIO_BLOQUE, value -> Integer.parseInt(value.toString().trim()), TAMANIO_BLOQUE_POR_DEFECTO);
+
+        parametros.put(TABLE_PARAM, TABLA);
+        parametros.put(SEGMENT_VALUE_PARAM, entidad);
+        parametros.put(SEGMENT_COLUMN_PARAM, COLUMNA_ENTIDAD);
+        parametros.put(VALUE_COLUMN_PARAM, COLUMNA_PROXIMO_ID);
+        parametros.put(OptimizableGenerator.INITIAL_PARAM, "1");
+        parametros.put(OptimizableGenerator.INCREMENT_PARAM, String.valueOf(Math.max(1, tamanioBloque)));
+        parametros.put(OptimizableGenerator.OPT_PARAM, "pooled-lo");
+        super.configure(type, parametros, serviceRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package com.hrk.tienda_b2b.model.generator;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Id generado por bloques con {@link BloqueIdsGenerator}. value es la fila de ids_entidades de la entidad
+ * (por convención, el nombre de su tabla).
+ */
+@IdGeneratorType(BloqueIdsGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface IdsPorBloque {
+    String value();
+}
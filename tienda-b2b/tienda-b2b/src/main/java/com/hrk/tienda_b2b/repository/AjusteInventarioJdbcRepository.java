@@ -0,0 +1,73 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.StockHistorico;
+import com.hrk.tienda_b2b.model.TipoMovimiento;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ajustes de inventario en lote por JDBC: los movimientos AJUSTE_INVENTARIO_* y sus registros de stock_historico,
+ * con ids ya reservados (IdsPorBloqueService) desde primerId. Lo usan el conteo de inventario y la conciliación.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AjusteInventarioJdbcRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public void registrarMovimientos(List<Ajuste> ajustes, long primerId, LocalDateTime fecha) {
+        Timestamp momento = Timestamp.valueOf(fecha);
+        MapSqlParameterSource[] parametros = new MapSqlParameterSource[ajustes.size()];
+        for (int i = 0; i < ajustes.size(); i++) {
+            Ajuste ajuste = ajustes.get(i);
+            parametros[i] = new MapSqlParameterSource()
+                    .addValue("id", primerId + i)
+                    .addValue("varianteId", ajuste.getVarianteId())
+                    .addValue("tipo", (ajuste.getDiferencia() > 0
+                            ? TipoMovimiento.AJUSTE_INVENTARIO_POSITIVO : TipoMovimiento.AJUSTE_INVENTARIO_NEGATIVO).name())
+                    .addValue("cantidad", Math.abs(ajuste.getDiferencia()))
+                    .addValue("fecha", momento);
+        }
+        jdbc.batchUpdate("INSERT INTO movimientos_stock (id, variante_id, tipo, cantidad, fecha) " +
+                "VALUES (:id, :varianteId, :tipo, :cantidad, :fecha)", parametros);
+    }
+
+    /**
+     * Registros AJUSTE_SUMA / AJUSTE_RESTA de stock_historico (cantidad con signo, como
+     * ProductoService.registrarStockHistoricoAjuste). stockAcumulado de cada ajuste tiene que venir calculado.
+     */
+    public void registrarHistorico(List<Ajuste> ajustes, long primerId, LocalDateTime fecha, String motivo) {
+        Timestamp momento = Timestamp.valueOf(fecha);
+        MapSqlParameterSource[] parametros = new MapSqlParameterSource[ajustes.size()];
+        for (int i = 0; i < ajustes.size(); i++) {
+            Ajuste ajuste = ajustes.get(i);
+            parametros[i] = new MapSqlParameterSource()
+                    .addValue("id", primerId + i)
+                    .addValue("varianteId", ajuste.getVarianteId())
+                    .addValue("cantidad", ajuste.getDiferencia())
+                    .addValue("stockAcumulado", ajuste.getStockAcumulado())
+                    .addValue("fecha", momento)
+                    .addValue("motivo", motivo)
+                    .addValue("tipo", (ajuste.getDiferencia() > 0
+                            ? StockHistorico.TipoMovimientoStock.AJUSTE_SUMA : StockHistorico.TipoMovimientoStock.AJUSTE_RESTA).name());
+        }
+        jdbc.batchUpdate("INSERT INTO stock_historico (id, variante_id, cantidad, stock_acumulado, fecha, motivo, tipo) " +
+                "VALUES (:id, :varianteId, :cantidad, :stockAcumulado, :fecha, :motivo, :tipo)", parametros);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Ajuste {
+        private final Long varianteId;
+        private final int diferencia;          // positiva: entrada; negativa: salida
+        private final Integer stockAcumulado;  // sólo para stock_historico
+    }
+}
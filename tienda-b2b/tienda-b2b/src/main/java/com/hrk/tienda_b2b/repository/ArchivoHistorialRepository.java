@@ -0,0 +1,441 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.RegistroStockDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivo en frío de movimientos_stock y stock_historico.
+ *
+ * Cada mes archivado de una tabla queda en dos archivos dentro de app.archivo.directorio/&lt;tabla&gt;/:
+ * &lt;yyyy-MM&gt;.&lt;parte&gt;.jsonl.gz con las filas ordenadas por variante (un bloque gzip independiente por variante)
+ * y &lt;yyyy-MM&gt;.&lt;parte&gt;.idx con la posición y el largo del bloque de cada variante. Buscar el historial de una
+ * variante lee sólo su bloque de cada mes; recorrer todo el archivo funciona porque los bloques concatenados
+ * son un gzip válido.
+ *
+ * Al archivar, los archivos se escriben primero como .tmp; las filas se borran de la tabla en una transacción y
+ * recién después del commit se renombran. Si el proceso se corta en el medio, {@link #recuperar()} decide con la
+ * tabla: si el mes todavía tiene filas el borrado no llegó a confirmarse y los .tmp se descartan.
+ */
+@Repository
+public class ArchivoHistorialRepository {
+
+    public enum Tabla {
+        MOVIMIENTOS_STOCK("movimientos_stock", "id, variante_id, pedido_id, detalle_id, tipo, cantidad, fecha"),
+        STOCK_HISTORICO("stock_historico", "id, variante_id, cantidad, stock_acumulado, fecha, motivo, tipo");
+
+        private final String nombre;
+        private final String columnas;
+
+        Tabla(String nombre, String columnas) {
+            this.nombre = nombre;
+            this.columnas = columnas;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+    }
+
+    private static final String DATOS = ".jsonl.gz";
+    private static final String INDICE = ".idx";
+    private static final String TEMPORAL = ".tmp";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaccion;
+    private final ObjectMapper objectMapper;
+    private final Path directorio;
+    // Los archivos publicados no cambian: su índice se lee una vez
+    private final Map<Path, NavigableMap<Long, long[]>> indices = new ConcurrentHashMap<>();
+
+    public ArchivoHistorialRepository(JdbcTemplate jdbc,
+                                      PlatformTransactionManager transactionManager,
+                                      ObjectMapper objectMapper,
+                                      @Value("${app.archivo.directorio:archivo}") String directorio) {
+        this.jdbc = jdbc;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.directorio = Paths.get(directorio);
+    }
+
+    /**
+     * Meses con filas en la tabla anteriores a limite (exclusivo), del más viejo al más nuevo.
+     */
+    public List<YearMonth> mesesConFilas(Tabla tabla, YearMonth limite) {
+        return jdbc.query("SELECT DISTINCT YEAR(fecha) AS anio, MONTH(fecha) AS mes FROM " + tabla.nombre +
+                        " WHERE fecha < ? ORDER BY anio, mes",
+                (rs, fila) -> YearMonth.of(rs.getInt("anio"), rs.getInt("mes")),
+                Timestamp.valueOf(limite.atDay(1).atStartOfDay()));
+    }
+
+    public boolean hayFilas(Tabla tabla, YearMonth mes) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM " + tabla.nombre +
+                        " WHERE fecha >= ? AND fecha < ?)", Boolean.class,
+                Timestamp.valueOf(mes.atDay(1).atStartOfDay()), Timestamp.valueOf(mes.plusMonths(1).atDay(1).atStartOfDay())));
+    }
+
+    /**
+     * Pasa las filas del mes a un archivo comprimido y las borra de la tabla. Devuelve cuántas filas archivó.
+     */
+    public int archivarMes(Tabla tabla, YearMonth mes) throws IOException {
+        Path carpeta = Files.createDirectories(directorio.resolve(tabla.nombre));
+        String base = mes + "." + siguienteParte(carpeta, mes);
+        Path datosTmp = carpeta.resolve(base + DATOS + TEMPORAL);
+        Path indiceTmp = carpeta.resolve(base + INDICE + TEMPORAL);
+        Timestamp desde = Timestamp.valueOf(mes.atDay(1).atStartOfDay());
+        Timestamp hasta = Timestamp.valueOf(mes.plusMonths(1).atDay(1).atStartOfDay());
+
+        Escritura escritura = new Escritura(datosTmp);
+        try (escritura) {
+            jdbc.query(con -> {
+                PreparedStatement ps = con.prepareStatement("SELECT " + tabla.columnas + " FROM " + tabla.nombre +
+                                " WHERE fecha >= ? AND fecha < ? ORDER BY variante_id, fecha, id",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE); // MySQL: filas de a una, sin cargar el mes entero en memoria
+                ps.setTimestamp(1, desde);
+                ps.setTimestamp(2, hasta);
+                return ps;
+            }, rs -> {
+                try {
+                    escritura.agregar(rs.getLong("variante_id"), fila(tabla, rs));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(datosTmp);
+            throw e.getCause();
+        }
+        if (escritura.filas == 0) {
+            Files.deleteIfExists(datosTmp);
+            return 0;
+        }
+        escribirIndice(indiceTmp, escritura.indice);
+
+        transaccion.executeWithoutResult(status ->
+                jdbc.update("DELETE FROM " + tabla.nombre + " WHERE fecha >= ? AND fecha < ?", desde, hasta));
+        publicar(datosTmp, indiceTmp);
+        return escritura.filas;
+    }
+
+    /**
+     * Termina o descarta archivados que quedaron a medias (ver la documentación de la clase).
+     */
+    public List<String> recuperar() throws IOException {
+        List<String> acciones = new ArrayList<>();
+        for (Tabla tabla : Tabla.values()) {
+            Path carpeta = directorio.resolve(tabla.nombre);
+            for (Path datosTmp : listar(carpeta, DATOS + TEMPORAL)) {
+                String base = nombreBase(datosTmp, DATOS + TEMPORAL);
+                Path indiceTmp = carpeta.resolve(base + INDICE + TEMPORAL);
+                YearMonth mes = YearMonth.parse(base.substring(0, base.indexOf('.')));
+                boolean borradoConfirmado = Files.exists(indiceTmp) && !hayFilas(tabla, mes);
+                if (borradoConfirmado) {
+                    publicar(datosTmp, indiceTmp);
+                    acciones.add(tabla.nombre + " " + base + ": publicado");
+                } else {
+                    Files.deleteIfExists(datosTmp);
+                    Files.deleteIfExists(indiceTmp);
+                    acciones.add(tabla.nombre + " " + base + ": descartado");
+                }
+            }
+        }
+        return acciones;
+    }
+
+    /**
+     * Historial de la variante entre desde y hasta (cualquiera puede ser null): lo archivado más lo que sigue en
+     * la tabla, ordenado por fecha e id.
+     */
+    public List<RegistroStockDTO> historial(Tabla tabla, Long varianteId, LocalDateTime desde, LocalDateTime hasta) {
+        List<RegistroStockDTO> registros = new ArrayList<>();
+        for (Path indice : listar(directorio.resolve(tabla.nombre), INDICE)) {
+            String base = nombreBase(indice, INDICE);
+            YearMonth mes = YearMonth.parse(base.substring(0, base.indexOf('.')));
+            if ((desde != null && !mes.plusMonths(1).atDay(1).atStartOfDay().isAfter(desde))
+                    || (hasta != null && mes.atDay(1).atStartOfDay().isAfter(hasta))) {
+                continue;
+            }
+            long[] bloque = leerIndice(indice).get(varianteId);
+            if (bloque != null) {
+                leerBloque(indice.resolveSibling(base + DATOS), bloque, fila -> {
+                    RegistroStockDTO registro = registro(fila, true);
+                    LocalDateTime fecha = LocalDateTime.parse(registro.getFecha());
+                    if ((desde == null || !fecha.isBefore(desde)) && (hasta == null || !fecha.isAfter(hasta))) {
+                        registros.add(registro);
+                    }
+                });
+            }
+        }
+
+        List<Object> parametros = new ArrayList<>(List.of(varianteId));
+        StringBuilder sql = new StringBuilder("SELECT " + tabla.columnas + " FROM " + tabla.nombre + " WHERE variante_id = ?");
+        if (desde != null) {
+            sql.append(" AND fecha >= ?");
+            parametros.add(Timestamp.valueOf(desde));
+        }
+        if (hasta != null) {
+            sql.append(" AND fecha <= ?");
+            parametros.add(Timestamp.valueOf(hasta));
+        }
+        jdbc.query(sql.toString(), rs -> {
+            registros.add(registro(fila(tabla, rs), false));
+        }, parametros.toArray());
+
+        registros.sort(Comparator.comparing((RegistroStockDTO r) -> LocalDateTime.parse(r.getFecha()))
+                .thenComparing(RegistroStockDTO::getId));
+        return registros;
+    }
+
+    /**
+     * Recorre todas las filas archivadas de la tabla (para reconstruir resúmenes que incluyen lo archivado).
+     */
+    public void recorrer(Tabla tabla, Consumer<RegistroStockDTO> consumidor) {
+        for (Path indice : listar(directorio.resolve(tabla.nombre), INDICE)) {
+            Path datos = indice.resolveSibling(nombreBase(indice, INDICE) + DATOS);
+            try (BufferedReader lector = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(datos), 64 * 1024), StandardCharsets.UTF_8))) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    consumidor.accept(registro(leerFila(linea), true));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo leer " + datos, e);
+            }
+        }
+    }
+
+    /**
+     * Recorre las filas archivadas de las variantes con id entre varianteDesde y varianteHasta (inclusive): lee sólo
+     * sus bloques, así se puede repartir el archivo por rangos de variantes.
+     */
+    public void recorrer(Tabla tabla, long varianteDesde, long varianteHasta, Consumer<RegistroStockDTO> consumidor) {
+        for (Path indice : listar(directorio.resolve(tabla.nombre), INDICE)) {
+            Path datos = indice.resolveSibling(nombreBase(indice, INDICE) + DATOS);
+            for (long[] bloque : leerIndice(indice).subMap(varianteDesde, true, varianteHasta, true).values()) {
+                leerBloque(datos, bloque, fila -> consumidor.accept(registro(fila, true)));
+            }
+        }
+    }
+
+    // ===== Formato =====
+
+    private static Map<String, Object> fila(Tabla tabla, ResultSet rs) throws SQLException {
+        Map<String, Object> fila = new LinkedHashMap<>();
+        for (String columna : tabla.columnas.split(",\\s*")) {
+            Object valor = rs.getObject(columna);
+            fila.put(columna, valor instanceof Timestamp t ? t.toLocalDateTime().toString() : valor);
+        }
+        return fila;
+    }
+
+    private static RegistroStockDTO registro(Map<String, Object> fila, boolean archivado) {
+        return RegistroStockDTO.builder()
+                .id(comoLong(fila.get("id")))
+                .varianteId(comoLong(fila.get("variante_id")))
+                .fecha((String) fila.get("fecha"))
+                .tipo((String) fila.get("tipo"))
+                .cantidad(fila.get("cantidad") != null ? ((Number) fila.get("cantidad")).intValue() : null)
+                .stockAcumulado(fila.get("stock_acumulado") != null ? ((Number) fila.get("stock_acumulado")).intValue() : null)
+                .motivo((String) fila.get("motivo"))
+                .pedidoId(comoLong(fila.get("pedido_id")))
+                .detalleId(comoLong(fila.get("detalle_id")))
+                .archivado(archivado)
+                .build();
+    }
+
+    private static Long comoLong(Object valor) {
+        return valor != null ? ((Number) valor).longValue() : null;
+    }
+
+    private Map<String, Object> leerFila(String linea) throws IOException {
+        return objectMapper.readValue(linea, new TypeReference<Map<String, Object>>() {});
+    }
+
+    private void leerBloque(Path datos, long[] bloque, Consumer<Map<String, Object>> consumidor) {
+        try (FileChannel canal = FileChannel.open(datos, StandardOpenOption.READ)) {
+            ByteBuffer comprimido = ByteBuffer.allocate((int) bloque[1]);
+            long posicion = bloque[0];
+            while (comprimido.hasRemaining()) {
+                int leidos = canal.read(comprimido, posicion);
+                if (leidos < 0) {
+                    throw new IOException("Archivo truncado: " + datos);
+                }
+                posicion += leidos;
+            }
+            try (BufferedReader lector = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(comprimido.array())), StandardCharsets.UTF_8))) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    consumidor.accept(leerFila(linea));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer " + datos, e);
+        }
+    }
+
+    // Índice: una línea "varianteId;posición;largo;filas" por variante
+    private NavigableMap<Long, long[]> leerIndice(Path indice) {
+        return indices.computeIfAbsent(indice, ruta -> {
+            NavigableMap<Long, long[]> bloques = new TreeMap<>();
+            try (Stream<String> lineas = Files.lines(ruta, StandardCharsets.UTF_8)) {
+                lineas.filter(l -> !l.isBlank()).forEach(l -> {
+                    String[] partes = l.split(";");
+                    bloques.put(Long.parseLong(partes[0]), new long[]{Long.parseLong(partes[1]), Long.parseLong(partes[2])});
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo leer " + ruta, e);
+            }
+            return bloques;
+        });
+    }
+
+    private static void escribirIndice(Path indice, Map<Long, long[]> bloques) throws IOException {
+        StringBuilder contenido = new StringBuilder();
+        bloques.forEach((varianteId, b) ->
+                contenido.append(varianteId).append(';').append(b[0]).append(';').append(b[1]).append(';').append(b[2]).append('\n'));
+        try (FileChannel canal = FileChannel.open(indice, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.wrap(contenido.toString().getBytes(StandardCharsets.UTF_8)));
+            canal.force(true);
+        }
+    }
+
+    // Primero el de datos: un índice publicado siempre tiene sus datos
+    private static void publicar(Path datosTmp, Path indiceTmp) throws IOException {
+        String datos = datosTmp.getFileName().toString();
+        String indice = indiceTmp.getFileName().toString();
+        Files.move(datosTmp, datosTmp.resolveSibling(datos.substring(0, datos.length() - TEMPORAL.length())),
+                StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indiceTmp, indiceTmp.resolveSibling(indice.substring(0, indice.length() - TEMPORAL.length())),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int siguienteParte(Path carpeta, YearMonth mes) {
+        String prefijo = mes + ".";
+        return (int) listar(carpeta, DATOS).stream()
+                .filter(p -> p.getFileName().toString().startsWith(prefijo))
+                .count() + 1;
+    }
+
+    private static List<Path> listar(Path carpeta, String sufijo) {
+        if (!Files.isDirectory(carpeta)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> archivos = Files.list(carpeta)) {
+            return archivos.filter(p -> p.getFileName().toString().endsWith(sufijo)).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo listar " + carpeta, e);
+        }
+    }
+
+    private static String nombreBase(Path archivo, String sufijo) {
+        String nombre = archivo.getFileName().toString();
+        return nombre.substring(0, nombre.length() - sufijo.length());
+    }
+
+    /**
+     * Escribe las filas de a una variante por vez: cada variante es un miembro gzip aparte, y su posición y largo
+     * van al índice.
+     */
+    private class Escritura implements Closeable {
+
+        private final FileOutputStream salida;
+        private final Map<Long, long[]> indice = new LinkedHashMap<>();
+        private Long varianteActual;
+        private GZIPOutputStream bloque;
+        private long inicioBloque;
+        private int filasBloque;
+        private int filas;
+
+        Escritura(Path archivo) throws IOException {
+            this.salida = new FileOutputStream(archivo.toFile());
+        }
+
+        void agregar(long varianteId, Map<String, Object> fila) throws IOException {
+            if (varianteActual == null || varianteActual != varianteId) {
+                cerrarBloque();
+                varianteActual = varianteId;
+                inicioBloque = salida.getChannel().position();
+                // El gzip escribe directo en el archivo; cerrarlo sólo termina el miembro
+                bloque = new GZIPOutputStream(new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        salida.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        salida.write(b, off, len);
+                    }
+                }, 64 * 1024);
+            }
+            bloque.write(objectMapper.writeValueAsBytes(fila));
+            bloque.write('\n');
+            filasBloque++;
+            filas++;
+        }
+
+        private void cerrarBloque() throws IOException {
+            if (bloque == null) {
+                return;
+            }
+            bloque.finish();
+            long fin = salida.getChannel().position();
+            indice.put(varianteActual, new long[]{inicioBloque, fin - inicioBloque, filasBloque});
+            bloque = null;
+            filasBloque = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                cerrarBloque();
+                salida.getChannel().force(true);
+            } finally {
+                salida.close();
+            }
+        }
+    }
+}
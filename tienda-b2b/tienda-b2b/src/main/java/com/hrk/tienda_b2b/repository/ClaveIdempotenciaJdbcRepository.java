@@ -0,0 +1,82 @@
+package com.hrk.tienda_b2b.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Tabla claves_idempotencia (ver {@link com.hrk.tienda_b2b.model.ClaveIdempotencia}). Por JDBC y en autocommit:
+ * la marca de "en proceso" tiene que verse desde otras instancias antes de que termine el request original.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ClaveIdempotenciaJdbcRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * Inserta la clave como "en proceso". false si ya existía (otro request con la misma clave).
+     */
+    public boolean reservar(byte[] clave, byte[] huella, LocalDateTime ahora) {
+        try {
+            jdbc.update("INSERT INTO claves_idempotencia (clave, huella, estado, creada) VALUES (:clave, :huella, 0, :creada)",
+                    new MapSqlParameterSource()
+                            .addValue("clave", clave)
+                            .addValue("huella", huella)
+                            .addValue("creada", Timestamp.valueOf(ahora)));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public void completar(byte[] clave, int estado, String tipoContenido, byte[] cuerpo) {
+        jdbc.update("UPDATE claves_idempotencia SET estado = :estado, tipo_contenido = :tipo, cuerpo = :cuerpo WHERE clave = :clave",
+                new MapSqlParameterSource()
+                        .addValue("clave", clave)
+                        .addValue("estado", estado)
+                        .addValue("tipo", tipoContenido)
+                        .addValue("cuerpo", cuerpo));
+    }
+
+    public void borrar(byte[] clave) {
+        jdbc.update("DELETE FROM claves_idempotencia WHERE clave = :clave", new MapSqlParameterSource("clave", clave));
+    }
+
+    public Registro buscar(byte[] clave) {
+        List<Registro> filas = jdbc.query("SELECT huella, estado, tipo_contenido, cuerpo, creada FROM claves_idempotencia WHERE clave = :clave",
+                new MapSqlParameterSource("clave", clave),
+                (rs, fila) -> new Registro(rs.getBytes("huella"), rs.getInt("estado"), rs.getString("tipo_contenido"),
+                        rs.getBytes("cuerpo"), rs.getTimestamp("creada").toLocalDateTime()));
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    /**
+     * Borra las respuestas anteriores a "hasta" y las marcas "en proceso" anteriores a "enProcesoHasta"
+     * (requests que nunca terminaron, p. ej. por un reinicio).
+     */
+    public int borrarViejas(LocalDateTime hasta, LocalDateTime enProcesoHasta) {
+        return jdbc.update("DELETE FROM claves_idempotencia WHERE creada < :hasta OR (estado = 0 AND creada < :enProcesoHasta)",
+                new MapSqlParameterSource()
+                        .addValue("hasta", Timestamp.valueOf(hasta))
+                        .addValue("enProcesoHasta", Timestamp.valueOf(enProcesoHasta)));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Registro {
+        private final byte[] huella;
+        private final int estado;
+        private final String tipoContenido;
+        private final byte[] cuerpo;
+        private final LocalDateTime creada;
+    }
+}
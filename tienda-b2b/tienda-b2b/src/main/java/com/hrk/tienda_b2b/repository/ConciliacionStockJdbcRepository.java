@@ -0,0 +1,83 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.StockHistorico;
+import com.hrk.tienda_b2b.model.TipoMovimiento;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Lecturas de la conciliación de stock (ConciliacionStockService) por JDBC: stock_disponible y el stock que
+ * resulta de los registros (entradas iniciales de stock_historico más los movimientos_stock con su signo), de un
+ * rango de ids de variante o de una lista. La suma la hace la base con el índice (variante_id, fecha): de cada
+ * rango sólo vuelve una fila por variante.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ConciliacionStockJdbcRepository {
+
+    // Efecto de cada tipo de movimiento en el stock (TipoMovimiento.getSigno), armado una sola vez
+    private static final String DELTA_MOVIMIENTO = Arrays.stream(TipoMovimiento.values())
+            .map(t -> "WHEN '" + t.name() + "' THEN " + t.getSigno() + " * cantidad")
+            .collect(Collectors.joining(" ", "CASE tipo ", " ELSE 0 END"));
+
+    private static final String SQL_ESPERADO = "SELECT variante_id, SUM(delta) AS esperado FROM (" +
+            "SELECT variante_id, " + DELTA_MOVIMIENTO + " AS delta FROM movimientos_stock WHERE %1$s " +
+            "UNION ALL " +
+            "SELECT variante_id, cantidad AS delta FROM stock_historico WHERE tipo = '" +
+            StockHistorico.TipoMovimientoStock.ENTRADA_INICIAL.name() + "' AND %1$s" +
+            ") l GROUP BY variante_id";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * Menor y mayor id de variante (null si no hay variantes).
+     */
+    public long[] rangoVariantes() {
+        return jdbc.queryForObject("SELECT MIN(id) AS minimo, MAX(id) AS maximo FROM producto_variantes",
+                new MapSqlParameterSource(),
+                (rs, fila) -> rs.getObject("minimo") != null ? new long[]{rs.getLong("minimo"), rs.getLong("maximo")} : null);
+    }
+
+    public List<StockVarianteJdbcRepository.StockVariante> stockDelRango(long desde, long hasta) {
+        return jdbc.query("SELECT id, sku, stock_disponible FROM producto_variantes WHERE id BETWEEN :desde AND :hasta",
+                rango(desde, hasta),
+                (rs, fila) -> new StockVarianteJdbcRepository.StockVariante(rs.getLong("id"), rs.getString("sku"),
+                        rs.getInt("stock_disponible")));
+    }
+
+    /**
+     * Stock que dan los registros que siguen en las tablas (sin lo archivado), por variante. Las variantes sin
+     * registros no vienen.
+     */
+    public Map<Long, Long> esperadoDelRango(long desde, long hasta) {
+        return esperado(String.format(SQL_ESPERADO, "variante_id BETWEEN :desde AND :hasta"), rango(desde, hasta));
+    }
+
+    public Map<Long, Long> esperadoDe(Collection<Long> varianteIds) {
+        if (varianteIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return esperado(String.format(SQL_ESPERADO, "variante_id IN (:ids)"), new MapSqlParameterSource("ids", varianteIds));
+    }
+
+    private Map<Long, Long> esperado(String sql, MapSqlParameterSource parametros) {
+        Map<Long, Long> esperado = new HashMap<>();
+        jdbc.query(sql, parametros, rs -> {
+            esperado.put(rs.getLong("variante_id"), rs.getLong("esperado"));
+        });
+        return esperado;
+    }
+
+    private static MapSqlParameterSource rango(long desde, long hasta) {
+        return new MapSqlParameterSource().addValue("desde", desde).addValue("hasta", hasta);
+    }
+}
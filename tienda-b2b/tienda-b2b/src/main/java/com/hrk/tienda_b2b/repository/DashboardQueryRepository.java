@@ -0,0 +1,173 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.ResumenVarianteDiaria;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Consultas agregadas de los dashboards. Todo el SUM / GROUP BY se resuelve en la base sobre los acumulados
+ * diarios (resumen_ventas_diarias / resumen_variantes_diarias) y resumen_stock_variantes, así cada KPI es una o dos
+ * consultas sin importar cuántos pedidos haya.
+ *
+ * Ventas netas = unidades de ventas CONFIRMADAS/ENTREGADAS menos unidades devueltas (cualquier estado),
+ * nunca por debajo de cero.
+ */
+@Repository
+public interface DashboardQueryRepository extends org.springframework.data.repository.Repository<ResumenVarianteDiaria, Long> {
+
+    String UNIDADES_NETAS = "GREATEST(0, SUM(CASE WHEN r.tipo = 'DEVOLUCION' THEN -r.unidades " +
+            "WHEN r.estado IN ('CONFIRMADO', 'ENTREGADO') THEN r.unidades ELSE 0 END))";
+
+    String VENTA_CONFIRMADA = "r.tipo = 'VENTA' AND r.estado IN ('CONFIRMADO', 'ENTREGADO')";
+
+    // ===== Ventas por unidades =====
+
+    @Query(value = "SELECT r.variante_id AS id, " + UNIDADES_NETAS + " AS cantidad " +
+            "FROM resumen_variantes_diarias r " +
+            "WHERE r.dia BETWEEN :desde AND :hasta " +
+            "GROUP BY r.variante_id", nativeQuery = true)
+    List<CantidadPorId> ventasNetasPorVariante(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query(value = "SELECT r.variante_id AS id, " + UNIDADES_NETAS + " AS cantidad " +
+            "FROM resumen_variantes_diarias r " +
+            "WHERE r.producto_id = :productoId AND r.dia BETWEEN :desde AND :hasta " +
+            "GROUP BY r.variante_id", nativeQuery = true)
+    List<CantidadPorId> ventasNetasPorVarianteDeProducto(@Param("productoId") Long productoId,
+                                                         @Param("desde") LocalDate desde,
+                                                         @Param("hasta") LocalDate hasta);
+
+    @Query(value = "SELECT r.producto_id AS id, MAX(pr.nombre) AS nombre, " + UNIDADES_NETAS + " AS cantidad " +
+            "FROM resumen_variantes_diarias r " +
+            "LEFT JOIN productos pr ON pr.id = r.producto_id " +
+            "WHERE r.dia BETWEEN :desde AND :hasta " +
+            "GROUP BY r.producto_id " +
+            "HAVING cantidad > 0 " +
+            "ORDER BY cantidad DESC " +
+            "LIMIT :top", nativeQuery = true)
+    List<RankingProducto> topProductosPorVentasNetas(@Param("desde") LocalDate desde,
+                                                     @Param("hasta") LocalDate hasta,
+                                                     @Param("top") int top);
+
+    // ===== Pedidos =====
+
+    @Query(value = "SELECT COALESCE(SUM(r.cantidad_pedidos), 0) FROM resumen_ventas_diarias r " +
+            "WHERE r.tipo = 'VENTA' AND r.estado = 'CANCELADO' AND r.dia BETWEEN :desde AND :hasta", nativeQuery = true)
+    Long contarPedidosCancelados(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query(value = "SELECT r.metodo_pago AS clave, SUM(r.cantidad_pedidos) AS cantidad " +
+            "FROM resumen_ventas_diarias r " +
+            "WHERE " + VENTA_CONFIRMADA + " AND r.metodo_pago <> 'NINGUNO' AND r.dia BETWEEN :desde AND :hasta " +
+            "GROUP BY r.metodo_pago " +
+            "HAVING cantidad > 0 " +
+            "ORDER BY cantidad DESC", nativeQuery = true)
+    List<CantidadPorClave> pedidosPorMetodoPago(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query(value = "SELECT r.tipo_aprobacion AS clave, SUM(r.cantidad_pedidos) AS cantidad " +
+            "FROM resumen_ventas_diarias r " +
+            "WHERE r.tipo = 'DEVOLUCION' AND r.dia BETWEEN :desde AND :hasta " +
+            "GROUP BY r.tipo_aprobacion", nativeQuery = true)
+    List<CantidadPorClave> devolucionesPorAprobacion(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query(value = "SELECT COALESCE(SUM(r.monto_total), 0) AS monto, COALESCE(SUM(r.cantidad_pedidos), 0) AS cantidad " +
+            "FROM resumen_ventas_diarias r " +
+            "WHERE " + VENTA_CONFIRMADA + " AND r.dia BETWEEN :desde AND :hasta", nativeQuery = true)
+    TotalFacturado totalFacturado(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    @Query(value = "SELECT r.cliente_id AS id, MAX(u.nombre_razon_social) AS nombre, SUM(r.monto_total) AS monto " +
+            "FROM resumen_ventas_diarias r " +
+            "LEFT JOIN usuarios u ON u.id = r.cliente_id " +
+            "WHERE " + VENTA_CONFIRMADA + " AND r.dia BETWEEN :desde AND :hasta " +
+            "GROUP BY r.cliente_id " +
+            "HAVING SUM(r.cantidad_pedidos) > 0 " +
+            "ORDER BY monto DESC " +
+            "LIMIT :top", nativeQuery = true)
+    List<RankingCliente> topClientesPorMonto(@Param("desde") LocalDate desde,
+                                             @Param("hasta") LocalDate hasta,
+                                             @Param("top") int top);
+
+    @Query(value = "SELECT r.cliente_id FROM resumen_ventas_diarias r " +
+            "WHERE " + VENTA_CONFIRMADA + " AND r.dia BETWEEN :desde AND :hasta " +
+            "GROUP BY r.cliente_id " +
+            "HAVING SUM(r.cantidad_pedidos) > 0", nativeQuery = true)
+    List<Long> clientesConCompras(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    // Más reciente primero; se pide con PageRequest.of(0, 1)
+    @Query("SELECT p FROM Pedido p LEFT JOIN p.usuario u " +
+            "WHERE (u.id = :clienteId OR (u IS NULL AND p.clienteId = :clienteId)) " +
+            "AND p.estado IN (com.hrk.tienda_b2b.model.EstadoPedido.CONFIRMADO, com.hrk.tienda_b2b.model.EstadoPedido.ENTREGADO) " +
+            "AND (p.tipo IS NULL OR p.tipo <> com.hrk.tienda_b2b.model.TipoDocumento.DEVOLUCION) " +
+            "ORDER BY p.fecha DESC")
+    List<Pedido> ultimasComprasCliente(@Param("clienteId") Long clienteId, Pageable pageable);
+
+    // ===== Stock histórico =====
+
+    /**
+     * Entradas netas (ENTRADA_INICIAL + AJUSTE_SUMA - AJUSTE_RESTA), cantidad de registros y último stock
+     * acumulado de cada variante, leídos de resumen_stock_variantes (una fila por variante).
+     * Con productoId null trae todas las variantes.
+     */
+    @Query(value = "SELECT v.id AS varianteId, v.stock_disponible AS stockDisponible, " +
+            "COALESCE(r.total_entradas + r.total_ajustes_suma - r.total_ajustes_resta, 0) AS entradasNetas, " +
+            "COALESCE(r.cantidad_registros, 0) AS registros, " +
+            "r.ultimo_stock_acumulado AS ultimoStockAcumulado " +
+            "FROM producto_variantes v " +
+            "LEFT JOIN resumen_stock_variantes r ON r.variante_id = v.id " +
+            "WHERE (:productoId IS NULL OR v.producto_id = :productoId)", nativeQuery = true)
+    List<StockHistoricoVariante> stockHistoricoPorVariante(@Param("productoId") Long productoId);
+
+    // ===== Proyecciones =====
+
+    interface CantidadPorId {
+        Long getId();
+        Long getCantidad();
+    }
+
+    interface CantidadPorClave {
+        String getClave();
+        Long getCantidad();
+    }
+
+    interface RankingProducto {
+        Long getId();
+        String getNombre();
+        Long getCantidad();
+    }
+
+    interface RankingCliente {
+        Long getId();
+        String getNombre();
+        Double getMonto();
+    }
+
+    interface TotalFacturado {
+        Double getMonto();
+        Long getCantidad();
+    }
+
+    interface StockHistoricoVariante {
+        Long getVarianteId();
+        Integer getStockDisponible();
+        Long getEntradasNetas();
+        Long getRegistros();
+        Integer getUltimoStockAcumulado();
+
+        // Misma regla que el cálculo original: sin entradas netas se usa el último acumulado
+        // o, si la variante no tiene registros, su stock actual
+        default int getStockHistorico() {
+            long neto = getEntradasNetas() != null ? getEntradasNetas() : 0;
+            if (neto != 0) {
+                return (int) neto;
+            }
+            if (getRegistros() != null && getRegistros() > 0) {
+                return getUltimoStockAcumulado() != null ? getUltimoStockAcumulado() : 0;
+            }
+            return getStockDisponible() != null ? getStockDisponible() : 0;
+        }
+    }
+}
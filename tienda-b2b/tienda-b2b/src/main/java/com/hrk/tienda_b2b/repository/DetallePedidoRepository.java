@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Long> {
@@ -25,4 +26,11 @@ public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Lo
            "LEFT JOIN FETCH v.producto p " +
            "WHERE d.pedido.id = :pedidoId")
     List<DetallePedido> findByPedidoIdWithRelations(@Param("pedidoId") Long pedidoId);
+
+    // Detalles de varios pedidos a la vez, con variante y producto (ver PedidoDTOAssembler)
+    @Query("SELECT d FROM DetallePedido d " +
+           "JOIN FETCH d.variante v " +
+           "JOIN FETCH v.producto p " +
+           "WHERE d.pedido.id IN :pedidoIds ORDER BY d.id")
+    List<DetallePedido> findConVarianteYProductoByPedidoIdIn(@Param("pedidoIds") Collection<Long> pedidoIds);
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.TipoEventoStock;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * eventos_stock y snapshots_stock por JDBC (ver {@link com.hrk.tienda_b2b.model.EventoStock}). Los eventos se
+ * agregan dentro de la transacción de quien cambia el stock, sin leer nada antes.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventoStockJdbcRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public void registrar(Long varianteId, int delta, TipoEventoStock tipo, Long pedidoId) {
+        registrar(List.of(new Evento(varianteId, delta, tipo, pedidoId)));
+    }
+
+    public void registrar(List<Evento> eventos) {
+        if (eventos.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        MapSqlParameterSource[] parametros = eventos.stream()
+                .filter(e -> e.getDelta() != 0)
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("varianteId", e.getVarianteId())
+                        .addValue("fecha", ahora)
+                        .addValue("delta", e.getDelta())
+                        .addValue("tipo", e.getTipo().name())
+                        .addValue("pedidoId", e.getPedidoId()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbc.batchUpdate("INSERT INTO eventos_stock (variante_id, fecha, delta, tipo, pedido_id) " +
+                "VALUES (:varianteId, :fecha, :delta, :tipo, :pedidoId)", parametros);
+    }
+
+    /**
+     * Primer evento de cada variante con stock: arranca el registro con el stock_disponible actual.
+     */
+    public int sembrarSaldoInicial(LocalDateTime fecha) {
+        return jdbc.update("INSERT INTO eventos_stock (variante_id, fecha, delta, tipo) " +
+                        "SELECT id, :fecha, stock_disponible, 'SALDO_INICIAL' FROM producto_variantes WHERE stock_disponible <> 0",
+                new MapSqlParameterSource("fecha", Timestamp.valueOf(fecha)));
+    }
+
+    public boolean hayEventos() {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM eventos_stock)",
+                new MapSqlParameterSource(), Boolean.class));
+    }
+
+    /**
+     * Último corte con fecha &lt;= fecha (null si todavía no hay ninguno).
+     */
+    public LocalDateTime ultimoCorte(LocalDateTime fecha) {
+        Timestamp corte = jdbc.queryForObject("SELECT MAX(fecha) FROM snapshots_stock WHERE fecha <= :fecha",
+                new MapSqlParameterSource("fecha", Timestamp.valueOf(fecha)), Timestamp.class);
+        return corte != null ? corte.toLocalDateTime() : null;
+    }
+
+    /**
+     * Último corte generado (null si todavía no hay ninguno).
+     */
+    public LocalDateTime ultimoCorte() {
+        Timestamp corte = jdbc.queryForObject("SELECT MAX(fecha) FROM snapshots_stock", new MapSqlParameterSource(), Timestamp.class);
+        return corte != null ? corte.toLocalDateTime() : null;
+    }
+
+    public boolean hayEventosConCorte() {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM eventos_stock WHERE corte IS NOT NULL)",
+                new MapSqlParameterSource(), Boolean.class));
+    }
+
+    /**
+     * Registros de antes de la columna corte: marca cada evento sin corte con el primer corte posterior a su fecha,
+     * que es el que lo sumó. Sólo vale mientras ningún evento tenga corte (después, un evento sin corte y con fecha
+     * anterior a un corte es uno que llegó tarde y todavía no sumó ninguno).
+     */
+    public int marcarEventosDeCortesExistentes() {
+        return jdbc.update("UPDATE eventos_stock e SET e.corte = " +
+                        "(SELECT MIN(s.fecha) FROM snapshots_stock s WHERE s.fecha > e.fecha) " +
+                        "WHERE e.corte IS NULL AND e.fecha < (SELECT MAX(s.fecha) FROM snapshots_stock s)",
+                new MapSqlParameterSource());
+    }
+
+    public boolean existeCorte(LocalDateTime corte) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM snapshots_stock WHERE fecha = :corte)",
+                new MapSqlParameterSource("corte", Timestamp.valueOf(corte)), Boolean.class));
+    }
+
+    /**
+     * Stock por variante a la fecha: el snapshot del corte más los eventos con fecha &lt;= hasta que ese corte no sumó
+     * (incluidos los que llegaron tarde, con fecha anterior al corte). Con varianteId null trae todas las variantes;
+     * corte null significa sin snapshot (se suman los eventos desde el principio). Las variantes sin stock no vienen.
+     */
+    public Map<Long, Integer> stockDesdeCorte(LocalDateTime corte, LocalDateTime hasta, Long varianteId) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource()
+                .addValue("corte", corte != null ? Timestamp.valueOf(corte) : null)
+                .addValue("hasta", Timestamp.valueOf(hasta))
+                .addValue("varianteId", varianteId);
+        String filtroVariante = varianteId != null ? " AND variante_id = :varianteId" : "";
+        String sql = "SELECT variante_id, SUM(cantidad) AS stock FROM (" +
+                (corte != null
+                        ? "SELECT variante_id, stock AS cantidad FROM snapshots_stock WHERE fecha = :corte" + filtroVariante + " UNION ALL "
+                        : "") +
+                "SELECT variante_id, delta AS cantidad FROM eventos_stock WHERE fecha <= :hasta" +
+                (corte != null ? " AND (corte IS NULL OR corte > :corte)" : "") + filtroVariante +
+                ") movimientos GROUP BY variante_id";
+        Map<Long, Integer> stock = new HashMap<>();
+        jdbc.query(sql, parametros, rs -> {
+            if (rs.getInt("stock") != 0) {
+                stock.put(rs.getLong("variante_id"), rs.getInt("stock"));
+            }
+        });
+        return stock;
+    }
+
+    /**
+     * Nuevo corte: marca con él los eventos con fecha anterior que ningún corte sumó (los del período y los que
+     * confirmaron tarde en períodos anteriores) y guarda el snapshot anterior (o nada) más esos eventos, una fila por
+     * variante con stock distinto de cero. Tiene que ser posterior a todos los cortes existentes.
+     */
+    public int generarCorte(LocalDateTime corteAnterior, LocalDateTime corte) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource()
+                .addValue("anterior", corteAnterior != null ? Timestamp.valueOf(corteAnterior) : null)
+                .addValue("corte", Timestamp.valueOf(corte));
+        jdbc.update("UPDATE eventos_stock SET corte = :corte WHERE corte IS NULL AND fecha < :corte", parametros);
+        return jdbc.update("INSERT INTO snapshots_stock (fecha, variante_id, stock) " +
+                "SELECT :corte, variante_id, SUM(cantidad) FROM (" +
+                (corteAnterior != null
+                        ? "SELECT variante_id, stock AS cantidad FROM snapshots_stock WHERE fecha = :anterior UNION ALL "
+                        : "") +
+                "SELECT variante_id, delta AS cantidad FROM eventos_stock WHERE corte = :corte" +
+                ") movimientos GROUP BY variante_id HAVING SUM(cantidad) <> 0", parametros);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Evento {
+        private final Long varianteId;
+        private final int delta;
+        private final TipoEventoStock tipo;
+        private final Long pedidoId;
+    }
+}
@@ -0,0 +1,12 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.dto.RegistroStockDTO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Fragmento de MovimientoStockRepository: historial de una variante que incluye lo archivado de movimientos_stock
+public interface MovimientoStockHistorialRepository {
+
+    List<RegistroStockDTO> buscarHistorial(Long varianteId, LocalDateTime desde, LocalDateTime hasta);
+}
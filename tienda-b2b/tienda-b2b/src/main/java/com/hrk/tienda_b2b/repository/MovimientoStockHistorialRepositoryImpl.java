@@ -0,0 +1,18 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.dto.RegistroStockDTO;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class MovimientoStockHistorialRepositoryImpl implements MovimientoStockHistorialRepository {
+
+    private final ArchivoHistorialRepository archivo;
+
+    @Override
+    public List<RegistroStockDTO> buscarHistorial(Long varianteId, LocalDateTime desde, LocalDateTime hasta) {
+        return archivo.historial(ArchivoHistorialRepository.Tabla.MOVIMIENTOS_STOCK, varianteId, desde, hasta);
+    }
+}
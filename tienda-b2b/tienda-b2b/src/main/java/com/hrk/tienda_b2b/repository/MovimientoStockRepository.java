@@ -5,4 +5,4 @@ import com.hrk.tienda_b2b.model.MovimientoStock;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
-public interface MovimientoStockRepository extends JpaRepository<MovimientoStock, Long> { }
\ No newline at end of file
+public interface MovimientoStockRepository extends JpaRepository<MovimientoStock, Long>, MovimientoStockHistorialRepository { }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.dto.UsuarioDTO;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.MetodoPago;
+import com.hrk.tienda_b2b.model.TipoDocumento;
+import com.hrk.tienda_b2b.model.converter.MetodoPagoConverter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listado de pedidos para administración armado directo en DTOs (sin entidades ni lazy loading):
+ * una consulta para la página de pedidos (con el usuario) y otra para todos sus renglones.
+ *
+ * Orden: fecha descendente y, a igual fecha, id descendente. El cursor es la (fecha, id) del último pedido de la
+ * página anterior, así cada página es un rango del índice (fecha, id) y no hace falta OFFSET. Los pedidos viejos sin
+ * fecha van al final (MySQL ordena los NULL últimos en DESC), por id descendente; un cursor sin fecha (cursorFecha
+ * null, cursorId no) sigue recorriendo ese tramo.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PedidoListadoJdbcRepository {
+
+    private static final MetodoPagoConverter METODO_PAGO = new MetodoPagoConverter();
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public List<PedidoResponseDTO> buscarPagina(EstadoPedido estado, TipoDocumento tipo, Long clienteId,
+                                                LocalDateTime desde, LocalDateTime hasta,
+                                                LocalDateTime cursorFecha, Long cursorId, int limite) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT p.id, p.cliente_id, p.fecha, p.estado, p.tipo, p.tipo_aprobacion_devolucion, p.total, p.metodo_pago, " +
+                "u.id AS usuario_id, u.nombre_razon_social, u.email, u.cuit " +
+                "FROM pedidos p LEFT JOIN usuarios u ON u.id = p.usuario_id WHERE 1 = 1");
+        MapSqlParameterSource parametros = new MapSqlParameterSource();
+
+        if (estado != null) {
+            sql.append(" AND p.estado = :estado");
+            parametros.addValue("estado", estado.name());
+        }
+        if (tipo != null) {
+            // Los pedidos viejos no tienen tipo: cuentan como VENTA
+            sql.append(tipo == TipoDocumento.VENTA ? " AND (p.tipo = :tipo OR p.tipo IS NULL)" : " AND p.tipo = :tipo");
+            parametros.addValue("tipo", tipo.name());
+        }
+        if (clienteId != null) {
+            // Los pedidos viejos no tienen usuario, sólo cliente_id
+            sql.append(" AND (p.usuario_id = :clienteId OR (p.usuario_id IS NULL AND p.cliente_id = :clienteId))");
+            parametros.addValue("clienteId", clienteId);
+        }
+        if (desde != null) {
+            sql.append(" AND p.fecha >= :desde");
+            parametros.addValue("desde", Timestamp.valueOf(desde));
+        }
+        if (hasta != null) {
+            sql.append(" AND p.fecha < :hasta");
+            parametros.addValue("hasta", Timestamp.valueOf(hasta));
+        }
+        if (cursorId != null) {
+            if (cursorFecha != null) {
+                sql.append(" AND (p.fecha < :cursorFecha OR (p.fecha = :cursorFecha AND p.id < :cursorId) OR p.fecha IS NULL)");
+                parametros.addValue("cursorFecha", Timestamp.valueOf(cursorFecha));
+            } else {
+                sql.append(" AND p.fecha IS NULL AND p.id < :cursorId");
+            }
+            parametros.addValue("cursorId", cursorId);
+        }
+        sql.append(" ORDER BY p.fecha DESC, p.id DESC LIMIT :limite");
+        parametros.addValue("limite", limite);
+
+        return jdbc.query(sql.toString(), parametros, (rs, fila) -> pedido(rs));
+    }
+
+    /**
+     * Renglones (con variante y producto) de todos los pedidos indicados, agrupados por pedido.
+     */
+    public Map<Long, List<PedidoResponseDTO.PedidoDetalleResponseDTO>> buscarDetalles(Collection<Long> pedidoIds) {
+        Map<Long, List<PedidoResponseDTO.PedidoDetalleResponseDTO>> porPedido = new LinkedHashMap<>();
+        if (pedidoIds.isEmpty()) {
+            return porPedido;
+        }
+        jdbc.query("SELECT d.pedido_id, d.id, d.cantidad, d.precio_unitario, " +
+                        "v.id AS variante_id, v.sku, v.color, v.talle, v.precio, v.stock_disponible, " +
+                        "pr.id AS producto_id, pr.nombre " +
+                        "FROM pedido_detalles d " +
+                        "JOIN producto_variantes v ON v.id = d.variante_id " +
+                        "JOIN productos pr ON pr.id = v.producto_id " +
+                        "WHERE d.pedido_id IN (:ids) ORDER BY d.pedido_id, d.id",
+                new MapSqlParameterSource("ids", pedidoIds),
+                rs -> {
+                    porPedido.computeIfAbsent(rs.getLong("pedido_id"), id -> new ArrayList<>()).add(detalle(rs));
+                });
+        return porPedido;
+    }
+
+    private static PedidoResponseDTO pedido(ResultSet rs) throws SQLException {
+        Timestamp fecha = rs.getTimestamp("fecha");
+        String tipo = rs.getString("tipo");
+        MetodoPago metodoPago = METODO_PAGO.convertToEntityAttribute(rs.getString("metodo_pago"));
+        long usuarioId = rs.getLong("usuario_id");
+        UsuarioDTO usuario = rs.wasNull() ? null : UsuarioDTO.builder()
+                .id(usuarioId)
+                .nombreRazonSocial(rs.getString("nombre_razon_social"))
+                .email(rs.getString("email"))
+                .cuit(rs.getString("cuit"))
+                .build();
+        return PedidoResponseDTO.builder()
+                .id(rs.getLong("id"))
+                .clienteId(rs.getObject("cliente_id", Long.class))
+                .fecha(fecha != null ? fecha.toLocalDateTime().toString() : null)
+                .estado(rs.getString("estado"))
+                .tipo(tipo != null ? tipo : "PEDIDO")
+                .tipoAprobacionDevolucion(rs.getString("tipo_aprobacion_devolucion"))
+                .total(rs.getObject("total", Double.class))
+                .metodoPago(metodoPago != null ? metodoPago.toString() : null)
+                .usuario(usuario)
+                .build();
+    }
+
+    private static PedidoResponseDTO.PedidoDetalleResponseDTO detalle(ResultSet rs) throws SQLException {
+        return PedidoResponseDTO.PedidoDetalleResponseDTO.builder()
+                .id(rs.getLong("id"))
+                .cantidad(rs.getInt("cantidad"))
+                .precioUnitario(rs.getDouble("precio_unitario"))
+                .variante(PedidoResponseDTO.VarianteResponseDTO.builder()
+                        .id(rs.getLong("variante_id"))
+                        .sku(rs.getString("sku"))
+                        .color(rs.getString("color"))
+                        .talle(rs.getString("talle"))
+                        .precio(rs.getDouble("precio"))
+                        .stockDisponible(rs.getInt("stock_disponible"))
+                        .producto(PedidoResponseDTO.ProductoResponseDTO.builder()
+                                .id(rs.getLong("producto_id"))
+                                .nombre(rs.getString("nombre"))
+                                .build())
+                        .build())
+                .build();
+    }
+}
@@ -6,8 +6,11 @@ import com.hrk.tienda_b2b.model.Producto;
 
 import com.hrk.tienda_b2b.model.TipoDocumento;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +20,14 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     List<Pedido> findAllByClienteIdAndTipoOrderByFechaDesc(Long clienteId, TipoDocumento tipo);
 
     List<Pedido> findByClienteId(Long clienteId);
+
+    // Pedidos con su usuario en una sola consulta (ver PedidoDTOAssembler)
+    @Query("SELECT p FROM Pedido p LEFT JOIN FETCH p.usuario WHERE p.id IN :ids")
+    List<Pedido> findConUsuarioByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id FROM Pedido p WHERE p.clienteId = :clienteId ORDER BY p.id")
+    List<Long> findIdsByClienteId(@Param("clienteId") Long clienteId);
+
+    @Query("SELECT p.id FROM Pedido p ORDER BY p.id")
+    List<Long> findAllIds();
 }
\ No newline at end of file
@@ -3,9 +3,13 @@ package com.hrk.tienda_b2b.repository;
 import com.hrk.tienda_b2b.model.Categoria;
 import com.hrk.tienda_b2b.model.Producto;
 import com.hrk.tienda_b2b.model.TipoProducto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,4 +23,45 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     List<Producto> findByCategoriaAndTipo(Categoria categoria, TipoProducto tipo);
     
     List<Producto> findByOcultoFalse();
+
+    // Todos los productos con sus variantes en una sola consulta (catálogo en memoria)
+    @Query("SELECT DISTINCT p FROM Producto p LEFT JOIN FETCH p.variantes ORDER BY p.id")
+    List<Producto> findAllConVariantes();
+
+    /**
+     * Ids de una página del listado (keyset sobre id: id > despuesDeId, se pide con PageRequest.of(0, n)).
+     * Los filtros en null no aplican; con parámetros enlazados como literales MySQL descarta esas ramas
+     * y usa idx_productos_categoria / idx_productos_tipo y los índices de producto_variantes.
+     * Los filtros de variante se cumplen si una misma variante cumple todos a la vez.
+     */
+    @Query("SELECT p.id FROM Producto p " +
+            "WHERE p.id > :despuesDeId " +
+            "AND (:incluirOcultos = true OR p.oculto = false) " +
+            "AND (:temporadaId IS NULL OR EXISTS (SELECT 1 FROM Temporada t JOIN t.productos tp " +
+            "WHERE t.id = :temporadaId AND tp.id = p.id)) " +
+            "AND (:categoria IS NULL OR p.categoria = :categoria) " +
+            "AND (:tipo IS NULL OR p.tipo = :tipo) " +
+            "AND (:filtrarVariantes = false OR EXISTS (SELECT 1 FROM ProductoVariante v WHERE v.producto.id = p.id " +
+            "AND (:color IS NULL OR v.color = :color) " +
+            "AND (:talle IS NULL OR v.talle = :talle) " +
+            "AND (:precioMin IS NULL OR v.precio >= :precioMin) " +
+            "AND (:precioMax IS NULL OR v.precio <= :precioMax) " +
+            "AND (:soloConStock = false OR v.stockDisponible > 0))) " +
+            "ORDER BY p.id")
+    List<Long> buscarIdsPagina(@Param("despuesDeId") Long despuesDeId,
+                               @Param("incluirOcultos") boolean incluirOcultos,
+                               @Param("temporadaId") Long temporadaId,
+                               @Param("categoria") Categoria categoria,
+                               @Param("tipo") TipoProducto tipo,
+                               @Param("filtrarVariantes") boolean filtrarVariantes,
+                               @Param("color") String color,
+                               @Param("talle") String talle,
+                               @Param("precioMin") Double precioMin,
+                               @Param("precioMax") Double precioMax,
+                               @Param("soloConStock") boolean soloConStock,
+                               Pageable pageable);
+
+    // Productos de una página con todas sus variantes, en una sola consulta
+    @Query("SELECT DISTINCT p FROM Producto p LEFT JOIN FETCH p.variantes WHERE p.id IN :ids ORDER BY p.id")
+    List<Producto> findConVariantesByIdIn(@Param("ids") Collection<Long> ids);
 }
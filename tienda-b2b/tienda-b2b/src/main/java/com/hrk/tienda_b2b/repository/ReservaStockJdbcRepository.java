@@ -0,0 +1,91 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.OrigenReserva;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Persistencia en diferido de las reservas de stock (tabla reservas_stock, ver {@link com.hrk.tienda_b2b.model.ReservaStock}).
+ * ReservaStockService junta los cambios en memoria y los baja acá en batch cada pocos segundos.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReservaStockJdbcRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public void guardar(List<Fila> filas) {
+        if (filas.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        MapSqlParameterSource[] parametros = filas.stream()
+                .map(f -> clave(f.getOrigen(), f.getOrigenId(), f.getVarianteId())
+                        .addValue("cantidad", f.getCantidad())
+                        .addValue("vence", Timestamp.valueOf(f.getVence()))
+                        .addValue("actualizada", ahora))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbc.batchUpdate("INSERT INTO reservas_stock (origen, origen_id, variante_id, cantidad, vence, actualizada) " +
+                "VALUES (:origen, :origenId, :varianteId, :cantidad, :vence, :actualizada) " +
+                "ON DUPLICATE KEY UPDATE cantidad = VALUES(cantidad), vence = VALUES(vence), actualizada = VALUES(actualizada)",
+                parametros);
+    }
+
+    public void borrar(List<Fila> filas) {
+        if (filas.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource[] parametros = filas.stream()
+                .map(f -> clave(f.getOrigen(), f.getOrigenId(), f.getVarianteId()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbc.batchUpdate("DELETE FROM reservas_stock " +
+                "WHERE origen = :origen AND origen_id = :origenId AND variante_id = :varianteId", parametros);
+    }
+
+    public int borrarVencidas(LocalDateTime ahora) {
+        return jdbc.update("DELETE FROM reservas_stock WHERE vence <= :ahora",
+                new MapSqlParameterSource("ahora", Timestamp.valueOf(ahora)));
+    }
+
+    /**
+     * Reservas todavía vigentes. Las de pedidos que ya salieron de BORRADOR/DOCUMENTADO se descartan
+     * (el pedido se confirmó o canceló antes de que se persistiera la liberación).
+     */
+    public List<Fila> vigentes(LocalDateTime ahora) {
+        return jdbc.query("SELECT r.origen, r.origen_id, r.variante_id, r.cantidad, r.vence FROM reservas_stock r " +
+                        "WHERE r.vence > :ahora AND (r.origen <> 'PEDIDO' OR EXISTS (" +
+                        "SELECT 1 FROM pedidos p WHERE p.id = r.origen_id AND p.estado IN ('BORRADOR', 'DOCUMENTADO')))",
+                new MapSqlParameterSource("ahora", Timestamp.valueOf(ahora)),
+                (rs, fila) -> new Fila(
+                        OrigenReserva.valueOf(rs.getString("origen")),
+                        rs.getLong("origen_id"),
+                        rs.getLong("variante_id"),
+                        rs.getInt("cantidad"),
+                        rs.getTimestamp("vence").toLocalDateTime()));
+    }
+
+    private static MapSqlParameterSource clave(OrigenReserva origen, Long origenId, Long varianteId) {
+        return new MapSqlParameterSource()
+                .addValue("origen", origen.name())
+                .addValue("origenId", origenId)
+                .addValue("varianteId", varianteId);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Fila {
+        private final OrigenReserva origen;
+        private final Long origenId;
+        private final Long varianteId;
+        private final int cantidad;
+        private final LocalDateTime vence;
+    }
+}
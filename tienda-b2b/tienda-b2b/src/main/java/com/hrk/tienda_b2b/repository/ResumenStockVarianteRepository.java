@@ -0,0 +1,32 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.ResumenStockVariante;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ResumenStockVarianteRepository extends JpaRepository<ResumenStockVariante, Long> {
+
+    // Backfill: recalcula todos los resúmenes desde stock_historico
+    @Modifying
+    @Query(value = "INSERT INTO resumen_stock_variantes " +
+            "(variante_id, total_entradas, total_ajustes_suma, total_ajustes_resta, cantidad_registros, ultimo_stock_acumulado, ultima_fecha) " +
+            "SELECT h.variante_id, " +
+            "COALESCE(SUM(CASE WHEN h.tipo = 'ENTRADA_INICIAL' THEN h.cantidad ELSE 0 END), 0), " +
+            "COALESCE(SUM(CASE WHEN h.tipo = 'AJUSTE_SUMA' THEN h.cantidad ELSE 0 END), 0), " +
+            "COALESCE(SUM(CASE WHEN h.tipo = 'AJUSTE_RESTA' THEN ABS(h.cantidad) ELSE 0 END), 0), " +
+            "COUNT(*), " +
+            "(SELECT h2.stock_acumulado FROM stock_historico h2 WHERE h2.variante_id = h.variante_id " +
+            " ORDER BY h2.fecha DESC, h2.id DESC LIMIT 1), " +
+            "MAX(h.fecha) " +
+            "FROM stock_historico h " +
+            "GROUP BY h.variante_id", nativeQuery = true)
+    int reconstruirDesdeHistorico();
+
+    @Modifying
+    @Query(value = "DELETE FROM resumen_stock_variantes", nativeQuery = true)
+    void vaciar();
+}
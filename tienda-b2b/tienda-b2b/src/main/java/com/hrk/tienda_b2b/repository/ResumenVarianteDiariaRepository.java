@@ -0,0 +1,44 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.ResumenVarianteDiaria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ResumenVarianteDiariaRepository extends JpaRepository<ResumenVarianteDiaria, Long> {
+
+    List<ResumenVarianteDiaria> findByDiaBetween(LocalDate desde, LocalDate hasta);
+
+    List<ResumenVarianteDiaria> findByProductoIdAndDiaBetween(Long productoId, LocalDate desde, LocalDate hasta);
+
+    @Modifying
+    @Query(value = "INSERT INTO resumen_variantes_diarias (dia, tipo, estado, variante_id, producto_id, unidades) " +
+            "VALUES (:dia, :tipo, :estado, :varianteId, :productoId, :unidades) " +
+            "ON DUPLICATE KEY UPDATE unidades = unidades + VALUES(unidades)", nativeQuery = true)
+    void acumular(@Param("dia") LocalDate dia,
+                  @Param("tipo") String tipo,
+                  @Param("estado") String estado,
+                  @Param("varianteId") Long varianteId,
+                  @Param("productoId") Long productoId,
+                  @Param("unidades") long unidades);
+
+    @Modifying
+    @Query(value = "INSERT INTO resumen_variantes_diarias (dia, tipo, estado, variante_id, producto_id, unidades) " +
+            "SELECT DATE(p.fecha), COALESCE(p.tipo, 'VENTA'), p.estado, d.variante_id, v.producto_id, SUM(d.cantidad) " +
+            "FROM pedido_detalles d " +
+            "JOIN pedidos p ON p.id = d.pedido_id " +
+            "JOIN producto_variantes v ON v.id = d.variante_id " +
+            "WHERE p.fecha IS NOT NULL AND (p.tipo = 'DEVOLUCION' OR p.estado IN ('CONFIRMADO', 'ENTREGADO', 'CANCELADO')) " +
+            "GROUP BY 1, 2, 3, 4, 5", nativeQuery = true)
+    int reconstruirDesdePedidos();
+
+    @Modifying
+    @Query(value = "DELETE FROM resumen_variantes_diarias", nativeQuery = true)
+    void vaciar();
+}
@@ -0,0 +1,61 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.ResumenVentaDiaria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ResumenVentaDiariaRepository extends JpaRepository<ResumenVentaDiaria, Long> {
+
+    List<ResumenVentaDiaria> findByDiaBetween(LocalDate desde, LocalDate hasta);
+
+    // Suma (o resta, con valores negativos) sobre el bucket del día; crea la fila si no existe
+    @Modifying
+    @Query(value = "INSERT INTO resumen_ventas_diarias " +
+            "(dia, tipo, estado, tipo_aprobacion, metodo_pago, cliente_id, cantidad_pedidos, monto_total) " +
+            "VALUES (:dia, :tipo, :estado, :tipoAprobacion, :metodoPago, :clienteId, :cantidad, :monto) " +
+            "ON DUPLICATE KEY UPDATE cantidad_pedidos = cantidad_pedidos + VALUES(cantidad_pedidos), " +
+            "monto_total = monto_total + VALUES(monto_total)", nativeQuery = true)
+    void acumular(@Param("dia") LocalDate dia,
+                  @Param("tipo") String tipo,
+                  @Param("estado") String estado,
+                  @Param("tipoAprobacion") String tipoAprobacion,
+                  @Param("metodoPago") String metodoPago,
+                  @Param("clienteId") Long clienteId,
+                  @Param("cantidad") long cantidad,
+                  @Param("monto") double monto);
+
+    // metodo_pago como lo lee MetodoPagoConverter (MetodoPago.fromString): sin espacios, sin distinguir mayúsculas,
+    // con los nombres viejos de Mercado Pago; vacío o desconocido es NINGUNO, igual que un pedido sin método
+    String METODO_PAGO_NORMALIZADO = "CASE UPPER(TRIM(p.metodo_pago)) " +
+            "WHEN 'EFECTIVO' THEN 'EFECTIVO' " +
+            "WHEN 'TRANSFERENCIA' THEN 'TRANSFERENCIA' " +
+            "WHEN 'CHEQUE' THEN 'CHEQUE' " +
+            "WHEN 'MERCADOPAGO' THEN 'MERCADOPAGO' " +
+            "WHEN 'MERCADO_PAGO' THEN 'MERCADOPAGO' " +
+            "WHEN 'MERCADO PAGO' THEN 'MERCADOPAGO' " +
+            "ELSE 'NINGUNO' END";
+
+    // Recalcula todos los buckets desde pedidos (backfill)
+    @Modifying
+    @Query(value = "INSERT INTO resumen_ventas_diarias " +
+            "(dia, tipo, estado, tipo_aprobacion, metodo_pago, cliente_id, cantidad_pedidos, monto_total) " +
+            "SELECT DATE(p.fecha), COALESCE(p.tipo, 'VENTA'), p.estado, " +
+            "CASE WHEN p.tipo = 'DEVOLUCION' THEN COALESCE(p.tipo_aprobacion_devolucion, 'PENDIENTE') ELSE 'NINGUNO' END, " +
+            METODO_PAGO_NORMALIZADO + ", COALESCE(p.usuario_id, p.cliente_id, 0), " +
+            "COUNT(*), COALESCE(SUM(p.total), 0) " +
+            "FROM pedidos p " +
+            "WHERE p.fecha IS NOT NULL AND (p.tipo = 'DEVOLUCION' OR p.estado IN ('CONFIRMADO', 'ENTREGADO', 'CANCELADO')) " +
+            "GROUP BY 1, 2, 3, 4, 5, 6", nativeQuery = true)
+    int reconstruirDesdePedidos();
+
+    @Modifying
+    @Query(value = "DELETE FROM resumen_ventas_diarias", nativeQuery = true)
+    void vaciar();
+}
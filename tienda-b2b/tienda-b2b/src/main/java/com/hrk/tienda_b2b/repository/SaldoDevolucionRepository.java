@@ -0,0 +1,52 @@
+package com.hrk.tienda_b2b.repository;
+
+import com.hrk.tienda_b2b.model.SaldoDevolucion;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SaldoDevolucionRepository extends JpaRepository<SaldoDevolucion, Long> {
+
+    List<SaldoDevolucion> findByClienteIdAndVarianteIdIn(Long clienteId, Collection<Long> varianteIds);
+
+    // SELECT ... FOR UPDATE: dos devoluciones simultáneas de la misma variante no pueden pasar la validación a la vez
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SaldoDevolucion s WHERE s.clienteId = :clienteId AND s.varianteId = :varianteId")
+    Optional<SaldoDevolucion> bloquear(@Param("clienteId") Long clienteId, @Param("varianteId") Long varianteId);
+
+    // Suma unidades al saldo; crea la fila si no existe
+    @Modifying
+    @Query(value = "INSERT INTO saldos_devolucion (cliente_id, variante_id, entregado, devuelto) " +
+            "VALUES (:clienteId, :varianteId, :entregado, :devuelto) " +
+            "ON DUPLICATE KEY UPDATE entregado = entregado + VALUES(entregado), devuelto = devuelto + VALUES(devuelto)",
+            nativeQuery = true)
+    void acumular(@Param("clienteId") Long clienteId,
+                  @Param("varianteId") Long varianteId,
+                  @Param("entregado") int entregado,
+                  @Param("devuelto") int devuelto);
+
+    // Backfill: recalcula todos los saldos desde pedidos y devoluciones
+    @Modifying
+    @Query(value = "INSERT INTO saldos_devolucion (cliente_id, variante_id, entregado, devuelto) " +
+            "SELECT p.cliente_id, d.variante_id, " +
+            "COALESCE(SUM(CASE WHEN p.tipo = 'DEVOLUCION' THEN 0 ELSE d.cantidad END), 0), " +
+            "COALESCE(SUM(CASE WHEN p.tipo = 'DEVOLUCION' THEN d.cantidad ELSE 0 END), 0) " +
+            "FROM pedido_detalles d JOIN pedidos p ON p.id = d.pedido_id " +
+            "WHERE p.cliente_id IS NOT NULL " +
+            "AND (p.tipo = 'DEVOLUCION' OR (p.estado = 'ENTREGADO' AND (p.tipo IS NULL OR p.tipo = 'VENTA'))) " +
+            "GROUP BY p.cliente_id, d.variante_id", nativeQuery = true)
+    int reconstruirDesdePedidos();
+
+    @Modifying
+    @Query(value = "DELETE FROM saldos_devolucion", nativeQuery = true)
+    void vaciar();
+}
@@ -1,18 +1,11 @@
 package com.hrk.tienda_b2b.repository;
 
 import com.hrk.tienda_b2b.model.StockHistorico;
-import com.hrk.tienda_b2b.model.ProductoVariante;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-
+// El historial de una variante (con lo archivado) sale de buscarHistorial; el último stock acumulado y si tiene
+// historial, de ResumenStockService
 @Repository
-public interface StockHistoricoRepository extends JpaRepository<StockHistorico, Long> {
-    
-    List<StockHistorico> findByVarianteOrderByFechaAsc(ProductoVariante variante);
-    
-    // Obtener el stock acumulado final de una variante (el último registro)
-    StockHistorico findFirstByVarianteOrderByFechaDesc(ProductoVariante variante);
+public interface StockHistoricoRepository extends JpaRepository<StockHistorico, Long>, StockHistoricoHistorialRepository {
 }
-
@@ -0,0 +1,105 @@
+package com.hrk.tienda_b2b.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operaciones de stock sobre varias variantes a la vez, por JDBC (sin pasar por las entidades).
+ *
+ * Se usan dentro de la transacción de quien llama. {@link #bloquear(Collection)} y {@link #bloquearPorSku(Collection)}
+ * toman los locks de varias variantes en orden de id (siempre el mismo orden, así dos transacciones con variantes
+ * en común no se bloquean en cruz; los usan la conciliación, el conteo de inventario y CoordinadorDescuentosStock),
+ * {@link #fijar(Map)} escribe el stock de todas en un solo batch (conteo de inventario) y {@link #ajustar(Map)} les
+ * suma una diferencia a cada una, también en un batch (descuentos y reposiciones de los pedidos).
+ *
+ * Ojo: no actualiza las ProductoVariante que ya estén cargadas en el contexto de persistencia.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockVarianteJdbcRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    /**
+     * SELECT ... FOR UPDATE de las variantes, ordenado por id. Devuelve el stock actual leído de la base.
+     */
+    public List<StockVariante> bloquear(Collection<Long> varianteIds) {
+        if (varianteIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return jdbc.query("SELECT id, sku, stock_disponible FROM producto_variantes " +
+                        "WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+                new MapSqlParameterSource("ids", varianteIds),
+                (rs, fila) -> new StockVariante(rs.getLong("id"), rs.getString("sku"), rs.getInt("stock_disponible")));
+    }
+
+    /**
+     * Igual que {@link #bloquear(Collection)} pero buscando por SKU (el conteo de inventario). Los SKU que no
+     * existen no vienen.
+     */
+    public List<StockVariante> bloquearPorSku(Collection<String> skus) {
+        if (skus.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return jdbc.query("SELECT id, sku, stock_disponible FROM producto_variantes " +
+                        "WHERE sku IN (:skus) ORDER BY id FOR UPDATE",
+                new MapSqlParameterSource("skus", skus),
+                (rs, fila) -> new StockVariante(rs.getLong("id"), rs.getString("sku"), rs.getInt("stock_disponible")));
+    }
+
+    /**
+     * Stock actual leído de la base, sin locks (para sembrar contadores en memoria).
+     */
+    public List<StockVariante> leer(Collection<Long> varianteIds) {
+        if (varianteIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return jdbc.query("SELECT id, sku, stock_disponible FROM producto_variantes WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", varianteIds),
+                (rs, fila) -> new StockVariante(rs.getLong("id"), rs.getString("sku"), rs.getInt("stock_disponible")));
+    }
+
+    /**
+     * Suma a cada variante su diferencia (negativa para descontar) en un solo batch, sin condición: quien llama ya
+     * validó con las filas bloqueadas.
+     */
+    public void ajustar(Map<Long, Integer> deltaPorVariante) {
+        MapSqlParameterSource[] parametros = deltaPorVariante.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("id", e.getKey())
+                        .addValue("delta", e.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbc.batchUpdate("UPDATE producto_variantes " +
+                "SET stock_disponible = stock_disponible + :delta, version = COALESCE(version, 0) + 1 WHERE id = :id", parametros);
+    }
+
+    /**
+     * Deja el stock de cada variante en el valor indicado, en un solo batch (con las filas ya bloqueadas).
+     */
+    public void fijar(Map<Long, Integer> stockPorVariante) {
+        MapSqlParameterSource[] parametros = stockPorVariante.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("id", e.getKey())
+                        .addValue("stock", e.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbc.batchUpdate("UPDATE producto_variantes " +
+                "SET stock_disponible = :stock, version = COALESCE(version, 0) + 1 WHERE id = :id", parametros);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class StockVariante {
+        private final Long id;
+        private final String sku;
+        private final int stockDisponible;
+    }
+}
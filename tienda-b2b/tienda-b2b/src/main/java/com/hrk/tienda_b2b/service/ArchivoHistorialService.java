@@ -0,0 +1,93 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.repository.ArchivoHistorialRepository;
+import com.hrk.tienda_b2b.repository.ArchivoHistorialRepository.Tabla;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Archivado mensual de movimientos_stock y stock_historico: en las tablas quedan sólo los últimos
+ * app.archivo.meses-en-linea meses (el mes en curso cuenta); lo anterior pasa a archivos comprimidos
+ * (ver ArchivoHistorialRepository). El historial por variante sigue viendo todo a través de buscarHistorial.
+ */
+@Service
+public class ArchivoHistorialService {
+
+    private final ArchivoHistorialRepository archivo;
+    private final int mesesEnLinea;
+
+    public ArchivoHistorialService(ArchivoHistorialRepository archivo,
+                                   @Value("${app.archivo.meses-en-linea:12}") int mesesEnLinea) {
+        if (mesesEnLinea <= 0) {
+            throw new IllegalArgumentException("app.archivo.meses-en-linea debe ser mayor a 0");
+        }
+        this.archivo = archivo;
+        this.mesesEnLinea = mesesEnLinea;
+    }
+
+    @Scheduled(cron = "${app.archivo.cron:0 30 3 1 * *}")
+    public void archivarProgramado() {
+        try {
+            archivar();
+        } catch (RuntimeException e) {
+            // El mes que falló queda en la tabla y se vuelve a intentar en la próxima corrida
+            System.err.println("🔴 [ARCHIVO HISTORIAL] Error al archivar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Archiva todos los meses vencidos de las dos tablas, del más viejo al más nuevo. Devuelve las filas
+     * archivadas por tabla y mes.
+     */
+    public synchronized Map<String, Object> archivar() {
+        YearMonth limite = YearMonth.now().minusMonths(mesesEnLinea - 1L);
+        System.out.println("🔵 [ARCHIVO HISTORIAL] Archivando meses anteriores a " + limite + "...");
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("limite", limite.toString());
+        for (Tabla tabla : Tabla.values()) {
+            Map<String, Integer> filasPorMes = new LinkedHashMap<>();
+            for (YearMonth mes : archivo.mesesConFilas(tabla, limite)) {
+                try {
+                    int filas = archivo.archivarMes(tabla, mes);
+                    filasPorMes.put(mes.toString(), filas);
+                    System.out.println("✅ [ARCHIVO HISTORIAL] " + tabla.getNombre() + " " + mes + ": " + filas + " filas archivadas");
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No se pudo archivar " + tabla.getNombre() + " " + mes, e);
+                }
+            }
+            resultado.put(tabla.getNombre(), filasPorMes);
+        }
+        return resultado;
+    }
+
+    /**
+     * Corre tarea sin que se archive nada mientras tanto (filas que pasan de la tabla al archivo se verían dos
+     * veces o ninguna en quien lee las dos cosas, como la conciliación de stock).
+     */
+    public synchronized <T> T sinArchivar(Supplier<T> tarea) {
+        return tarea.get();
+    }
+
+    // Termina o descarta un archivado que se cortó en el medio (antes de que corra uno nuevo)
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void inicializar() {
+        try {
+            List<String> acciones = archivo.recuperar();
+            acciones.forEach(accion -> System.out.println("⚠️ [ARCHIVO HISTORIAL] Archivado incompleto " + accion));
+        } catch (IOException e) {
+            System.err.println("🔴 [ARCHIVO HISTORIAL] No se pudo revisar el archivo: " + e.getMessage());
+        }
+    }
+}
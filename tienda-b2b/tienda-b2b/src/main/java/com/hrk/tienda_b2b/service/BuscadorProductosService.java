@@ -0,0 +1,316 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.BusquedaProductosDTO;
+import com.hrk.tienda_b2b.dto.ProductoResponseDTO;
+import com.hrk.tienda_b2b.event.CatalogoActualizadoEvent;
+import com.hrk.tienda_b2b.model.Categoria;
+import com.hrk.tienda_b2b.model.TipoProducto;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Búsqueda de productos con índice invertido en memoria sobre el catálogo de CatalogoService.
+ *
+ * El índice (término -> producto -> peso) es un TreeMap, así la búsqueda por prefijo es un subMap.
+ * Se actualiza con cada CatalogoActualizadoEvent reindexando sólo los productos cuyo DTO cambió
+ * respecto del snapshot anterior; las consultas toman el read lock y no tocan la base.
+ */
+@Service
+public class BuscadorProductosService {
+
+    // Peso de cada campo en el ranking; un término exacto vale el doble que un prefijo
+    private static final int PESO_NOMBRE = 8;
+    private static final int PESO_TIPO = 4;
+    private static final int PESO_CATEGORIA = 3;
+    private static final int PESO_VARIANTE = 3; // color, talle y sku
+    private static final int PESO_DESCRIPCION = 1;
+
+    public static final int LIMITE_POR_DEFECTO = 20;
+    public static final int LIMITE_MAXIMO = 100;
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+    private final CatalogoService catalogoService;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Map<Long, Integer>> indice = new TreeMap<>();
+    private final Map<Long, Documento> documentos = new HashMap<>();
+    private volatile CatalogoSnapshot indexado; // snapshot que refleja el índice (guardado bajo el write lock)
+
+    public BuscadorProductosService(CatalogoService catalogoService) {
+        this.catalogoService = catalogoService;
+    }
+
+    @EventListener
+    public void alActualizarCatalogo(CatalogoActualizadoEvent evento) {
+        lock.writeLock().lock();
+        try {
+            CatalogoSnapshot anterior = evento.getAnterior();
+            CatalogoSnapshot nuevo = evento.getNuevo();
+
+            // Si el índice no corresponde al snapshot anterior (primera vez o evento perdido) se arma de cero
+            if (anterior == null || indexado != anterior) {
+                indice.clear();
+                documentos.clear();
+                nuevo.getTodos().forEach(this::indexar);
+                indexado = nuevo;
+                System.out.println("✅ [BUSCADOR] Índice armado para catálogo v" + nuevo.getVersion() + ": "
+                        + documentos.size() + " productos, " + indice.size() + " términos");
+                return;
+            }
+
+            Set<Long> vigentes = new HashSet<>();
+            for (ProductoResponseDTO producto : nuevo.getTodos()) {
+                vigentes.add(producto.getId());
+                ProductoResponseDTO previo = anterior.buscarProducto(producto.getId());
+                if (previo != producto) {
+                    quitar(producto.getId());
+                    indexar(producto);
+                }
+            }
+            for (Long productoId : new ArrayList<>(documentos.keySet())) {
+                if (!vigentes.contains(productoId)) {
+                    quitar(productoId);
+                }
+            }
+            indexado = nuevo;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca por prefijo en nombre, descripción, categoría, tipo y color/talle/sku de las variantes.
+     * Todos los términos de la consulta tienen que aparecer (AND); sin consulta devuelve todo el catálogo
+     * filtrado, útil para armar el panel de filtros.
+     */
+    public BusquedaProductosDTO buscar(String consulta, Categoria categoria, TipoProducto tipo, String color,
+                                       String talle, boolean incluirOcultos, int pagina, int limite) {
+        if (limite < 1 || limite > LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO);
+        }
+        if (pagina < 0) {
+            throw new IllegalArgumentException("La página no puede ser negativa");
+        }
+
+        if (indexado == null) {
+            // Sólo si se busca antes de que el catálogo termine de armarse: obtenerSnapshot dispara el evento
+            catalogoService.obtenerSnapshot();
+        }
+
+        List<String> terminos = new ArrayList<>(tokenizar(consulta));
+        String colorFiltro = normalizar(color);
+        String talleFiltro = normalizar(talle);
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> puntajes = terminos.isEmpty() ? todosSinPuntaje() : puntuar(terminos);
+
+            List<Documento> resultados = new ArrayList<>();
+            for (Map.Entry<Long, Integer> entrada : puntajes.entrySet()) {
+                Documento documento = documentos.get(entrada.getKey());
+                if (documento == null
+                        || (!incluirOcultos && Boolean.TRUE.equals(documento.producto.getOculto()))
+                        || (categoria != null && categoria != documento.producto.getCategoria())
+                        || (tipo != null && tipo != documento.producto.getTipo())
+                        || (!colorFiltro.isEmpty() && !documento.coloresNormalizados.contains(colorFiltro))
+                        || (!talleFiltro.isEmpty() && !documento.tallesNormalizados.contains(talleFiltro))) {
+                    continue;
+                }
+                resultados.add(documento);
+            }
+
+            resultados.sort(Comparator.<Documento>comparingInt(d -> puntajes.get(d.producto.getId())).reversed()
+                    .thenComparing(d -> d.producto.getNombre() != null ? d.producto.getNombre() : "")
+                    .thenComparing(d -> d.producto.getId()));
+
+            List<ProductoResponseDTO> productos = resultados.stream()
+                    .skip((long) pagina * limite)
+                    .limit(limite)
+                    .map(d -> d.producto)
+                    .collect(Collectors.toList());
+
+            return BusquedaProductosDTO.builder()
+                    .consulta(consulta)
+                    .total(resultados.size())
+                    .pagina(pagina)
+                    .limite(limite)
+                    .productos(productos)
+                    .facetas(contarFacetas(resultados))
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===== Consulta =====
+
+    private Map<Long, Integer> puntuar(List<String> terminos) {
+        Map<Long, Integer> acumulado = null;
+        for (String termino : terminos) {
+            // Mejor peso de cada producto entre los términos del índice que empiezan con este
+            Map<Long, Integer> delTermino = new HashMap<>();
+            for (Map.Entry<String, Map<Long, Integer>> entrada
+                    : indice.subMap(termino, true, termino + Character.MAX_VALUE, true).entrySet()) {
+                boolean exacto = entrada.getKey().equals(termino);
+                entrada.getValue().forEach((productoId, peso) ->
+                        delTermino.merge(productoId, exacto ? peso * 2 : peso, Math::max));
+            }
+
+            if (acumulado == null) {
+                acumulado = delTermino;
+            } else {
+                acumulado.keySet().retainAll(delTermino.keySet());
+                acumulado.replaceAll((productoId, puntaje) -> puntaje + delTermino.get(productoId));
+            }
+            if (acumulado.isEmpty()) {
+                break;
+            }
+        }
+        return acumulado;
+    }
+
+    private Map<Long, Integer> todosSinPuntaje() {
+        Map<Long, Integer> todos = new HashMap<>();
+        documentos.keySet().forEach(productoId -> todos.put(productoId, 0));
+        return todos;
+    }
+
+    private Map<String, Map<String, Long>> contarFacetas(List<Documento> resultados) {
+        Map<String, Long> porCategoria = new TreeMap<>();
+        Map<String, Long> porTipo = new TreeMap<>();
+        Map<String, Long> porColor = new TreeMap<>();
+        Map<String, Long> porTalle = new TreeMap<>();
+        for (Documento documento : resultados) {
+            if (documento.producto.getCategoria() != null) {
+                porCategoria.merge(documento.producto.getCategoria().name(), 1L, Long::sum);
+            }
+            if (documento.producto.getTipo() != null) {
+                porTipo.merge(documento.producto.getTipo().name(), 1L, Long::sum);
+            }
+            // Cada producto cuenta una vez por color / talle aunque tenga varias variantes con ese valor
+            documento.colores.forEach(c -> porColor.merge(c, 1L, Long::sum));
+            documento.talles.forEach(t -> porTalle.merge(t, 1L, Long::sum));
+        }
+
+        Map<String, Map<String, Long>> facetas = new LinkedHashMap<>();
+        facetas.put("categoria", porCategoria);
+        facetas.put("tipo", porTipo);
+        facetas.put("color", porColor);
+        facetas.put("talle", porTalle);
+        return facetas;
+    }
+
+    // ===== Mantenimiento del índice (siempre con el write lock tomado) =====
+
+    private void indexar(ProductoResponseDTO producto) {
+        Map<String, Integer> terminos = new HashMap<>();
+        agregarTerminos(terminos, producto.getNombre(), PESO_NOMBRE);
+        agregarTerminos(terminos, producto.getDescripcion(), PESO_DESCRIPCION);
+        agregarTerminos(terminos, producto.getTipo() != null ? producto.getTipo().name() : null, PESO_TIPO);
+        agregarTerminos(terminos, producto.getCategoria() != null ? producto.getCategoria().name() : null, PESO_CATEGORIA);
+
+        Set<String> colores = new LinkedHashSet<>();
+        Set<String> talles = new LinkedHashSet<>();
+        if (producto.getVariantes() != null) {
+            for (ProductoResponseDTO.ProductoVarianteResponseDTO variante : producto.getVariantes()) {
+                agregarTerminos(terminos, variante.getColor(), PESO_VARIANTE);
+                agregarTerminos(terminos, variante.getTalle(), PESO_VARIANTE);
+                agregarTerminos(terminos, variante.getSku(), PESO_VARIANTE);
+                if (variante.getColor() != null && !variante.getColor().isBlank()) {
+                    colores.add(variante.getColor().trim());
+                }
+                if (variante.getTalle() != null && !variante.getTalle().isBlank()) {
+                    talles.add(variante.getTalle().trim());
+                }
+            }
+        }
+
+        terminos.forEach((termino, peso) ->
+                indice.computeIfAbsent(termino, t -> new HashMap<>()).put(producto.getId(), peso));
+        documentos.put(producto.getId(), new Documento(producto, terminos.keySet(), colores, talles));
+    }
+
+    private void quitar(Long productoId) {
+        Documento documento = documentos.remove(productoId);
+        if (documento == null) {
+            return;
+        }
+        for (String termino : documento.terminos) {
+            Map<Long, Integer> productos = indice.get(termino);
+            if (productos != null) {
+                productos.remove(productoId);
+                if (productos.isEmpty()) {
+                    indice.remove(termino);
+                }
+            }
+        }
+    }
+
+    private static void agregarTerminos(Map<String, Integer> terminos, String texto, int peso) {
+        for (String termino : tokenizar(texto)) {
+            terminos.merge(termino, peso, Math::max);
+        }
+    }
+
+    // ===== Normalización =====
+
+    // Minúsculas, sin acentos y partido en palabras: "Buzo Cañón" -> [buzo, canon]
+    private static Set<String> tokenizar(String texto) {
+        Set<String> terminos = new LinkedHashSet<>();
+        String normalizado = normalizar(texto);
+        if (normalizado.isEmpty()) {
+            return terminos;
+        }
+        for (String termino : SEPARADORES.split(normalizado)) {
+            if (!termino.isEmpty()) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return "";
+        }
+        String sinAcentos = MARCAS.matcher(Normalizer.normalize(texto.trim(), Normalizer.Form.NFD)).replaceAll("");
+        return sinAcentos.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Documento {
+
+        private final ProductoResponseDTO producto;
+        private final Set<String> terminos;
+        private final Set<String> colores;
+        private final Set<String> talles;
+        private final Set<String> coloresNormalizados;
+        private final Set<String> tallesNormalizados;
+
+        private Documento(ProductoResponseDTO producto, Set<String> terminos, Set<String> colores, Set<String> talles) {
+            this.producto = producto;
+            this.terminos = Set.copyOf(terminos);
+            this.colores = colores;
+            this.talles = talles;
+            this.coloresNormalizados = colores.stream().map(BuscadorProductosService::normalizar).collect(Collectors.toSet());
+            this.tallesNormalizados = talles.stream().map(BuscadorProductosService::normalizar).collect(Collectors.toSet());
+        }
+    }
+}
@@ -21,6 +21,7 @@ public class CarritoServiceImpl implements CarritoService {
     private final ProductoVarianteRepository varianteRepo;
     private final PedidoRepository pedidoRepo;
     private final DetallePedidoRepository detalleRepo;
+    private final ReservaStockService reservaStock;
 
     //public CarritoServiceImpl(CarritoRepository carritoRepo, CarritoItemRepository itemRepo, ProductoVarianteRepository varianteRepo, PedidoRepository pedidoRepo, DetallePedidoRepository detalleRepo) {
       //  this.carritoRepo = carritoRepo;
@@ -61,6 +62,9 @@ public class CarritoServiceImpl implements CarritoService {
 //        this.variante=v;
 //        this.cantidad=can;
 //    }
+        // Reserva el stock mientras el item esté en el carrito (lanza StockInsuficienteException si no alcanza)
+        reservaStock.reservar(OrigenReserva.CARRITO, carritoId, varianteId, cantidad);
+
         CarritoItem item = new CarritoItem(c,v,cantidad);
 
 
@@ -71,6 +75,8 @@ public class CarritoServiceImpl implements CarritoService {
     @Override
     @Transactional
     public void quitarItem(Long carritoItemId) {
+        itemRepo.findById(carritoItemId).ifPresent(item -> reservaStock.liberar(OrigenReserva.CARRITO,
+                item.getCarrito().getId(), item.getVariante().getId(), item.getCantidad()));
         itemRepo.deleteById(carritoItemId);
     }
 
@@ -80,6 +86,7 @@ public class CarritoServiceImpl implements CarritoService {
         Carrito c = carritoRepo.findById(carritoId)
                 .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado"));
         c.getItems().clear(); // orphanRemoval=true → borra en BD
+        reservaStock.liberarTodo(OrigenReserva.CARRITO, carritoId);
     }
 
     @Override
@@ -121,6 +128,9 @@ public class CarritoServiceImpl implements CarritoService {
         p.setTotal(total);
         pedidoRepo.save(p);
 
+        // Lo reservado para el carrito pasa a estar reservado para el pedido
+        reservaStock.transferir(OrigenReserva.CARRITO, carritoId, OrigenReserva.PEDIDO, p.getId());
+
         // si querés, vaciá el carrito después de crear el pedido:
         c.getItems().clear();
 
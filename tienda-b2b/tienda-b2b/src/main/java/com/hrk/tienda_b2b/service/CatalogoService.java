@@ -0,0 +1,219 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.ProductoDTOMapper;
+import com.hrk.tienda_b2b.dto.ProductoResponseDTO;
+import com.hrk.tienda_b2b.event.CatalogoActualizadoEvent;
+import com.hrk.tienda_b2b.event.CatalogoModificadoEvent;
+import com.hrk.tienda_b2b.event.StockVarianteModificadoEvent;
+import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.repository.ProductoRepository;
+import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
+import com.hrk.tienda_b2b.repository.TemporadaRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Catálogo en memoria para GET /api/productos.
+ *
+ * Las lecturas sólo hacen un get() sobre el AtomicReference: sin locks y sin consultas a la base.
+ * Las escrituras (después del commit de ProductoService / TemporadaService / cambios de stock) arman un
+ * snapshot nuevo y lo reemplazan de una vez; se serializan entre sí con synchronized para no pisarse.
+ *
+ * Armar un snapshot vuelve a serializar y comprimir todo el catálogo, así que los cambios de stock (uno por pedido
+ * confirmado o cancelado) no lo hacen en el hilo del request: sólo anotan las variantes, y cada
+ * app.catalogo.stock-cada-ms se aplican juntas todas las anotadas en un único snapshot nuevo.
+ */
+@Service
+public class CatalogoService {
+
+    private final ProductoRepository productoRepository;
+    private final ProductoVarianteRepository productoVarianteRepository;
+    private final TemporadaRepository temporadaRepository;
+    private final TransactionTemplate lecturaNueva;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Distingue esta ejecución de la app en los ETags (la versión vuelve a 1 en cada arranque)
+    private final String prefijoEtag = "catalogo-" + Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicReference<CatalogoSnapshot> actual = new AtomicReference<>();
+    // Variantes con stock cambiado que todavía no están en el snapshot
+    private final Set<Long> stockPendiente = ConcurrentHashMap.newKeySet();
+
+    public CatalogoService(ProductoRepository productoRepository,
+                           ProductoVarianteRepository productoVarianteRepository,
+                           TemporadaRepository temporadaRepository,
+                           PlatformTransactionManager transactionManager,
+                           ObjectMapper objectMapper,
+                           ApplicationEventPublisher eventPublisher) {
+        this.productoRepository = productoRepository;
+        this.productoVarianteRepository = productoVarianteRepository;
+        this.temporadaRepository = temporadaRepository;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        // Transacción propia de sólo lectura: los listeners corren después del commit de la transacción original
+        this.lecturaNueva = new TransactionTemplate(transactionManager);
+        this.lecturaNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.lecturaNueva.setReadOnly(true);
+    }
+
+    public List<ProductoResponseDTO> listar(boolean incluirOcultos) {
+        return obtenerSnapshot().listar(incluirOcultos);
+    }
+
+    public CatalogoSnapshot obtenerSnapshot() {
+        CatalogoSnapshot snapshot = actual.get();
+        if (snapshot == null) {
+            // Sólo si se consulta antes de que termine el arranque
+            snapshot = reconstruir();
+        }
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        reconstruir();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alModificarCatalogo(CatalogoModificadoEvent evento) {
+        System.out.println("🔵 [CATALOGO] Reconstruyendo catálogo: " + evento.getMotivo());
+        reconstruir();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alModificarStock(StockVarianteModificadoEvent evento) {
+        if (evento.getVarianteIds() != null) {
+            stockPendiente.addAll(evento.getVarianteIds());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogo.stock-cada-ms:500}")
+    public void aplicarStockPendiente() {
+        if (stockPendiente.isEmpty()) {
+            return;
+        }
+        List<Long> varianteIds = new ArrayList<>();
+        for (Iterator<Long> it = stockPendiente.iterator(); it.hasNext(); ) {
+            varianteIds.add(it.next());
+            it.remove(); // lo que llegue mientras tanto queda para la próxima vuelta
+        }
+        actualizarStock(varianteIds);
+    }
+
+    /**
+     * Arma el catálogo completo: productos de la temporada activa (o todos si no hay temporada activa).
+     */
+    public synchronized CatalogoSnapshot reconstruir() {
+        List<ProductoResponseDTO> productos = lecturaNueva.execute(status -> {
+            List<Producto> todos = productoRepository.findAllConVariantes();
+
+            List<Producto> delCatalogo = temporadaRepository.findActiveWithProductos()
+                    .map(temporadaActiva -> {
+                        Set<Long> productIds = temporadaActiva.getProductos().stream()
+                                .map(Producto::getId)
+                                .collect(Collectors.toSet());
+                        return todos.stream()
+                                .filter(producto -> productIds.contains(producto.getId()))
+                                .collect(Collectors.toList());
+                    })
+                    .orElse(todos);
+
+            return delCatalogo.stream()
+                    .map(ProductoDTOMapper::convertirADTO)
+                    .collect(Collectors.toList());
+        });
+
+        CatalogoSnapshot nuevo = new CatalogoSnapshot(siguienteVersion(), productos, objectMapper, prefijoEtag);
+        publicar(nuevo);
+        System.out.println("✅ [CATALOGO] Catálogo v" + nuevo.getVersion() + ": " + nuevo.getTodos().size()
+                + " productos (" + nuevo.getVisibles().size() + " visibles)");
+        return nuevo;
+    }
+
+    /**
+     * Actualiza sólo el stock de las variantes indicadas; el resto del snapshot se reutiliza tal cual.
+     */
+    public synchronized void actualizarStock(Collection<Long> varianteIds) {
+        CatalogoSnapshot snapshot = actual.get();
+        if (snapshot == null || varianteIds == null || varianteIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> stockPorVariante = lecturaNueva.execute(status ->
+                productoVarianteRepository.findAllById(varianteIds).stream()
+                        .collect(Collectors.toMap(ProductoVariante::getId, ProductoVariante::getStockDisponible)));
+
+        Set<Long> productosAfectados = varianteIds.stream()
+                .map(snapshot::buscarProductoDeVariante)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (productosAfectados.isEmpty()) {
+            return; // variantes que no están en el catálogo de la temporada
+        }
+
+        Function<ProductoResponseDTO, ProductoResponseDTO> conStockNuevo = producto -> {
+            List<ProductoResponseDTO.ProductoVarianteResponseDTO> variantes = new ArrayList<>();
+            for (ProductoResponseDTO.ProductoVarianteResponseDTO variante : producto.getVariantes()) {
+                Integer stock = stockPorVariante.get(variante.getId());
+                variantes.add(stock == null ? variante : ProductoResponseDTO.ProductoVarianteResponseDTO.builder()
+                        .id(variante.getId())
+                        .sku(variante.getSku())
+                        .color(variante.getColor())
+                        .talle(variante.getTalle())
+                        .precio(variante.getPrecio())
+                        .stockDisponible(stock)
+                        .build());
+            }
+            return ProductoResponseDTO.builder()
+                    .id(producto.getId())
+                    .nombre(producto.getNombre())
+                    .descripcion(producto.getDescripcion())
+                    .tipo(producto.getTipo())
+                    .imagenUrl(producto.getImagenUrl())
+                    .categoria(producto.getCategoria())
+                    .oculto(producto.getOculto())
+                    .variantes(variantes)
+                    .build();
+        };
+
+        List<ProductoResponseDTO> productos = snapshot.getTodos().stream()
+                .map(producto -> productosAfectados.contains(producto.getId()) ? conStockNuevo.apply(producto) : producto)
+                .collect(Collectors.toList());
+
+        publicar(new CatalogoSnapshot(siguienteVersion(), productos, objectMapper, prefijoEtag));
+    }
+
+    // Siempre desde un método synchronized: los listeners (índice de búsqueda) reciben los snapshots en orden
+    private void publicar(CatalogoSnapshot nuevo) {
+        CatalogoSnapshot anterior = actual.getAndSet(nuevo);
+        eventPublisher.publishEvent(new CatalogoActualizadoEvent(anterior, nuevo));
+    }
+
+    private long siguienteVersion() {
+        CatalogoSnapshot snapshot = actual.get();
+        return snapshot != null ? snapshot.getVersion() + 1 : 1;
+    }
+}
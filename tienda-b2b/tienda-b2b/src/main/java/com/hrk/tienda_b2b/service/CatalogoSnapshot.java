@@ -0,0 +1,154 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.ProductoResponseDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Foto inmutable del catálogo de la temporada activa, ya convertida a DTOs.
+ * Nunca se modifica una vez publicada: cada cambio arma un snapshot nuevo (ver CatalogoService).
+ *
+ * Cada vista (todos / visibles) se guarda también serializada a JSON y comprimida con gzip, con su ETag,
+ * para que GET /api/productos no tenga que volver a serializar mientras el catálogo no cambie.
+ */
+public final class CatalogoSnapshot {
+
+    private final long version;
+    private final List<ProductoResponseDTO> todos;     // incluye ocultos (vista de administración)
+    private final List<ProductoResponseDTO> visibles;  // sin ocultos (lo que ven los clientes)
+    private final Map<Long, ProductoResponseDTO> porId;
+    private final Map<Long, Long> productoPorVariante;
+    private final Representacion jsonTodos;
+    private final Representacion jsonVisibles;
+
+    /**
+     * @param prefijoEtag identifica la instancia de la aplicación, para que la versión no se repita tras reiniciar
+     */
+    public CatalogoSnapshot(long version, List<ProductoResponseDTO> todos, ObjectMapper objectMapper, String prefijoEtag) {
+        this.version = version;
+        this.todos = List.copyOf(todos);
+        this.visibles = todos.stream()
+                .filter(p -> !Boolean.TRUE.equals(p.getOculto()))
+                .collect(Collectors.toUnmodifiableList());
+
+        Map<Long, ProductoResponseDTO> indice = new LinkedHashMap<>();
+        Map<Long, Long> variantes = new LinkedHashMap<>();
+        for (ProductoResponseDTO producto : todos) {
+            indice.put(producto.getId(), producto);
+            if (producto.getVariantes() != null) {
+                for (ProductoResponseDTO.ProductoVarianteResponseDTO variante : producto.getVariantes()) {
+                    variantes.put(variante.getId(), producto.getId());
+                }
+            }
+        }
+        this.porId = Collections.unmodifiableMap(indice);
+        this.productoPorVariante = Collections.unmodifiableMap(variantes);
+
+        this.jsonTodos = new Representacion(objectMapper, this.todos, prefijoEtag + "-v" + version + "-todos");
+        this.jsonVisibles = new Representacion(objectMapper, this.visibles, prefijoEtag + "-v" + version + "-visibles");
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ProductoResponseDTO> getTodos() {
+        return todos;
+    }
+
+    public List<ProductoResponseDTO> getVisibles() {
+        return visibles;
+    }
+
+    public List<ProductoResponseDTO> listar(boolean incluirOcultos) {
+        return incluirOcultos ? todos : visibles;
+    }
+
+    public Representacion serializado(boolean incluirOcultos) {
+        return incluirOcultos ? jsonTodos : jsonVisibles;
+    }
+
+    public ProductoResponseDTO buscarProducto(Long productoId) {
+        return porId.get(productoId);
+    }
+
+    public Long buscarProductoDeVariante(Long varianteId) {
+        return productoPorVariante.get(varianteId);
+    }
+
+    /**
+     * Lista ya serializada: JSON plano y gzip. El ETag del gzip lleva sufijo propio porque son bytes distintos.
+     */
+    public static final class Representacion {
+
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+
+        private Representacion(ObjectMapper objectMapper, List<ProductoResponseDTO> productos, String etag) {
+            try {
+                this.json = objectMapper.writeValueAsBytes(productos);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("No se pudo serializar el catálogo: " + e.getMessage(), e);
+            }
+            this.gzip = comprimir(json);
+            this.etag = etag;
+        }
+
+        private static byte[] comprimir(byte[] datos) {
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+                gzip.write(datos);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return salida.toByteArray();
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        // Valores entre comillas, listos para el header ETag
+        public String getEtag() {
+            return "\"" + etag + "\"";
+        }
+
+        public String getEtagGzip() {
+            return "\"" + etag + "-gz\"";
+        }
+
+        /**
+         * true si el If-None-Match del cliente corresponde a esta versión (plana o gzip).
+         */
+        public boolean coincide(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String valor : ifNoneMatch.split(",")) {
+                String etiqueta = valor.trim();
+                if (etiqueta.startsWith("W/")) {
+                    etiqueta = etiqueta.substring(2); // comparación débil, como pide RFC 9110 para If-None-Match
+                }
+                if (etiqueta.equals("*") || etiqueta.equals(getEtag()) || etiqueta.equals(getEtagGzip())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
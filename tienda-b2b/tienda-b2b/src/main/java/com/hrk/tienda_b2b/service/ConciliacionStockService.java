@@ -0,0 +1,302 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.ConciliacionStockResultadoDTO;
+import com.hrk.tienda_b2b.dto.ConciliacionStockResultadoDTO.Diferencia;
+import com.hrk.tienda_b2b.model.StockHistorico;
+import com.hrk.tienda_b2b.model.TipoMovimiento;
+import com.hrk.tienda_b2b.repository.AjusteInventarioJdbcRepository;
+import com.hrk.tienda_b2b.repository.AjusteInventarioJdbcRepository.Ajuste;
+import com.hrk.tienda_b2b.repository.ArchivoHistorialRepository;
+import com.hrk.tienda_b2b.repository.ArchivoHistorialRepository.Tabla;
+import com.hrk.tienda_b2b.repository.ConciliacionStockJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository.StockVariante;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Conciliación de stock: compara stock_disponible de cada variante con el que resulta de sus registros (entradas
+ * iniciales de stock_historico más movimientos_stock, incluido lo archivado) y, si se pide, registra un movimiento
+ * de ajuste por la diferencia para que los registros vuelvan a coincidir con el stock.
+ *
+ * Las variantes se reparten por rangos de id en un ForkJoinPool propio (app.conciliacion.paralelismo hilos, cada uno
+ * con su conexión). Cada bloque lee stock y registros en una misma transacción de lectura, así ve una foto
+ * consistente; la base devuelve una fila por variante y del archivo se leen sólo los bloques del rango, con lo que la
+ * memoria queda acotada por el tamaño de bloque y la cantidad de diferencias, no por la de registros.
+ *
+ * Los pedidos escriben stock y movimientos en la misma transacción (CoordinadorDescuentosStock). Igual, las
+ * diferencias se vuelven a calcular después de app.conciliacion.espera-confirmacion-ms y sólo se informan (y
+ * corrigen, con la fila bloqueada) las que siguen igual: así no se corrige nada por una escritura que estaba en curso.
+ */
+@Service
+public class ConciliacionStockService {
+
+    private final ConciliacionStockJdbcRepository conciliacionRepo;
+    private final StockVarianteJdbcRepository stockJdbc;
+    private final AjusteInventarioJdbcRepository ajusteRepo;
+    private final ArchivoHistorialRepository archivo;
+    private final ArchivoHistorialService archivoHistorialService;
+    private final IdsPorBloqueService idsPorBloqueService;
+    private final TransactionTemplate lectura;
+    private final TransactionTemplate escritura;
+    private final int paralelismo;
+    private final int variantesPorBloque;
+    private final int maxDiferenciasInforme;
+    private final long esperaConfirmacionMs;
+
+    private volatile ConciliacionStockResultadoDTO ultimoResultado;
+
+    public ConciliacionStockService(ConciliacionStockJdbcRepository conciliacionRepo,
+                                    StockVarianteJdbcRepository stockJdbc,
+                                    AjusteInventarioJdbcRepository ajusteRepo,
+                                    ArchivoHistorialRepository archivo,
+                                    ArchivoHistorialService archivoHistorialService,
+                                    IdsPorBloqueService idsPorBloqueService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.conciliacion.paralelismo:4}") int paralelismo,
+                                    @Value("${app.conciliacion.variantes-por-bloque:2000}") int variantesPorBloque,
+                                    @Value("${app.conciliacion.max-diferencias-informe:1000}") int maxDiferenciasInforme,
+                                    @Value("${app.conciliacion.espera-confirmacion-ms:5000}") long esperaConfirmacionMs) {
+        if (paralelismo <= 0 || variantesPorBloque <= 0) {
+            throw new IllegalArgumentException("app.conciliacion.paralelismo y variantes-por-bloque deben ser mayores a 0");
+        }
+        this.conciliacionRepo = conciliacionRepo;
+        this.stockJdbc = stockJdbc;
+        this.ajusteRepo = ajusteRepo;
+        this.archivo = archivo;
+        this.archivoHistorialService = archivoHistorialService;
+        this.idsPorBloqueService = idsPorBloqueService;
+        // Una foto por bloque: stock y registros leídos en el mismo snapshot de InnoDB
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.escritura = new TransactionTemplate(transactionManager);
+        this.escritura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.paralelismo = paralelismo;
+        this.variantesPorBloque = variantesPorBloque;
+        this.maxDiferenciasInforme = maxDiferenciasInforme;
+        this.esperaConfirmacionMs = esperaConfirmacionMs;
+    }
+
+    // Sólo informe: las correcciones se piden a mano después de revisarlo
+    @Scheduled(cron = "${app.conciliacion.cron:0 0 4 * * SUN}")
+    public void conciliarProgramado() {
+        try {
+            conciliar(false);
+        } catch (RuntimeException e) {
+            System.err.println("🔴 [CONCILIACION STOCK] Error en la conciliación programada: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recorre todas las variantes. Con corregir, registra un ajuste por cada diferencia confirmada.
+     */
+    public synchronized ConciliacionStockResultadoDTO conciliar(boolean corregir) {
+        // Mientras tanto no se archiva: lo que pasa de la tabla al archivo se contaría dos veces o ninguna
+        ConciliacionStockResultadoDTO resultado = archivoHistorialService.sinArchivar(() -> ejecutar(corregir));
+        ultimoResultado = resultado;
+        return resultado;
+    }
+
+    public ConciliacionStockResultadoDTO getUltimoResultado() {
+        return ultimoResultado;
+    }
+
+    private ConciliacionStockResultadoDTO ejecutar(boolean corregir) {
+        LocalDateTime inicio = LocalDateTime.now();
+        long comienzo = System.currentTimeMillis();
+        System.out.println("🔵 [CONCILIACION STOCK] Iniciando conciliación" + (corregir ? " con correcciones" : "") + "...");
+
+        Parcial recorrido = new Parcial();
+        long[] rango = conciliacionRepo.rangoVariantes();
+        if (rango != null) {
+            ForkJoinPool pool = new ForkJoinPool(paralelismo);
+            try {
+                recorrido = pool.invoke(new Revision(rango[0], rango[1]));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        System.out.println("🔵 [CONCILIACION STOCK] " + recorrido.variantes + " variantes en " + recorrido.bloques
+                + " bloques, " + recorrido.diferencias.size() + " con diferencia a confirmar");
+
+        List<Diferencia> confirmadas = new ArrayList<>();
+        if (!recorrido.diferencias.isEmpty()) {
+            esperar();
+            recorrido.diferencias.sort(Comparator.comparing(Diferencia::getVarianteId));
+            for (int i = 0; i < recorrido.diferencias.size(); i += variantesPorBloque) {
+                List<Diferencia> tanda = recorrido.diferencias.subList(i, Math.min(i + variantesPorBloque, recorrido.diferencias.size()));
+                confirmadas.addAll(confirmar(tanda, corregir));
+            }
+        }
+
+        int corregidas = (int) confirmadas.stream().filter(Diferencia::isCorregida).count();
+        long diferenciaTotal = confirmadas.stream().mapToLong(d -> Math.abs(d.getDiferencia())).sum();
+        confirmadas.sort(Comparator.comparingLong((Diferencia d) -> Math.abs(d.getDiferencia())).reversed());
+
+        ConciliacionStockResultadoDTO resultado = ConciliacionStockResultadoDTO.builder()
+                .inicio(inicio.toString())
+                .corregir(corregir)
+                .variantesRevisadas(recorrido.variantes)
+                .bloques(recorrido.bloques)
+                .conDiferencia(confirmadas.size())
+                .transitorias(recorrido.diferencias.size() - confirmadas.size())
+                .corregidas(corregidas)
+                .diferenciaAbsolutaTotal(diferenciaTotal)
+                .diferencias(new ArrayList<>(confirmadas.subList(0, Math.min(confirmadas.size(), maxDiferenciasInforme))))
+                .duracionMs(System.currentTimeMillis() - comienzo)
+                .build();
+        System.out.println((confirmadas.isEmpty() ? "✅" : "⚠️") + " [CONCILIACION STOCK] Terminada en " + resultado.getDuracionMs()
+                + " ms: " + confirmadas.size() + " variantes con diferencia (" + diferenciaTotal + " unidades), "
+                + corregidas + " corregidas");
+        return resultado;
+    }
+
+    /**
+     * Un bloque del recorrido: stock y registros de las variantes con id entre desde y hasta.
+     */
+    private Parcial revisarBloque(long desde, long hasta) {
+        Parcial parcial = new Parcial();
+        parcial.bloques = 1;
+        lectura.executeWithoutResult(status -> {
+            List<StockVariante> stock = conciliacionRepo.stockDelRango(desde, hasta);
+            if (stock.isEmpty()) {
+                return;
+            }
+            Map<Long, Long> esperado = conciliacionRepo.esperadoDelRango(desde, hasta);
+            sumarArchivado(esperado, desde, hasta, null);
+            for (StockVariante variante : stock) {
+                parcial.variantes++;
+                long esperadoVariante = esperado.getOrDefault(variante.getId(), 0L);
+                if (variante.getStockDisponible() != esperadoVariante) {
+                    parcial.diferencias.add(diferencia(variante, esperadoVariante));
+                }
+            }
+        });
+        return parcial;
+    }
+
+    /**
+     * Vuelve a calcular las diferencias de la tanda. Con corregir, las filas quedan bloqueadas hasta registrar los
+     * ajustes y sólo se corrigen las que no cambiaron desde el recorrido (si cambió, hay algo en curso).
+     */
+    private List<Diferencia> confirmar(List<Diferencia> tanda, boolean corregir) {
+        List<Long> ids = tanda.stream().map(Diferencia::getVarianteId).toList();
+        Map<Long, Long> vistas = new HashMap<>();
+        tanda.forEach(d -> vistas.put(d.getVarianteId(), d.getDiferencia()));
+
+        return (corregir ? escritura : lectura).execute(status -> {
+            List<StockVariante> actuales = corregir ? stockJdbc.bloquear(ids) : stockJdbc.leer(ids);
+            Map<Long, Long> esperado = conciliacionRepo.esperadoDe(ids);
+            sumarArchivado(esperado, ids.get(0), ids.get(ids.size() - 1), vistas.keySet());
+
+            List<Diferencia> confirmadas = new ArrayList<>();
+            List<Ajuste> correcciones = new ArrayList<>();
+            for (StockVariante variante : actuales) {
+                Diferencia diferencia = diferencia(variante, esperado.getOrDefault(variante.getId(), 0L));
+                if (diferencia.getDiferencia() == 0) {
+                    continue;
+                }
+                if (corregir && diferencia.getDiferencia() == vistas.get(variante.getId())) {
+                    correcciones.add(new Ajuste(variante.getId(), (int) diferencia.getDiferencia(), null));
+                    diferencia.setCorregida(true);
+                }
+                confirmadas.add(diferencia);
+            }
+            if (!correcciones.isEmpty()) {
+                long primerId = idsPorBloqueService.reservar("movimientos_stock", correcciones.size());
+                ajusteRepo.registrarMovimientos(correcciones, primerId, LocalDateTime.now());
+            }
+            return confirmadas;
+        });
+    }
+
+    // Suma al esperado lo archivado de las variantes del rango (o sólo de las de ids, si no es null)
+    private void sumarArchivado(Map<Long, Long> esperado, long desde, long hasta, Set<Long> ids) {
+        archivo.recorrer(Tabla.MOVIMIENTOS_STOCK, desde, hasta, registro -> {
+            if ((ids == null || ids.contains(registro.getVarianteId())) && registro.getCantidad() != null) {
+                long delta = (long) TipoMovimiento.valueOf(registro.getTipo()).getSigno() * registro.getCantidad();
+                esperado.merge(registro.getVarianteId(), delta, Long::sum);
+            }
+        });
+        archivo.recorrer(Tabla.STOCK_HISTORICO, desde, hasta, registro -> {
+            if ((ids == null || ids.contains(registro.getVarianteId()))
+                    && StockHistorico.TipoMovimientoStock.ENTRADA_INICIAL.name().equals(registro.getTipo())
+                    && registro.getCantidad() != null) {
+                esperado.merge(registro.getVarianteId(), (long) registro.getCantidad(), Long::sum);
+            }
+        });
+    }
+
+    private static Diferencia diferencia(StockVariante variante, long esperado) {
+        return Diferencia.builder()
+                .varianteId(variante.getId())
+                .sku(variante.getSku())
+                .stockDisponible(variante.getStockDisponible())
+                .stockEsperado(esperado)
+                .diferencia(variante.getStockDisponible() - esperado)
+                .build();
+    }
+
+    private void esperar() {
+        try {
+            Thread.sleep(esperaConfirmacionMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Conciliación interrumpida");
+        }
+    }
+
+    // Parte el rango de ids a la mitad hasta que cada parte tenga como mucho variantesPorBloque ids
+    private class Revision extends RecursiveTask<Parcial> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long desde;
+        private final long hasta;
+
+        Revision(long desde, long hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Parcial compute() {
+            if (hasta - desde < variantesPorBloque) {
+                return revisarBloque(desde, hasta);
+            }
+            long mitad = desde + (hasta - desde) / 2;
+            Revision izquierda = new Revision(desde, mitad);
+            izquierda.fork();
+            Parcial derecha = new Revision(mitad + 1, hasta).compute();
+            return izquierda.join().sumar(derecha);
+        }
+    }
+
+    private static class Parcial {
+        private int variantes;
+        private int bloques;
+        private final List<Diferencia> diferencias = new ArrayList<>();
+
+        Parcial sumar(Parcial otro) {
+            variantes += otro.variantes;
+            bloques += otro.bloques;
+            diferencias.addAll(otro.diferencias);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Contadores de conflictos de concurrencia y reintentos (ver ReintentoConflictosAspect): por método y, cuando el
+ * conflicto fue sobre una ProductoVariante, por variante, para ver qué SKUs están más disputados.
+ * Sólo en memoria: se reinician con la aplicación.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConflictosConcurrenciaMetricas {
+
+    private final ProductoVarianteRepository varianteRepo;
+
+    private final Map<String, ContadoresMetodo> porMetodo = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> conflictosPorVariante = new ConcurrentHashMap<>();
+
+    public void registrarEjecucion(String metodo) {
+        contadores(metodo).ejecuciones.increment();
+    }
+
+    public void registrarConflicto(String metodo, Long varianteId) {
+        contadores(metodo).conflictos.increment();
+        if (varianteId != null) {
+            conflictosPorVariante.computeIfAbsent(varianteId, id -> new LongAdder()).increment();
+        }
+    }
+
+    public void registrarReintento(String metodo) {
+        contadores(metodo).reintentos.increment();
+    }
+
+    public void registrarExitoTrasReintento(String metodo) {
+        contadores(metodo).exitosTrasReintento.increment();
+    }
+
+    public void registrarAgotado(String metodo) {
+        contadores(metodo).agotados.increment();
+    }
+
+    /**
+     * Contadores por método y las variantes con más conflictos (con su SKU).
+     */
+    public Map<String, Object> estadisticas(int maxVariantes) {
+        Map<String, Object> metodos = new TreeMap<>();
+        porMetodo.forEach((metodo, c) -> {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("ejecuciones", c.ejecuciones.sum());
+            fila.put("conflictos", c.conflictos.sum());
+            fila.put("reintentos", c.reintentos.sum());
+            fila.put("exitosTrasReintento", c.exitosTrasReintento.sum());
+            fila.put("agotados", c.agotados.sum());
+            metodos.put(metodo, fila);
+        });
+
+        List<Map.Entry<Long, Long>> masDisputadas = conflictosPorVariante.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(Math.max(0, maxVariantes))
+                .collect(Collectors.toList());
+        Map<Long, String> skus = varianteRepo.findAllById(masDisputadas.stream().map(Map.Entry::getKey).toList()).stream()
+                .collect(Collectors.toMap(ProductoVariante::getId, ProductoVariante::getSku, (a, b) -> a));
+        List<Map<String, Object>> variantes = new ArrayList<>();
+        for (Map.Entry<Long, Long> entrada : masDisputadas) {
+            Map<String, Object> fila = new LinkedHashMap<>();
+            fila.put("varianteId", entrada.getKey());
+            fila.put("sku", skus.get(entrada.getKey()));
+            fila.put("conflictos", entrada.getValue());
+            variantes.add(fila);
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("metodos", metodos);
+        resultado.put("variantesMasDisputadas", variantes);
+        return resultado;
+    }
+
+    public void reiniciar() {
+        porMetodo.clear();
+        conflictosPorVariante.clear();
+    }
+
+    private ContadoresMetodo contadores(String metodo) {
+        return porMetodo.computeIfAbsent(metodo, m -> new ContadoresMetodo());
+    }
+
+    private static final class ContadoresMetodo {
+        private final LongAdder ejecuciones = new LongAdder();
+        private final LongAdder conflictos = new LongAdder();
+        private final LongAdder reintentos = new LongAdder();
+        private final LongAdder exitosTrasReintento = new LongAdder();
+        private final LongAdder agotados = new LongAdder();
+    }
+}
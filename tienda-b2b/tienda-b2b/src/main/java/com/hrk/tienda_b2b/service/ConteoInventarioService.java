@@ -0,0 +1,341 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.ConteoInventarioResultadoDTO;
+import com.hrk.tienda_b2b.dto.ImportacionProductosResultadoDTO;
+import com.hrk.tienda_b2b.event.StockHistoricoRegistradoEvent;
+import com.hrk.tienda_b2b.event.StockVarianteModificadoEvent;
+import com.hrk.tienda_b2b.model.StockHistorico;
+import com.hrk.tienda_b2b.model.TipoEventoStock;
+import com.hrk.tienda_b2b.repository.AjusteInventarioJdbcRepository;
+import com.hrk.tienda_b2b.repository.AjusteInventarioJdbcRepository.Ajuste;
+import com.hrk.tienda_b2b.repository.EventoStockJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository.StockVariante;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Conteo físico de inventario desde un archivo CSV o JSON Lines con (sku, cantidad contada).
+ *
+ * El archivo se lee de a una línea y las filas se juntan en lotes; cada lote va en su propia transacción:
+ * bloquea las variantes de sus SKU en una sola consulta, compara con stock_disponible y, para las que difieren,
+ * deja el stock en lo contado y registra el movimiento AJUSTE_INVENTARIO_*, el ajuste de stock_historico y el
+ * evento de stock, todo con batches JDBC (lo mismo que hace ProductoService.actualizarProducto con
+ * stockPorVariante, sin cargar los productos). Si un lote falla se informan sus filas como error y se sigue.
+ *
+ * CSV: primera línea con encabezados sku y cantidad, separador "," o ";". JSON Lines: {"sku": ..., "cantidad": ...}
+ * por línea. Un SKU repetido en el archivo es un error (vale la primera fila).
+ */
+@Service
+public class ConteoInventarioService {
+
+    private static final int MAX_ERRORES_DETALLE = 500;
+    private static final int MAX_DIFERENCIAS_DETALLE = 5000;
+    private static final String MOTIVO_CONTEO = "Conteo de inventario";
+
+    private final StockVarianteJdbcRepository stockJdbc;
+    private final AjusteInventarioJdbcRepository ajusteRepo;
+    private final EventoStockJdbcRepository eventoRepo;
+    private final ResumenStockService resumenStockService;
+    private final IdsPorBloqueService idsPorBloqueService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int filasPorLote;
+
+    public ConteoInventarioService(StockVarianteJdbcRepository stockJdbc,
+                                   AjusteInventarioJdbcRepository ajusteRepo,
+                                   EventoStockJdbcRepository eventoRepo,
+                                   ResumenStockService resumenStockService,
+                                   IdsPorBloqueService idsPorBloqueService,
+                                   PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${app.conteo.filas-por-lote:500}") int filasPorLote) {
+        this.stockJdbc = stockJdbc;
+        this.ajusteRepo = ajusteRepo;
+        this.eventoRepo = eventoRepo;
+        this.resumenStockService = resumenStockService;
+        this.idsPorBloqueService = idsPorBloqueService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.filasPorLote = Math.max(1, filasPorLote);
+    }
+
+    public ConteoInventarioResultadoDTO importar(InputStream entrada, String formato) throws IOException {
+        if (!ImportacionProductosService.FORMATO_CSV.equals(formato) && !ImportacionProductosService.FORMATO_JSONL.equals(formato)) {
+            throw new IllegalArgumentException("Formato no soportado: " + formato + " (usar csv o jsonl)");
+        }
+        boolean csv = ImportacionProductosService.FORMATO_CSV.equals(formato);
+
+        long inicio = System.currentTimeMillis();
+        Conteo conteo = new Conteo();
+        System.out.println("🔵 [CONTEO INVENTARIO] Iniciando conteo " + formato);
+
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            String linea;
+            int numeroLinea = 0;
+            int columnaSku = -1;
+            int columnaCantidad = -1;
+            char separador = ',';
+
+            while ((linea = lector.readLine()) != null) {
+                numeroLinea++;
+                if (numeroLinea == 1 && !linea.isEmpty() && linea.charAt(0) == '﻿') {
+                    linea = linea.substring(1); // BOM de Excel
+                }
+                if (linea.isBlank()) {
+                    continue;
+                }
+
+                if (csv && columnaSku < 0) {
+                    separador = linea.indexOf(';') >= 0 && linea.indexOf(',') < 0 ? ';' : ',';
+                    List<String> encabezados = ImportacionProductosService.dividirCsv(linea, separador).stream()
+                            .map(e -> e.trim().toLowerCase(Locale.ROOT)).toList();
+                    columnaSku = encabezados.indexOf("sku");
+                    columnaCantidad = encabezados.indexOf("cantidad");
+                    if (columnaSku < 0 || columnaCantidad < 0) {
+                        throw new IllegalArgumentException("El encabezado debe tener las columnas 'sku' y 'cantidad'");
+                    }
+                    continue;
+                }
+
+                conteo.filasLeidas++;
+                String sku = null;
+                try {
+                    String cantidad;
+                    if (csv) {
+                        List<String> valores = ImportacionProductosService.dividirCsv(linea, separador);
+                        sku = columnaSku < valores.size() ? valores.get(columnaSku).trim() : null;
+                        cantidad = columnaCantidad < valores.size() ? valores.get(columnaCantidad).trim() : null;
+                    } else {
+                        JsonNode fila = objectMapper.readTree(linea);
+                        sku = fila.hasNonNull("sku") ? fila.get("sku").asText().trim() : null;
+                        cantidad = fila.hasNonNull("cantidad") ? fila.get("cantidad").asText().trim() : null;
+                    }
+                    conteo.agregar(validar(numeroLinea, sku, cantidad));
+                } catch (IllegalArgumentException | IOException e) {
+                    conteo.error(numeroLinea, sku, e.getMessage());
+                }
+
+                if (conteo.pendientes.size() >= filasPorLote) {
+                    aplicarLote(conteo);
+                }
+            }
+        }
+        aplicarLote(conteo);
+
+        if (conteo.variantesAjustadas > 0) {
+            eventPublisher.publishEvent(new StockHistoricoRegistradoEvent(null, null));
+        }
+
+        long duracion = System.currentTimeMillis() - inicio;
+        System.out.println("✅ [CONTEO INVENTARIO] Filas: " + conteo.filasLeidas + ", contadas: " + conteo.variantesContadas
+                + ", ajustadas: " + conteo.variantesAjustadas + " (+" + conteo.unidadesSumadas + " / -" + conteo.unidadesRestadas
+                + "), errores: " + conteo.erroresTotales + " (" + duracion + " ms)");
+
+        return ConteoInventarioResultadoDTO.builder()
+                .filasLeidas(conteo.filasLeidas)
+                .variantesContadas(conteo.variantesContadas)
+                .variantesSinDiferencia(conteo.variantesContadas - conteo.variantesAjustadas)
+                .variantesAjustadas(conteo.variantesAjustadas)
+                .unidadesSumadas(conteo.unidadesSumadas)
+                .unidadesRestadas(conteo.unidadesRestadas)
+                .erroresTotales(conteo.erroresTotales)
+                .diferencias(conteo.diferencias)
+                .errores(conteo.errores)
+                .duracionMs(duracion)
+                .build();
+    }
+
+    // ===== Escritura =====
+
+    private void aplicarLote(Conteo conteo) {
+        List<FilaConteo> lote = conteo.pendientes;
+        if (lote.isEmpty()) {
+            return;
+        }
+        conteo.pendientes = new ArrayList<>();
+
+        LoteAplicado aplicado;
+        try {
+            aplicado = transactionTemplate.execute(status -> ajustarLote(lote));
+        } catch (RuntimeException e) {
+            System.out.println("🔴 [CONTEO INVENTARIO] Falló un lote de " + lote.size() + " filas: " + e.getMessage());
+            lote.forEach(fila -> conteo.error(fila.linea, fila.sku, "No se pudo guardar el lote: " + e.getMessage()));
+            return;
+        }
+
+        aplicado.desconocidas.forEach(fila -> conteo.error(fila.linea, fila.sku, "SKU inexistente: " + fila.sku));
+        conteo.variantesContadas += lote.size() - aplicado.desconocidas.size();
+        for (ConteoInventarioResultadoDTO.Diferencia diferencia : aplicado.diferencias) {
+            conteo.variantesAjustadas++;
+            if (diferencia.getDiferencia() > 0) {
+                conteo.unidadesSumadas += diferencia.getDiferencia();
+            } else {
+                conteo.unidadesRestadas -= diferencia.getDiferencia();
+            }
+            if (conteo.diferencias.size() < MAX_DIFERENCIAS_DETALLE) {
+                conteo.diferencias.add(diferencia);
+            }
+        }
+        System.out.println("🔵 [CONTEO INVENTARIO] Lote aplicado: " + lote.size() + " filas, "
+                + aplicado.diferencias.size() + " variantes ajustadas");
+    }
+
+    private LoteAplicado ajustarLote(List<FilaConteo> lote) {
+        Map<String, FilaConteo> porSku = new LinkedHashMap<>();
+        lote.forEach(fila -> porSku.put(ImportacionProductosService.claveSku(fila.sku), fila));
+
+        // Un solo SELECT ... FOR UPDATE por lote, en orden de id (como los pedidos)
+        List<StockVariante> variantes = stockJdbc.bloquearPorSku(lote.stream().map(fila -> fila.sku).toList());
+
+        LoteAplicado aplicado = new LoteAplicado();
+        Set<String> encontrados = new HashSet<>();
+        LocalDateTime ahora = LocalDateTime.now();
+        Map<Long, Integer> nuevoStock = new LinkedHashMap<>();
+        List<Ajuste> ajustes = new ArrayList<>();
+        for (StockVariante variante : variantes) {
+            FilaConteo fila = porSku.get(ImportacionProductosService.claveSku(variante.getSku()));
+            if (fila == null) {
+                continue;
+            }
+            encontrados.add(ImportacionProductosService.claveSku(variante.getSku()));
+            int diferencia = fila.cantidad - variante.getStockDisponible();
+            if (diferencia == 0) {
+                continue;
+            }
+
+            // Mismo acumulado que ProductoService.registrarStockHistoricoAjuste (del resumen en memoria)
+            Integer ultimo = resumenStockService.ultimoStockAcumulado(variante.getId());
+            int anterior = ultimo != null ? ultimo : variante.getStockDisponible();
+            int acumulado = Math.max(0, anterior + diferencia);
+
+            nuevoStock.put(variante.getId(), fila.cantidad);
+            ajustes.add(new Ajuste(variante.getId(), diferencia, acumulado));
+            resumenStockService.registrar(variante.getId(), diferencia > 0
+                            ? StockHistorico.TipoMovimientoStock.AJUSTE_SUMA : StockHistorico.TipoMovimientoStock.AJUSTE_RESTA,
+                    diferencia, acumulado, ahora);
+            aplicado.diferencias.add(ConteoInventarioResultadoDTO.Diferencia.builder()
+                    .linea(fila.linea)
+                    .sku(variante.getSku())
+                    .varianteId(variante.getId())
+                    .stockAnterior(variante.getStockDisponible())
+                    .contado(fila.cantidad)
+                    .diferencia(diferencia)
+                    .build());
+        }
+        porSku.forEach((clave, fila) -> {
+            if (!encontrados.contains(clave)) {
+                aplicado.desconocidas.add(fila);
+            }
+        });
+
+        if (!ajustes.isEmpty()) {
+            stockJdbc.fijar(nuevoStock);
+            ajusteRepo.registrarMovimientos(ajustes, idsPorBloqueService.reservar("movimientos_stock", ajustes.size()), ahora);
+            ajusteRepo.registrarHistorico(ajustes, idsPorBloqueService.reservar("stock_historico", ajustes.size()), ahora, MOTIVO_CONTEO);
+            eventoRepo.registrar(ajustes.stream()
+                    .map(a -> new EventoStockJdbcRepository.Evento(a.getVarianteId(), a.getDiferencia(), TipoEventoStock.AJUSTE, null))
+                    .toList());
+            eventPublisher.publishEvent(new StockVarianteModificadoEvent(new ArrayList<>(nuevoStock.keySet())));
+        }
+        aplicado.diferencias.sort(Comparator.comparingInt(ConteoInventarioResultadoDTO.Diferencia::getLinea));
+        return aplicado;
+    }
+
+    // ===== Validación =====
+
+    private static FilaConteo validar(int linea, String sku, String cantidad) {
+        if (sku == null || sku.isBlank()) {
+            throw new IllegalArgumentException("El SKU es obligatorio");
+        }
+        if (cantidad == null || cantidad.isBlank()) {
+            throw new IllegalArgumentException("La cantidad es obligatoria");
+        }
+        int contado;
+        try {
+            contado = Integer.parseInt(cantidad);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cantidad inválida: " + cantidad);
+        }
+        if (contado < 0) {
+            throw new IllegalArgumentException("La cantidad no puede ser negativa");
+        }
+        return new FilaConteo(linea, sku, contado);
+    }
+
+    // ===== Estado de un conteo =====
+
+    private static final class Conteo {
+
+        private final Set<String> skusVistos = new HashSet<>();
+        private final List<ConteoInventarioResultadoDTO.Diferencia> diferencias = new ArrayList<>();
+        private final List<ImportacionProductosResultadoDTO.ErrorFila> errores = new ArrayList<>();
+        private List<FilaConteo> pendientes = new ArrayList<>();
+        private int filasLeidas;
+        private int variantesContadas;
+        private int variantesAjustadas;
+        private long unidadesSumadas;
+        private long unidadesRestadas;
+        private int erroresTotales;
+
+        private void agregar(FilaConteo fila) {
+            if (!skusVistos.add(ImportacionProductosService.claveSku(fila.sku))) {
+                throw new IllegalArgumentException("SKU repetido en el archivo: " + fila.sku);
+            }
+            pendientes.add(fila);
+        }
+
+        private void error(int linea, String sku, String mensaje) {
+            erroresTotales++;
+            if (errores.size() < MAX_ERRORES_DETALLE) {
+                errores.add(ImportacionProductosResultadoDTO.ErrorFila.builder()
+                        .linea(linea)
+                        .sku(sku)
+                        .mensaje(mensaje)
+                        .build());
+            }
+        }
+    }
+
+    private static final class LoteAplicado {
+
+        private final List<ConteoInventarioResultadoDTO.Diferencia> diferencias = new ArrayList<>();
+        private final List<FilaConteo> desconocidas = new ArrayList<>();
+    }
+
+    private static final class FilaConteo {
+
+        private final int linea;
+        private final String sku;
+        private final int cantidad;
+
+        private FilaConteo(int linea, String sku, int cantidad) {
+            this.linea = linea;
+            this.sku = sku;
+            this.cantidad = cantidad;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.TipoEventoStock;
+import com.hrk.tienda_b2b.repository.EventoStockJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Descuentos y reposiciones de stock de los pedidos, por JDBC y dentro de la transacción de quien llama.
+ *
+ * Las variantes de la operación se bloquean juntas en orden de id (StockVarianteJdbcRepository.bloquear), así dos
+ * pedidos con variantes en común no se bloquean en cruz, y se escriben en un solo batch junto con sus eventos de
+ * stock. No abre transacciones ni conexiones propias: usa la conexión del pedido, el descuento se confirma o se
+ * revierte con él y los locks se sueltan en su commit. Por eso conviene llamarlo al final de la transacción, con el
+ * resto ya escrito, para tener las filas bloqueadas lo menos posible.
+ *
+ * Escribe sin pasar por las entidades: las ProductoVariante ya cargadas no ven el cambio (ni la nueva version), así
+ * que quien llama no tiene que guardarlas después.
+ */
+@Service
+@RequiredArgsConstructor
+public class CoordinadorDescuentosStock {
+
+    private final StockVarianteJdbcRepository stockJdbc;
+    private final EventoStockJdbcRepository eventoRepo;
+
+    /**
+     * Descuenta las variantes del pedido si después de cada una quedan al menos las unidades mínimas indicadas (lo
+     * reservado por otros). Es todo o nada: si alguna no alcanza no se escribe nada y se devuelven las que faltan.
+     * Devuelve una lista vacía si se descontó todo (con un evento VENTA por variante).
+     *
+     * @param minimoRestantePorVariante unidades que deben quedar de cada variante (puede no tener la variante: 0)
+     */
+    public List<StockInsuficienteException.Faltante> descontarTodo(Long pedidoId, Map<Long, Integer> cantidadPorVariante,
+                                                                  Map<Long, Integer> minimoRestantePorVariante) {
+        exigirTransaccion();
+        validarCantidades(cantidadPorVariante);
+        Map<Long, StockVarianteJdbcRepository.StockVariante> filas = bloquear(cantidadPorVariante.keySet());
+
+        List<StockInsuficienteException.Faltante> faltantes = new ArrayList<>();
+        Map<Long, Integer> deltaPorVariante = new TreeMap<>();
+        cantidadPorVariante.forEach((varianteId, cantidad) -> {
+            StockVarianteJdbcRepository.StockVariante fila = filas.get(varianteId);
+            int minimo = Math.max(minimoRestantePorVariante.getOrDefault(varianteId, 0), 0);
+            int disponible = Math.max(fila.getStockDisponible() - minimo, 0);
+            if (cantidad > disponible) {
+                faltantes.add(new StockInsuficienteException.Faltante(varianteId, fila.getSku(), cantidad, disponible));
+            }
+            deltaPorVariante.put(varianteId, -cantidad);
+        });
+        if (!faltantes.isEmpty()) {
+            return faltantes;
+        }
+        escribir(pedidoId, deltaPorVariante, TipoEventoStock.VENTA);
+        return faltantes;
+    }
+
+    /**
+     * Devuelve stock del pedido (anulación, devolución apta): mismas filas bloqueadas en orden, un batch y un evento
+     * del tipo indicado por variante.
+     */
+    public void reponer(Long pedidoId, Map<Long, Integer> cantidadPorVariante, TipoEventoStock tipo) {
+        exigirTransaccion();
+        validarCantidades(cantidadPorVariante);
+        bloquear(cantidadPorVariante.keySet());
+        escribir(pedidoId, new TreeMap<>(cantidadPorVariante), tipo);
+    }
+
+    private Map<Long, StockVarianteJdbcRepository.StockVariante> bloquear(Collection<Long> varianteIds) {
+        Map<Long, StockVarianteJdbcRepository.StockVariante> filas = new TreeMap<>();
+        for (StockVarianteJdbcRepository.StockVariante fila : stockJdbc.bloquear(varianteIds)) {
+            filas.put(fila.getId(), fila);
+        }
+        if (filas.size() != varianteIds.size()) {
+            TreeSet<Long> faltan = new TreeSet<>(varianteIds);
+            faltan.removeAll(filas.keySet());
+            throw new IllegalArgumentException("Variante no encontrada: " + faltan);
+        }
+        return filas;
+    }
+
+    private void escribir(Long pedidoId, Map<Long, Integer> deltaPorVariante, TipoEventoStock tipo) {
+        stockJdbc.ajustar(deltaPorVariante);
+        eventoRepo.registrar(deltaPorVariante.entrySet().stream()
+                .map(e -> new EventoStockJdbcRepository.Evento(e.getKey(), e.getValue(), tipo, pedidoId))
+                .toList());
+    }
+
+    private static void validarCantidades(Map<Long, Integer> cantidadPorVariante) {
+        if (cantidadPorVariante.isEmpty()) {
+            throw new IllegalArgumentException("No hay variantes para mover stock");
+        }
+        for (Integer cantidad : cantidadPorVariante.values()) {
+            if (cantidad == null || cantidad <= 0) {
+                throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+            }
+        }
+    }
+
+    // Sin transacción cada sentencia confirmaría sola y el lock de las filas no cubriría la escritura
+    private static void exigirTransaccion() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Los movimientos de stock tienen que correr dentro de una transacción");
+        }
+    }
+}
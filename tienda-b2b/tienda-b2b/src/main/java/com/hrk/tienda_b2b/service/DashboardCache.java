@@ -0,0 +1,172 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.event.PedidoEstadoCambiadoEvent;
+import com.hrk.tienda_b2b.event.StockHistoricoRegistradoEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache de resultados de los dashboards, LRU con tamaño máximo.
+ *
+ * - Rangos completamente en el pasado: no vencen; sólo se invalidan si un evento toca un día del rango
+ *   (por ejemplo, se cancela un pedido viejo).
+ * - Rangos que incluyen hoy (o sin "hasta"): además vencen a los ttlSegundos.
+ * - Métricas que usan stock histórico: se invalidan también cuando se registra stock.
+ *
+ * Los eventos se procesan después del commit, para no invalidar por cambios que terminan en rollback.
+ */
+@Component
+public class DashboardCache {
+
+    private final int maxEntradas;
+    private final long ttlMillis;
+
+    // accessOrder = true -> orden LRU; acceso siempre dentro de synchronized (this)
+    private final LinkedHashMap<String, Entrada> entradas;
+
+    // Se incrementa en cada invalidación: un cálculo que empezó antes no guarda su resultado (podría ser viejo)
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    public DashboardCache(@Value("${app.dashboard.cache.max-entradas:500}") int maxEntradas,
+                          @Value("${app.dashboard.cache.ttl-segundos:300}") long ttlSegundos) {
+        this.maxEntradas = maxEntradas;
+        this.ttlMillis = ttlSegundos * 1000;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                boolean desalojar = size() > DashboardCache.this.maxEntradas;
+                if (desalojar) {
+                    desalojos.incrementAndGet();
+                }
+                return desalojar;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el valor cacheado o lo calcula. desde/hasta null = rango abierto por ese lado;
+     * clienteId sólo para métricas de un cliente (se invalidan con cualquier pedido de ese cliente).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T obtener(String metrica, LocalDateTime desde, LocalDateTime hasta, Long clienteId,
+                         boolean dependeDeStock, Object parametros, Supplier<T> calculo) {
+        String clave = metrica + "|" + desde + "|" + hasta + "|" + clienteId + "|" + parametros;
+        long ahora = System.currentTimeMillis();
+
+        synchronized (this) {
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null && entrada.expiraEn > ahora) {
+                aciertos.incrementAndGet();
+                return (T) entrada.valor;
+            }
+            if (entrada != null) {
+                entradas.remove(clave);
+            }
+        }
+
+        fallos.incrementAndGet();
+        long generacionInicial = generacion.get();
+        T valor = calculo.get();
+
+        LocalDate diaDesde = desde != null ? desde.toLocalDate() : null;
+        LocalDate diaHasta = hasta != null ? hasta.toLocalDate() : null;
+        boolean incluyeHoy = diaHasta == null || !diaHasta.isBefore(LocalDate.now());
+        long expiraEn = incluyeHoy ? ahora + ttlMillis : Long.MAX_VALUE;
+
+        synchronized (this) {
+            if (generacion.get() == generacionInicial) {
+                entradas.put(clave, new Entrada(valor, diaDesde, diaHasta, clienteId, dependeDeStock, expiraEn));
+            }
+        }
+        return valor;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alCambiarPedido(PedidoEstadoCambiadoEvent evento) {
+        int eliminadas;
+        synchronized (this) {
+            generacion.incrementAndGet();
+            int antes = entradas.size();
+            entradas.values().removeIf(e -> e.contieneDia(evento.getDia())
+                    || (e.clienteId != null && e.clienteId.equals(evento.getClienteId())));
+            eliminadas = antes - entradas.size();
+        }
+        invalidaciones.addAndGet(eliminadas);
+        System.out.println("🔵 [DASHBOARD CACHE] " + evento + " - entradas invalidadas: " + eliminadas);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alRegistrarStock(StockHistoricoRegistradoEvent evento) {
+        int eliminadas;
+        synchronized (this) {
+            generacion.incrementAndGet();
+            int antes = entradas.size();
+            entradas.values().removeIf(e -> e.dependeDeStock);
+            eliminadas = antes - entradas.size();
+        }
+        invalidaciones.addAndGet(eliminadas);
+    }
+
+    public synchronized void limpiar() {
+        generacion.incrementAndGet();
+        invalidaciones.addAndGet(entradas.size());
+        entradas.clear();
+    }
+
+    public Map<String, Object> estadisticas() {
+        long totalAciertos = aciertos.get();
+        long totalFallos = fallos.get();
+        long consultas = totalAciertos + totalFallos;
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        synchronized (this) {
+            resultado.put("entradas", entradas.size());
+        }
+        resultado.put("maxEntradas", maxEntradas);
+        resultado.put("aciertos", totalAciertos);
+        resultado.put("fallos", totalFallos);
+        resultado.put("porcentajeAciertos", consultas > 0 ? Math.round(totalAciertos * 10000.0 / consultas) / 100.0 : 0.0);
+        resultado.put("desalojos", desalojos.get());
+        resultado.put("invalidaciones", invalidaciones.get());
+        return resultado;
+    }
+
+    private static final class Entrada {
+        private final Object valor;
+        private final LocalDate desde;
+        private final LocalDate hasta;
+        private final Long clienteId;
+        private final boolean dependeDeStock;
+        private final long expiraEn;
+
+        private Entrada(Object valor, LocalDate desde, LocalDate hasta, Long clienteId, boolean dependeDeStock, long expiraEn) {
+            this.valor = valor;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.clienteId = clienteId;
+            this.dependeDeStock = dependeDeStock;
+            this.expiraEn = expiraEn;
+        }
+
+        private boolean contieneDia(LocalDate dia) {
+            if (clienteId != null && desde == null && hasta == null) {
+                return false; // métrica de un cliente: se invalida por clienteId, no por día
+            }
+            return (desde == null || !dia.isBefore(desde)) && (hasta == null || !dia.isAfter(hasta));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.hrk.tienda_b2b.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Arma en una sola llamada todos los KPIs del panel de administración.
+ *
+ * Cada KPI es el mismo método de {@link DashboardService} que usa su endpoint individual, con los mismos "desde" y
+ * "hasta": si no se indican, cada uno aplica su período por defecto (y lo informa en su propio resultado), así el
+ * resumen nunca difiere de los endpoints sueltos. Los KPIs se calculan en paralelo en el pool "dashboardPool" y la
+ * respuesta incluye cuánto tardó cada uno.
+ */
+@Service
+public class DashboardResumenService {
+
+    private final DashboardService dashboardService;
+    private final ForkJoinPool dashboardPool;
+
+    public DashboardResumenService(DashboardService dashboardService,
+                                   @Qualifier("dashboardPool") ForkJoinPool dashboardPool) {
+        this.dashboardService = dashboardService;
+        this.dashboardPool = dashboardPool;
+    }
+
+    public Map<String, Object> obtenerResumen(LocalDateTime desde, LocalDateTime hasta, int topArticulos, int topClientes) {
+        // Antes de lanzar nada, para no devolver la mitad de los KPIs
+        DashboardServiceImpl.validarTop(topArticulos);
+        DashboardServiceImpl.validarTop(topClientes);
+
+        long inicio = System.nanoTime();
+
+        // Todos los KPIs son independientes entre sí: se lanzan juntos y se espera a todos
+        Map<String, Supplier<Object>> kpis = new LinkedHashMap<>();
+        kpis.put("ordenesCanceladas", () -> Map.of("cantidad", dashboardService.contarOrdenesCanceladas(desde, hasta)));
+        kpis.put("medioPagoMasUsado", () -> dashboardService.obtenerMedioPagoMasUsado(desde, hasta));
+        kpis.put("devoluciones", () -> dashboardService.contarDevoluciones(desde, hasta));
+        kpis.put("porcentajeVendidoStockHistorico", () -> dashboardService.calcularPorcentajeVendidoStockHistorico(desde, hasta));
+        kpis.put("topArticulosVendidos", () -> dashboardService.obtenerTopArticulosMasVendidos(topArticulos, desde, hasta));
+        kpis.put("totalFacturado", () -> dashboardService.calcularTotalFacturado(desde, hasta));
+        kpis.put("topClientesMonto", () -> dashboardService.obtenerTopClientesPorMonto(topClientes, desde, hasta));
+        kpis.put("clientesSinCompras", () -> dashboardService.obtenerClientesSinCompras(desde, hasta));
+
+        Map<String, CompletableFuture<Object>> resultados = new LinkedHashMap<>();
+        Map<String, Long> tiemposKpi = new ConcurrentHashMap<>();
+        kpis.forEach((nombre, kpi) -> resultados.put(nombre, CompletableFuture.supplyAsync(() -> {
+            long t0 = System.nanoTime();
+            try {
+                return kpi.get();
+            } finally {
+                tiemposKpi.put(nombre, (System.nanoTime() - t0) / 1_000_000);
+            }
+        }, dashboardPool)));
+
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        // null = cada KPI usó su período por defecto
+        respuesta.put("desde", desde != null ? desde.toString() : null);
+        respuesta.put("hasta", hasta != null ? hasta.toString() : null);
+        resultados.forEach((nombre, futuro) -> respuesta.put(nombre, futuro.join()));
+
+        Map<String, Object> tiempos = new LinkedHashMap<>();
+        Map<String, Long> detalleKpis = new LinkedHashMap<>();
+        kpis.keySet().forEach(nombre -> detalleKpis.put(nombre, tiemposKpi.get(nombre)));
+        tiempos.put("kpisMs", detalleKpis);
+        tiempos.put("totalMs", (System.nanoTime() - inicio) / 1_000_000);
+        respuesta.put("tiempos", tiempos);
+
+        System.out.println("🔵 [DASHBOARD] Resumen calculado en " + tiempos.get("totalMs") + " ms");
+        return respuesta;
+    }
+}
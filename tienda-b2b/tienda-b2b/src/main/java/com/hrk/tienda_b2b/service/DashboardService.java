@@ -5,6 +5,11 @@ import java.util.List;
 import java.util.Map;
 
 public interface DashboardService {
+
+    // Período por defecto (hacia atrás desde ahora) cuando no se indica "desde"; las métricas simples no tienen
+    // período por defecto y cuentan sobre todo el historial
+    int MESES_POR_DEFECTO = 3;
+    int MESES_FACTURACION_POR_DEFECTO = 1;
     
     // Métricas simples
     Long contarOrdenesCanceladas(LocalDateTime desde, LocalDateTime hasta);
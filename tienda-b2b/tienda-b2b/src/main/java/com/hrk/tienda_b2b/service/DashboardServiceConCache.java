@@ -0,0 +1,83 @@
+package com.hrk.tienda_b2b.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DashboardService con cache de resultados (ver DashboardCache). Es el que se inyecta por defecto;
+ * el cálculo real sigue en DashboardServiceImpl.
+ */
+@Service
+@Primary
+@RequiredArgsConstructor
+public class DashboardServiceConCache implements DashboardService {
+
+    private final DashboardServiceImpl dashboardServiceImpl;
+    private final DashboardCache cache;
+
+    @Override
+    public Long contarOrdenesCanceladas(LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("ordenesCanceladas", desde, hasta, null, false, null,
+                () -> dashboardServiceImpl.contarOrdenesCanceladas(desde, hasta));
+    }
+
+    @Override
+    public Map<String, Object> obtenerMedioPagoMasUsado(LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("medioPagoMasUsado", desde, hasta, null, false, null,
+                () -> dashboardServiceImpl.obtenerMedioPagoMasUsado(desde, hasta));
+    }
+
+    @Override
+    public Map<String, Long> contarDevoluciones(LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("devoluciones", desde, hasta, null, false, null,
+                () -> dashboardServiceImpl.contarDevoluciones(desde, hasta));
+    }
+
+    @Override
+    public Map<String, Object> calcularPorcentajeVendidoStockHistorico(LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("porcentajeVendidoStockHistorico", desde, hasta, null, true, null,
+                () -> dashboardServiceImpl.calcularPorcentajeVendidoStockHistorico(desde, hasta));
+    }
+
+    @Override
+    public List<Map<String, Object>> obtenerTopArticulosMasVendidos(int top, LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("topArticulosVendidos", desde, hasta, null, false, top,
+                () -> dashboardServiceImpl.obtenerTopArticulosMasVendidos(top, desde, hasta));
+    }
+
+    @Override
+    public Map<String, Object> obtenerDetallesProducto(Long productoId, LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("detallesProducto", desde, hasta, null, true, productoId,
+                () -> dashboardServiceImpl.obtenerDetallesProducto(productoId, desde, hasta));
+    }
+
+    @Override
+    public Map<String, Object> calcularTotalFacturado(LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("totalFacturado", desde, hasta, null, false, null,
+                () -> dashboardServiceImpl.calcularTotalFacturado(desde, hasta));
+    }
+
+    @Override
+    public List<Map<String, Object>> obtenerTopClientesPorMonto(int top, LocalDateTime desde, LocalDateTime hasta) {
+        return cache.obtener("topClientesMonto", desde, hasta, null, false, top,
+                () -> dashboardServiceImpl.obtenerTopClientesPorMonto(top, desde, hasta));
+    }
+
+    @Override
+    public Map<String, Object> obtenerClientesSinCompras(LocalDateTime desde, LocalDateTime hasta) {
+        // Depende también del alta/baja de clientes: los rangos que incluyen hoy vencen por TTL
+        return cache.obtener("clientesSinCompras", desde, hasta, null, false, null,
+                () -> dashboardServiceImpl.obtenerClientesSinCompras(desde, hasta));
+    }
+
+    @Override
+    public Map<String, Object> obtenerUltimaCompraCliente(Long clienteId) {
+        return cache.obtener("ultimaCompraCliente", null, null, clienteId, false, null,
+                () -> dashboardServiceImpl.obtenerUltimaCompraCliente(clienteId));
+    }
+}
@@ -14,4 +14,7 @@ public interface DevolucionService {
     
     // Método para consultar disponibilidad de devolución por variante
     Map<String, Integer> consultarDisponibilidadDevolucion(Long clienteId, Long varianteId);
+
+    // Lo mismo para varias variantes en una sola consulta, por id de variante
+    Map<Long, Map<String, Integer>> consultarDisponibilidadDevolucion(Long clienteId, List<Long> varianteIds);
 }
\ No newline at end of file
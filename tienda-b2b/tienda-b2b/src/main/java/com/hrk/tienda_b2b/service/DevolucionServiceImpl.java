@@ -1,8 +1,12 @@
 package com.hrk.tienda_b2b.service;
 
+import com.hrk.tienda_b2b.config.ReintentarSiHayConflicto;
+import com.hrk.tienda_b2b.event.PedidoEstadoCambiadoEvent;
+import com.hrk.tienda_b2b.event.StockVarianteModificadoEvent;
 import com.hrk.tienda_b2b.model.*;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import com.hrk.tienda_b2b.repository.PedidoRepository;
 import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
@@ -10,9 +14,12 @@ import com.hrk.tienda_b2b.repository.DetallePedidoRepository;
 import com.hrk.tienda_b2b.repository.MovimientoStockRepository;
 import com.hrk.tienda_b2b.repository.UsuarioRepository;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 
 @Service
@@ -24,6 +31,10 @@ public class DevolucionServiceImpl implements DevolucionService {
     private final DetallePedidoRepository detalleRepo;
     private final MovimientoStockRepository movRepo;
     private final UsuarioRepository usuarioRepo;
+    private final ResumenDiarioService resumenDiario;
+    private final SaldoDevolucionService saldoDevolucion;
+    private final CoordinadorDescuentosStock coordinadorStock;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override @Transactional
     public Pedido crearDevolucion(Long clienteId, Long pedidoOrigenId) {
@@ -54,7 +65,10 @@ public class DevolucionServiceImpl implements DevolucionService {
                 .fecha(LocalDateTime.now())
                 .total(0.0) // puede ser 0 si solo registrás físicas; si hacés nota de crédito, calculás
                 .build();
-        return pedidoRepo.save(p);
+        Pedido devolucion = pedidoRepo.save(p);
+        resumenDiario.incorporar(devolucion); // las devoluciones cuentan como pendientes desde que se crean
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(devolucion));
+        return devolucion;
     }
 
     @Override @Transactional
@@ -75,9 +89,10 @@ public class DevolucionServiceImpl implements DevolucionService {
                 .orElseThrow(() -> new IllegalArgumentException("Variante no encontrada"));
 
         // ⭐ VALIDACIÓN: Verificar que no se exceda el total entregado
+        // El saldo queda bloqueado hasta el commit: otra devolución de la misma variante espera a esta
         Long clienteId = p.getClienteId();
-        int totalEntregado = calcularTotalEntregado(clienteId, varianteId);
-        int totalDevueltoOtrasNotas = calcularTotalDevuelto(clienteId, varianteId, devolucionId); // Excluir la devolución actual
+        SaldoDevolucion saldo = saldoDevolucion.bloquear(clienteId, varianteId);
+        int totalEntregado = saldo.getEntregado();
         
         // Calcular cantidad ya devuelta en esta devolución (items existentes de la misma variante)
         // Usar el repositorio para asegurar que se cargan todos los detalles correctamente
@@ -90,7 +105,8 @@ public class DevolucionServiceImpl implements DevolucionService {
         }
         
         int cantidadAdevolver = cantidad;
-        int totalDevuelto = totalDevueltoOtrasNotas + cantidadEnEstaDevolucion;
+        int totalDevuelto = saldo.getDevuelto(); // todas las devoluciones, incluida esta
+        int totalDevueltoOtrasNotas = totalDevuelto - cantidadEnEstaDevolucion;
         int totalQueQuedariaDevuelto = totalDevuelto + cantidadAdevolver;
         
         System.out.println("🔵 [DEVOLUCION SERVICE] Validación de stock:");
@@ -124,8 +140,10 @@ public class DevolucionServiceImpl implements DevolucionService {
                 .build();
         // si agregaste campo motivo en DetallePedido: d.setMotivo(motivo);
 
+        resumenDiario.retirar(p); // sacar el total y las unidades anteriores de los acumulados
         detalleRepo.save(d);
         p.getDetalles().add(d);
+        saldoDevolucion.registrarDevolucion(clienteId, varianteId, cantidad);
 
         p.setTotal(p.getDetalles().stream()
                 .mapToDouble(it -> it.getPrecioUnitario() * it.getCantidad())
@@ -135,38 +153,49 @@ public class DevolucionServiceImpl implements DevolucionService {
         
         // Guardar el pedido actualizado
         Pedido pedidoActualizado = pedidoRepo.save(p);
+        resumenDiario.incorporar(pedidoActualizado);
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(pedidoActualizado));
         System.out.println("🔵 [DEVOLUCION SERVICE] Pedido guardado exitosamente");
         
         return pedidoActualizado;
     }
 
     @Override @Transactional
+    @ReintentarSiHayConflicto
     public Pedido aprobarApta(Long devolucionId) {
         Pedido p = pedidoRepo.findById(devolucionId)
                 .orElseThrow(() -> new IllegalArgumentException("Devolución no encontrada"));
         if (p.getTipo() != TipoDocumento.DEVOLUCION)
             throw new IllegalStateException("No es una devolución");
 
+        // Movimientos de entrada en un saveAll y el stock al final, por el coordinador (como al confirmar un pedido):
+        // las variantes se bloquean en orden de id y se suman en un batch, con un evento DEVOLUCION por variante
+        Map<Long, Integer> cantidadPorVariante = new TreeMap<>();
+        List<MovimientoStock> movimientos = new ArrayList<>(p.getDetalles().size());
+        LocalDateTime ahora = LocalDateTime.now();
         for (DetallePedido d : p.getDetalles()) {
-            ProductoVariante v = varianteRepo.findById(d.getVariante().getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Variante no encontrada"));
-
-            // suma stock
-            v.setStockDisponible(v.getStockDisponible() + d.getCantidad());
-            varianteRepo.save(v);
-
-            movRepo.save(MovimientoStock.builder()
-                    .variante(v)
+            cantidadPorVariante.merge(d.getVariante().getId(), d.getCantidad(), Integer::sum);
+            movimientos.add(MovimientoStock.builder()
+                    .variante(d.getVariante())
                     .pedido(p)
                     .detalle(d)
                     .tipo(TipoMovimiento.DEVOLUCION_ENTRADA)
                     .cantidad(d.getCantidad())
-                    .fecha(LocalDateTime.now())
+                    .fecha(ahora)
                     .build());
         }
+        movRepo.saveAll(movimientos);
+        pedidoRepo.flush();
+        coordinadorStock.reponer(p.getId(), cantidadPorVariante, TipoEventoStock.DEVOLUCION);
+
+        resumenDiario.retirar(p);
         p.setEstado(EstadoPedido.CONFIRMADO);
         p.setTipoAprobacionDevolucion(TipoAprobacionDevolucion.APTA); // ⭐ Registrar tipo de aprobación
-        return pedidoRepo.save(p);
+        Pedido aprobada = pedidoRepo.save(p);
+        resumenDiario.incorporar(aprobada);
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(aprobada));
+        eventPublisher.publishEvent(new StockVarianteModificadoEvent(new ArrayList<>(cantidadPorVariante.keySet())));
+        return aprobada;
     }
 
     @Override @Transactional
@@ -190,9 +219,13 @@ public class DevolucionServiceImpl implements DevolucionService {
                     .fecha(LocalDateTime.now())
                     .build());
         }
+        resumenDiario.retirar(p);
         p.setEstado(EstadoPedido.CONFIRMADO);
         p.setTipoAprobacionDevolucion(TipoAprobacionDevolucion.SCRAP); // ⭐ Registrar tipo de aprobación
-        return pedidoRepo.save(p);
+        Pedido aprobada = pedidoRepo.save(p);
+        resumenDiario.incorporar(aprobada);
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(aprobada));
+        return aprobada;
     }
 
     @Override
@@ -202,105 +235,25 @@ public class DevolucionServiceImpl implements DevolucionService {
                 .orElseThrow(() -> new IllegalArgumentException("Devolución no encontrada"));
     }
 
-    /**
-     * Calcula el total entregado al cliente para una variante específica
-     * (suma de cantidades en pedidos ENTREGADOS que NO sean devoluciones)
-     */
-    private int calcularTotalEntregado(Long clienteId, Long varianteId) {
-        // Obtener todos los pedidos del cliente que están ENTREGADOS y NO son devoluciones
-        List<Pedido> pedidosCliente = pedidoRepo.findByClienteId(clienteId);
-        
-        System.out.println("🔵 [DEVOLUCION SERVICE] Buscando total entregado - Cliente: " + clienteId + ", Variante: " + varianteId);
-        System.out.println("🔵 [DEVOLUCION SERVICE] Total de pedidos del cliente: " + pedidosCliente.size());
-        
-        int total = 0;
-        for (Pedido pedido : pedidosCliente) {
-            // Solo contar pedidos ENTREGADOS que NO sean devoluciones
-            // (pueden ser VENTA o null, pero NO DEVOLUCION)
-            boolean esPedidoNormal = pedido.getTipo() == null || pedido.getTipo() == TipoDocumento.VENTA;
-            boolean estaEntregado = pedido.getEstado() == EstadoPedido.ENTREGADO;
-            
-            System.out.println("🔵 [DEVOLUCION SERVICE] Analizando pedido ID: " + pedido.getId() + 
-                ", Tipo: " + pedido.getTipo() + ", Estado: " + pedido.getEstado() + 
-                ", Es normal: " + esPedidoNormal + ", Está entregado: " + estaEntregado);
-            
-            if (esPedidoNormal && estaEntregado) {
-                // Buscar directamente los detalles de este pedido y esta variante usando el repositorio
-                // Esto evita problemas de lazy loading
-                List<DetallePedido> detallesPedido = detalleRepo.findByPedidoId(pedido.getId());
-                
-                System.out.println("🔵 [DEVOLUCION SERVICE] Pedido " + pedido.getId() + " tiene " + detallesPedido.size() + " detalles");
-                
-                for (DetallePedido detalle : detallesPedido) {
-                    // Acceder al ID de la variante sin cargar completamente la entidad
-                    Long detalleVarianteId = detalle.getVariante().getId();
-                    
-                    System.out.println("🔵 [DEVOLUCION SERVICE] Detalle ID: " + detalle.getId() + 
-                        ", Variante ID: " + detalleVarianteId + ", Cantidad: " + detalle.getCantidad());
-                    
-                    if (detalleVarianteId.equals(varianteId)) {
-                        total += detalle.getCantidad();
-                        System.out.println("🔵 [DEVOLUCION SERVICE] ✅ Encontrado detalle - Pedido ID: " + pedido.getId() + 
-                            ", Variante ID: " + detalleVarianteId + ", Cantidad: " + detalle.getCantidad());
-                    }
-                }
-            }
-        }
-        
-        System.out.println("🔵 [DEVOLUCION SERVICE] ✅ Total entregado calculado: " + total + " para variante " + varianteId + " y cliente " + clienteId);
-        return total;
-    }
-
-
     /**
      * Consulta la disponibilidad de devolución para una variante específica
      * Retorna: totalEntregado, totalDevuelto, disponibleParaDevolver
      */
     @Override
     public Map<String, Integer> consultarDisponibilidadDevolucion(Long clienteId, Long varianteId) {
-        int totalEntregado = calcularTotalEntregado(clienteId, varianteId);
-        // Para consulta, no excluimos ninguna devolución (queremos el total devuelto real)
-        int totalDevuelto = calcularTotalDevuelto(clienteId, varianteId, null);
-        int disponibleParaDevolver = Math.max(0, totalEntregado - totalDevuelto);
-        
-        Map<String, Integer> resultado = new HashMap<>();
-        resultado.put("totalEntregado", totalEntregado);
-        resultado.put("totalDevuelto", totalDevuelto);
-        resultado.put("disponibleParaDevolver", disponibleParaDevolver);
-        
-        return resultado;
+        return consultarDisponibilidadDevolucion(clienteId, List.of(varianteId)).get(varianteId);
     }
-    
-    /**
-     * Calcula el total ya devuelto al cliente para una variante específica
-     * (suma de cantidades en todas las devoluciones, sin importar su estado)
-     * Excluye la devolución actual que se está editando (si devolucionActualId no es null)
-     */
-    private int calcularTotalDevuelto(Long clienteId, Long varianteId, Long devolucionActualId) {
-        List<Pedido> pedidosCliente = pedidoRepo.findByClienteId(clienteId);
-        
-        int total = 0;
-        for (Pedido devolucion : pedidosCliente) {
-            // Solo contar devoluciones (excluyendo la devolución actual si se especifica)
-            if (devolucion.getTipo() == TipoDocumento.DEVOLUCION && 
-                (devolucionActualId == null || !devolucion.getId().equals(devolucionActualId))) {
-                // Buscar directamente los detalles usando el repositorio para evitar problemas de lazy loading
-                List<DetallePedido> detallesDevolucion = detalleRepo.findByPedidoId(devolucion.getId());
-                
-                for (DetallePedido detalle : detallesDevolucion) {
-                    Long detalleVarianteId = detalle.getVariante().getId();
-                    
-                    if (detalleVarianteId.equals(varianteId)) {
-                        total += detalle.getCantidad();
-                        System.out.println("🔵 [DEVOLUCION SERVICE] Encontrada devolución - Devolución ID: " + devolucion.getId() + 
-                            ", Variante ID: " + detalleVarianteId + ", Cantidad: " + detalle.getCantidad());
-                    }
-                }
-            }
-        }
-        
-        String excluirInfo = devolucionActualId != null ? " (excluyendo devolución " + devolucionActualId + ")" : " (todas las devoluciones)";
-        System.out.println("🔵 [DEVOLUCION SERVICE] Total devuelto calculado: " + total + " para variante " + varianteId + " y cliente " + clienteId + excluirInfo);
-        return total;
+
+    @Override
+    public Map<Long, Map<String, Integer>> consultarDisponibilidadDevolucion(Long clienteId, List<Long> varianteIds) {
+        Map<Long, Map<String, Integer>> disponibilidades = new LinkedHashMap<>();
+        saldoDevolucion.consultar(clienteId, varianteIds).forEach((varianteId, saldo) -> {
+            Map<String, Integer> resultado = new HashMap<>();
+            resultado.put("totalEntregado", saldo.getEntregado());
+            resultado.put("totalDevuelto", saldo.getDevuelto());
+            resultado.put("disponibleParaDevolver", saldo.disponible());
+            disponibilidades.put(varianteId, resultado);
+        });
+        return disponibilidades;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.TipoEventoStock;
+import com.hrk.tienda_b2b.repository.EventoStockJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registro de eventos de stock (eventos_stock) y sus cortes diarios (snapshots_stock).
+ *
+ * Quien cambia stock_disponible llama a {@link #registrar} en la misma transacción (o agrega los eventos por
+ * EventoStockJdbcRepository si ya trabaja por JDBC). Todos los días, poco después de medianoche, se genera el
+ * corte de las 00:00 a partir del corte anterior y los eventos del día, así el stock a cualquier fecha es un
+ * snapshot más, como mucho, un día de eventos.
+ *
+ * La fecha del evento es la del insert, no la del commit: una transacción que confirma después de generado el corte
+ * deja eventos con fecha anterior que ese corte no vio. Por eso cada corte marca los eventos que sumó
+ * (EventoStock.corte) y no se guía por la fecha: los que llegan tarde entran en el corte siguiente, y stockAl los
+ * cuenta por su fecha aunque el corte que corresponde ya exista.
+ */
+@Service
+@RequiredArgsConstructor
+public class EventoStockService {
+
+    private final EventoStockJdbcRepository eventoRepo;
+
+    public void registrar(Long varianteId, int delta, TipoEventoStock tipo, Long pedidoId) {
+        eventoRepo.registrar(varianteId, delta, tipo, pedidoId);
+    }
+
+    /**
+     * Stock de la variante al momento indicado (incluye los eventos de ese mismo instante).
+     */
+    @Transactional(readOnly = true)
+    public int stockAl(Long varianteId, LocalDateTime fecha) {
+        LocalDateTime corte = eventoRepo.ultimoCorte(fecha);
+        return eventoRepo.stockDesdeCorte(corte, fecha, varianteId).getOrDefault(varianteId, 0);
+    }
+
+    /**
+     * Stock de todas las variantes al momento indicado, por id de variante (sólo las que tenían stock).
+     * Para "fin de mes" conviene pasar el primer instante del mes siguiente: cae justo en un corte.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> stockAl(LocalDateTime fecha) {
+        LocalDateTime corte = eventoRepo.ultimoCorte(fecha);
+        return eventoRepo.stockDesdeCorte(corte, fecha, null);
+    }
+
+    // El corte de hoy se genera unos minutos después de medianoche; lo de ayer que confirme más tarde entra en el de mañana
+    @Scheduled(cron = "${app.stock.snapshots-cron:0 10 0 * * *}")
+    @Transactional
+    public void generarCorteDelDia() {
+        generarCorte(LocalDate.now().atStartOfDay());
+    }
+
+    @Transactional
+    public Map<String, Object> generarCorte(LocalDateTime corte) {
+        if (corte.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("No se puede generar un corte a futuro: " + corte);
+        }
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("corte", corte.toString());
+        if (eventoRepo.existeCorte(corte)) {
+            resultado.put("variantes", 0);
+            return resultado;
+        }
+        // Los eventos ya están marcados con los cortes posteriores: uno intermedio no tendría qué sumar
+        LocalDateTime anterior = eventoRepo.ultimoCorte();
+        if (anterior != null && anterior.isAfter(corte)) {
+            throw new IllegalArgumentException("Ya hay un corte posterior (" + anterior + "): no se puede generar el de " + corte);
+        }
+        int variantes = eventoRepo.generarCorte(anterior, corte);
+        System.out.println("✅ [EVENTOS STOCK] Corte " + corte + " generado: " + variantes + " variantes con stock"
+                + (anterior != null ? " (desde el corte " + anterior + ")" : ""));
+        resultado.put("variantes", variantes);
+        return resultado;
+    }
+
+    // Primer arranque: el registro empieza con el stock actual de cada variante
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializar() {
+        if (!eventoRepo.hayEventos()) {
+            int variantes = eventoRepo.sembrarSaldoInicial(LocalDateTime.now());
+            System.out.println("✅ [EVENTOS STOCK] Registro iniciado con el saldo de " + variantes + " variantes");
+        } else if (!eventoRepo.hayEventosConCorte()) {
+            // Cortes generados antes de marcar los eventos: cada uno sumó los de fecha anterior
+            int eventos = eventoRepo.marcarEventosDeCortesExistentes();
+            if (eventos > 0) {
+                System.out.println("✅ [EVENTOS STOCK] " + eventos + " eventos marcados con los cortes existentes");
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.repository.ClaveIdempotenciaJdbcRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Idempotency-Key para los POST que crean pedidos, mueven stock o inician pagos (ver IdempotenciaFilter).
+ *
+ * La primera vez que llega una clave se marca "en proceso" en claves_idempotencia (el INSERT es el que decide
+ * quién la procesa, también entre instancias). Al terminar se guarda la respuesta y los reintentos con la misma
+ * clave la reciben tal cual, sin volver a ejecutar nada. Las respuestas más usadas quedan además en un LRU en
+ * memoria para no ir a la base en cada reintento.
+ */
+@Service
+public class IdempotenciaService {
+
+    public enum Decision {
+        NUEVA,           // procesar y después llamar a completar/liberar
+        REPETIDA,        // devolver la respuesta guardada
+        EN_PROCESO,      // el request original todavía no terminó
+        HUELLA_DISTINTA  // misma clave con otro request
+    }
+
+    private final ClaveIdempotenciaJdbcRepository repo;
+    private final int horasRetencion;
+    private final int minutosEnProceso;
+    private final Map<String, Respuesta> recientes;
+
+    public IdempotenciaService(ClaveIdempotenciaJdbcRepository repo,
+                               @Value("${app.idempotencia.horas-retencion:24}") int horasRetencion,
+                               @Value("${app.idempotencia.minutos-en-proceso:5}") int minutosEnProceso,
+                               @Value("${app.idempotencia.max-en-memoria:5000}") int maxEnMemoria) {
+        this.repo = repo;
+        this.horasRetencion = horasRetencion;
+        this.minutosEnProceso = minutosEnProceso;
+        this.recientes = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Respuesta> eldest) {
+                return size() > maxEnMemoria;
+            }
+        };
+    }
+
+    public Verificacion iniciar(byte[] clave, byte[] huella) {
+        String id = HexFormat.of().formatHex(clave);
+        Respuesta guardada;
+        synchronized (recientes) {
+            guardada = recientes.get(id);
+        }
+        if (guardada != null) {
+            return repetida(guardada, huella);
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        if (repo.reservar(clave, huella, ahora)) {
+            return new Verificacion(Decision.NUEVA, null);
+        }
+
+        ClaveIdempotenciaJdbcRepository.Registro registro = repo.buscar(clave);
+        if (registro == null) {
+            // Se borró entre el INSERT y el SELECT (el original falló): se intenta tomar de nuevo
+            return repo.reservar(clave, huella, ahora)
+                    ? new Verificacion(Decision.NUEVA, null)
+                    : new Verificacion(Decision.EN_PROCESO, null);
+        }
+        if (registro.getEstado() == 0) {
+            if (registro.getCreada().isBefore(ahora.minusMinutes(minutosEnProceso))) {
+                // Quedó colgada (reinicio a mitad del request): se libera y se procesa este
+                repo.borrar(clave);
+                if (repo.reservar(clave, huella, ahora)) {
+                    return new Verificacion(Decision.NUEVA, null);
+                }
+            }
+            return new Verificacion(Decision.EN_PROCESO, null);
+        }
+
+        Respuesta respuesta = new Respuesta(registro.getHuella(), registro.getEstado(), registro.getTipoContenido(),
+                registro.getCuerpo() != null ? registro.getCuerpo() : new byte[0], registro.getCreada());
+        recordar(id, respuesta);
+        return repetida(respuesta, huella);
+    }
+
+    /**
+     * Guarda la respuesta del request original. Los 5xx no se guardan: se libera la clave para que el reintento
+     * vuelva a ejecutar (la transacción ya se revirtió).
+     */
+    public void completar(byte[] clave, byte[] huella, int estado, String tipoContenido, byte[] cuerpo) {
+        if (estado >= 500) {
+            liberar(clave);
+            return;
+        }
+        repo.completar(clave, estado, tipoContenido, cuerpo);
+        recordar(HexFormat.of().formatHex(clave), new Respuesta(huella, estado, tipoContenido, cuerpo, LocalDateTime.now()));
+    }
+
+    public void liberar(byte[] clave) {
+        repo.borrar(clave);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotencia.limpieza-ms:600000}")
+    public void limpiar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime hasta = ahora.minusHours(horasRetencion);
+        int borradas = repo.borrarViejas(hasta, ahora.minusMinutes(minutosEnProceso));
+        synchronized (recientes) {
+            recientes.values().removeIf(r -> r.getCreada().isBefore(hasta));
+        }
+        if (borradas > 0) {
+            System.out.println("🔵 [IDEMPOTENCIA] Claves vencidas borradas: " + borradas);
+        }
+    }
+
+    private void recordar(String id, Respuesta respuesta) {
+        synchronized (recientes) {
+            recientes.put(id, respuesta);
+        }
+    }
+
+    private static Verificacion repetida(Respuesta guardada, byte[] huella) {
+        return Arrays.equals(guardada.getHuella(), huella)
+                ? new Verificacion(Decision.REPETIDA, guardada)
+                : new Verificacion(Decision.HUELLA_DISTINTA, null);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Verificacion {
+        private final Decision decision;
+        private final Respuesta respuesta; // sólo si REPETIDA
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Respuesta {
+        private final byte[] huella;
+        private final int estado;
+        private final String tipoContenido;
+        private final byte[] cuerpo;
+        private final LocalDateTime creada;
+    }
+}
@@ -0,0 +1,78 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.generator.BloqueIdsGenerator;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Mantiene la tabla ids_entidades que usa BloqueIdsGenerator.
+ *
+ * Al arrancar (después de que Hibernate actualiza el esquema) deja el próximo id de cada entidad por encima
+ * del MAX(id) de su tabla: así la migración desde IDENTITY es segura y no choca con filas existentes.
+ * También reserva bloques de ids para los inserts que se hacen por JDBC (ImportacionProductosService).
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class IdsPorBloqueService {
+
+    // Entidades con BloqueIdsGenerator: el segmento es el nombre de la tabla
+    public static final List<String> TABLAS = List.of(
+            "pedidos", "pedido_detalles", "movimientos_stock", "stock_historico", "producto_variantes", "carrito_items");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccionPropia;
+
+    public IdsPorBloqueService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // La fila queda bloqueada hasta el commit: se reserva en una transacción corta aparte
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        sincronizar();
+    }
+
+    private void sincronizar() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + BloqueIdsGenerator.TABLA + " (" +
+                BloqueIdsGenerator.COLUMNA_ENTIDAD + " VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                BloqueIdsGenerator.COLUMNA_PROXIMO_ID + " BIGINT) ENGINE=InnoDB");
+
+        for (String tabla : TABLAS) {
+            jdbcTemplate.update("INSERT INTO " + BloqueIdsGenerator.TABLA +
+                    " (" + BloqueIdsGenerator.COLUMNA_ENTIDAD + ", " + BloqueIdsGenerator.COLUMNA_PROXIMO_ID + ") " +
+                    "SELECT ?, COALESCE(MAX(id), 0) + 1 FROM " + tabla + " " +
+                    "ON DUPLICATE KEY UPDATE " + BloqueIdsGenerator.COLUMNA_PROXIMO_ID + " = GREATEST(COALESCE(" +
+                    BloqueIdsGenerator.COLUMNA_PROXIMO_ID + ", 1), VALUES(" + BloqueIdsGenerator.COLUMNA_PROXIMO_ID + "))", tabla);
+        }
+        System.out.println("✅ [IDS] Próximos ids sincronizados para " + TABLAS.size() + " tablas");
+    }
+
+    /**
+     * Reserva cantidad ids consecutivos de la tabla indicada y devuelve el primero.
+     */
+    public long reservar(String tabla, int cantidad) {
+        if (!TABLAS.contains(tabla)) {
+            throw new IllegalArgumentException("La tabla " + tabla + " no usa ids por bloques");
+        }
+        if (cantidad < 1) {
+            throw new IllegalArgumentException("La cantidad de ids a reservar debe ser positiva");
+        }
+
+        Long primero = transaccionPropia.execute(status -> {
+            List<Long> actual = jdbcTemplate.queryForList("SELECT " + BloqueIdsGenerator.COLUMNA_PROXIMO_ID +
+                    " FROM " + BloqueIdsGenerator.TABLA + " WHERE " + BloqueIdsGenerator.COLUMNA_ENTIDAD + " = ? FOR UPDATE",
+                    Long.class, tabla);
+            if (actual.isEmpty() || actual.get(0) == null) {
+                throw new IllegalStateException("No hay fila de ids para " + tabla);
+            }
+            jdbcTemplate.update("UPDATE " + BloqueIdsGenerator.TABLA + " SET " + BloqueIdsGenerator.COLUMNA_PROXIMO_ID +
+                    " = ? WHERE " + BloqueIdsGenerator.COLUMNA_ENTIDAD + " = ?", actual.get(0) + cantidad, tabla);
+            return actual.get(0);
+        });
+        return primero;
+    }
+}
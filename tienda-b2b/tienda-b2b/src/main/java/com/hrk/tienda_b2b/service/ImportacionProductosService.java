@@ -0,0 +1,574 @@
+package com.hrk.tienda_b2b.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hrk.tienda_b2b.dto.CreateProductoRequest;
+import com.hrk.tienda_b2b.dto.ImportacionProductosResultadoDTO;
+import com.hrk.tienda_b2b.event.CatalogoModificadoEvent;
+import com.hrk.tienda_b2b.event.StockHistoricoRegistradoEvent;
+import com.hrk.tienda_b2b.model.Categoria;
+import com.hrk.tienda_b2b.model.StockHistorico;
+import com.hrk.tienda_b2b.model.TipoEventoStock;
+import com.hrk.tienda_b2b.model.TipoProducto;
+import com.hrk.tienda_b2b.repository.EventoStockJdbcRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Alta masiva de productos desde un archivo CSV o JSON Lines, sin pasar por JPA.
+ *
+ * Cada fila es un producto con las mismas reglas que ProductoService.crearProducto (colores x talles,
+ * talles "S/M/L", stock por variante o repartido). Las filas válidas se acumulan en lotes y cada lote
+ * se escribe en su propia transacción con batches JDBC: productos, variantes, stock_historico inicial
+ * y resumen_stock_variantes. Si un lote falla se informan sus filas como error y se sigue con el resto.
+ *
+ * CSV: primera línea con encabezados (nombre, tipo, categoria, sku, colores, talles, precio, stock,
+ * stockPorVariante, descripcion, imagenUrl, oculto), separador "," o ";". Listas separadas con "|" y
+ * stockPorVariante como "Rojo-M=10|Azul-L=5". JSON Lines: un CreateProductoRequest por línea.
+ */
+@Service
+public class ImportacionProductosService {
+
+    public static final String FORMATO_CSV = "csv";
+    public static final String FORMATO_JSONL = "jsonl";
+
+    private static final int MAX_ERRORES_DETALLE = 500;
+    private static final String MOTIVO_STOCK_INICIAL = "Creación inicial de variante";
+
+    private static final String SQL_PRODUCTO = "INSERT INTO productos (nombre, descripcion, tipo, imagen_url, categoria, oculto) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_VARIANTE = "INSERT INTO producto_variantes (id, producto_id, sku, color, talle, precio, stock_disponible, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String SQL_STOCK_HISTORICO = "INSERT INTO stock_historico (id, variante_id, cantidad, stock_acumulado, fecha, motivo, tipo) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_RESUMEN_STOCK = "INSERT INTO resumen_stock_variantes " +
+            "(variante_id, total_entradas, total_ajustes_suma, total_ajustes_resta, cantidad_registros, ultimo_stock_acumulado, ultima_fecha) " +
+            "VALUES (?, ?, 0, 0, 1, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdsPorBloqueService idsPorBloqueService;
+    private final EventoStockJdbcRepository eventoRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int variantesPorLote;
+
+    public ImportacionProductosService(JdbcTemplate jdbcTemplate,
+                                       IdsPorBloqueService idsPorBloqueService,
+                                       EventoStockJdbcRepository eventoRepo,
+                                       PlatformTransactionManager transactionManager,
+                                       ObjectMapper objectMapper,
+                                       ApplicationEventPublisher eventPublisher,
+                                       @Value("${app.importacion.variantes-por-lote:2000}") int variantesPorLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idsPorBloqueService = idsPorBloqueService;
+        this.eventoRepo = eventoRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.variantesPorLote = Math.max(1, variantesPorLote);
+    }
+
+    public ImportacionProductosResultadoDTO importar(InputStream entrada, String formato) throws IOException {
+        if (!FORMATO_CSV.equals(formato) && !FORMATO_JSONL.equals(formato)) {
+            throw new IllegalArgumentException("Formato no soportado: " + formato + " (usar csv o jsonl)");
+        }
+
+        long inicio = System.currentTimeMillis();
+        Importacion importacion = new Importacion(cargarSkusExistentes());
+        System.out.println("🔵 [IMPORTACION] Iniciando importación " + formato + " (SKUs existentes: "
+                + importacion.skusUsados.size() + ")");
+
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            String linea;
+            int numeroLinea = 0;
+            Map<String, Integer> columnas = null;
+            char separador = ',';
+
+            while ((linea = lector.readLine()) != null) {
+                numeroLinea++;
+                if (numeroLinea == 1 && !linea.isEmpty() && linea.charAt(0) == '\uFEFF') {
+                    linea = linea.substring(1); // BOM de Excel
+                }
+                if (linea.isBlank()) {
+                    continue;
+                }
+
+                if (FORMATO_CSV.equals(formato) && columnas == null) {
+                    separador = linea.indexOf(';') >= 0 && linea.indexOf(',') < 0 ? ';' : ',';
+                    columnas = leerEncabezados(linea, separador);
+                    continue;
+                }
+
+                importacion.filasLeidas++;
+                try {
+                    CreateProductoRequest request = FORMATO_CSV.equals(formato)
+                            ? parsearFilaCsv(dividirCsv(linea, separador), columnas)
+                            : objectMapper.readValue(linea, CreateProductoRequest.class);
+                    importacion.agregar(validar(numeroLinea, request, importacion.skusUsados));
+                } catch (IllegalArgumentException | IOException e) {
+                    importacion.error(numeroLinea, null, e.getMessage());
+                }
+
+                if (importacion.variantesPendientes >= variantesPorLote) {
+                    escribirLote(importacion);
+                }
+            }
+        }
+        escribirLote(importacion);
+
+        if (importacion.productosCreados > 0) {
+            eventPublisher.publishEvent(new CatalogoModificadoEvent("importación masiva de " + importacion.productosCreados + " productos"));
+        }
+        if (importacion.registrosHistorico > 0) {
+            eventPublisher.publishEvent(new StockHistoricoRegistradoEvent(null, null));
+        }
+
+        long duracion = System.currentTimeMillis() - inicio;
+        System.out.println("✅ [IMPORTACION] Filas: " + importacion.filasLeidas + ", productos: " + importacion.productosCreados
+                + ", variantes: " + importacion.variantesCreadas + ", errores: " + importacion.erroresTotales
+                + " (" + duracion + " ms)");
+
+        return ImportacionProductosResultadoDTO.builder()
+                .filasLeidas(importacion.filasLeidas)
+                .productosCreados(importacion.productosCreados)
+                .variantesCreadas(importacion.variantesCreadas)
+                .registrosStockHistorico(importacion.registrosHistorico)
+                .erroresTotales(importacion.erroresTotales)
+                .errores(importacion.errores)
+                .duracionMs(duracion)
+                .build();
+    }
+
+    // ===== Escritura =====
+
+    private void escribirLote(Importacion importacion) {
+        List<ProductoImportado> lote = importacion.pendientes;
+        if (lote.isEmpty()) {
+            return;
+        }
+        importacion.pendientes = new ArrayList<>();
+        importacion.variantesPendientes = 0;
+
+        try {
+            int[] escritos = transactionTemplate.execute(status -> insertarLote(lote));
+            importacion.productosCreados += lote.size();
+            importacion.variantesCreadas += escritos[0];
+            importacion.registrosHistorico += escritos[1];
+            System.out.println("🔵 [IMPORTACION] Lote escrito: " + lote.size() + " productos, " + escritos[0] + " variantes");
+        } catch (RuntimeException e) {
+            System.out.println("🔴 [IMPORTACION] Falló un lote de " + lote.size() + " productos: " + e.getMessage());
+            for (ProductoImportado producto : lote) {
+                producto.variantes.forEach(v -> importacion.skusUsados.remove(claveSku(v.sku)));
+                importacion.error(producto.linea, producto.request.getSku(), "No se pudo guardar el lote: " + e.getMessage());
+            }
+        }
+    }
+
+    // Devuelve {variantes insertadas, registros de stock histórico}
+    private int[] insertarLote(List<ProductoImportado> lote) {
+        List<Long> productoIds = insertarConClaves(SQL_PRODUCTO, lote, (ps, p) -> {
+            CreateProductoRequest request = p.request;
+            ps.setString(1, request.getNombre().trim());
+            ps.setString(2, request.getDescripcion());
+            ps.setString(3, request.getTipo().name());
+            ps.setString(4, request.getImagenUrl() != null && !request.getImagenUrl().isBlank()
+                    ? request.getImagenUrl() : request.getTipo().getImagenDefault());
+            ps.setString(5, request.getCategoria().name());
+            ps.setBoolean(6, Boolean.TRUE.equals(request.getOculto()));
+        });
+
+        List<VarianteImportada> variantes = new ArrayList<>();
+        for (int i = 0; i < lote.size(); i++) {
+            for (VarianteImportada variante : lote.get(i).variantes) {
+                variante.productoId = productoIds.get(i);
+                variantes.add(variante);
+            }
+        }
+
+        // Variantes e historial usan ids por bloques (BloqueIdsGenerator): se reservan del mismo contador que Hibernate
+        long siguienteVarianteId = idsPorBloqueService.reservar("producto_variantes", variantes.size());
+        List<VarianteImportada> conStock = new ArrayList<>();
+        for (VarianteImportada variante : variantes) {
+            variante.id = siguienteVarianteId++;
+            if (variante.stock > 0) {
+                conStock.add(variante);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(SQL_VARIANTE, variantes, variantes.size(), (ps, v) -> {
+            ps.setLong(1, v.id);
+            ps.setLong(2, v.productoId);
+            ps.setString(3, v.sku);
+            ps.setString(4, v.color);
+            ps.setString(5, v.talle);
+            ps.setDouble(6, v.precio);
+            ps.setInt(7, v.stock);
+        });
+
+        // Mismo registro que ProductoService.registrarStockHistoricoInicial, y su fila de resumen
+        if (conStock.isEmpty()) {
+            return new int[]{variantes.size(), 0};
+        }
+        Timestamp fecha = Timestamp.valueOf(LocalDateTime.now());
+        long siguienteHistoricoId = idsPorBloqueService.reservar("stock_historico", conStock.size());
+        for (VarianteImportada variante : conStock) {
+            variante.historicoId = siguienteHistoricoId++;
+        }
+        jdbcTemplate.batchUpdate(SQL_STOCK_HISTORICO, conStock, conStock.size(), (ps, v) -> {
+            ps.setLong(1, v.historicoId);
+            ps.setLong(2, v.id);
+            ps.setInt(3, v.stock);
+            ps.setInt(4, v.stock);
+            ps.setTimestamp(5, fecha);
+            ps.setString(6, MOTIVO_STOCK_INICIAL);
+            ps.setString(7, StockHistorico.TipoMovimientoStock.ENTRADA_INICIAL.name());
+        });
+        jdbcTemplate.batchUpdate(SQL_RESUMEN_STOCK, conStock, conStock.size(), (ps, v) -> {
+            ps.setLong(1, v.id);
+            ps.setLong(2, v.stock);
+            ps.setInt(3, v.stock);
+            ps.setTimestamp(4, fecha);
+        });
+        eventoRepo.registrar(conStock.stream()
+                .map(v -> new EventoStockJdbcRepository.Evento(v.id, v.stock, TipoEventoStock.ALTA_VARIANTE, null))
+                .toList());
+
+        return new int[]{variantes.size(), conStock.size()};
+    }
+
+    // executeBatch con RETURN_GENERATED_KEYS: MySQL devuelve los ids en el mismo orden de las filas
+    private <T> List<Long> insertarConClaves(String sql, List<T> filas, ParameterizedPreparedStatementSetter<T> parametros) {
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) con -> {
+            List<Long> generados = new ArrayList<>(filas.size());
+            try (PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (T fila : filas) {
+                    parametros.setValues(ps, fila);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet claves = ps.getGeneratedKeys()) {
+                    while (claves.next()) {
+                        generados.add(claves.getLong(1));
+                    }
+                }
+            }
+            return generados;
+        });
+        if (ids == null || ids.size() != filas.size()) {
+            throw new IllegalStateException("La base devolvió " + (ids == null ? 0 : ids.size())
+                    + " ids para " + filas.size() + " filas");
+        }
+        return ids;
+    }
+
+    private Set<String> cargarSkusExistentes() {
+        Set<String> skus = new HashSet<>();
+        jdbcTemplate.query("SELECT sku FROM producto_variantes", rs -> {
+            skus.add(claveSku(rs.getString(1)));
+        });
+        return skus;
+    }
+
+    // ===== Validación (mismas reglas que ProductoService.crearProducto) =====
+
+    private ProductoImportado validar(int linea, CreateProductoRequest request, Set<String> skusUsados) {
+        if (request == null) {
+            throw new IllegalArgumentException("Fila vacía");
+        }
+        if (request.getNombre() == null || request.getNombre().isBlank()) {
+            throw new IllegalArgumentException("El nombre es obligatorio");
+        }
+        if (request.getTipo() == null) {
+            throw new IllegalArgumentException("El tipo es obligatorio");
+        }
+        if (request.getCategoria() == null) {
+            throw new IllegalArgumentException("La categoría es obligatoria");
+        }
+        if (request.getSku() == null || request.getSku().isBlank()) {
+            throw new IllegalArgumentException("El SKU es obligatorio");
+        }
+        if (request.getColores() == null || request.getColores().isEmpty()) {
+            throw new IllegalArgumentException("Debe proporcionar al menos un color");
+        }
+        if (request.getTalles() == null || request.getTalles().isEmpty()) {
+            throw new IllegalArgumentException("Debe proporcionar al menos un talle");
+        }
+        if (request.getPrecio() == null || request.getPrecio() < 0) {
+            throw new IllegalArgumentException("El precio es obligatorio y no puede ser negativo");
+        }
+        if (request.getStock() != null && request.getStock() < 0) {
+            throw new IllegalArgumentException("El stock no puede ser negativo");
+        }
+
+        List<String> talles = new ArrayList<>();
+        for (String talleOriginal : request.getTalles()) {
+            boolean tieneU = false;
+            boolean tieneNumericos = false;
+            for (String talleIndividual : talleOriginal.split("/")) {
+                String talleLimpio = talleIndividual.trim();
+                if (talleLimpio.isEmpty()) {
+                    continue;
+                }
+                if (talleLimpio.toUpperCase().matches("U|TU|UNICO")) {
+                    tieneU = true;
+                    talleLimpio = "U";
+                } else if (talleLimpio.matches("\\d+")) {
+                    tieneNumericos = true;
+                }
+                talles.add(talleLimpio);
+            }
+            if (tieneU && tieneNumericos) {
+                throw new IllegalArgumentException("No se puede mezclar talle Único (U) con talles numéricos en el mismo producto");
+            }
+        }
+        if (talles.isEmpty()) {
+            throw new IllegalArgumentException("Debe proporcionar al menos un talle");
+        }
+
+        Map<String, Integer> stockPorVariante = request.getStockPorVariante();
+        boolean usarStockIndividual = stockPorVariante != null && !stockPorVariante.isEmpty();
+        int totalVariantes = request.getColores().size() * talles.size();
+        int stockRepartido = request.getStock() != null ? request.getStock() / totalVariantes : 0;
+
+        String skuBase = request.getSku().trim();
+        List<VarianteImportada> variantes = new ArrayList<>();
+        Set<String> skusDelProducto = new HashSet<>();
+        for (String colorOriginal : request.getColores()) {
+            String color = colorOriginal != null ? colorOriginal.trim() : "";
+            if (color.isEmpty()) {
+                throw new IllegalArgumentException("Hay un color vacío");
+            }
+            for (String talle : talles) {
+                int stock = usarStockIndividual ? stockPorVariante.getOrDefault(color + "-" + talle, 0) : stockRepartido;
+                if (stock < 0) {
+                    throw new IllegalArgumentException("Stock negativo para " + color + "-" + talle);
+                }
+                String sku = ProductoService.generarSku(skuBase, color, talle);
+                if (!skusDelProducto.add(claveSku(sku)) || skusUsados.contains(claveSku(sku))) {
+                    throw new IllegalArgumentException("SKU duplicado: " + sku);
+                }
+                variantes.add(new VarianteImportada(sku, color, talle, request.getPrecio(), stock));
+            }
+        }
+
+        skusUsados.addAll(skusDelProducto);
+        request.setSku(skuBase);
+        return new ProductoImportado(linea, request, variantes);
+    }
+
+    // ===== CSV =====
+
+    private static Map<String, Integer> leerEncabezados(String linea, char separador) {
+        Map<String, Integer> columnas = new HashMap<>();
+        List<String> encabezados = dividirCsv(linea, separador);
+        for (int i = 0; i < encabezados.size(); i++) {
+            columnas.put(encabezados.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String obligatoria : Arrays.asList("nombre", "tipo", "categoria", "sku", "colores", "talles", "precio")) {
+            if (!columnas.containsKey(obligatoria.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Falta la columna obligatoria '" + obligatoria + "' en el encabezado");
+            }
+        }
+        return columnas;
+    }
+
+    private static CreateProductoRequest parsearFilaCsv(List<String> valores, Map<String, Integer> columnas) {
+        CreateProductoRequest request = new CreateProductoRequest();
+        request.setNombre(valor(valores, columnas, "nombre"));
+        request.setSku(valor(valores, columnas, "sku"));
+        request.setDescripcion(valor(valores, columnas, "descripcion"));
+        request.setImagenUrl(valor(valores, columnas, "imagenurl"));
+
+        String tipo = valor(valores, columnas, "tipo");
+        String categoria = valor(valores, columnas, "categoria");
+        try {
+            request.setTipo(tipo != null ? TipoProducto.valueOf(tipo.toUpperCase(Locale.ROOT)) : null);
+            request.setCategoria(categoria != null ? Categoria.valueOf(categoria.toUpperCase(Locale.ROOT)) : null);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Tipo o categoría inválidos: " + tipo + " / " + categoria);
+        }
+
+        request.setColores(lista(valor(valores, columnas, "colores")));
+        request.setTalles(lista(valor(valores, columnas, "talles")));
+        request.setPrecio(numero(valor(valores, columnas, "precio"), "precio", Double::valueOf));
+        request.setStock(numero(valor(valores, columnas, "stock"), "stock", Integer::valueOf));
+
+        String oculto = valor(valores, columnas, "oculto");
+        request.setOculto(oculto != null && (oculto.equalsIgnoreCase("true") || oculto.equalsIgnoreCase("si") || oculto.equals("1")));
+
+        String stockPorVariante = valor(valores, columnas, "stockporvariante");
+        if (stockPorVariante != null) {
+            Map<String, Integer> stocks = new LinkedHashMap<>();
+            for (String par : lista(stockPorVariante)) {
+                int igual = par.lastIndexOf('=');
+                if (igual <= 0) {
+                    throw new IllegalArgumentException("stockPorVariante inválido: '" + par + "' (usar Color-Talle=cantidad)");
+                }
+                stocks.put(par.substring(0, igual).trim(), numero(par.substring(igual + 1).trim(), "stockPorVariante", Integer::valueOf));
+            }
+            request.setStockPorVariante(stocks);
+        }
+        return request;
+    }
+
+    private static String valor(List<String> valores, Map<String, Integer> columnas, String columna) {
+        Integer indice = columnas.get(columna);
+        if (indice == null || indice >= valores.size()) {
+            return null;
+        }
+        String valor = valores.get(indice).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private static List<String> lista(String valor) {
+        if (valor == null) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(valor.split("\\|"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static <N> N numero(String valor, String columna, Function<String, N> conversor) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return conversor.apply(valor.replace(',', '.').trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor numérico inválido en " + columna + ": " + valor);
+        }
+    }
+
+    // Separa una línea CSV respetando comillas dobles ("" dentro de comillas es una comilla literal).
+    // También la usa ConteoInventarioService
+    static List<String> dividirCsv(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    static String claveSku(String sku) {
+        // La columna sku es única con la colación de MySQL (sin distinguir mayúsculas)
+        return sku == null ? "" : sku.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // ===== Estado de una importación =====
+
+    private static final class Importacion {
+
+        private final Set<String> skusUsados;
+        private final List<ImportacionProductosResultadoDTO.ErrorFila> errores = new ArrayList<>();
+        private List<ProductoImportado> pendientes = new ArrayList<>();
+        private int variantesPendientes;
+        private int filasLeidas;
+        private int productosCreados;
+        private int variantesCreadas;
+        private int registrosHistorico;
+        private int erroresTotales;
+
+        private Importacion(Set<String> skusUsados) {
+            this.skusUsados = skusUsados;
+        }
+
+        private void agregar(ProductoImportado producto) {
+            pendientes.add(producto);
+            variantesPendientes += producto.variantes.size();
+        }
+
+        private void error(int linea, String sku, String mensaje) {
+            erroresTotales++;
+            if (errores.size() < MAX_ERRORES_DETALLE) {
+                errores.add(ImportacionProductosResultadoDTO.ErrorFila.builder()
+                        .linea(linea)
+                        .sku(sku)
+                        .mensaje(mensaje)
+                        .build());
+            }
+        }
+    }
+
+    private static final class ProductoImportado {
+
+        private final int linea;
+        private final CreateProductoRequest request;
+        private final List<VarianteImportada> variantes;
+
+        private ProductoImportado(int linea, CreateProductoRequest request, List<VarianteImportada> variantes) {
+            this.linea = linea;
+            this.request = request;
+            this.variantes = variantes;
+        }
+    }
+
+    private static final class VarianteImportada {
+
+        private final String sku;
+        private final String color;
+        private final String talle;
+        private final double precio;
+        private final int stock;
+        private Long productoId;
+        private Long id;
+        private Long historicoId;
+
+        private VarianteImportada(String sku, String color, String talle, double precio, int stock) {
+            this.sku = sku;
+            this.color = color;
+            this.talle = talle;
+            this.precio = precio;
+            this.stock = stock;
+        }
+    }
+}
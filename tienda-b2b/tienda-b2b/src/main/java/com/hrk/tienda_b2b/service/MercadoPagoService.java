@@ -1,7 +1,7 @@
 package com.hrk.tienda_b2b.service;
 
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
 import com.hrk.tienda_b2b.model.Pedido;
-import com.hrk.tienda_b2b.repository.DetallePedidoRepository;
 import com.hrk.tienda_b2b.repository.PedidoRepository;
 import com.mercadopago.MercadoPagoConfig;
 import com.mercadopago.client.preference.PreferenceClient;
@@ -31,7 +31,7 @@ import java.util.Map;
 public class MercadoPagoService {
 
     private final PedidoRepository pedidoRepository;
-    private final DetallePedidoRepository detallePedidoRepository;
+    private final PedidoDTOAssembler pedidoDTOAssembler;
     private final PedidoService pedidoService;
 
     @Value("${mercadopago.access.token:}")
@@ -57,9 +57,8 @@ public class MercadoPagoService {
             // Configurar el SDK de MercadoPago
             MercadoPagoConfig.setAccessToken(accessToken);
 
-            // Obtener el pedido
-            Pedido pedido = pedidoRepository.findById(pedidoId)
-                    .orElseThrow(() -> new IllegalArgumentException("Pedido no encontrado: " + pedidoId));
+            // Obtener el pedido con sus detalles (variante y producto incluidos) del assembler compartido
+            PedidoResponseDTO pedido = pedidoDTOAssembler.ensamblar(pedidoId);
 
             // Crear el cliente de preferencias
             PreferenceClient client = new PreferenceClient();
@@ -67,8 +66,7 @@ public class MercadoPagoService {
             // Preparar los items del pedido
             List<PreferenceItemRequest> items = new ArrayList<>();
             
-            // Cargar detalles usando el repositorio con JOIN FETCH para evitar problemas de lazy loading
-            var detalles = detallePedidoRepository.findByPedidoIdWithRelations(pedidoId);
+            var detalles = pedido.getDetalles();
             
             log.info("🔵 [MERCADOPAGO] Detalles encontrados para pedido {}: {}", pedidoId, detalles != null ? detalles.size() : 0);
             
@@ -0,0 +1,132 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.dto.UsuarioDTO;
+import com.hrk.tienda_b2b.model.DetallePedido;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.repository.DetallePedidoRepository;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pedido / devolución -> PedidoResponseDTO para todos los controllers (y MercadoPagoService).
+ *
+ * Siempre dos consultas, sin importar cuántos pedidos ni renglones haya: pedidos con su usuario y
+ * renglones con variante y producto (JOIN FETCH). Nada queda para cargar en forma lazy al convertir.
+ */
+@Service
+@RequiredArgsConstructor
+public class PedidoDTOAssembler {
+
+    private final PedidoRepository pedidoRepo;
+    private final DetallePedidoRepository detalleRepo;
+
+    @Transactional(readOnly = true)
+    public PedidoResponseDTO ensamblar(Long pedidoId) {
+        List<PedidoResponseDTO> pedidos = ensamblar(List.of(pedidoId));
+        if (pedidos.isEmpty()) {
+            throw new IllegalArgumentException("Pedido no encontrado: " + pedidoId);
+        }
+        return pedidos.get(0);
+    }
+
+    /**
+     * DTOs en el mismo orden que los ids (los que no existen se omiten).
+     */
+    @Transactional(readOnly = true)
+    public List<PedidoResponseDTO> ensamblar(Collection<Long> pedidoIds) {
+        if (pedidoIds == null || pedidoIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        LinkedHashSet<Long> ids = new LinkedHashSet<>(pedidoIds);
+
+        Map<Long, Pedido> pedidos = pedidoRepo.findConUsuarioByIdIn(ids).stream()
+                .collect(Collectors.toMap(Pedido::getId, Function.identity()));
+
+        Map<Long, List<PedidoResponseDTO.PedidoDetalleResponseDTO>> detallesPorPedido = new HashMap<>();
+        for (DetallePedido detalle : detalleRepo.findConVarianteYProductoByPedidoIdIn(pedidos.keySet())) {
+            detallesPorPedido.computeIfAbsent(detalle.getPedido().getId(), id -> new ArrayList<>()).add(convertirDetalle(detalle));
+        }
+
+        List<PedidoResponseDTO> resultado = new ArrayList<>(pedidos.size());
+        for (Long id : ids) {
+            Pedido pedido = pedidos.get(id);
+            if (pedido != null) {
+                resultado.add(convertir(pedido, detallesPorPedido.getOrDefault(id, new ArrayList<>())));
+            }
+        }
+        return resultado;
+    }
+
+    @Transactional(readOnly = true)
+    public List<PedidoResponseDTO> ensamblarPorCliente(Long clienteId) {
+        return ensamblar(pedidoRepo.findIdsByClienteId(clienteId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<PedidoResponseDTO> ensamblarTodos() {
+        return ensamblar(pedidoRepo.findAllIds());
+    }
+
+    /**
+     * Atajo para los controllers que ya tienen la entidad (p. ej. la que devolvió el servicio).
+     */
+    @Transactional(readOnly = true)
+    public List<PedidoResponseDTO> ensamblarPedidos(Collection<Pedido> pedidos) {
+        return ensamblar(pedidos.stream().map(Pedido::getId).toList());
+    }
+
+    private static PedidoResponseDTO convertir(Pedido pedido, List<PedidoResponseDTO.PedidoDetalleResponseDTO> detalles) {
+        return PedidoResponseDTO.builder()
+                .id(pedido.getId())
+                .clienteId(pedido.getClienteId())
+                .fecha(pedido.getFecha() != null ? pedido.getFecha().toString() : null)
+                .estado(pedido.getEstado() != null ? pedido.getEstado().toString() : null)
+                .tipo(pedido.getTipo() != null ? pedido.getTipo().toString() : "PEDIDO")
+                .tipoAprobacionDevolucion(pedido.getTipoAprobacionDevolucion() != null ? pedido.getTipoAprobacionDevolucion().toString() : null)
+                .total(pedido.getTotal())
+                .metodoPago(pedido.getMetodoPago() != null ? pedido.getMetodoPago().toString() : null)
+                .usuario(pedido.getUsuario() != null ?
+                        UsuarioDTO.builder()
+                                .id(pedido.getUsuario().getId())
+                                .nombreRazonSocial(pedido.getUsuario().getNombreRazonSocial())
+                                .email(pedido.getUsuario().getEmail())
+                                .cuit(pedido.getUsuario().getCuit())
+                                .build() : null)
+                .detalles(detalles)
+                .build();
+    }
+
+    private static PedidoResponseDTO.PedidoDetalleResponseDTO convertirDetalle(DetallePedido detalle) {
+        ProductoVariante variante = detalle.getVariante();
+        return PedidoResponseDTO.PedidoDetalleResponseDTO.builder()
+                .id(detalle.getId())
+                .cantidad(detalle.getCantidad())
+                .precioUnitario(detalle.getPrecioUnitario())
+                .variante(PedidoResponseDTO.VarianteResponseDTO.builder()
+                        .id(variante.getId())
+                        .sku(variante.getSku())
+                        .color(variante.getColor())
+                        .talle(variante.getTalle())
+                        .precio(variante.getPrecio())
+                        .stockDisponible(variante.getStockDisponible())
+                        .producto(PedidoResponseDTO.ProductoResponseDTO.builder()
+                                .id(variante.getProducto().getId())
+                                .nombre(variante.getProducto().getNombre())
+                                .build())
+                        .build())
+                .build();
+    }
+}
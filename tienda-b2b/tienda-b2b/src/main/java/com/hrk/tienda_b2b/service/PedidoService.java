@@ -1,16 +1,24 @@
 package com.hrk.tienda_b2b.service;
+import com.hrk.tienda_b2b.dto.EnviarPedidoRequest;
+import com.hrk.tienda_b2b.dto.PedidoPaginaDTO;
+import com.hrk.tienda_b2b.model.EstadoPedido;
 import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.TipoDocumento;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface PedidoService {
     Pedido crearPedido(Long clienteId, String metodoPago); // ⭐ NUEVO: Agregar método de pago (String para compatibilidad, se convierte a enum)
     Pedido agregarItem(Long pedidoId, Long varianteId, int cantidad);
     Pedido confirmar(Long pedidoId);
+    Pedido enviarPedido(Long clienteId, String metodoPago, Long carritoId, List<EnviarPedidoRequest.ItemPedido> items); // crear + renglones + confirmar en una transacción
     Pedido cancelar(Long pedidoId);
     Pedido confirmarPedido(Long pedidoId); // Para marcar como ENTREGADO
     Pedido cancelarPedido(Long pedidoId); // Para marcar como CANCELADO
     List<Pedido> obtenerPedidosPorCliente(Long clienteId);
     Pedido obtenerPedidoPorId(Long pedidoId); // ⭐ NUEVO: Obtener pedido por ID
     List<Pedido> obtenerTodosLosPedidos(); // ⭐ NUEVO: Obtener todos los pedidos
+    PedidoPaginaDTO listarPagina(EstadoPedido estado, TipoDocumento tipo, Long clienteId, LocalDateTime desde,
+                                 LocalDateTime hasta, String cursor, Integer limite, boolean resumen); // listado de administración por cursor
 }
\ No newline at end of file
@@ -1,13 +1,28 @@
 package com.hrk.tienda_b2b.service;
 
+import com.hrk.tienda_b2b.config.ReintentarSiHayConflicto;
+import com.hrk.tienda_b2b.dto.EnviarPedidoRequest;
+import com.hrk.tienda_b2b.dto.PedidoPaginaDTO;
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.event.PedidoEstadoCambiadoEvent;
+import com.hrk.tienda_b2b.event.StockVarianteModificadoEvent;
 import com.hrk.tienda_b2b.model.*;
 import com.hrk.tienda_b2b.repository.*;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import lombok.Builder;
 import lombok.Getter;
@@ -23,7 +38,17 @@ public class PedidoServiceImpl implements PedidoService {
     private final ProductoVarianteRepository varianteRepo;
     private final DetallePedidoRepository detalleRepo;
     private final MovimientoStockRepository movRepo;
+    private final CarritoRepository carritoRepo;
+    private final CoordinadorDescuentosStock coordinadorStock;
     private final UsuarioRepository usuarioRepo;
+    private final ResumenDiarioService resumenDiario;
+    private final SaldoDevolucionService saldoDevolucion;
+    private final ReservaStockService reservaStock;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PedidoListadoJdbcRepository listadoRepo;
+
+    static final int LIMITE_PAGINA_POR_DEFECTO = 50;
+    static final int LIMITE_PAGINA_MAXIMO = 200;
 
     @Override
     @Transactional
@@ -82,6 +107,9 @@ public class PedidoServiceImpl implements PedidoService {
 
         Double precioUnitario = v.getPrecio();
 
+        // Reserva hasta que el pedido se confirme o cancele (lanza StockInsuficienteException si no alcanza)
+        reservaStock.reservar(OrigenReserva.PEDIDO, pedidoId, varianteId, cantidad);
+
         DetallePedido d = DetallePedido.builder()
                 .pedido(p)
                 .variante(v)
@@ -103,6 +131,7 @@ public class PedidoServiceImpl implements PedidoService {
 
     @Override
     @Transactional
+    @ReintentarSiHayConflicto
     public Pedido confirmar(Long pedidoId) {
         System.out.println("🔵 [BACKEND] Confirmando pedido (descontando stock): " + pedidoId);
         
@@ -122,34 +151,136 @@ public class PedidoServiceImpl implements PedidoService {
         
         System.out.println("🔵 [BACKEND] Pedido tiene " + detalles.size() + " detalles");
 
-        for (DetallePedido d : detalles) {
-            ProductoVariante v = varianteRepo.findById(d.getVariante().getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Variante no encontrada"));
+        return descontarStockYConfirmar(p, detalles);
+    }
+
+    @Override
+    @Transactional
+    @ReintentarSiHayConflicto
+    public Pedido enviarPedido(Long clienteId, String metodoPago, Long carritoId, List<EnviarPedidoRequest.ItemPedido> items) {
+        System.out.println("🔵 [BACKEND] Enviando pedido completo para cliente " + clienteId + " (" + (items != null ? items.size() : 0) + " renglones)");
 
-            if (v.getStockDisponible() < d.getCantidad()) {
-                throw new IllegalStateException("Sin stock para SKU " + v.getSku());
+        if (clienteId == null || clienteId <= 0) {
+            throw new IllegalArgumentException("ClienteId inválido: " + clienteId);
+        }
+        if (items == null || items.isEmpty()) {
+            throw new IllegalStateException("El pedido no tiene detalles");
+        }
+        for (EnviarPedidoRequest.ItemPedido item : items) {
+            if (item.getVarianteId() == null || item.getCantidad() == null || item.getCantidad() <= 0) {
+                throw new IllegalArgumentException("Renglón inválido: varianteId y cantidad (> 0) son obligatorios");
             }
+        }
 
-            v.setStockDisponible(v.getStockDisponible() - d.getCantidad());
-            varianteRepo.save(v);
+        Usuario usuario = usuarioRepo.findById(clienteId)
+                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado con ID: " + clienteId));
 
-            movRepo.save(MovimientoStock.builder()
+        // Todas las variantes en una consulta
+        Set<Long> varianteIds = items.stream().map(EnviarPedidoRequest.ItemPedido::getVarianteId).collect(Collectors.toSet());
+        Map<Long, ProductoVariante> variantes = varianteRepo.findAllById(varianteIds).stream()
+                .collect(Collectors.toMap(ProductoVariante::getId, v -> v));
+        if (variantes.size() != varianteIds.size()) {
+            varianteIds.removeAll(variantes.keySet());
+            throw new IllegalArgumentException("Variante no encontrada: " + varianteIds);
+        }
+
+        Pedido p = Pedido.builder()
+                .clienteId(clienteId)
+                .usuario(usuario)
+                .fecha(LocalDateTime.now())
+                .estado(EstadoPedido.DOCUMENTADO)
+                .metodoPago(MetodoPago.fromString(metodoPago))
+                .build();
+
+        // Precio congelado de la variante y total calculado una sola vez
+        List<DetallePedido> detalles = new ArrayList<>(items.size());
+        double total = 0.0;
+        for (EnviarPedidoRequest.ItemPedido item : items) {
+            ProductoVariante v = variantes.get(item.getVarianteId());
+            DetallePedido d = DetallePedido.builder()
+                    .pedido(p)
                     .variante(v)
+                    .cantidad(item.getCantidad())
+                    .precioUnitario(v.getPrecio())
+                    .build();
+            detalles.add(d);
+            total += v.getPrecio() * item.getCantidad();
+        }
+        p.setTotal(total);
+        p.getDetalles().addAll(detalles);
+
+        // Con ids por bloques, pedido + renglones (+ movimientos) se insertan en batch al hacer flush
+        pedidoRepo.save(p);
+        detalleRepo.saveAll(detalles);
+
+        // Lo que el cliente tenía reservado en su carrito pasa al pedido: así no cuenta como reservado por otros
+        if (carritoId != null) {
+            Carrito carrito = carritoRepo.findById(carritoId)
+                    .orElseThrow(() -> new IllegalArgumentException("Carrito no encontrado"));
+            Long duenio = carrito.getUsuario() != null ? carrito.getUsuario().getId() : carrito.getClienteId();
+            if (!clienteId.equals(duenio)) {
+                throw new IllegalArgumentException("El carrito " + carritoId + " no es del cliente " + clienteId);
+            }
+            reservaStock.transferir(OrigenReserva.CARRITO, carritoId, OrigenReserva.PEDIDO, p.getId());
+        }
+
+        return descontarStockYConfirmar(p, detalles);
+    }
+
+    // Descuenta el stock de todos los renglones, registra los movimientos y deja el pedido CONFIRMADO
+    private Pedido descontarStockYConfirmar(Pedido p, List<DetallePedido> detalles) {
+        // Cantidad total por variante (una variante puede aparecer en más de un renglón), ordenada por id
+        Map<Long, Integer> cantidadPorVariante = new TreeMap<>();
+        for (DetallePedido d : detalles) {
+            cantidadPorVariante.merge(d.getVariante().getId(), d.getCantidad(), Integer::sum);
+        }
+
+        // Lo que tienen reservado otros carritos/pedidos no se puede tomar; lo reservado por este pedido sí
+        Map<Long, Integer> reservadoPorOtros = new TreeMap<>();
+        for (Long varianteId : cantidadPorVariante.keySet()) {
+            reservadoPorOtros.put(varianteId, reservaStock.reservadoPorOtros(OrigenReserva.PEDIDO, p.getId(), varianteId));
+        }
+
+        // Movimientos en un saveAll: con ids por bloques Hibernate los inserta en batch
+        LocalDateTime ahora = LocalDateTime.now();
+        List<MovimientoStock> movimientos = new ArrayList<>(detalles.size());
+        for (DetallePedido d : detalles) {
+            movimientos.add(MovimientoStock.builder()
+                    .variante(d.getVariante())
                     .pedido(p)
                     .detalle(d)
                     .tipo(TipoMovimiento.BAJA_POR_PEDIDO)
                     .cantidad(d.getCantidad())
-                    .fecha(LocalDateTime.now())
+                    .fecha(ahora)
                     .build());
         }
+        movRepo.saveAll(movimientos);
 
         p.setEstado(EstadoPedido.CONFIRMADO);
+        Pedido confirmado = pedidoRepo.save(p);
+        resumenDiario.incorporar(confirmado); // DOCUMENTADO/BORRADOR no figuraban en los acumulados
+
+        // El descuento va al final y en esta misma transacción: pedido, renglones y movimientos ya están escritos
+        // (flush) y las filas de las variantes, que son las que se disputan los pedidos, quedan bloqueadas sólo
+        // hasta el commit. El coordinador las bloquea en orden de id y escribe todas en un batch; es todo o nada:
+        // si falta alguna variante no se descuenta ninguna y la excepción revierte el pedido entero
+        pedidoRepo.flush();
+        List<StockInsuficienteException.Faltante> faltantes = coordinadorStock.descontarTodo(p.getId(), cantidadPorVariante, reservadoPorOtros);
+        if (!faltantes.isEmpty()) {
+            throw new StockInsuficienteException(faltantes);
+        }
         System.out.println("✅ [BACKEND] Pedido confirmado - Stock descontado");
-        return pedidoRepo.save(p);
+
+        // Primero el stock y después el estado: las reservas del pedido se liberan recién cuando el
+        // disponible en memoria ya refleja el descuento
+        eventPublisher.publishEvent(new StockVarianteModificadoEvent(new ArrayList<>(cantidadPorVariante.keySet())));
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(confirmado));
+        return confirmado;
     }
 
     @Override
     @Transactional
+    @ReintentarSiHayConflicto
     public Pedido cancelar(Long pedidoId) {
         System.out.println("🔵 [BACKEND] Cancelando pedido: " + pedidoId);
         
@@ -182,34 +313,40 @@ public class PedidoServiceImpl implements PedidoService {
             
             System.out.println("🔵 [BACKEND] Pedido tiene " + detalles.size() + " detalles a cancelar");
 
-            // Restaurar stock de todas las variantes
+            // Movimientos de reversión en un saveAll y el stock al final, por el coordinador (como al confirmar): las
+            // variantes se bloquean en orden de id y se suman en un batch, con un evento ANULACION por variante
+            Map<Long, Integer> cantidadPorVariante = new TreeMap<>();
+            List<MovimientoStock> movimientos = new ArrayList<>(detalles.size());
+            LocalDateTime ahora = LocalDateTime.now();
             for (DetallePedido d : detalles) {
-                ProductoVariante v = varianteRepo.findById(d.getVariante().getId())
-                        .orElseThrow(() -> new IllegalArgumentException("Variante no encontrada"));
-
-                v.setStockDisponible(v.getStockDisponible() + d.getCantidad());
-                varianteRepo.save(v);
-                
-                System.out.println("🔵 [BACKEND] Stock restaurado para variante " + v.getSku() + ": +" + d.getCantidad());
-
-                movRepo.save(MovimientoStock.builder()
-                        .variante(v)
+                cantidadPorVariante.merge(d.getVariante().getId(), d.getCantidad(), Integer::sum);
+                movimientos.add(MovimientoStock.builder()
+                        .variante(d.getVariante())
                         .pedido(p)
                         .detalle(d)
                         .tipo(TipoMovimiento.REVERSION_POR_ANULACION)
                         .cantidad(d.getCantidad())
-                        .fecha(LocalDateTime.now())
+                        .fecha(ahora)
                         .build());
             }
-            
+            movRepo.saveAll(movimientos);
+            pedidoRepo.flush();
+            coordinadorStock.reponer(p.getId(), cantidadPorVariante, TipoEventoStock.ANULACION);
+            System.out.println("🔵 [BACKEND] Stock restaurado para " + cantidadPorVariante.size() + " variantes");
+
+            eventPublisher.publishEvent(new StockVarianteModificadoEvent(new ArrayList<>(cantidadPorVariante.keySet())));
             System.out.println("✅ [BACKEND] Pedido cancelado - Stock restaurado");
         } else {
             System.out.println("🔵 [BACKEND] Pedido en estado " + p.getEstado() + " - No se descontó stock, solo se cambia el estado");
             System.out.println("✅ [BACKEND] Pedido cancelado - No se restauró stock (nunca se había descontado)");
         }
 
+        resumenDiario.retirar(p);
         p.setEstado(EstadoPedido.CANCELADO);
-        return pedidoRepo.save(p);
+        Pedido cancelado = pedidoRepo.save(p);
+        resumenDiario.incorporar(cancelado);
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(cancelado));
+        return cancelado;
     }
 
     @Override
@@ -226,13 +363,19 @@ public class PedidoServiceImpl implements PedidoService {
             throw new IllegalStateException("Solo se pueden marcar como ENTREGADO los pedidos CONFIRMADOS. Estado actual: " + pedido.getEstado());
         }
         
+        resumenDiario.retirar(pedido);
         pedido.setEstado(EstadoPedido.ENTREGADO);
         System.out.println("✅ [BACKEND] Pedido marcado como ENTREGADO - Stock se mantiene descontado");
-        return pedidoRepo.save(pedido);
+        Pedido entregado = pedidoRepo.save(pedido);
+        resumenDiario.incorporar(entregado);
+        saldoDevolucion.registrarEntrega(entregado); // lo entregado pasa a poder devolverse
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(entregado));
+        return entregado;
     }
 
     @Override
     @Transactional
+    @ReintentarSiHayConflicto
     public Pedido cancelarPedido(Long pedidoId) {
         // ⭐ Este método ya no se usa directamente, se usa cancelar() que restaura stock
         // Pero lo dejamos para compatibilidad, redirige a cancelar()
@@ -267,4 +410,60 @@ public class PedidoServiceImpl implements PedidoService {
         
         return pedidoRepo.findAll();
     }
-}
\ No newline at end of file
+
+    @Override
+    public PedidoPaginaDTO listarPagina(EstadoPedido estado, TipoDocumento tipo, Long clienteId, LocalDateTime desde,
+                                        LocalDateTime hasta, String cursor, Integer limite, boolean resumen) {
+        int tamanio = limite != null ? limite : LIMITE_PAGINA_POR_DEFECTO;
+        if (tamanio < 1 || tamanio > LIMITE_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_PAGINA_MAXIMO);
+        }
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("La fecha desde no puede ser posterior a hasta");
+        }
+
+        LocalDateTime cursorFecha = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                // Fecha vacía: el último pedido de la página anterior no tenía fecha
+                cursorFecha = partes[0].isEmpty() ? null : LocalDateTime.parse(partes[0]);
+                cursorId = Long.parseLong(partes[1]);
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+
+        // Uno de más para saber si hay otra página sin COUNT
+        List<PedidoResponseDTO> pedidos = listadoRepo.buscarPagina(estado, tipo, clienteId, desde, hasta,
+                cursorFecha, cursorId, tamanio + 1);
+        boolean hayMas = pedidos.size() > tamanio;
+        if (hayMas) {
+            pedidos = new ArrayList<>(pedidos.subList(0, tamanio));
+        }
+
+        if (!resumen && !pedidos.isEmpty()) {
+            Map<Long, List<PedidoResponseDTO.PedidoDetalleResponseDTO>> detalles = listadoRepo.buscarDetalles(
+                    pedidos.stream().map(PedidoResponseDTO::getId).toList());
+            for (PedidoResponseDTO pedido : pedidos) {
+                pedido.setDetalles(detalles.getOrDefault(pedido.getId(), new ArrayList<>()));
+            }
+        }
+
+        String siguienteCursor = null;
+        if (hayMas) {
+            PedidoResponseDTO ultimo = pedidos.get(pedidos.size() - 1);
+            siguienteCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(((ultimo.getFecha() != null ? ultimo.getFecha() : "") + "|" + ultimo.getId())
+                            .getBytes(StandardCharsets.UTF_8));
+        }
+
+        return PedidoPaginaDTO.builder()
+                .pedidos(pedidos)
+                .siguienteCursor(siguienteCursor)
+                .hayMas(hayMas)
+                .limite(tamanio)
+                .build();
+    }
+}
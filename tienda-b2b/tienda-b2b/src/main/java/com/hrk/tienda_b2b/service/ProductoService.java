@@ -1,15 +1,23 @@
 package com.hrk.tienda_b2b.service;
 
+import com.hrk.tienda_b2b.config.ReintentarSiHayConflicto;
 import com.hrk.tienda_b2b.dto.ActualizacionProductoResponse;
 import com.hrk.tienda_b2b.dto.CreateProductoRequest;
+import com.hrk.tienda_b2b.dto.ProductoDTOMapper;
+import com.hrk.tienda_b2b.dto.ProductoPaginaDTO;
+import com.hrk.tienda_b2b.dto.ProductoResponseDTO;
 import com.hrk.tienda_b2b.dto.VerificacionActualizacionProductoResponse;
+import com.hrk.tienda_b2b.event.CatalogoModificadoEvent;
+import com.hrk.tienda_b2b.event.StockHistoricoRegistradoEvent;
 import com.hrk.tienda_b2b.model.Categoria;
 import com.hrk.tienda_b2b.model.MovimientoStock;
 import com.hrk.tienda_b2b.model.Producto;
 import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.model.TipoEventoStock;
 import com.hrk.tienda_b2b.model.TipoMovimiento;
 import com.hrk.tienda_b2b.model.TipoProducto;
 import com.hrk.tienda_b2b.model.StockHistorico;
+import com.hrk.tienda_b2b.model.Temporada;
 import com.hrk.tienda_b2b.repository.DetallePedidoRepository;
 import com.hrk.tienda_b2b.repository.MovimientoStockRepository;
 import com.hrk.tienda_b2b.repository.ProductoRepository;
@@ -17,6 +25,8 @@ import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
 import com.hrk.tienda_b2b.repository.StockHistoricoRepository;
 import com.hrk.tienda_b2b.repository.TemporadaRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -39,6 +49,9 @@ public class ProductoService {
     private final DetallePedidoRepository detallePedidoRepository;
     private final StockHistoricoRepository stockHistoricoRepository;
     private final TemporadaRepository temporadaRepository;
+    private final ResumenStockService resumenStockService;
+    private final EventoStockService eventoStockService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Producto> obtenerTodos() {
         return obtenerTodos(false);
@@ -74,6 +87,56 @@ public class ProductoService {
         return productoRepository.findByTipo(tipo);
     }
 
+    public static final int LIMITE_PAGINA_POR_DEFECTO = 20;
+    public static final int LIMITE_PAGINA_MAXIMO = 100;
+
+    /**
+     * Listado por cursor para clientes que no quieren el catálogo completo: productos con id > despuesDeId,
+     * ordenados por id, con todas sus variantes. Respeta la temporada activa igual que GET /api/productos.
+     */
+    @Transactional(readOnly = true)
+    public ProductoPaginaDTO listarPagina(Long despuesDeId, Integer limite, boolean incluirOcultos,
+                                         Categoria categoria, TipoProducto tipo, String color, String talle,
+                                         Double precioMin, Double precioMax, boolean soloConStock) {
+        int tamanio = limite != null ? limite : LIMITE_PAGINA_POR_DEFECTO;
+        if (tamanio < 1 || tamanio > LIMITE_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_PAGINA_MAXIMO);
+        }
+        if (precioMin != null && precioMax != null && precioMin > precioMax) {
+            throw new IllegalArgumentException("El precio mínimo no puede ser mayor al máximo");
+        }
+
+        String colorFiltro = color != null && !color.isBlank() ? color.trim() : null;
+        String talleFiltro = talle != null && !talle.isBlank() ? talle.trim() : null;
+        boolean filtrarVariantes = colorFiltro != null || talleFiltro != null
+                || precioMin != null || precioMax != null || soloConStock;
+        Long temporadaId = temporadaRepository.findByActivaTrue().map(Temporada::getId).orElse(null);
+
+        // Se pide uno de más para saber si hay otra página sin hacer un COUNT
+        List<Long> ids = productoRepository.buscarIdsPagina(
+                despuesDeId != null ? despuesDeId : 0L, incluirOcultos, temporadaId, categoria, tipo,
+                filtrarVariantes, colorFiltro, talleFiltro, precioMin, precioMax, soloConStock,
+                PageRequest.of(0, tamanio + 1));
+
+        boolean hayMas = ids.size() > tamanio;
+        if (hayMas) {
+            ids = ids.subList(0, tamanio);
+        }
+
+        List<ProductoResponseDTO> productos = ids.isEmpty()
+                ? new ArrayList<>()
+                : productoRepository.findConVariantesByIdIn(ids).stream()
+                        .map(ProductoDTOMapper::convertirADTO)
+                        .collect(Collectors.toList());
+
+        return ProductoPaginaDTO.builder()
+                .productos(productos)
+                .siguienteCursor(hayMas ? ids.get(ids.size() - 1) : null)
+                .hayMas(hayMas)
+                .limite(tamanio)
+                .build();
+    }
+
     public Optional<Producto> obtenerPorId(Long id) {
         return productoRepository.findById(id);
     }
@@ -83,7 +146,9 @@ public class ProductoService {
         if (producto.getImagenUrl() == null || producto.getImagenUrl().isEmpty()) {
             producto.setImagenUrl(producto.getTipo().getImagenDefault());
         }
-        return productoRepository.save(producto);
+        Producto guardado = productoRepository.save(producto);
+        eventPublisher.publishEvent(new CatalogoModificadoEvent("producto guardado " + guardado.getId()));
+        return guardado;
     }
 
     @Transactional
@@ -113,7 +178,13 @@ public class ProductoService {
         
         // 4. Si no tiene pedidos, eliminar el producto (las variantes se eliminarán por cascade)
         System.out.println("✅ [SERVICE] El producto no tiene pedidos asociados. Eliminando producto y sus variantes...");
+        if (producto.getVariantes() != null) {
+            for (ProductoVariante variante : producto.getVariantes()) {
+                eventoStockService.registrar(variante.getId(), -variante.getStockDisponible(), TipoEventoStock.BAJA_VARIANTE, null);
+            }
+        }
         productoRepository.deleteById(id);
+        eventPublisher.publishEvent(new CatalogoModificadoEvent("producto eliminado " + id));
         System.out.println("✅ [SERVICE] Producto eliminado exitosamente");
     }
 
@@ -275,11 +346,12 @@ public class ProductoService {
         }
         
         System.out.println("✅ [SERVICE] Producto guardado con " + producto.getVariantes().size() + " variantes");
+        eventPublisher.publishEvent(new CatalogoModificadoEvent("producto creado " + producto.getId()));
         
         return producto;
     }
     
-    private String generarSku(String skuBase, String color, String talle) {
+    static String generarSku(String skuBase, String color, String talle) {
         // Generar SKU único para cada variante
         String colorCode = color.length() >= 2 ? color.substring(0, 2).toUpperCase() : color.toUpperCase();
         return String.format("%s-%s-%s", skuBase, colorCode, talle.toUpperCase().replaceAll("/", ""));
@@ -522,6 +594,7 @@ public class ProductoService {
     }
 
     @Transactional
+    @ReintentarSiHayConflicto
     public Producto actualizarProducto(Long id, CreateProductoRequest request, boolean confirmarVariantesConPedidos) {
         System.out.println("🔵 [SERVICE] Actualizando producto con ID: " + id);
         System.out.println("🔵 [SERVICE] Request recibido: " + request);
@@ -668,8 +741,7 @@ public class ProductoService {
                 // Registrar stock histórico inicial para las nuevas variantes (solo si tienen stock > 0)
                 for (ProductoVariante variante : producto.getVariantes()) {
                     if (variante.getStockDisponible() > 0) {
-                        List<StockHistorico> historicos = stockHistoricoRepository.findByVarianteOrderByFechaAsc(variante);
-                        if (historicos.isEmpty()) {
+                        if (!resumenStockService.tieneHistorial(variante.getId())) {
                             registrarStockHistoricoInicial(variante, variante.getStockDisponible());
                         }
                     }
@@ -706,6 +778,7 @@ public class ProductoService {
                                     .fecha(LocalDateTime.now())
                                     .build();
                             movimientoStockRepository.save(movimiento);
+                            eventoStockService.registrar(variante.getId(), -stockAnterior, TipoEventoStock.AJUSTE, null);
                             System.out.println("🔵 [SERVICE] Movimiento registrado: stock de " + variante.getSku() + " será puesto en 0");
                         }
                         
@@ -722,6 +795,7 @@ public class ProductoService {
                 // Eliminar solo las variantes que no tienen pedidos
                 if (!variantesAEliminar.isEmpty()) {
                     for (ProductoVariante variante : variantesAEliminar) {
+                        eventoStockService.registrar(variante.getId(), -variante.getStockDisponible(), TipoEventoStock.BAJA_VARIANTE, null);
                         productoVarianteRepository.delete(variante);
                     }
                     productoVarianteRepository.flush();
@@ -795,8 +869,7 @@ public class ProductoService {
                 // Registrar stock histórico inicial para las nuevas variantes
                 for (ProductoVariante variante : producto.getVariantes()) {
                     if (variante.getStockDisponible() > 0) {
-                        List<StockHistorico> historicos = stockHistoricoRepository.findByVarianteOrderByFechaAsc(variante);
-                        if (historicos.isEmpty()) {
+                        if (!resumenStockService.tieneHistorial(variante.getId())) {
                             registrarStockHistoricoInicial(variante, variante.getStockDisponible());
                         }
                     }
@@ -854,6 +927,7 @@ public class ProductoService {
                                 .build();
                         
                         movimientoStockRepository.save(movimiento);
+                        eventoStockService.registrar(variante.getId(), diferencia, TipoEventoStock.AJUSTE, null);
                         System.out.println("✅ [SERVICE] Movimiento registrado: " + tipoMovimiento + " - " + cantidadMovimiento + " unidades");
                         
                         // Registrar en stock histórico
@@ -904,6 +978,7 @@ public class ProductoService {
             throw new RuntimeException("Error al guardar producto: " + e.getMessage(), e);
         }
         
+        eventPublisher.publishEvent(new CatalogoModificadoEvent("producto actualizado " + producto.getId()));
         return producto;
     }
 
@@ -921,6 +996,9 @@ public class ProductoService {
                 .build();
         
         stockHistoricoRepository.save(historico);
+        resumenStockService.registrar(historico);
+        eventoStockService.registrar(variante.getId(), cantidad, TipoEventoStock.ALTA_VARIANTE, null);
+        eventPublisher.publishEvent(new StockHistoricoRegistradoEvent(variante.getId(), variante.getProducto().getId()));
         System.out.println("✅ [STOCK HISTORICO] Registrado stock inicial: " + variante.getSku() + " - " + cantidad + " unidades");
     }
 
@@ -928,12 +1006,12 @@ public class ProductoService {
      * Registra un ajuste de stock histórico (suma o resta)
      */
     private void registrarStockHistoricoAjuste(ProductoVariante variante, Integer cantidad, StockHistorico.TipoMovimientoStock tipo) {
-        // Obtener el stock acumulado anterior
-        StockHistorico ultimoHistorico = stockHistoricoRepository.findFirstByVarianteOrderByFechaDesc(variante);
-        Integer stockAnterior = (ultimoHistorico != null) ? ultimoHistorico.getStockAcumulado() : 0;
+        // Obtener el stock acumulado anterior (del resumen por variante, sin leer el historial)
+        Integer ultimoStockAcumulado = resumenStockService.ultimoStockAcumulado(variante.getId());
+        Integer stockAnterior = (ultimoStockAcumulado != null) ? ultimoStockAcumulado : 0;
         
         // Si no hay historial previo, considerar el stock actual de la variante como base
-        if (ultimoHistorico == null && variante.getStockDisponible() != null) {
+        if (ultimoStockAcumulado == null && variante.getStockDisponible() != null) {
             stockAnterior = variante.getStockDisponible();
         }
         
@@ -958,6 +1036,8 @@ public class ProductoService {
                 .build();
         
         stockHistoricoRepository.save(historico);
+        resumenStockService.registrar(historico);
+        eventPublisher.publishEvent(new StockHistoricoRegistradoEvent(variante.getId(), variante.getProducto().getId()));
         System.out.println("✅ [STOCK HISTORICO] Registrado ajuste: " + variante.getSku() + " - " + 
                 (tipo == StockHistorico.TipoMovimientoStock.AJUSTE_SUMA ? "+" : "-") + cantidad + 
                 " unidades (Stock acumulado: " + stockAcumulado + ")");
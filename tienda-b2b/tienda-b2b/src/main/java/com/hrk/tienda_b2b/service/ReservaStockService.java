@@ -0,0 +1,445 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.event.CatalogoModificadoEvent;
+import com.hrk.tienda_b2b.event.PedidoEstadoCambiadoEvent;
+import com.hrk.tienda_b2b.event.StockVarianteModificadoEvent;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.OrigenReserva;
+import com.hrk.tienda_b2b.repository.ReservaStockJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reservas de stock con vencimiento para carritos y pedidos en armado.
+ *
+ * Cada variante tiene un contador en memoria: disponible (copia de producto_variantes.stock_disponible,
+ * se siembra la primera vez que se reserva) y reservado (suma de las reservas vigentes). Una reserva sólo
+ * entra si disponible - reservado alcanza. Los contadores se protegen con locks por franja (variante % 64),
+ * así dos clientes que reservan variantes distintas casi nunca se esperan.
+ *
+ * Ciclo de vida de una reserva:
+ *  - agregarItem (carrito o pedido) reserva; si la transacción se revierte, la reserva se deshace.
+ *  - al pasar el carrito a pedido, las reservas se transfieren al pedido.
+ *  - quitar items / vaciar el carrito libera después del commit.
+ *  - al confirmar, el descuento real se hace en la base (PedidoServiceImpl.confirmar) y después del commit
+ *    se refresca el disponible y se liberan las reservas del pedido. Al cancelar también se liberan.
+ *  - las que vencen se liberan en el barrido periódico.
+ *
+ * Los cambios se persisten en diferido (tabla reservas_stock) para poder reconstruir las reservas al reiniciar.
+ */
+@Service
+public class ReservaStockService {
+
+    private static final int FRANJAS = 64;
+
+    private final StockVarianteJdbcRepository stockJdbc;
+    private final ReservaStockJdbcRepository reservaJdbc;
+    private final int ttlMinutosCarrito;
+    private final int ttlMinutosPedido;
+
+    private final ReentrantLock[] locks = new ReentrantLock[FRANJAS];
+    private final Map<Long, Contador> contadores = new ConcurrentHashMap<>();
+    private final Map<ClaveReserva, Reserva> reservas = new ConcurrentHashMap<>();
+    private final Map<ClaveOrigen, Set<Long>> porOrigen = new ConcurrentHashMap<>();
+    // Reservas cambiadas desde la última persistencia (se guarda el estado que tengan al persistir)
+    private final Set<ClaveReserva> pendientes = ConcurrentHashMap.newKeySet();
+
+    public ReservaStockService(StockVarianteJdbcRepository stockJdbc,
+                               ReservaStockJdbcRepository reservaJdbc,
+                               @Value("${app.reservas.ttl-minutos-carrito:30}") int ttlMinutosCarrito,
+                               @Value("${app.reservas.ttl-minutos-pedido:120}") int ttlMinutosPedido) {
+        this.stockJdbc = stockJdbc;
+        this.reservaJdbc = reservaJdbc;
+        this.ttlMinutosCarrito = ttlMinutosCarrito;
+        this.ttlMinutosPedido = ttlMinutosPedido;
+        for (int i = 0; i < FRANJAS; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Suma cantidad a la reserva de la variante para el carrito/pedido y renueva su vencimiento.
+     * Lanza StockInsuficienteException si lo libre (disponible - reservado por todos) no alcanza.
+     */
+    public void reservar(OrigenReserva origen, Long origenId, Long varianteId, int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad a reservar debe ser mayor a 0");
+        }
+        ClaveReserva clave = new ClaveReserva(origen, origenId, varianteId);
+        ReentrantLock lock = lockDe(varianteId);
+        lock.lock();
+        try {
+            Contador contador = contadorSembrado(varianteId);
+            int libre = contador.disponible - contador.reservado;
+            if (libre < cantidad) {
+                throw new StockInsuficienteException(List.of(new StockInsuficienteException.Faltante(
+                        varianteId, contador.sku, cantidad, Math.max(libre, 0))));
+            }
+            contador.reservado += cantidad;
+            Reserva reserva = reservas.computeIfAbsent(clave, k -> new Reserva());
+            reserva.cantidad += cantidad;
+            reserva.vence = LocalDateTime.now().plusMinutes(ttlMinutos(origen));
+            porOrigen.computeIfAbsent(new ClaveOrigen(origen, origenId), k -> ConcurrentHashMap.newKeySet()).add(varianteId);
+            pendientes.add(clave);
+        } finally {
+            lock.unlock();
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        quitar(clave, cantidad);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Libera parte de una reserva (p. ej. al quitar un item del carrito). Si hay transacción, después del commit.
+     */
+    public void liberar(OrigenReserva origen, Long origenId, Long varianteId, int cantidad) {
+        ClaveReserva clave = new ClaveReserva(origen, origenId, varianteId);
+        despuesDelCommit(() -> quitar(clave, cantidad));
+    }
+
+    /**
+     * Libera todas las reservas del carrito/pedido. Si hay transacción, después del commit.
+     */
+    public void liberarTodo(OrigenReserva origen, Long origenId) {
+        despuesDelCommit(() -> quitarTodo(origen, origenId));
+    }
+
+    /**
+     * Pasa las reservas de un carrito al pedido que se armó con él, con el vencimiento de pedido.
+     * El stock reservado no cambia; si la transacción se revierte, vuelven al carrito.
+     */
+    public void transferir(OrigenReserva desde, Long desdeId, OrigenReserva hacia, Long haciaId) {
+        mover(desde, desdeId, hacia, haciaId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        mover(hacia, haciaId, desde, desdeId);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Unidades de la variante que tienen reservadas otros carritos/pedidos (todo lo reservado menos lo propio).
+     * Es lo que no puede tomar el pedido que se está confirmando.
+     */
+    public int reservadoPorOtros(OrigenReserva origen, Long origenId, Long varianteId) {
+        ReentrantLock lock = lockDe(varianteId);
+        lock.lock();
+        try {
+            Contador contador = contadores.get(varianteId);
+            if (contador == null) {
+                return 0;
+            }
+            Reserva propia = reservas.get(new ClaveReserva(origen, origenId, varianteId));
+            return contador.reservado - (propia != null ? propia.cantidad : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ===== Sincronización con el stock de la base =====
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alModificarStock(StockVarianteModificadoEvent evento) {
+        refrescar(evento.getVarianteIds());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alModificarCatalogo(CatalogoModificadoEvent evento) {
+        // Altas/bajas/ediciones de productos pueden tocar el stock: se vuelve a sembrar al próximo uso
+        for (Map.Entry<Long, Contador> entrada : contadores.entrySet()) {
+            ReentrantLock lock = lockDe(entrada.getKey());
+            lock.lock();
+            try {
+                entrada.getValue().disponible = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alCambiarEstadoPedido(PedidoEstadoCambiadoEvent evento) {
+        // Confirmado (el stock ya se descontó en la base) o cancelado: las reservas ya no hacen falta
+        if (evento.getEstado() != EstadoPedido.BORRADOR && evento.getEstado() != EstadoPedido.DOCUMENTADO) {
+            quitarTodo(OrigenReserva.PEDIDO, evento.getPedidoId());
+        }
+    }
+
+    private void refrescar(Collection<Long> varianteIds) {
+        if (varianteIds == null || varianteIds.isEmpty()) {
+            return;
+        }
+        List<Long> conContador = varianteIds.stream().filter(contadores::containsKey).distinct().toList();
+        for (StockVarianteJdbcRepository.StockVariante v : stockJdbc.leer(conContador)) {
+            ReentrantLock lock = lockDe(v.getId());
+            lock.lock();
+            try {
+                Contador contador = contadores.get(v.getId());
+                contador.disponible = v.getStockDisponible();
+                contador.sku = v.getSku();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ===== Vencimiento y persistencia =====
+
+    @Scheduled(fixedDelayString = "${app.reservas.barrido-ms:30000}")
+    public void liberarVencidas() {
+        LocalDateTime ahora = LocalDateTime.now();
+        int vencidas = 0;
+        for (Map.Entry<ClaveReserva, Reserva> entrada : reservas.entrySet()) {
+            if (entrada.getValue().vence.isAfter(ahora)) {
+                continue;
+            }
+            ClaveReserva clave = entrada.getKey();
+            ReentrantLock lock = lockDe(clave.varianteId);
+            lock.lock();
+            try {
+                Reserva reserva = reservas.get(clave);
+                if (reserva != null && !reserva.vence.isAfter(ahora)) { // pudo renovarse mientras tanto
+                    quitarBloqueado(clave, reserva.cantidad);
+                    vencidas++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (vencidas > 0) {
+            System.out.println("🔵 [RESERVAS] Reservas vencidas liberadas: " + vencidas);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.reservas.persistencia-ms:5000}")
+    public synchronized void persistir() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<ClaveReserva> claves = new ArrayList<>(pendientes);
+        pendientes.removeAll(claves);
+
+        List<ReservaStockJdbcRepository.Fila> aGuardar = new ArrayList<>();
+        List<ReservaStockJdbcRepository.Fila> aBorrar = new ArrayList<>();
+        for (ClaveReserva clave : claves) {
+            ReentrantLock lock = lockDe(clave.varianteId);
+            lock.lock();
+            try {
+                Reserva reserva = reservas.get(clave);
+                if (reserva != null) {
+                    aGuardar.add(new ReservaStockJdbcRepository.Fila(clave.origen, clave.origenId, clave.varianteId,
+                            reserva.cantidad, reserva.vence));
+                } else {
+                    aBorrar.add(new ReservaStockJdbcRepository.Fila(clave.origen, clave.origenId, clave.varianteId, 0, null));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        try {
+            reservaJdbc.guardar(aGuardar);
+            reservaJdbc.borrar(aBorrar);
+        } catch (RuntimeException e) {
+            // Se reintenta en la próxima pasada
+            pendientes.addAll(claves);
+            System.err.println("🔴 [RESERVAS] No se pudieron persistir las reservas: " + e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restaurar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        int borradas = reservaJdbc.borrarVencidas(ahora);
+        List<ReservaStockJdbcRepository.Fila> filas = reservaJdbc.vigentes(ahora);
+        for (ReservaStockJdbcRepository.Fila fila : filas) {
+            ClaveReserva clave = new ClaveReserva(fila.getOrigen(), fila.getOrigenId(), fila.getVarianteId());
+            ReentrantLock lock = lockDe(fila.getVarianteId());
+            lock.lock();
+            try {
+                // El disponible queda sin sembrar: se lee de la base la primera vez que se reserve
+                contadores.computeIfAbsent(fila.getVarianteId(), k -> new Contador()).reservado += fila.getCantidad();
+                Reserva reserva = reservas.computeIfAbsent(clave, k -> new Reserva());
+                reserva.cantidad += fila.getCantidad();
+                reserva.vence = fila.getVence();
+                porOrigen.computeIfAbsent(new ClaveOrigen(fila.getOrigen(), fila.getOrigenId()),
+                        k -> ConcurrentHashMap.newKeySet()).add(fila.getVarianteId());
+            } finally {
+                lock.unlock();
+            }
+        }
+        System.out.println("✅ [RESERVAS] Reservas restauradas: " + filas.size() + " (vencidas borradas: " + borradas + ")");
+    }
+
+    @PreDestroy
+    public void alCerrar() {
+        persistir();
+    }
+
+    // ===== Internos =====
+
+    private void quitar(ClaveReserva clave, int cantidad) {
+        ReentrantLock lock = lockDe(clave.varianteId);
+        lock.lock();
+        try {
+            quitarBloqueado(clave, cantidad);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void quitarTodo(OrigenReserva origen, Long origenId) {
+        Set<Long> varianteIds = porOrigen.remove(new ClaveOrigen(origen, origenId));
+        if (varianteIds == null) {
+            return;
+        }
+        for (Long varianteId : varianteIds) {
+            quitar(new ClaveReserva(origen, origenId, varianteId), Integer.MAX_VALUE);
+        }
+    }
+
+    // Con el lock de la variante tomado
+    private void quitarBloqueado(ClaveReserva clave, int cantidad) {
+        Reserva reserva = reservas.get(clave);
+        if (reserva == null) {
+            return;
+        }
+        int quitada = Math.min(cantidad, reserva.cantidad);
+        reserva.cantidad -= quitada;
+        Contador contador = contadores.get(clave.varianteId);
+        if (contador != null) {
+            contador.reservado -= quitada;
+        }
+        if (reserva.cantidad == 0) {
+            reservas.remove(clave);
+            Set<Long> delOrigen = porOrigen.get(new ClaveOrigen(clave.origen, clave.origenId));
+            if (delOrigen != null) {
+                delOrigen.remove(clave.varianteId);
+            }
+        }
+        pendientes.add(clave);
+    }
+
+    private void mover(OrigenReserva desde, Long desdeId, OrigenReserva hacia, Long haciaId) {
+        Set<Long> varianteIds = porOrigen.remove(new ClaveOrigen(desde, desdeId));
+        if (varianteIds == null) {
+            return;
+        }
+        LocalDateTime vence = LocalDateTime.now().plusMinutes(ttlMinutos(hacia));
+        for (Long varianteId : varianteIds) {
+            ClaveReserva origenClave = new ClaveReserva(desde, desdeId, varianteId);
+            ClaveReserva destinoClave = new ClaveReserva(hacia, haciaId, varianteId);
+            ReentrantLock lock = lockDe(varianteId);
+            lock.lock();
+            try {
+                Reserva reserva = reservas.remove(origenClave);
+                if (reserva == null) {
+                    continue; // venció mientras tanto
+                }
+                Reserva destino = reservas.computeIfAbsent(destinoClave, k -> new Reserva());
+                destino.cantidad += reserva.cantidad;
+                destino.vence = vence;
+                porOrigen.computeIfAbsent(new ClaveOrigen(hacia, haciaId), k -> ConcurrentHashMap.newKeySet()).add(varianteId);
+                pendientes.add(origenClave);
+                pendientes.add(destinoClave);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Con el lock de la variante tomado
+    private Contador contadorSembrado(Long varianteId) {
+        Contador contador = contadores.computeIfAbsent(varianteId, k -> new Contador());
+        if (contador.disponible == null) {
+            List<StockVarianteJdbcRepository.StockVariante> leidas = stockJdbc.leer(List.of(varianteId));
+            if (leidas.isEmpty()) {
+                throw new IllegalArgumentException("Variante no encontrada");
+            }
+            contador.disponible = leidas.get(0).getStockDisponible();
+            contador.sku = leidas.get(0).getSku();
+        }
+        return contador;
+    }
+
+    private void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private int ttlMinutos(OrigenReserva origen) {
+        return origen == OrigenReserva.CARRITO ? ttlMinutosCarrito : ttlMinutosPedido;
+    }
+
+    private ReentrantLock lockDe(Long varianteId) {
+        return locks[(int) Math.floorMod(varianteId, (long) FRANJAS)];
+    }
+
+    // Estado por variante; se lee y escribe con el lock de su franja tomado
+    private static class Contador {
+        private Integer disponible; // null = hay que leerlo de la base
+        private int reservado;
+        private String sku;
+    }
+
+    private static class Reserva {
+        private int cantidad;
+        private LocalDateTime vence;
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class ClaveReserva {
+        private final OrigenReserva origen;
+        private final Long origenId;
+        private final Long varianteId;
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class ClaveOrigen {
+        private final OrigenReserva origen;
+        private final Long origenId;
+    }
+}
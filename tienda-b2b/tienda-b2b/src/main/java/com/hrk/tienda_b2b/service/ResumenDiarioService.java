@@ -0,0 +1,143 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.DetallePedido;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.TipoDocumento;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import com.hrk.tienda_b2b.repository.ResumenVarianteDiariaRepository;
+import com.hrk.tienda_b2b.repository.ResumenVentaDiariaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mantiene los acumulados diarios (resumen_ventas_diarias / resumen_variantes_diarias) que usan los dashboards.
+ *
+ * Uso desde los servicios que cambian el estado de un pedido: llamar a {@link #retirar(Pedido)} ANTES de
+ * modificarlo y a {@link #incorporar(Pedido)} DESPUÉS, dentro de la misma transacción. Así el pedido
+ * sale del bucket viejo y entra en el nuevo sin tener que conocer la transición concreta.
+ */
+@Service
+@RequiredArgsConstructor
+public class ResumenDiarioService {
+
+    public static final String SIN_VALOR = "NINGUNO";
+    public static final String PENDIENTE = "PENDIENTE";
+
+    private final ResumenVentaDiariaRepository resumenVentaRepo;
+    private final ResumenVarianteDiariaRepository resumenVarianteRepo;
+    private final PedidoRepository pedidoRepo;
+
+    public void incorporar(Pedido pedido) {
+        aplicar(pedido, 1);
+    }
+
+    public void retirar(Pedido pedido) {
+        aplicar(pedido, -1);
+    }
+
+    private void aplicar(Pedido pedido, int signo) {
+        if (!participa(pedido)) {
+            return;
+        }
+
+        LocalDate dia = pedido.getFecha().toLocalDate();
+        String tipo = tipo(pedido);
+        String estado = pedido.getEstado().name();
+        double total = pedido.getTotal() != null ? pedido.getTotal() : 0.0;
+
+        resumenVentaRepo.acumular(dia, tipo, estado, tipoAprobacion(pedido), metodoPago(pedido),
+                clienteId(pedido), signo, signo * total);
+
+        // Agrupar por variante (un pedido puede tener varias líneas de la misma variante)
+        Map<Long, long[]> unidadesPorVariante = new LinkedHashMap<>();
+        if (pedido.getDetalles() != null) {
+            for (DetallePedido detalle : pedido.getDetalles()) {
+                if (detalle.getVariante() == null || detalle.getCantidad() == null) {
+                    continue;
+                }
+                long[] acumulado = unidadesPorVariante.computeIfAbsent(detalle.getVariante().getId(),
+                        id -> new long[]{detalle.getVariante().getProducto().getId(), 0});
+                acumulado[1] += detalle.getCantidad();
+            }
+        }
+
+        for (Map.Entry<Long, long[]> entry : unidadesPorVariante.entrySet()) {
+            resumenVarianteRepo.acumular(dia, tipo, estado, entry.getKey(), entry.getValue()[0],
+                    signo * entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Recalcula todos los buckets a partir de pedidos y detalles (backfill o corrección manual).
+     */
+    @Transactional
+    public Map<String, Integer> reconstruir() {
+        System.out.println("🔵 [RESUMEN DIARIO] Reconstruyendo acumulados diarios desde pedidos...");
+        resumenVentaRepo.vaciar();
+        resumenVarianteRepo.vaciar();
+        int filasVentas = resumenVentaRepo.reconstruirDesdePedidos();
+        int filasVariantes = resumenVarianteRepo.reconstruirDesdePedidos();
+        System.out.println("✅ [RESUMEN DIARIO] Buckets generados - ventas: " + filasVentas + ", variantes: " + filasVariantes);
+
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        resultado.put("bucketsVentas", filasVentas);
+        resultado.put("bucketsVariantes", filasVariantes);
+        return resultado;
+    }
+
+    // Primer arranque con datos existentes: generar los acumulados una única vez
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializar() {
+        if (resumenVentaRepo.count() == 0 && pedidoRepo.count() > 0) {
+            reconstruir();
+        }
+    }
+
+    /**
+     * Las ventas sólo cuentan para los dashboards una vez confirmadas/entregadas/canceladas (antes el total
+     * y las líneas siguen cambiando); las devoluciones cuentan desde que se crean.
+     */
+    public static boolean participa(Pedido pedido) {
+        if (pedido.getFecha() == null || pedido.getEstado() == null) {
+            return false;
+        }
+        if (pedido.getTipo() == TipoDocumento.DEVOLUCION) {
+            return true;
+        }
+        return pedido.getEstado() == EstadoPedido.CONFIRMADO
+                || pedido.getEstado() == EstadoPedido.ENTREGADO
+                || pedido.getEstado() == EstadoPedido.CANCELADO;
+    }
+
+    public static String tipo(Pedido pedido) {
+        // Los pedidos creados desde /api/pedidos/crear no tienen tipo: son ventas
+        return pedido.getTipo() != null ? pedido.getTipo().name() : TipoDocumento.VENTA.name();
+    }
+
+    public static String tipoAprobacion(Pedido pedido) {
+        if (pedido.getTipo() != TipoDocumento.DEVOLUCION) {
+            return SIN_VALOR;
+        }
+        return pedido.getTipoAprobacionDevolucion() != null ? pedido.getTipoAprobacionDevolucion().name() : PENDIENTE;
+    }
+
+    public static String metodoPago(Pedido pedido) {
+        return pedido.getMetodoPago() != null ? pedido.getMetodoPago().name() : SIN_VALOR;
+    }
+
+    public static Long clienteId(Pedido pedido) {
+        if (pedido.getUsuario() != null) {
+            return pedido.getUsuario().getId();
+        }
+        return pedido.getClienteId() != null ? pedido.getClienteId() : 0L;
+    }
+}
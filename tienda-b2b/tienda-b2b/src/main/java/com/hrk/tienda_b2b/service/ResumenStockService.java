@@ -0,0 +1,258 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.StockHistorico;
+import com.hrk.tienda_b2b.repository.ArchivoHistorialRepository;
+import com.hrk.tienda_b2b.repository.ResumenStockVarianteRepository;
+import com.hrk.tienda_b2b.repository.StockHistoricoRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantiene resumen_stock_variantes: una fila por variante con los totales de su stock_historico.
+ * {@link #registrar(StockHistorico)} se llama justo después de guardar cada registro de historial,
+ * dentro de la misma transacción.
+ *
+ * Dentro de una transacción los registros se juntan por variante y el resumen se escribe una sola vez, en un
+ * batch antes del commit; así un ajuste masivo son sólo los inserts de stock_historico (que Hibernate agrupa)
+ * y un upsert por variante. El último stock acumulado de cada variante queda en memoria: se carga la primera vez
+ * que se pide y se actualiza después de cada commit que lo cambia (lo pendiente de la transacción en curso se ve
+ * antes que lo confirmado).
+ */
+@Service
+@RequiredArgsConstructor
+public class ResumenStockService {
+
+    private static final String SQL_ACUMULAR = "INSERT INTO resumen_stock_variantes " +
+            "(variante_id, total_entradas, total_ajustes_suma, total_ajustes_resta, cantidad_registros, ultimo_stock_acumulado, ultima_fecha) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "total_entradas = total_entradas + VALUES(total_entradas), " +
+            "total_ajustes_suma = total_ajustes_suma + VALUES(total_ajustes_suma), " +
+            "total_ajustes_resta = total_ajustes_resta + VALUES(total_ajustes_resta), " +
+            "cantidad_registros = cantidad_registros + VALUES(cantidad_registros), " +
+            // El último acumulado se actualiza antes que la fecha (MySQL asigna de izquierda a derecha)
+            "ultimo_stock_acumulado = IF(ultima_fecha IS NULL OR VALUES(ultima_fecha) >= ultima_fecha, VALUES(ultimo_stock_acumulado), ultimo_stock_acumulado), " +
+            "ultima_fecha = IF(ultima_fecha IS NULL OR VALUES(ultima_fecha) >= ultima_fecha, VALUES(ultima_fecha), ultima_fecha)";
+
+    // Variante sin historial (también se cachea, es lo que pregunta tieneHistorial)
+    private static final Saldo SIN_HISTORIAL = new Saldo(null, null);
+
+    private final ResumenStockVarianteRepository resumenStockRepo;
+    private final StockHistoricoRepository stockHistoricoRepo;
+    private final ArchivoHistorialRepository archivo;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Último acumulado confirmado por variante
+    private final Map<Long, Saldo> saldos = new ConcurrentHashMap<>();
+
+    public void registrar(StockHistorico historico) {
+        registrar(historico.getVariante().getId(), historico.getTipo(), historico.getCantidad(),
+                historico.getStockAcumulado(), historico.getFecha());
+    }
+
+    // Para los registros de stock_historico que se insertan por JDBC (conteo de inventario)
+    public void registrar(Long varianteId, StockHistorico.TipoMovimientoStock tipo, Integer cantidad,
+                          Integer stockAcumulado, LocalDateTime fecha) {
+        Map<Long, Totales> pendientes = pendientesDeLaTransaccion(true);
+        if (pendientes == null) {
+            // Sin transacción: se escribe en el momento
+            Totales totales = new Totales();
+            totales.sumar(tipo, cantidad, stockAcumulado, fecha);
+            escribir(Map.of(varianteId, totales));
+            saldos.remove(varianteId);
+            return;
+        }
+        pendientes.computeIfAbsent(varianteId, id -> new Totales()).sumar(tipo, cantidad, stockAcumulado, fecha);
+    }
+
+    /**
+     * Último stock acumulado de la variante, o null si todavía no tiene historial.
+     */
+    public Integer ultimoStockAcumulado(Long varianteId) {
+        Map<Long, Totales> pendientes = pendientesDeLaTransaccion(false);
+        Totales pendiente = pendientes != null ? pendientes.get(varianteId) : null;
+        if (pendiente != null) {
+            return pendiente.ultimoStockAcumulado;
+        }
+        return saldo(varianteId).stockAcumulado;
+    }
+
+    /**
+     * Si la variante tiene algún registro de stock histórico (incluidos los archivados): una lectura por clave del
+     * resumen la primera vez, después de memoria.
+     */
+    public boolean tieneHistorial(Long varianteId) {
+        return ultimoStockAcumulado(varianteId) != null;
+    }
+
+    @Transactional
+    public Map<String, Integer> reconstruir() {
+        System.out.println("🔵 [RESUMEN STOCK] Reconstruyendo resumen de stock histórico por variante...");
+        resumenStockRepo.vaciar();
+        int variantes = resumenStockRepo.reconstruirDesdeHistorico();
+        int archivadas = sumarArchivados();
+        System.out.println("✅ [RESUMEN STOCK] Variantes resumidas: " + variantes + " (con historial archivado: " + archivadas + ")");
+        despuesDeTerminar(saldos::clear);
+
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        resultado.put("variantes", variantes);
+        resultado.put("variantesConArchivo", archivadas);
+        return resultado;
+    }
+
+    // Lo archivado ya no está en stock_historico: se agrega por variante y se suma a lo reconstruido
+    private int sumarArchivados() {
+        Map<Long, Totales> porVariante = new HashMap<>();
+        archivo.recorrer(ArchivoHistorialRepository.Tabla.STOCK_HISTORICO, registro ->
+                porVariante.computeIfAbsent(registro.getVarianteId(), id -> new Totales())
+                        .sumar(StockHistorico.TipoMovimientoStock.valueOf(registro.getTipo()), registro.getCantidad(),
+                                registro.getStockAcumulado(), LocalDateTime.parse(registro.getFecha())));
+        escribir(porVariante);
+        return porVariante.size();
+    }
+
+    private Saldo saldo(Long varianteId) {
+        Saldo saldo = saldos.get(varianteId);
+        if (saldo != null) {
+            return saldo;
+        }
+        List<Saldo> leido = jdbcTemplate.query(
+                "SELECT ultimo_stock_acumulado, ultima_fecha FROM resumen_stock_variantes WHERE variante_id = ?",
+                (rs, fila) -> new Saldo((Integer) rs.getObject("ultimo_stock_acumulado"),
+                        rs.getTimestamp("ultima_fecha") != null ? rs.getTimestamp("ultima_fecha").toLocalDateTime() : null),
+                varianteId);
+        return saldos.merge(varianteId, leido.isEmpty() ? SIN_HISTORIAL : leido.get(0), Saldo::masReciente);
+    }
+
+    // Registros de la transacción en curso, por variante (null si no hay transacción). Son una sincronización de la
+    // transacción: una REQUIRES_NEW anidada tiene las suyas y no se mezclan
+    private Map<Long, Totales> pendientesDeLaTransaccion(boolean crear) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+            if (sincronizacion instanceof Pendientes p && p.servicio() == this) {
+                return p.porVariante;
+            }
+        }
+        if (!crear) {
+            return null;
+        }
+        Pendientes pendientes = new Pendientes();
+        TransactionSynchronizationManager.registerSynchronization(pendientes);
+        return pendientes.porVariante;
+    }
+
+    // Escribe el resumen antes del commit y, confirmado, actualiza los saldos en memoria
+    private class Pendientes implements TransactionSynchronization {
+
+        private final Map<Long, Totales> porVariante = new LinkedHashMap<>();
+
+        ResumenStockService servicio() {
+            return ResumenStockService.this;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            escribir(porVariante);
+        }
+
+        @Override
+        public void afterCommit() {
+            // Por fecha, como el upsert: si otra transacción confirmó algo más nuevo, queda eso
+            porVariante.forEach((varianteId, t) -> saldos.merge(varianteId,
+                    new Saldo(t.ultimoStockAcumulado, t.ultimaFecha), Saldo::masReciente));
+        }
+    }
+
+    private void escribir(Map<Long, Totales> porVariante) {
+        if (porVariante.isEmpty()) {
+            return;
+        }
+        List<Object[]> filas = new ArrayList<>(porVariante.size());
+        porVariante.forEach((varianteId, t) -> filas.add(new Object[]{varianteId, t.entradas, t.ajustesSuma,
+                t.ajustesResta, t.registros, t.ultimoStockAcumulado,
+                t.ultimaFecha != null ? Timestamp.valueOf(t.ultimaFecha) : null}));
+        jdbcTemplate.batchUpdate(SQL_ACUMULAR, filas);
+    }
+
+    private static void despuesDeTerminar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private static class Totales {
+        private long entradas;
+        private long ajustesSuma;
+        private long ajustesResta;
+        private long registros;
+        private Integer ultimoStockAcumulado;
+        private LocalDateTime ultimaFecha;
+
+        void sumar(StockHistorico.TipoMovimientoStock tipo, Integer cantidadRegistro, Integer stockAcumulado, LocalDateTime fecha) {
+            long cantidad = cantidadRegistro != null ? cantidadRegistro : 0;
+            if (tipo == StockHistorico.TipoMovimientoStock.ENTRADA_INICIAL) {
+                entradas += cantidad;
+            } else if (tipo == StockHistorico.TipoMovimientoStock.AJUSTE_SUMA) {
+                ajustesSuma += cantidad;
+            } else if (tipo == StockHistorico.TipoMovimientoStock.AJUSTE_RESTA) {
+                ajustesResta += Math.abs(cantidad);
+            }
+            registros++;
+            // Igual que el upsert: a igual fecha gana el último que llega
+            if (ultimaFecha == null || !fecha.isBefore(ultimaFecha)) {
+                ultimaFecha = fecha;
+                ultimoStockAcumulado = stockAcumulado;
+            }
+        }
+    }
+
+    private static class Saldo {
+        private final Integer stockAcumulado;
+        private final LocalDateTime fecha;
+
+        Saldo(Integer stockAcumulado, LocalDateTime fecha) {
+            this.stockAcumulado = stockAcumulado;
+            this.fecha = fecha;
+        }
+
+        static Saldo masReciente(Saldo actual, Saldo nuevo) {
+            if (nuevo.fecha == null) {
+                return actual.fecha != null ? actual : nuevo;
+            }
+            return actual.fecha == null || !nuevo.fecha.isBefore(actual.fecha) ? nuevo : actual;
+        }
+    }
+
+    // Backfill al primer arranque con historial existente
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializar() {
+        if (resumenStockRepo.count() == 0 && stockHistoricoRepo.count() > 0) {
+            reconstruir();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.DetallePedido;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.SaldoDevolucion;
+import com.hrk.tienda_b2b.model.TipoDocumento;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import com.hrk.tienda_b2b.repository.SaldoDevolucionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Mantiene saldos_devolucion: cuánto se le entregó y cuánto devolvió cada cliente de cada variante.
+ * {@link #registrarEntrega(Pedido)} y {@link #registrarDevolucion} se llaman dentro de la transacción que
+ * entrega el pedido o agrega el renglón a la devolución.
+ */
+@Service
+@RequiredArgsConstructor
+public class SaldoDevolucionService {
+
+    private final SaldoDevolucionRepository saldoRepo;
+    private final PedidoRepository pedidoRepo;
+
+    public void registrarEntrega(Pedido pedido) {
+        if (pedido.getTipo() == TipoDocumento.DEVOLUCION || pedido.getClienteId() == null) {
+            return;
+        }
+        Map<Long, Integer> unidadesPorVariante = new LinkedHashMap<>();
+        for (DetallePedido detalle : pedido.getDetalles()) {
+            unidadesPorVariante.merge(detalle.getVariante().getId(), detalle.getCantidad(), Integer::sum);
+        }
+        unidadesPorVariante.forEach((varianteId, unidades) ->
+                saldoRepo.acumular(pedido.getClienteId(), varianteId, unidades, 0));
+    }
+
+    /**
+     * Saldo de la variante bloqueado hasta el fin de la transacción, para validar y después registrar la
+     * devolución sin que otra se cuele en el medio. Sin fila: nunca se le entregó esa variante.
+     */
+    public SaldoDevolucion bloquear(Long clienteId, Long varianteId) {
+        return saldoRepo.bloquear(clienteId, varianteId)
+                .orElseGet(() -> vacio(clienteId, varianteId));
+    }
+
+    public void registrarDevolucion(Long clienteId, Long varianteId, int cantidad) {
+        saldoRepo.acumular(clienteId, varianteId, 0, cantidad);
+    }
+
+    /**
+     * Saldos de varias variantes en una sola consulta (las que no tienen fila vuelven en cero).
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, SaldoDevolucion> consultar(Long clienteId, Collection<Long> varianteIds) {
+        Map<Long, SaldoDevolucion> encontrados = saldoRepo.findByClienteIdAndVarianteIdIn(clienteId, varianteIds).stream()
+                .collect(Collectors.toMap(SaldoDevolucion::getVarianteId, Function.identity()));
+        Map<Long, SaldoDevolucion> resultado = new LinkedHashMap<>();
+        for (Long varianteId : varianteIds) {
+            resultado.put(varianteId, encontrados.getOrDefault(varianteId, vacio(clienteId, varianteId)));
+        }
+        return resultado;
+    }
+
+    @Transactional
+    public Map<String, Integer> reconstruir() {
+        System.out.println("🔵 [SALDO DEVOLUCION] Reconstruyendo saldos de devolución por cliente y variante...");
+        saldoRepo.vaciar();
+        int filas = saldoRepo.reconstruirDesdePedidos();
+        System.out.println("✅ [SALDO DEVOLUCION] Saldos generados: " + filas);
+
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        resultado.put("saldos", filas);
+        return resultado;
+    }
+
+    // Backfill al primer arranque con pedidos existentes
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void inicializar() {
+        if (saldoRepo.count() == 0 && pedidoRepo.count() > 0) {
+            reconstruir();
+        }
+    }
+
+    private static SaldoDevolucion vacio(Long clienteId, Long varianteId) {
+        return SaldoDevolucion.builder()
+                .clienteId(clienteId)
+                .varianteId(varianteId)
+                .entregado(0)
+                .devuelto(0)
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package com.hrk.tienda_b2b.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Falta stock para una o más variantes de un pedido. Trae todas las variantes cortas juntas
+ * (no sólo la primera) para que el cliente pueda corregir el pedido de una vez.
+ * Extiende IllegalStateException para que los controllers la sigan respondiendo como 400.
+ */
+@Getter
+public class StockInsuficienteException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Faltante> faltantes;
+
+    public StockInsuficienteException(List<Faltante> faltantes) {
+        super("Sin stock para " + faltantes.stream()
+                .map(f -> "SKU " + f.getSku() + " (pedido: " + f.getSolicitado() + ", disponible: " + f.getDisponible() + ")")
+                .collect(Collectors.joining(", ")));
+        this.faltantes = List.copyOf(faltantes);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Faltante {
+        private final Long varianteId;
+        private final String sku;
+        private final int solicitado;
+        private final int disponible;
+    }
+}
@@ -1,11 +1,13 @@
 package com.hrk.tienda_b2b.service;
 
 import com.hrk.tienda_b2b.dto.TemporadaRequest;
+import com.hrk.tienda_b2b.event.CatalogoModificadoEvent;
 import com.hrk.tienda_b2b.model.Producto;
 import com.hrk.tienda_b2b.model.Temporada;
 import com.hrk.tienda_b2b.repository.ProductoRepository;
 import com.hrk.tienda_b2b.repository.TemporadaRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,6 +23,7 @@ public class TemporadaService {
 
     private final TemporadaRepository temporadaRepository;
     private final ProductoRepository productoRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Temporada> listarTodas() {
         return temporadaRepository.findAll();
@@ -77,7 +80,11 @@ public class TemporadaService {
             temporada.setProductos(productos);
         }
 
-        return temporadaRepository.save(temporada);
+        Temporada guardada = temporadaRepository.save(temporada);
+        if (Boolean.TRUE.equals(guardada.getActiva())) {
+            eventPublisher.publishEvent(new CatalogoModificadoEvent("temporada activa actualizada " + id));
+        }
+        return guardada;
     }
 
     @Transactional
@@ -89,6 +96,7 @@ public class TemporadaService {
 
         if (eraActiva) {
             temporadaRepository.flush();
+            eventPublisher.publishEvent(new CatalogoModificadoEvent("temporada activa eliminada " + id));
         }
     }
 
@@ -104,7 +112,9 @@ public class TemporadaService {
         });
 
         temporada.setActiva(true);
-        return temporadaRepository.save(temporada);
+        Temporada activa = temporadaRepository.save(temporada);
+        eventPublisher.publishEvent(new CatalogoModificadoEvent("temporada activa " + temporadaId));
+        return activa;
     }
 
     @Transactional
@@ -112,6 +122,7 @@ public class TemporadaService {
         temporadaRepository.findByActivaTrue().ifPresent(actual -> {
             actual.setActiva(false);
             temporadaRepository.save(actual);
+            eventPublisher.publishEvent(new CatalogoModificadoEvent("temporada desactivada " + actual.getId()));
         });
     }
 
@@ -0,0 +1,150 @@
+package com.hrk.tienda_b2b.config;
+
+import com.hrk.tienda_b2b.repository.ClaveIdempotenciaJdbcRepository;
+import com.hrk.tienda_b2b.service.IdempotenciaService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Idempotency-Key de punta a punta (filtro + servicio) con claves_idempotencia en memoria.
+ */
+class IdempotenciaFilterTest {
+
+    private static final String RUTA = "/api/pedidos/enviar";
+
+    private final IdempotenciaFilter filtro = new IdempotenciaFilter(
+            new IdempotenciaService(new ClavesEnMemoria(), 24, 5, 100), List.of(RUTA));
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @Test
+    void elReintentoRecibeLaRespuestaGuardadaSinVolverAEjecutar() throws Exception {
+        FilterChain crear = responder(201, "{\"id\":500}");
+
+        MockHttpServletResponse primera = enviar("clave-1", "{\"items\":[1]}", crear);
+        MockHttpServletResponse reintento = enviar("clave-1", "{\"items\":[1]}", crear);
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(201, reintento.getStatus());
+        assertEquals("{\"id\":500}", reintento.getContentAsString());
+        assertEquals("true", reintento.getHeader("Idempotent-Replayed"));
+        assertNull(primera.getHeader("Idempotent-Replayed"));
+    }
+
+    @Test
+    void mismaClaveConOtroCuerpoDa422() throws Exception {
+        FilterChain crear = responder(201, "{\"id\":500}");
+        enviar("clave-1", "{\"items\":[1]}", crear);
+
+        MockHttpServletResponse otra = enviar("clave-1", "{\"items\":[2]}", crear);
+
+        assertEquals(422, otra.getStatus());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void mientrasElOriginalSigueEnProcesoDa409() throws Exception {
+        MockHttpServletResponse[] concurrente = new MockHttpServletResponse[1];
+        // El mismo request llega otra vez antes de que termine el primero
+        FilterChain lento = (request, response) -> {
+            ejecuciones.incrementAndGet();
+            concurrente[0] = enviar("clave-1", "{\"items\":[1]}", responder(201, "{}"));
+            ((HttpServletResponse) response).setStatus(201);
+        };
+
+        enviar("clave-1", "{\"items\":[1]}", lento);
+
+        assertEquals(409, concurrente[0].getStatus());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void unErrorDelServidorNoSeGuardaYElReintentoVuelveAEjecutar() throws Exception {
+        enviar("clave-1", "{\"items\":[1]}", responder(500, "{\"error\":\"x\"}"));
+        MockHttpServletResponse reintento = enviar("clave-1", "{\"items\":[1]}", responder(201, "{\"id\":500}"));
+
+        assertEquals(2, ejecuciones.get());
+        assertEquals(201, reintento.getStatus());
+        assertNull(reintento.getHeader("Idempotent-Replayed"));
+    }
+
+    @Test
+    void sinHeaderPasaSiempre() throws Exception {
+        FilterChain crear = responder(201, "{\"id\":500}");
+        enviar(null, "{\"items\":[1]}", crear);
+        enviar(null, "{\"items\":[1]}", crear);
+
+        assertEquals(2, ejecuciones.get());
+    }
+
+    private MockHttpServletResponse enviar(String clave, String cuerpo, FilterChain cadena) throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", RUTA);
+        request.setContentType("application/json");
+        request.setContent(cuerpo.getBytes(StandardCharsets.UTF_8));
+        if (clave != null) {
+            request.addHeader(IdempotenciaFilter.HEADER, clave);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filtro.doFilter(request, response, cadena);
+        return response;
+    }
+
+    private FilterChain responder(int estado, String cuerpo) {
+        return (request, response) -> {
+            ejecuciones.incrementAndGet();
+            request.getInputStream().readAllBytes(); // el controller vuelve a leer el cuerpo
+            response.setContentType("application/json");
+            ((HttpServletResponse) response).setStatus(estado);
+            response.getOutputStream().write(cuerpo.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    // claves_idempotencia en memoria, con la misma semántica que el INSERT/UPDATE/DELETE de la base
+    private static class ClavesEnMemoria extends ClaveIdempotenciaJdbcRepository {
+
+        private final Map<String, Registro> filas = new ConcurrentHashMap<>();
+
+        ClavesEnMemoria() {
+            super(null);
+        }
+
+        @Override
+        public boolean reservar(byte[] clave, byte[] huella, LocalDateTime ahora) {
+            return filas.putIfAbsent(id(clave), new Registro(huella, 0, null, null, ahora)) == null;
+        }
+
+        @Override
+        public void completar(byte[] clave, int estado, String tipoContenido, byte[] cuerpo) {
+            filas.computeIfPresent(id(clave), (k, r) -> new Registro(r.getHuella(), estado, tipoContenido, cuerpo, r.getCreada()));
+        }
+
+        @Override
+        public void borrar(byte[] clave) {
+            filas.remove(id(clave));
+        }
+
+        @Override
+        public Registro buscar(byte[] clave) {
+            return filas.get(id(clave));
+        }
+
+        private static String id(byte[] clave) {
+            return HexFormat.of().formatHex(clave);
+        }
+    }
+}
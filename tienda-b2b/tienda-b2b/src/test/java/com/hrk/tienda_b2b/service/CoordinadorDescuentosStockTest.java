@@ -0,0 +1,373 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.TipoEventoStock;
+import com.hrk.tienda_b2b.repository.EventoStockJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prueba de concurrencia del coordinador con un pool de conexiones real (Hikari) de sólo 2 conexiones sobre una base
+ * simulada: cada pedido corre en su transacción y el coordinador tiene que arreglarse con la conexión de ésta. Los
+ * repositorios en memoria imitan las filas bloqueadas (un lock por variante hasta el fin de la transacción) y sólo
+ * aplican lo escrito si la transacción confirma.
+ */
+class CoordinadorDescuentosStockTest {
+
+    private static final int HILOS = 32;
+
+    private HikariDataSource pool;
+    private TransactionTemplate transaccion;
+    private StockEnMemoria stock;
+    private EventosEnMemoria eventos;
+    private CoordinadorDescuentosStock coordinador;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        HikariConfig config = new HikariConfig();
+        config.setDataSource(baseSimulada());
+        config.setMaximumPoolSize(2);
+        config.setConnectionTimeout(2000);
+        config.setAutoCommit(false);
+        pool = new HikariDataSource(config);
+        transaccion = new TransactionTemplate(new DataSourceTransactionManager(pool));
+        eventos = new EventosEnMemoria();
+    }
+
+    @AfterEach
+    void cerrar() {
+        pool.close();
+    }
+
+    @Test
+    void variantePopularNoSeSobrevendeConElPoolAcotado() throws Exception {
+        iniciar(Map.of(1L, 500));
+        AtomicInteger vendido = new AtomicInteger();
+        AtomicLong pedidos = new AtomicLong();
+
+        correrEnParalelo(() -> {
+            for (int i = 0; i < 20; i++) {
+                int cantidad = ThreadLocalRandom.current().nextInt(1, 4);
+                boolean aceptado = transaccion.execute(status ->
+                        coordinador.descontarTodo(pedidos.incrementAndGet(), Map.of(1L, cantidad), Map.of()).isEmpty());
+                if (aceptado) {
+                    vendido.addAndGet(cantidad);
+                }
+            }
+        });
+
+        assertFalse(stock.negativo.get(), "el stock quedó negativo");
+        assertFalse(stock.fueraDeLaTransaccion.get(), "el coordinador usó una conexión que no era la del pedido");
+        assertEquals(500 - vendido.get(), stock.stock(1L));
+        assertEquals(-vendido.get(), eventos.neto(1L, TipoEventoStock.VENTA));
+        assertTrue(stock.stock(1L) < 3, "se rechazaron pedidos con stock disponible");
+    }
+
+    @Test
+    void respetaLoReservadoPorOtros() throws Exception {
+        iniciar(Map.of(1L, 200));
+        AtomicLong pedidos = new AtomicLong();
+
+        correrEnParalelo(() -> {
+            for (int i = 0; i < 10; i++) {
+                transaccion.execute(status -> coordinador.descontarTodo(pedidos.incrementAndGet(), Map.of(1L, 1), Map.of(1L, 50)));
+            }
+        });
+
+        assertEquals(50, stock.stock(1L));
+    }
+
+    @Test
+    void pedidosConVariasVariantesSonTodoONadaYSeRevierteConElPedido() throws Exception {
+        iniciar(Map.of(1L, 300, 2L, 120, 3L, 1000));
+        Map<Long, AtomicInteger> vendido = new ConcurrentHashMap<>();
+        Set<Long> rechazados = ConcurrentHashMap.newKeySet();
+        AtomicLong pedidos = new AtomicLong();
+
+        correrEnParalelo(() -> {
+            ThreadLocalRandom azar = ThreadLocalRandom.current();
+            for (int i = 0; i < 15; i++) {
+                long pedidoId = pedidos.incrementAndGet();
+                // Variantes en cualquier orden: el coordinador las bloquea por id
+                Map<Long, Integer> pedido = new TreeMap<>(Map.of(
+                        3L, azar.nextInt(1, 5),
+                        2L, azar.nextInt(1, 3),
+                        1L, azar.nextInt(1, 4)));
+                boolean falla = azar.nextInt(5) == 0; // algo después del descuento hace revertir el pedido
+                boolean confirmado = transaccion.execute(status -> {
+                    if (!coordinador.descontarTodo(pedidoId, pedido, Map.of()).isEmpty()) {
+                        rechazados.add(pedidoId);
+                        return false;
+                    }
+                    if (falla) {
+                        status.setRollbackOnly();
+                    }
+                    return !falla;
+                });
+                if (confirmado) {
+                    pedido.forEach((id, cantidad) -> vendido.computeIfAbsent(id, k -> new AtomicInteger()).addAndGet(cantidad));
+                }
+            }
+        });
+
+        assertFalse(stock.negativo.get(), "el stock quedó negativo");
+        assertEquals(300 - vendido.get(1L).get(), stock.stock(1L));
+        assertEquals(120 - vendido.get(2L).get(), stock.stock(2L));
+        assertEquals(1000 - vendido.get(3L).get(), stock.stock(3L));
+        assertEquals(-vendido.get(2L).get(), eventos.neto(2L, TipoEventoStock.VENTA));
+        assertFalse(rechazados.isEmpty(), "ningún pedido se quedó sin stock");
+    }
+
+    @Test
+    void devuelveLosFaltantesSinDescontarNada() {
+        iniciar(Map.of(1L, 10, 2L, 3));
+
+        List<StockInsuficienteException.Faltante> faltantes = transaccion.execute(status ->
+                coordinador.descontarTodo(9L, new TreeMap<>(Map.of(1L, 4, 2L, 5)), Map.of(2L, 1)));
+
+        assertEquals(1, faltantes.size());
+        assertEquals(2L, faltantes.get(0).getVarianteId());
+        assertEquals("SKU-2", faltantes.get(0).getSku());
+        assertEquals(2, faltantes.get(0).getDisponible());
+        assertEquals(10, stock.stock(1L));
+        assertEquals(3, stock.stock(2L));
+        assertTrue(eventos.confirmados.isEmpty());
+    }
+
+    @Test
+    void reponerSumaYRegistraElTipoIndicado() {
+        iniciar(Map.of(1L, 10, 2L, 0));
+
+        transaccion.executeWithoutResult(status ->
+                coordinador.reponer(9L, Map.of(2L, 4, 1L, 1), TipoEventoStock.ANULACION));
+
+        assertEquals(11, stock.stock(1L));
+        assertEquals(4, stock.stock(2L));
+        assertEquals(4, eventos.neto(2L, TipoEventoStock.ANULACION));
+    }
+
+    @Test
+    void varianteInexistenteYSinTransaccionSeRechazan() {
+        iniciar(Map.of(1L, 10));
+
+        assertThrows(IllegalArgumentException.class, () -> transaccion.execute(status ->
+                coordinador.descontarTodo(9L, Map.of(1L, 1, 7L, 1), Map.of())));
+        assertThrows(IllegalStateException.class, () -> coordinador.descontarTodo(9L, Map.of(1L, 1), Map.of()));
+        assertEquals(10, stock.stock(1L));
+    }
+
+    private void iniciar(Map<Long, Integer> inicial) {
+        stock = new StockEnMemoria(pool, inicial);
+        coordinador = new CoordinadorDescuentosStock(stock, eventos);
+    }
+
+    // Conexiones simuladas: lo que importa es cuántas hay, no lo que hacen
+    private static DataSource baseSimulada() throws Exception {
+        DataSource base = mock(DataSource.class);
+        when(base.getConnection()).thenAnswer(invocacion -> {
+            Connection conexion = mock(Connection.class);
+            when(conexion.isValid(anyInt())).thenReturn(true);
+            return conexion;
+        });
+        return base;
+    }
+
+    private static void correrEnParalelo(Runnable tarea) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        try {
+            for (int i = 0; i < HILOS; i++) {
+                tareas.add(hilos.submit(() -> {
+                    largada.await();
+                    tarea.run();
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> t : tareas) {
+                t.get(60, TimeUnit.SECONDS); // propaga cualquier excepción del hilo (por ejemplo, el pool agotado)
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    /**
+     * Datos de la transacción en curso en un repositorio en memoria: qué filas tiene bloqueadas y qué escribió.
+     */
+    private static class Pendiente<T> {
+        private final Set<Long> bloqueadas = new TreeSet<>();
+        private final List<T> escrito = new ArrayList<>();
+    }
+
+    private static class StockEnMemoria extends StockVarianteJdbcRepository {
+
+        private final DataSource pool;
+        private final Map<Long, Integer> stock = new ConcurrentHashMap<>();
+        private final Map<Long, ReentrantLock> filas = new ConcurrentHashMap<>();
+        private final AtomicBoolean negativo = new AtomicBoolean();
+        private final AtomicBoolean fueraDeLaTransaccion = new AtomicBoolean();
+
+        StockEnMemoria(DataSource pool, Map<Long, Integer> inicial) {
+            super(null);
+            this.pool = pool;
+            stock.putAll(inicial);
+            inicial.keySet().forEach(id -> filas.put(id, new ReentrantLock()));
+        }
+
+        int stock(Long varianteId) {
+            return stock.get(varianteId);
+        }
+
+        @Override
+        public List<StockVariante> bloquear(Collection<Long> varianteIds) {
+            Pendiente<Map<Long, Integer>> pendiente = pendiente();
+            List<StockVariante> resultado = new ArrayList<>();
+            for (Long id : new TreeSet<>(varianteIds)) {
+                ReentrantLock fila = filas.get(id);
+                if (fila == null) {
+                    continue;
+                }
+                if (pendiente.bloqueadas.add(id)) {
+                    tomar(fila);
+                }
+                resultado.add(new StockVariante(id, "SKU-" + id, stock.get(id)));
+            }
+            return resultado;
+        }
+
+        @Override
+        public void ajustar(Map<Long, Integer> deltaPorVariante) {
+            Pendiente<Map<Long, Integer>> pendiente = pendiente();
+            if (!pendiente.bloqueadas.containsAll(deltaPorVariante.keySet())) {
+                throw new IllegalStateException("ajustar sin las filas bloqueadas");
+            }
+            pendiente.escrito.add(Map.copyOf(deltaPorVariante));
+            demora();
+        }
+
+        // Las filas se sueltan con el fin de la transacción y lo escrito se aplica sólo si confirmó
+        private Pendiente<Map<Long, Integer>> pendiente() {
+            verificarConexion();
+            @SuppressWarnings("unchecked")
+            Pendiente<Map<Long, Integer>> pendiente = (Pendiente<Map<Long, Integer>>) TransactionSynchronizationManager.getResource(this);
+            if (pendiente != null) {
+                return pendiente;
+            }
+            Pendiente<Map<Long, Integer>> nuevo = new Pendiente<>();
+            TransactionSynchronizationManager.bindResource(this, nuevo);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    nuevo.escrito.forEach(deltas -> deltas.forEach((id, delta) -> {
+                        if (stock.merge(id, delta, Integer::sum) < 0) {
+                            negativo.set(true);
+                        }
+                    }));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StockEnMemoria.this);
+                    nuevo.bloqueadas.forEach(id -> filas.get(id).unlock());
+                }
+            });
+            return nuevo;
+        }
+
+        // Pedir una conexión dentro de la transacción devuelve la suya; fuera de ella, otra del pool
+        private void verificarConexion() {
+            Connection conexion = DataSourceUtils.getConnection(pool);
+            if (!DataSourceUtils.isConnectionTransactional(conexion, pool)) {
+                fueraDeLaTransaccion.set(true);
+            }
+            DataSourceUtils.releaseConnection(conexion, pool);
+        }
+
+        // Como innodb_lock_wait_timeout: un pedido que espera demasiado una fila falla en lugar de colgarse
+        private static void tomar(ReentrantLock fila) {
+            try {
+                if (!fila.tryLock(10, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Lock wait timeout");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void demora() {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class EventosEnMemoria extends EventoStockJdbcRepository {
+
+        private final List<Evento> confirmados = new CopyOnWriteArrayList<>();
+
+        EventosEnMemoria() {
+            super(null);
+        }
+
+        int neto(Long varianteId, TipoEventoStock tipo) {
+            return confirmados.stream()
+                    .filter(e -> e.getVarianteId().equals(varianteId) && e.getTipo() == tipo)
+                    .mapToInt(Evento::getDelta)
+                    .sum();
+        }
+
+        @Override
+        public void registrar(List<Evento> eventos) {
+            List<Evento> lote = List.copyOf(eventos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    confirmados.addAll(lote);
+                }
+            });
+        }
+    }
+}
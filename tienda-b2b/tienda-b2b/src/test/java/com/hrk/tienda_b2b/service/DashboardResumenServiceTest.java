@@ -0,0 +1,62 @@
+package com.hrk.tienda_b2b.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * El resumen tiene que dar lo mismo que los endpoints individuales: cada KPI sale del mismo método de DashboardService.
+ */
+class DashboardResumenServiceTest {
+
+    private final DashboardService dashboardService = mock(DashboardService.class);
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+    private final DashboardResumenService servicio = new DashboardResumenService(dashboardService, pool);
+
+    @AfterEach
+    void cerrar() {
+        pool.shutdown();
+    }
+
+    @Test
+    void cadaKpiEsElDelEndpointConLosMismosParametros() {
+        Map<String, Object> facturado = Map.of("totalFacturado", 1500.0, "cantidadPedidos", 3);
+        List<Map<String, Object>> clientes = List.of(Map.of("clienteId", 7L, "montoTotal", 1500.0));
+        when(dashboardService.contarOrdenesCanceladas(null, null)).thenReturn(4L);
+        when(dashboardService.calcularTotalFacturado(null, null)).thenReturn(facturado);
+        when(dashboardService.obtenerTopClientesPorMonto(3, null, null)).thenReturn(clientes);
+
+        Map<String, Object> resumen = servicio.obtenerResumen(null, null, 10, 3);
+
+        // Sin período: cada KPI aplica el suyo (las canceladas cuentan todo el historial, la facturación un mes)
+        assertEquals(Map.of("cantidad", 4L), resumen.get("ordenesCanceladas"));
+        assertEquals(facturado, resumen.get("totalFacturado"));
+        assertEquals(clientes, resumen.get("topClientesMonto"));
+        verify(dashboardService).obtenerTopArticulosMasVendidos(10, null, null);
+        verify(dashboardService).obtenerClientesSinCompras(null, null);
+    }
+
+    @Test
+    void topNegativoSeRechazaSinCalcularNada() {
+        assertThrows(IllegalArgumentException.class, () -> servicio.obtenerResumen(null, null, -1, 3));
+        assertThrows(IllegalArgumentException.class, () -> servicio.obtenerResumen(null, null, 10, 0));
+        verifyNoInteractions(dashboardService);
+    }
+
+    @Test
+    void losEndpointsDeTopTambienValidan() {
+        DashboardServiceImpl impl = new DashboardServiceImpl(null, null, null);
+        assertThrows(IllegalArgumentException.class, () -> impl.obtenerTopArticulosMasVendidos(-5, null, null));
+        assertThrows(IllegalArgumentException.class, () -> impl.obtenerTopClientesPorMonto(-5, null, null));
+    }
+}
@@ -0,0 +1,236 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.dto.EnviarPedidoRequest;
+import com.hrk.tienda_b2b.dto.PedidoPaginaDTO;
+import com.hrk.tienda_b2b.dto.PedidoResponseDTO;
+import com.hrk.tienda_b2b.model.Carrito;
+import com.hrk.tienda_b2b.model.DetallePedido;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.MovimientoStock;
+import com.hrk.tienda_b2b.model.OrigenReserva;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.model.TipoEventoStock;
+import com.hrk.tienda_b2b.model.Usuario;
+import com.hrk.tienda_b2b.repository.CarritoRepository;
+import com.hrk.tienda_b2b.repository.DetallePedidoRepository;
+import com.hrk.tienda_b2b.repository.MovimientoStockRepository;
+import com.hrk.tienda_b2b.repository.PedidoListadoJdbcRepository;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import com.hrk.tienda_b2b.repository.ProductoVarianteRepository;
+import com.hrk.tienda_b2b.repository.ReservaStockJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository;
+import com.hrk.tienda_b2b.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * enviarPedido de punta a punta con los repositorios simulados y las reservas reales (en memoria).
+ */
+class PedidoServiceImplTest {
+
+    private static final Long CLIENTE_ID = 7L;
+    private static final Long CARRITO_ID = 30L;
+
+    private final PedidoRepository pedidoRepo = mock(PedidoRepository.class);
+    private final ProductoVarianteRepository varianteRepo = mock(ProductoVarianteRepository.class);
+    private final DetallePedidoRepository detalleRepo = mock(DetallePedidoRepository.class);
+    private final MovimientoStockRepository movRepo = mock(MovimientoStockRepository.class);
+    private final CarritoRepository carritoRepo = mock(CarritoRepository.class);
+    private final CoordinadorDescuentosStock coordinador = mock(CoordinadorDescuentosStock.class);
+    private final UsuarioRepository usuarioRepo = mock(UsuarioRepository.class);
+    private final PedidoListadoJdbcRepository listadoRepo = mock(PedidoListadoJdbcRepository.class);
+    private final StockVarianteJdbcRepository stockJdbc = mock(StockVarianteJdbcRepository.class);
+    private final ReservaStockService reservas = new ReservaStockService(stockJdbc, mock(ReservaStockJdbcRepository.class), 30, 120);
+    private PedidoServiceImpl servicio;
+
+    @BeforeEach
+    void preparar() {
+        servicio = new PedidoServiceImpl(pedidoRepo, varianteRepo, detalleRepo, movRepo, carritoRepo,
+                coordinador, usuarioRepo, mock(ResumenDiarioService.class), mock(SaldoDevolucionService.class),
+                reservas, mock(ApplicationEventPublisher.class), listadoRepo);
+
+        Usuario cliente = Usuario.builder().id(CLIENTE_ID).build();
+        when(usuarioRepo.findById(CLIENTE_ID)).thenReturn(Optional.of(cliente));
+        Map<Long, ProductoVariante> catalogo = Map.of(1L, variante(1L, 100.0), 2L, variante(2L, 250.0));
+        when(varianteRepo.findAllById(any())).thenAnswer(invocacion -> {
+            Iterable<Long> ids = invocacion.getArgument(0);
+            List<ProductoVariante> encontradas = new ArrayList<>();
+            ids.forEach(id -> encontradas.add(catalogo.get(id)));
+            return encontradas;
+        });
+        when(pedidoRepo.save(any(Pedido.class))).thenAnswer(invocacion -> {
+            Pedido p = invocacion.getArgument(0);
+            if (p.getId() == null) {
+                p.setId(500L);
+            }
+            return p;
+        });
+        when(stockJdbc.leer(List.of(1L))).thenReturn(List.of(new StockVarianteJdbcRepository.StockVariante(1L, "SKU-1", 5)));
+
+        // enviarPedido corre dentro de una transacción (las reservas registran sincronizaciones)
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void limpiar() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void pedidoConVariosRenglonesQuedaConfirmado() {
+        Pedido pedido = servicio.enviarPedido(CLIENTE_ID, "Efectivo", null, List.of(
+                new EnviarPedidoRequest.ItemPedido(1L, 2),
+                new EnviarPedidoRequest.ItemPedido(2L, 3),
+                new EnviarPedidoRequest.ItemPedido(1L, 1)));
+
+        assertEquals(EstadoPedido.CONFIRMADO, pedido.getEstado());
+        assertEquals(3, pedido.getDetalles().size());
+        assertEquals(2 * 100.0 + 3 * 250.0 + 100.0, pedido.getTotal());
+
+        // Un descuento por variante con lo de todos sus renglones
+        verify(coordinador).descontarTodo(500L, Map.of(1L, 3, 2L, 3), Map.of(1L, 0, 2L, 0));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MovimientoStock>> movimientos = ArgumentCaptor.forClass(List.class);
+        verify(movRepo).saveAll(movimientos.capture());
+        assertEquals(3, movimientos.getValue().size());
+    }
+
+    @Test
+    void elStockSeDescuentaAlFinalConTodoLoDemasYaEscrito() {
+        servicio.enviarPedido(CLIENTE_ID, "Efectivo", null, List.of(new EnviarPedidoRequest.ItemPedido(1L, 2)));
+
+        // Todo en la transacción del pedido: las filas de stock se bloquean recién después del flush
+        InOrder orden = inOrder(movRepo, pedidoRepo, coordinador);
+        orden.verify(movRepo).saveAll(any());
+        orden.verify(pedidoRepo).flush();
+        orden.verify(coordinador).descontarTodo(500L, Map.of(1L, 2), Map.of(1L, 0));
+    }
+
+    @Test
+    void sinStockElPedidoNoSeConfirma() {
+        when(coordinador.descontarTodo(500L, Map.of(1L, 9), Map.of(1L, 0)))
+                .thenReturn(List.of(new StockInsuficienteException.Faltante(1L, "SKU-1", 9, 5)));
+
+        StockInsuficienteException error = assertThrows(StockInsuficienteException.class, () -> servicio.enviarPedido(
+                CLIENTE_ID, "Efectivo", null, List.of(new EnviarPedidoRequest.ItemPedido(1L, 9))));
+
+        assertEquals(5, error.getFaltantes().get(0).getDisponible());
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty(), "queda una compensación fuera de la transacción");
+    }
+
+    @Test
+    void cancelarDevuelveElStockPorElCoordinador() {
+        Pedido pedido = Pedido.builder().id(500L).estado(EstadoPedido.CONFIRMADO).build();
+        ProductoVariante v1 = variante(1L, 100.0);
+        when(pedidoRepo.findById(500L)).thenReturn(Optional.of(pedido));
+        when(detalleRepo.findByPedidoId(500L)).thenReturn(List.of(
+                DetallePedido.builder().pedido(pedido).variante(v1).cantidad(2).build(),
+                DetallePedido.builder().pedido(pedido).variante(variante(2L, 250.0)).cantidad(4).build(),
+                DetallePedido.builder().pedido(pedido).variante(v1).cantidad(1).build()));
+
+        assertEquals(EstadoPedido.CANCELADO, servicio.cancelar(500L).getEstado());
+
+        // Nada de findById/save por renglón: un reponer con lo de todas las variantes, después de los movimientos
+        InOrder orden = inOrder(movRepo, coordinador);
+        orden.verify(movRepo).saveAll(any());
+        orden.verify(coordinador).reponer(500L, Map.of(1L, 3, 2L, 4), TipoEventoStock.ANULACION);
+        verify(varianteRepo, never()).save(any());
+        assertEquals(5, v1.getStockDisponible());
+    }
+
+    @Test
+    void lasReservasDelCarritoPasanAlPedido() {
+        // El carrito del cliente tiene reservadas las últimas 5 unidades
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_ID, 1L, 5);
+        when(carritoRepo.findById(CARRITO_ID)).thenReturn(Optional.of(carrito(CLIENTE_ID)));
+
+        Pedido pedido = servicio.enviarPedido(CLIENTE_ID, "Efectivo", CARRITO_ID,
+                List.of(new EnviarPedidoRequest.ItemPedido(1L, 5)));
+
+        assertEquals(EstadoPedido.CONFIRMADO, pedido.getEstado());
+        verify(coordinador).descontarTodo(500L, Map.of(1L, 5), Map.of(1L, 0));
+        assertEquals(0, reservas.reservadoPorOtros(OrigenReserva.PEDIDO, pedido.getId(), 1L));
+        assertEquals(5, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_ID, 1L));
+    }
+
+    @Test
+    void sinCarritoLoReservadoPorElCarritoCuentaComoDeOtros() {
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_ID, 1L, 5);
+
+        servicio.enviarPedido(CLIENTE_ID, "Efectivo", null, List.of(new EnviarPedidoRequest.ItemPedido(1L, 5)));
+
+        verify(coordinador).descontarTodo(500L, Map.of(1L, 5), Map.of(1L, 5));
+    }
+
+    @Test
+    void noSeTomanLasReservasDelCarritoDeOtroCliente() {
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_ID, 1L, 5);
+        when(carritoRepo.findById(CARRITO_ID)).thenReturn(Optional.of(carrito(99L)));
+
+        assertThrows(IllegalArgumentException.class, () -> servicio.enviarPedido(CLIENTE_ID, "Efectivo", CARRITO_ID,
+                List.of(new EnviarPedidoRequest.ItemPedido(1L, 5))));
+
+        verify(coordinador, never()).descontarTodo(any(), anyMap(), anyMap());
+        assertEquals(0, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_ID, 1L));
+    }
+
+    @Test
+    void elCursorSigueDespuesDeUnPedidoSinFecha() {
+        LocalDateTime fecha = LocalDateTime.of(2026, 3, 1, 10, 0);
+        when(listadoRepo.buscarPagina(null, null, null, null, null, null, null, 2))
+                .thenReturn(List.of(listado(9L, fecha.toString()), listado(4L, null)));
+        when(listadoRepo.buscarPagina(null, null, null, null, null, fecha, 9L, 2))
+                .thenReturn(List.of(listado(4L, null), listado(2L, null)));
+        when(listadoRepo.buscarPagina(null, null, null, null, null, null, 4L, 2))
+                .thenReturn(List.of(listado(2L, null)));
+
+        PedidoPaginaDTO primera = servicio.listarPagina(null, null, null, null, null, null, 1, true);
+        PedidoPaginaDTO segunda = servicio.listarPagina(null, null, null, null, null, primera.getSiguienteCursor(), 1, true);
+        assertEquals(4L, segunda.getPedidos().get(0).getId());
+        assertTrue(segunda.isHayMas());
+
+        // El cursor del pedido sin fecha sigue por id dentro del tramo sin fecha
+        PedidoPaginaDTO tercera = servicio.listarPagina(null, null, null, null, null, segunda.getSiguienteCursor(), 1, true);
+        assertEquals(2L, tercera.getPedidos().get(0).getId());
+        assertNull(tercera.getSiguienteCursor());
+    }
+
+    private static PedidoResponseDTO listado(Long id, String fecha) {
+        return PedidoResponseDTO.builder().id(id).fecha(fecha).build();
+    }
+
+    private static ProductoVariante variante(Long id, double precio) {
+        return ProductoVariante.builder().id(id).sku("SKU-" + id).precio(precio).stockDisponible(5).build();
+    }
+
+    private static Carrito carrito(Long clienteId) {
+        Carrito carrito = new Carrito();
+        carrito.setId(CARRITO_ID);
+        carrito.setUsuario(Usuario.builder().id(clienteId).build());
+        return carrito;
+    }
+}
@@ -0,0 +1,163 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.event.PedidoEstadoCambiadoEvent;
+import com.hrk.tienda_b2b.event.StockVarianteModificadoEvent;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.OrigenReserva;
+import com.hrk.tienda_b2b.model.TipoDocumento;
+import com.hrk.tienda_b2b.repository.ReservaStockJdbcRepository;
+import com.hrk.tienda_b2b.repository.StockVarianteJdbcRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ciclo de vida de las reservas: reservar, deshacer al revertir, liberar al commit, pasar del carrito al pedido,
+ * soltar al confirmar, vencer y persistir/restaurar.
+ */
+class ReservaStockServiceTest {
+
+    private static final Long VARIANTE = 1L;
+    private static final Long CARRITO_A = 10L;
+    private static final Long CARRITO_B = 11L;
+    private static final Long PEDIDO = 500L;
+
+    private final StockVarianteJdbcRepository stockJdbc = mock(StockVarianteJdbcRepository.class);
+    private final ReservaStockJdbcRepository reservaJdbc = mock(ReservaStockJdbcRepository.class);
+    private ReservaStockService reservas;
+
+    @BeforeEach
+    void preparar() {
+        reservas = new ReservaStockService(stockJdbc, reservaJdbc, 30, 120);
+        stock(5);
+    }
+
+    @AfterEach
+    void limpiar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void noSeReservaMasDeLoLibre() {
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 3);
+
+        StockInsuficienteException e = assertThrows(StockInsuficienteException.class,
+                () -> reservas.reservar(OrigenReserva.CARRITO, CARRITO_B, VARIANTE, 3));
+        assertEquals(2, e.getFaltantes().get(0).getDisponible());
+
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_B, VARIANTE, 2);
+        assertEquals(2, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_A, VARIANTE));
+        assertEquals(3, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_B, VARIANTE));
+    }
+
+    @Test
+    void siLaTransaccionSeRevierteLaReservaSeDeshace() {
+        TransactionSynchronizationManager.initSynchronization();
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 5);
+
+        terminarTransaccion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(0, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_B, VARIANTE));
+    }
+
+    @Test
+    void liberarEsperaAlCommit() {
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 4);
+
+        TransactionSynchronizationManager.initSynchronization();
+        reservas.liberar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 1);
+        assertEquals(4, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_B, VARIANTE));
+
+        terminarTransaccion(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(3, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_B, VARIANTE));
+    }
+
+    @Test
+    void alTransferirPasanAlPedidoYVuelvenSiSeRevierte() {
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 4);
+
+        TransactionSynchronizationManager.initSynchronization();
+        reservas.transferir(OrigenReserva.CARRITO, CARRITO_A, OrigenReserva.PEDIDO, PEDIDO);
+        assertEquals(0, reservas.reservadoPorOtros(OrigenReserva.PEDIDO, PEDIDO, VARIANTE));
+        assertEquals(4, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_A, VARIANTE));
+
+        terminarTransaccion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(0, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_A, VARIANTE));
+        assertEquals(4, reservas.reservadoPorOtros(OrigenReserva.PEDIDO, PEDIDO, VARIANTE));
+    }
+
+    @Test
+    void alConfirmarSeSueltanLasDelPedidoYSeRefrescaElDisponible() {
+        reservas.reservar(OrigenReserva.PEDIDO, PEDIDO, VARIANTE, 5);
+
+        // Confirmado: el stock ya se descontó en la base
+        stock(0);
+        reservas.alModificarStock(new StockVarianteModificadoEvent(List.of(VARIANTE)));
+        reservas.alCambiarEstadoPedido(new PedidoEstadoCambiadoEvent(PEDIDO, TipoDocumento.VENTA, EstadoPedido.CONFIRMADO,
+                LocalDate.now(), 7L));
+
+        assertEquals(0, reservas.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_A, VARIANTE));
+        assertThrows(StockInsuficienteException.class, () -> reservas.reservar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 1));
+    }
+
+    @Test
+    void lasVencidasSeLiberanEnElBarrido() {
+        ReservaStockService sinTtl = new ReservaStockService(stockJdbc, reservaJdbc, 0, 0);
+        sinTtl.reservar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 5);
+
+        sinTtl.liberarVencidas();
+
+        assertEquals(0, sinTtl.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_B, VARIANTE));
+        sinTtl.reservar(OrigenReserva.CARRITO, CARRITO_B, VARIANTE, 5);
+    }
+
+    @Test
+    void loPersistidoSeRestauraAlReiniciar() {
+        reservas.reservar(OrigenReserva.CARRITO, CARRITO_A, VARIANTE, 3);
+        reservas.persistir();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ReservaStockJdbcRepository.Fila>> guardadas = ArgumentCaptor.forClass(List.class);
+        verify(reservaJdbc).guardar(guardadas.capture());
+        assertEquals(1, guardadas.getValue().size());
+        assertEquals(3, guardadas.getValue().get(0).getCantidad());
+
+        ReservaStockService reiniciado = new ReservaStockService(stockJdbc, reservaJdbc, 30, 120);
+        when(reservaJdbc.vigentes(any(LocalDateTime.class))).thenReturn(guardadas.getValue());
+        reiniciado.restaurar();
+
+        assertEquals(3, reiniciado.reservadoPorOtros(OrigenReserva.CARRITO, CARRITO_B, VARIANTE));
+        assertThrows(StockInsuficienteException.class, () -> reiniciado.reservar(OrigenReserva.CARRITO, CARRITO_B, VARIANTE, 3));
+    }
+
+    private void stock(int disponible) {
+        when(stockJdbc.leer(List.of(VARIANTE))).thenReturn(List.of(new StockVarianteJdbcRepository.StockVariante(VARIANTE, "SKU-1", disponible)));
+    }
+
+    private static void terminarTransaccion(int estado) {
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization sincronizacion : sincronizaciones) {
+            if (estado == TransactionSynchronization.STATUS_COMMITTED) {
+                sincronizacion.afterCommit();
+            }
+            sincronizacion.afterCompletion(estado);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.DetallePedido;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.MetodoPago;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.Producto;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.model.TipoAprobacionDevolucion;
+import com.hrk.tienda_b2b.model.TipoDocumento;
+import com.hrk.tienda_b2b.model.Usuario;
+import com.hrk.tienda_b2b.model.converter.MetodoPagoConverter;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import com.hrk.tienda_b2b.repository.ResumenVarianteDiariaRepository;
+import com.hrk.tienda_b2b.repository.ResumenVentaDiariaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Buckets que dejan los acumulados incrementales (retirar antes / incorporar después de cada cambio) para pedidos
+ * típicos, con los valores esperados escritos a mano: son los que armaría reconstruir() con esos mismos pedidos.
+ */
+class ResumenDiarioServiceTest {
+
+    private static final LocalDateTime LUNES = LocalDateTime.of(2026, 3, 2, 10, 0);
+    private static final LocalDateTime MARTES = LocalDateTime.of(2026, 3, 3, 18, 30);
+
+    private final ResumenVentaDiariaRepository ventaRepo = mock(ResumenVentaDiariaRepository.class);
+    private final ResumenVarianteDiariaRepository varianteRepo = mock(ResumenVarianteDiariaRepository.class);
+    private final ResumenDiarioService servicio = new ResumenDiarioService(ventaRepo, varianteRepo, mock(PedidoRepository.class));
+
+    // Buckets como quedan en la base: clave -> {cantidad_pedidos, monto_total} y clave -> unidades
+    private final Map<List<Object>, double[]> ventas = new HashMap<>();
+    private final Map<List<Object>, Long> variantes = new HashMap<>();
+
+    private final ProductoVariante remeraS = variante(1L, 10L);
+    private final ProductoVariante remeraM = variante(2L, 10L);
+    private final ProductoVariante gorra = variante(3L, 20L);
+
+    @BeforeEach
+    void preparar() {
+        doAnswer(invocacion -> {
+            Object[] a = invocacion.getArguments();
+            double[] bucket = ventas.computeIfAbsent(List.of(a[0], a[1], a[2], a[3], a[4], a[5]), k -> new double[2]);
+            bucket[0] += (Long) a[6];
+            bucket[1] += (Double) a[7];
+            return null;
+        }).when(ventaRepo).acumular(any(), any(), any(), any(), any(), any(), anyLong(), anyDouble());
+        doAnswer(invocacion -> {
+            Object[] a = invocacion.getArguments();
+            variantes.merge(List.of(a[0], a[1], a[2], a[3], a[4]), (Long) a[5], Long::sum);
+            return null;
+        }).when(varianteRepo).acumular(any(), any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void ventaEntregadaQuedaSoloEnElBucketDeEntregadas() {
+        // Dos renglones de la misma variante: un solo bucket de variante con las unidades sumadas
+        Pedido pedido = pedido(100L, TipoDocumento.VENTA, EstadoPedido.BORRADOR, LUNES, MetodoPago.EFECTIVO, 7L, null);
+        renglon(pedido, remeraS, 2, 100.0);
+        renglon(pedido, remeraS, 1, 100.0);
+        renglon(pedido, gorra, 1, 50.0);
+        cambiarEstado(pedido, EstadoPedido.CONFIRMADO);
+        cambiarEstado(pedido, EstadoPedido.ENTREGADO);
+
+        assertEquals(Map.of(bucketVenta(LUNES, "VENTA", "ENTREGADO", "NINGUNO", "EFECTIVO", 7L), List.of(1.0, 350.0)),
+                sinCeros(ventas));
+        assertEquals(Map.of(
+                bucketVariante(LUNES, "VENTA", "ENTREGADO", 1L, 10L), 3L,
+                bucketVariante(LUNES, "VENTA", "ENTREGADO", 3L, 20L), 1L), sinCerosVariantes(variantes));
+    }
+
+    @Test
+    void pedidoViejoCanceladoCuentaComoVentaDelClienteId() {
+        // Sin tipo y sin usuario (sólo cliente_id), como los de /api/pedidos/crear
+        Pedido pedido = pedido(101L, null, EstadoPedido.BORRADOR, LUNES, MetodoPago.MERCADOPAGO, null, 8L);
+        renglon(pedido, remeraM, 4, 110.0);
+        cambiarEstado(pedido, EstadoPedido.CONFIRMADO);
+        cambiarEstado(pedido, EstadoPedido.CANCELADO);
+
+        assertEquals(Map.of(bucketVenta(LUNES, "VENTA", "CANCELADO", "NINGUNO", "MERCADOPAGO", 8L), List.of(1.0, 440.0)),
+                sinCeros(ventas));
+        assertEquals(Map.of(bucketVariante(LUNES, "VENTA", "CANCELADO", 2L, 10L), 4L), sinCerosVariantes(variantes));
+    }
+
+    @Test
+    void unaVentaSinConfirmarNoEntra() {
+        Pedido borrador = pedido(102L, TipoDocumento.VENTA, EstadoPedido.BORRADOR, MARTES, null, 7L, null);
+        renglon(borrador, gorra, 3, 50.0);
+        servicio.incorporar(borrador);
+        cambiarEstado(borrador, EstadoPedido.DOCUMENTADO);
+
+        assertEquals(Map.of(), sinCeros(ventas));
+        assertEquals(Map.of(), sinCerosVariantes(variantes));
+    }
+
+    @Test
+    void devolucionEntraAlCrearseYPasaDePendienteAApta() {
+        Pedido devolucion = pedido(103L, TipoDocumento.DEVOLUCION, EstadoPedido.BORRADOR, MARTES, null, 7L, null);
+        servicio.incorporar(devolucion);
+        agregarRenglon(devolucion, remeraS, 1, 100.0);
+        agregarRenglon(devolucion, gorra, 1, 50.0);
+        assertEquals(Map.of(bucketVenta(MARTES, "DEVOLUCION", "BORRADOR", "PENDIENTE", "NINGUNO", 7L), List.of(1.0, 150.0)),
+                sinCeros(ventas));
+
+        servicio.retirar(devolucion);
+        devolucion.setTipoAprobacionDevolucion(TipoAprobacionDevolucion.APTA);
+        servicio.incorporar(devolucion);
+
+        assertEquals(Map.of(bucketVenta(MARTES, "DEVOLUCION", "BORRADOR", "APTA", "NINGUNO", 7L), List.of(1.0, 150.0)),
+                sinCeros(ventas));
+        assertEquals(Map.of(
+                bucketVariante(MARTES, "DEVOLUCION", "BORRADOR", 1L, 10L), 1L,
+                bucketVariante(MARTES, "DEVOLUCION", "BORRADOR", 3L, 20L), 1L), sinCerosVariantes(variantes));
+    }
+
+    @Test
+    void ventasDelMismoClienteYDiaCompartenBucket() {
+        Pedido manana = pedido(100L, TipoDocumento.VENTA, EstadoPedido.BORRADOR, LUNES, MetodoPago.EFECTIVO, 7L, null);
+        renglon(manana, gorra, 1, 50.0);
+        cambiarEstado(manana, EstadoPedido.CONFIRMADO);
+        Pedido tarde = pedido(104L, TipoDocumento.VENTA, EstadoPedido.BORRADOR, LUNES.plusHours(3), MetodoPago.EFECTIVO, 7L, null);
+        renglon(tarde, gorra, 2, 50.0);
+        cambiarEstado(tarde, EstadoPedido.CONFIRMADO);
+
+        assertEquals(Map.of(bucketVenta(LUNES, "VENTA", "CONFIRMADO", "NINGUNO", "EFECTIVO", 7L), List.of(2.0, 150.0)),
+                sinCeros(ventas));
+        assertEquals(Map.of(bucketVariante(LUNES, "VENTA", "CONFIRMADO", 3L, 20L), 3L), sinCerosVariantes(variantes));
+    }
+
+    @Test
+    void elMetodoDePagoDeLaReconstruccionEsElQueLeeLaEntidad() {
+        MetodoPagoConverter converter = new MetodoPagoConverter();
+        for (String guardado : Arrays.asList("EFECTIVO", " efectivo ", "Transferencia", "cheque", "MercadoPago",
+                "MERCADO_PAGO", "Mercado Pago", "", "bitcoin", null)) {
+            Pedido pedido = new Pedido();
+            pedido.setMetodoPago(converter.convertToEntityAttribute(guardado));
+            assertEquals(ResumenDiarioService.metodoPago(pedido), metodoPagoNormalizado(guardado), "metodo_pago = " + guardado);
+        }
+    }
+
+    // ===== Cambios como los hacen PedidoServiceImpl y DevolucionServiceImpl =====
+
+    private void cambiarEstado(Pedido pedido, EstadoPedido estado) {
+        servicio.retirar(pedido);
+        pedido.setEstado(estado);
+        servicio.incorporar(pedido);
+    }
+
+    private void agregarRenglon(Pedido pedido, ProductoVariante variante, int cantidad, double precio) {
+        servicio.retirar(pedido);
+        renglon(pedido, variante, cantidad, precio);
+        servicio.incorporar(pedido);
+    }
+
+    // Evalúa METODO_PAGO_NORMALIZADO (CASE UPPER(TRIM(p.metodo_pago)) WHEN ... THEN ... ELSE ... END) sobre el valor guardado
+    private static String metodoPagoNormalizado(String guardado) {
+        String sql = ResumenVentaDiariaRepository.METODO_PAGO_NORMALIZADO;
+        if (guardado != null) {
+            Matcher when = Pattern.compile("WHEN '([^']*)' THEN '([^']*)'").matcher(sql);
+            while (when.find()) {
+                if (when.group(1).equals(guardado.trim().toUpperCase())) {
+                    return when.group(2);
+                }
+            }
+        }
+        Matcher sino = Pattern.compile("ELSE '([^']*)' END").matcher(sql);
+        sino.find();
+        return sino.group(1);
+    }
+
+    // ===== Datos =====
+
+    private static Map<List<Object>, List<Double>> sinCeros(Map<List<Object>, double[]> buckets) {
+        Map<List<Object>, List<Double>> resultado = new LinkedHashMap<>();
+        buckets.forEach((clave, valores) -> {
+            if (valores[0] != 0 || Math.abs(valores[1]) > 1e-9) {
+                resultado.put(clave, List.of(valores[0], valores[1]));
+            }
+        });
+        return resultado;
+    }
+
+    private static Map<List<Object>, Long> sinCerosVariantes(Map<List<Object>, Long> buckets) {
+        Map<List<Object>, Long> resultado = new LinkedHashMap<>();
+        buckets.forEach((clave, unidades) -> {
+            if (unidades != 0) {
+                resultado.put(clave, unidades);
+            }
+        });
+        return resultado;
+    }
+
+    // Claves como las arma ResumenDiarioService (día, tipo, estado, aprobación, método de pago, cliente)
+    private static List<Object> bucketVenta(LocalDateTime fecha, String tipo, String estado, String aprobacion,
+                                            String metodoPago, Long clienteId) {
+        return List.of(fecha.toLocalDate(), tipo, estado, aprobacion, metodoPago, clienteId);
+    }
+
+    // (día, tipo, estado, variante, producto)
+    private static List<Object> bucketVariante(LocalDateTime fecha, String tipo, String estado, Long varianteId, Long productoId) {
+        return List.of(fecha.toLocalDate(), tipo, estado, varianteId, productoId);
+    }
+
+    private static Pedido pedido(Long id, TipoDocumento tipo, EstadoPedido estado, LocalDateTime fecha, MetodoPago metodoPago,
+                                 Long usuarioId, Long clienteId) {
+        return Pedido.builder()
+                .id(id)
+                .tipo(tipo)
+                .estado(estado)
+                .fecha(fecha)
+                .metodoPago(metodoPago)
+                .usuario(usuarioId != null ? Usuario.builder().id(usuarioId).build() : null)
+                .clienteId(clienteId)
+                .total(0.0)
+                .build();
+    }
+
+    private static void renglon(Pedido pedido, ProductoVariante variante, int cantidad, double precio) {
+        pedido.getDetalles().add(DetallePedido.builder().pedido(pedido).variante(variante).cantidad(cantidad).precioUnitario(precio).build());
+        pedido.setTotal(pedido.getTotal() + cantidad * precio);
+    }
+
+    private static ProductoVariante variante(Long id, Long productoId) {
+        return ProductoVariante.builder().id(id).producto(Producto.builder().id(productoId).build()).build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.hrk.tienda_b2b.service;
+
+import com.hrk.tienda_b2b.model.DetallePedido;
+import com.hrk.tienda_b2b.model.EstadoPedido;
+import com.hrk.tienda_b2b.model.Pedido;
+import com.hrk.tienda_b2b.model.ProductoVariante;
+import com.hrk.tienda_b2b.model.TipoDocumento;
+import com.hrk.tienda_b2b.repository.PedidoRepository;
+import com.hrk.tienda_b2b.repository.SaldoDevolucionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Saldos que quedan al entregar pedidos y cargar devoluciones, para casos concretos con el resultado escrito a mano
+ * (el mismo que daría reconstruir() con esos pedidos).
+ */
+class SaldoDevolucionServiceTest {
+
+    private final SaldoDevolucionRepository saldoRepo = mock(SaldoDevolucionRepository.class);
+    private final SaldoDevolucionService servicio = new SaldoDevolucionService(saldoRepo, mock(PedidoRepository.class));
+
+    // saldos_devolucion: (cliente, variante) -> {entregado, devuelto}
+    private final Map<List<Long>, List<Integer>> saldos = new HashMap<>();
+
+    @BeforeEach
+    void preparar() {
+        doAnswer(invocacion -> {
+            List<Long> clave = List.of(invocacion.getArgument(0), invocacion.getArgument(1));
+            int entregado = invocacion.getArgument(2);
+            int devuelto = invocacion.getArgument(3);
+            saldos.merge(clave, List.of(entregado, devuelto),
+                    (a, b) -> List.of(a.get(0) + b.get(0), a.get(1) + b.get(1)));
+            return null;
+        }).when(saldoRepo).acumular(any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void lasEntregasSumanPorClienteYVariante() {
+        // Dos renglones de la misma variante y un pedido viejo sin tipo, que también es venta
+        entregar(pedido(1L, TipoDocumento.VENTA, EstadoPedido.ENTREGADO, 7L, renglon(1L, 3), renglon(1L, 2), renglon(2L, 1)));
+        entregar(pedido(2L, null, EstadoPedido.ENTREGADO, 7L, renglon(2L, 4)));
+        entregar(pedido(3L, TipoDocumento.VENTA, EstadoPedido.ENTREGADO, 8L, renglon(1L, 6)));
+
+        assertEquals(Map.of(
+                saldo(7L, 1L), List.of(5, 0),
+                saldo(7L, 2L), List.of(5, 0),
+                saldo(8L, 1L), List.of(6, 0)), saldos);
+    }
+
+    @Test
+    void sinClienteIdNoLlevaSaldo() {
+        entregar(pedido(6L, TipoDocumento.VENTA, EstadoPedido.ENTREGADO, null, renglon(1L, 2)));
+
+        assertEquals(Map.of(), saldos);
+    }
+
+    @Test
+    void lasDevolucionesSumanDevueltoEnCualquierEstado() {
+        entregar(pedido(1L, TipoDocumento.VENTA, EstadoPedido.ENTREGADO, 7L, renglon(1L, 5)));
+        devolver(pedido(7L, TipoDocumento.DEVOLUCION, EstadoPedido.BORRADOR, 7L, renglon(1L, 2), renglon(2L, 1)));
+        devolver(pedido(8L, TipoDocumento.DEVOLUCION, EstadoPedido.CONFIRMADO, 7L, renglon(1L, 1)));
+        // Una devolución que llega a entregar no suma entregado
+        entregar(pedido(9L, TipoDocumento.DEVOLUCION, EstadoPedido.ENTREGADO, 7L, renglon(1L, 4)));
+
+        assertEquals(Map.of(
+                saldo(7L, 1L), List.of(5, 3),
+                saldo(7L, 2L), List.of(0, 1)), saldos);
+    }
+
+    // Como PedidoServiceImpl.entregar
+    private void entregar(Pedido pedido) {
+        servicio.registrarEntrega(pedido);
+    }
+
+    // Como DevolucionServiceImpl al agregar cada renglón
+    private void devolver(Pedido devolucion) {
+        for (DetallePedido detalle : devolucion.getDetalles()) {
+            servicio.registrarDevolucion(devolucion.getClienteId(), detalle.getVariante().getId(), detalle.getCantidad());
+        }
+    }
+
+    private static List<Long> saldo(Long clienteId, Long varianteId) {
+        return List.of(clienteId, varianteId);
+    }
+
+    private static Pedido pedido(Long id, TipoDocumento tipo, EstadoPedido estado, Long clienteId, DetallePedido... renglones) {
+        Pedido pedido = Pedido.builder().id(id).tipo(tipo).estado(estado).clienteId(clienteId).build();
+        for (DetallePedido renglon : renglones) {
+            renglon.setPedido(pedido);
+            pedido.getDetalles().add(renglon);
+        }
+        return pedido;
+    }
+
+    private static DetallePedido renglon(Long varianteId, int cantidad) {
+        return DetallePedido.builder().variante(ProductoVariante.builder().id(varianteId).build()).cantidad(cantidad).build();
+    }
+}